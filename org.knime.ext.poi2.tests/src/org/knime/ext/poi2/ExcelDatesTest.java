@@ -0,0 +1,149 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ExcelDates}.
+ *
+ * @author agent
+ */
+public class ExcelDatesTest {
+
+    private static LocalDateTime toLocalDateTime(final double serial, final boolean date1904) {
+        return LocalDateTime.ofEpochSecond(ExcelDates.toEpochSecond(serial, date1904), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Test method for {@link ExcelDates#toEpochSecond(double, boolean)} in the 1900 date system.
+     */
+    @Test
+    public void testToEpochSecond1900() {
+        assertEquals(LocalDateTime.of(1899, 12, 31, 0, 0), toLocalDateTime(0, false));
+        assertEquals(LocalDateTime.of(1900, 1, 1, 0, 0), toLocalDateTime(1, false));
+        assertEquals(LocalDateTime.of(1900, 2, 28, 0, 0), toLocalDateTime(59, false));
+        // the non-existent 1900-02-29
+        assertEquals(LocalDateTime.of(1900, 3, 1, 0, 0), toLocalDateTime(60, false));
+        assertEquals(LocalDateTime.of(1900, 3, 1, 0, 0), toLocalDateTime(61, false));
+        assertEquals(LocalDateTime.of(2020, 1, 1, 12, 0), toLocalDateTime(43831.5, false));
+        assertEquals(LocalDateTime.of(9999, 12, 31, 0, 0), toLocalDateTime(2958465, false));
+    }
+
+    /**
+     * Test method for {@link ExcelDates#toEpochSecond(double, boolean)} in the 1904 date system.
+     */
+    @Test
+    public void testToEpochSecond1904() {
+        assertEquals(LocalDateTime.of(1904, 1, 1, 0, 0), toLocalDateTime(0, true));
+        assertEquals(LocalDateTime.of(1904, 1, 2, 6, 0), toLocalDateTime(1.25, true));
+        assertEquals(LocalDateTime.of(2020, 1, 1, 0, 0), toLocalDateTime(43831 - ExcelDates.DAYS_1900_TO_1904, true));
+    }
+
+    /**
+     * Test method for {@link ExcelDates#toEpochSecond(double, boolean)}, the time is rounded to seconds.
+     */
+    @Test
+    public void testToEpochSecondRounding() {
+        assertEquals(LocalDateTime.of(2020, 1, 1, 0, 0, 1), toLocalDateTime(43831 + 0.6 / 86400, false));
+        assertEquals(LocalDateTime.of(2020, 1, 1, 0, 0, 0), toLocalDateTime(43831 + 0.4 / 86400, false));
+        assertEquals(LocalDateTime.of(2020, 1, 2, 0, 0), toLocalDateTime(43831.9999999, false));
+        assertEquals(LocalDate.of(2020, 1, 2).toEpochDay(), ExcelDates.toEpochDay(43831.9999999, false));
+    }
+
+    /**
+     * Test method for {@link ExcelDates#fromLocalDate(LocalDate, boolean)}.
+     */
+    @Test
+    public void testFromLocalDate() {
+        assertEquals(ExcelDates.BAD_DATE, ExcelDates.fromLocalDate(LocalDate.of(1899, 12, 31), false), 0);
+        assertEquals(1, ExcelDates.fromLocalDate(LocalDate.of(1900, 1, 1), false), 0);
+        assertEquals(59, ExcelDates.fromLocalDate(LocalDate.of(1900, 2, 28), false), 0);
+        assertEquals(61, ExcelDates.fromLocalDate(LocalDate.of(1900, 3, 1), false), 0);
+        assertEquals(43831, ExcelDates.fromLocalDate(LocalDate.of(2020, 1, 1), false), 0);
+        assertEquals(ExcelDates.BAD_DATE, ExcelDates.fromLocalDate(LocalDate.of(1903, 12, 31), true), 0);
+        assertEquals(0, ExcelDates.fromLocalDate(LocalDate.of(1904, 1, 1), true), 0);
+        assertEquals(43831 - ExcelDates.DAYS_1900_TO_1904, ExcelDates.fromLocalDate(LocalDate.of(2020, 1, 1), true),
+            0);
+    }
+
+    /**
+     * Test method for {@link ExcelDates#fromLocalDateTime(LocalDateTime, boolean)},
+     * {@link ExcelDates#fromEpochMilli(long, boolean)} and {@link ExcelDates#fromLocalTime(LocalTime)}.
+     */
+    @Test
+    public void testFromTime() {
+        final LocalDateTime dateTime = LocalDateTime.of(2020, 1, 1, 18, 0, 0, 123_456_789);
+        final double serial = 43831.75 + 0.123 / 86400;
+        assertEquals(serial, ExcelDates.fromLocalDateTime(dateTime, false), 0);
+        assertEquals(serial, ExcelDates.fromEpochMilli(dateTime.toInstant(ZoneOffset.UTC).toEpochMilli(), false), 0);
+        assertEquals(0.25, ExcelDates.fromLocalTime(LocalTime.of(6, 0)), 0);
+    }
+
+    /**
+     * The dates and times (in whole seconds) are the same after converting them to serial numbers and back.
+     */
+    @Test
+    public void testRoundTrip() {
+        for (final boolean date1904 : new boolean[]{false, true}) {
+            for (LocalDateTime dateTime = LocalDateTime.of(date1904 ? 1904 : 1900, 1, 1, 0, 0, 1);
+                    dateTime.getYear() < 2100; dateTime = dateTime.plusDays(1).plusSeconds(7919)) {
+                final double serial = ExcelDates.fromLocalDateTime(dateTime, date1904);
+                assertEquals(dateTime.toString(), dateTime, toLocalDateTime(serial, date1904));
+            }
+        }
+    }
+}
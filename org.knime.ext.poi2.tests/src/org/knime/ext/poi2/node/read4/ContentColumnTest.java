@@ -0,0 +1,324 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.knime.core.util.Pair;
+import org.knime.ext.poi2.node.read4.CachedExcelTable.Content;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
+
+/**
+ * Tests for {@link ContentColumn}.
+ *
+ * @author agent
+ */
+public class ContentColumnTest {
+
+    /** The number of rows of a chunk of {@link ContentColumn}. */
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    private final KNIMEDataFormatter m_formatter = new KNIMEDataFormatter(Locale.US);
+
+    /**
+     * @return Contents of every rendering of values and original values.
+     */
+    private List<Content> contents() {
+        final CellFormat decimal = m_formatter.cellFormat(2, "0.00");
+        final CellFormat percent = m_formatter.cellFormat(10, "0.00%");
+        final CellFormat date = m_formatter.cellFormat(14, "m/d/yy");
+        final List<Content> contents = new ArrayList<>();
+        // text
+        contents.add(new Content("text", ActualDataType.STRING));
+        contents.add(new Content("value", "original", ActualDataType.STRING_FORMULA));
+        contents.add(new Content("no original", null, ActualDataType.STRING));
+        contents.add(new Content(null, ActualDataType.MISSING));
+        contents.add(new Content("#DIV/0!", ActualDataType.ERROR_FORMULA));
+        contents.add(new Content("true", "TRUE", ActualDataType.BOOLEAN));
+        // text restored from numbers and dates
+        contents.add(new Content("42", ActualDataType.NUMBER_INT));
+        contents.add(new Content("-1.5E-7", "-0.00", ActualDataType.NUMBER_DOUBLE));
+        contents.add(new Content("1.0", "1", ActualDataType.NUMBER));
+        contents.add(new Content("007", ActualDataType.NUMBER_INT));
+        contents.add(new Content("1e3", ActualDataType.NUMBER));
+        contents.add(new Content("2020-01-02", "1/2/20", ActualDataType.DATE));
+        contents.add(new Content("2020-01-02T03:04:05", "1/2/20 3:04", ActualDataType.DATE_FORMULA));
+        contents.add(new Content("2020-13-02", ActualDataType.DATE));
+        // numbers
+        contents.add(new Content(1.25, Content.DOUBLE, "1.25 original", Content.ORIGINAL_TEXT,
+            ActualDataType.NUMBER_DOUBLE));
+        contents.add(new Content(-7, Content.LONG, null, Content.ORIGINAL_LONG, ActualDataType.NUMBER_INT));
+        contents.add(new Content(Long.MAX_VALUE, Content.LONG, null, Content.ORIGINAL_SAME,
+            ActualDataType.NUMBER_INT_FORMULA));
+        contents.add(new Content(Double.NaN, Content.DOUBLE, null, Content.ORIGINAL_TEXT, ActualDataType.NUMBER));
+        contents.add(new Content(3.14159, Content.DOUBLE, decimal, ActualDataType.NUMBER_DOUBLE));
+        contents.add(new Content(0.5, Content.DOUBLE, percent, ActualDataType.NUMBER_DOUBLE));
+        contents.add(new Content(12, Content.LONG, decimal, ActualDataType.NUMBER_INT));
+        // dates
+        contents.add(Content.date(43832, date));
+        contents.add(Content.date(43832.75, date));
+        contents.add(new Content(18263, Content.DATE, "1/2/20", Content.ORIGINAL_TEXT, ActualDataType.DATE));
+        contents.add(new Content(1577934245, Content.DATE_TIME, "1/2/20 3:04", Content.ORIGINAL_TEXT,
+            ActualDataType.DATE));
+        return contents;
+    }
+
+    private static void assertContent(final String message, final Content expected, final Content actual) {
+        if (expected == null) {
+            assertNull(message, actual);
+            return;
+        }
+        assertEquals(message, expected.type(), actual.type());
+        assertEquals(message, expected.valueAsString(), actual.valueAsString());
+        assertEquals(message, expected.originalValue(), actual.originalValue());
+    }
+
+    /**
+     * Adds the {@link #contents()} repeatedly to the rows in {@code rows} and to the {@code expected} map.
+     */
+    private ContentColumn column(final ContentColumn.Dictionary dictionary, final int[] rows,
+        final SortedMap<Integer, Content> expected) {
+        final ContentColumn column = new ContentColumn(dictionary);
+        final List<Content> contents = contents();
+        for (int i = 0; i < rows.length; i++) {
+            final Content content = contents.get(i % contents.size());
+            column.add(rows[i], content);
+            expected.put(rows[i], content);
+        }
+        return column;
+    }
+
+    private static void assertColumn(final SortedMap<Integer, Content> expected, final ContentColumn column) {
+        final int size = expected.isEmpty() ? 0 : expected.lastKey() + 1;
+        assertEquals(size, column.size());
+        for (int row = 0; row < size + 2; row++) {
+            final Content content = expected.get(row);
+            assertContent("row " + row, content, column.get(row));
+            assertEquals("row " + row, content == null ? null : content.type(), column.type(row));
+        }
+    }
+
+    /**
+     * @return Every row of the first chunk, then rows with gaps within and across chunks.
+     */
+    private static int[] sparseRows() {
+        final List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            rows.add(row);
+        }
+        for (int row = CHUNK_SIZE + 3; row < 6 * CHUNK_SIZE; row += 7) {
+            rows.add(row);
+        }
+        rows.add(20 * CHUNK_SIZE - 1);
+        rows.add(20 * CHUNK_SIZE);
+        rows.add(25 * CHUNK_SIZE + 17);
+        return rows.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Test method for {@link ContentColumn#add(int, Content)} and {@link ContentColumn#get(int)} with every
+     * rendering.
+     */
+    @Test
+    public void testAddGet() {
+        final SortedMap<Integer, Content> expected = new TreeMap<>();
+        final ContentColumn column =
+            column(new ContentColumn.Dictionary(), new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+                16, 17, 18, 19, 20, 21, 22, 23, 24}, expected);
+        assertColumn(expected, column);
+    }
+
+    /**
+     * Test method for {@link ContentColumn#add(int, Content)} and {@link ContentColumn#get(int)} with empty rows
+     * and chunks.
+     */
+    @Test
+    public void testSparseRows() {
+        final SortedMap<Integer, Content> expected = new TreeMap<>();
+        final ContentColumn column = column(new ContentColumn.Dictionary(), sparseRows(), expected);
+        assertColumn(expected, column);
+    }
+
+    /**
+     * Test method for {@link ContentColumn#add(int, Content)}, contents before the end are appended.
+     */
+    @Test
+    public void testAddBeforeEnd() {
+        final ContentColumn column = new ContentColumn(new ContentColumn.Dictionary());
+        column.add(5, new Content("a", ActualDataType.STRING));
+        column.add(2, new Content("b", ActualDataType.STRING));
+        assertEquals(7, column.size());
+        assertEquals("b", column.get(6).valueAsString());
+        assertNull(column.get(2));
+    }
+
+    /**
+     * Test method for {@link ContentColumn#write(java.io.DataOutput)} and
+     * {@link ContentColumn#read(java.io.DataInput, ContentColumn.Dictionary)}.
+     *
+     * @throws IOException Writing or reading failed.
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        final ContentColumn.Dictionary dictionary = new ContentColumn.Dictionary();
+        final SortedMap<Integer, Content> expected = new TreeMap<>();
+        final SortedMap<Integer, Content> expectedEmpty = new TreeMap<>();
+        final ContentColumn column = column(dictionary, sparseRows(), expected);
+        final ContentColumn empty = column(dictionary, new int[0], expectedEmpty);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            dictionary.write(out);
+            column.write(out);
+            empty.write(out);
+        }
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final ContentColumn.Dictionary readDictionary = new ContentColumn.Dictionary();
+            readDictionary.read(in, new KNIMEDataFormatter(Locale.US));
+            final ContentColumn readColumn = ContentColumn.read(in, readDictionary);
+            assertColumn(expected, readColumn);
+            assertEquals(column.typeRuns(), readColumn.typeRuns());
+            assertColumn(expectedEmpty, ContentColumn.read(in, readDictionary));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /**
+     * Test method for {@link ContentColumn#spill(ChunkSpillFile)}, called while adding (from the thread adding and
+     * concurrently from another one) and afterwards, then every row is read back.
+     *
+     * @throws Exception Spilling or reading failed.
+     */
+    @Test
+    public void testSpill() throws Exception {
+        final ContentColumn.Dictionary dictionary = new ContentColumn.Dictionary();
+        final ContentColumn column = new ContentColumn(dictionary);
+        final ChunkSpillFile file = ChunkSpillFile.create(this);
+        final AtomicBoolean adding = new AtomicBoolean(true);
+        final AtomicInteger spilled = new AtomicInteger();
+        final Thread spiller = new Thread(() -> {
+            try {
+                while (adding.get()) {
+                    spilled.addAndGet(column.spill(file));
+                    Thread.yield();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        spiller.start();
+        final SortedMap<Integer, Content> expected = new TreeMap<>();
+        final List<Content> contents = contents();
+        final int[] rows = sparseRows();
+        try {
+            for (int i = 0; i < rows.length; i++) {
+                column.add(rows[i], contents.get(i % contents.size()));
+                expected.put(rows[i], contents.get(i % contents.size()));
+                if (i % (CHUNK_SIZE / 2) == 0) {
+                    spilled.addAndGet(column.spill(file));
+                }
+            }
+        } finally {
+            adding.set(false);
+            spiller.join();
+        }
+        spilled.addAndGet(column.spill(file));
+        // every chunk with contents but the last one, each once
+        assertEquals(8, spilled.get());
+        assertEquals(0, column.spill(file));
+        assertColumn(expected, column);
+        // backwards, so every chunk is read again
+        for (int row = column.size() - 1; row >= 0; row--) {
+            assertContent("row " + row, expected.get(row), column.get(row));
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            column.write(out);
+        }
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertColumn(expected, ContentColumn.read(in, dictionary));
+        }
+    }
+
+    /**
+     * Test method for {@link ContentColumn#typeRuns()}.
+     */
+    @Test
+    public void testTypeRuns() {
+        final ContentColumn column = new ContentColumn(new ContentColumn.Dictionary());
+        assertEquals(new TreeMap<>(), column.typeRuns());
+        column.add(1, new Content("a", ActualDataType.STRING));
+        column.add(2, new Content("b", ActualDataType.STRING));
+        column.add(CHUNK_SIZE + 1, new Content("1", ActualDataType.NUMBER_INT));
+        column.add(CHUNK_SIZE + 2, new Content("2", ActualDataType.NUMBER_INT));
+        column.add(CHUNK_SIZE + 3, new Content("c", ActualDataType.STRING));
+        final SortedMap<Integer, Pair<ActualDataType, Integer>> expected = new TreeMap<>();
+        expected.put(0, Pair.create(ActualDataType.MISSING, 0));
+        expected.put(1, Pair.create(ActualDataType.STRING, 2));
+        expected.put(3, Pair.create(ActualDataType.MISSING, CHUNK_SIZE));
+        expected.put(CHUNK_SIZE + 1, Pair.create(ActualDataType.NUMBER_INT, CHUNK_SIZE + 2));
+        expected.put(CHUNK_SIZE + 3, Pair.create(ActualDataType.STRING, CHUNK_SIZE + 3));
+        assertEquals(expected, column.typeRuns());
+    }
+}
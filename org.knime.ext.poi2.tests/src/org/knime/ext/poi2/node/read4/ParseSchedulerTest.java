@@ -0,0 +1,346 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Tests for {@link ParseScheduler}, the waiting parses are admitted on other threads.
+ *
+ * @author agent
+ */
+public class ParseSchedulerTest {
+
+    /** The time to wait for a state which is expected to be reached, in milliseconds. */
+    private static final long TIMEOUT = 10000L;
+
+    /** The time a parse has to stay blocked when it is expected to wait, in milliseconds. */
+    private static final long BLOCKED = 300L;
+
+    private final ExecutorService m_threads = Executors.newCachedThreadPool();
+
+    /**
+     * Stops the waiting parses.
+     */
+    @After
+    public void stopThreads() {
+        m_threads.shutdownNow();
+    }
+
+    private static void await(final String message, final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(message);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Starts a parse on another thread and waits until it is admitted or queued.
+     */
+    private Future<ParseScheduler.Admission> admitLater(final ParseScheduler scheduler, final long cost,
+        final ExecutionMonitor exec) throws InterruptedException {
+        final int queued = scheduler.queueDepth();
+        final int active = scheduler.activeParses();
+        final Future<ParseScheduler.Admission> admission =
+            m_threads.submit((Callable<ParseScheduler.Admission>)() -> scheduler.admit(cost, exec));
+        await("not queued", () -> scheduler.queueDepth() > queued || scheduler.activeParses() > active);
+        return admission;
+    }
+
+    private static ParseScheduler.Admission admitted(final Future<ParseScheduler.Admission> admission)
+        throws Exception {
+        return admission.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static void assertBlocked(final Future<?> admission) throws InterruptedException {
+        Thread.sleep(BLOCKED);
+        assertFalse("admitted", admission.isDone());
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#admit(long, ExecutionMonitor)}, at most
+     * {@link ParseScheduler#parallelism()} parses run at the same time.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testParallelism() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(2, Long.MAX_VALUE);
+        final ParseScheduler.Admission first = scheduler.admit(0, null);
+        try (final ParseScheduler.Admission second = scheduler.admit(0, null)) {
+            assertEquals(2, scheduler.activeParses());
+            final Future<ParseScheduler.Admission> third = admitLater(scheduler, 0, null);
+            assertBlocked(third);
+            assertEquals(1, scheduler.queueDepth());
+            assertEquals(1, scheduler.deferredCount());
+            first.close();
+            try (final ParseScheduler.Admission admission = admitted(third)) {
+                assertEquals(2, scheduler.activeParses());
+                assertEquals(0, scheduler.queueDepth());
+            }
+        }
+        assertEquals(0, scheduler.activeParses());
+        assertEquals(0, scheduler.abandonedCount());
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#admit(long, ExecutionMonitor)}, the estimated heap usage of the running
+     * parses stays within the {@link ParseScheduler#budget()}.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testBudget() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(10, 100);
+        try (final ParseScheduler.Admission small = scheduler.admit(30, null)) {
+            final ParseScheduler.Admission large = scheduler.admit(60, null);
+            assertEquals(90, scheduler.reservedBytes());
+            final Future<ParseScheduler.Admission> waiting = admitLater(scheduler, 50, null);
+            assertBlocked(waiting);
+            large.close();
+            try (final ParseScheduler.Admission admission = admitted(waiting)) {
+                assertEquals(80, scheduler.reservedBytes());
+            }
+            try (final ParseScheduler.Admission fitting = scheduler.admit(70, null)) {
+                assertEquals(100, scheduler.reservedBytes());
+            }
+        }
+        assertEquals(0, scheduler.reservedBytes());
+        assertEquals(1, scheduler.deferredCount());
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#admit(long, ExecutionMonitor)}, a parse estimated to need more than the
+     * budget runs alone.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testOverBudget() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(2, 100);
+        final ParseScheduler.Admission large = scheduler.admit(1000, null);
+        assertEquals(0, scheduler.deferredCount());
+        assertEquals(1000, scheduler.reservedBytes());
+        final Future<ParseScheduler.Admission> waiting = admitLater(scheduler, 0, null);
+        assertBlocked(waiting);
+        large.close();
+        admitted(waiting).close();
+        try (final ParseScheduler.Admission small = scheduler.admit(10, null)) {
+            final Future<ParseScheduler.Admission> tooLarge = admitLater(scheduler, 1000, null);
+            assertBlocked(tooLarge);
+            small.close();
+            admitted(tooLarge).close();
+        }
+        assertEquals(0, scheduler.reservedBytes());
+        assertEquals(2, scheduler.deferredCount());
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#admit(long, ExecutionMonitor)}, a cheap parse does not pass an earlier
+     * waiting one even if it fits.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testFifo() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(3, 100);
+        final ParseScheduler.Admission running = scheduler.admit(90, null);
+        final Future<ParseScheduler.Admission> expensive = admitLater(scheduler, 50, null);
+        final Future<ParseScheduler.Admission> cheap = admitLater(scheduler, 5, null);
+        assertEquals(2, scheduler.queueDepth());
+        assertBlocked(cheap);
+        assertFalse(expensive.isDone());
+        running.close();
+        try (final ParseScheduler.Admission first = admitted(expensive);
+                final ParseScheduler.Admission second = admitted(cheap)) {
+            assertEquals(55, scheduler.reservedBytes());
+            assertEquals(2, scheduler.activeParses());
+        }
+    }
+
+    /**
+     * Test method for {@link ParseScheduler.Admission#close()}, closing an admission again does not release its share
+     * again.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testRepeatedClose() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(2, 100);
+        final ParseScheduler.Admission first = scheduler.admit(40, null);
+        try (final ParseScheduler.Admission second = scheduler.admit(30, null)) {
+            first.close();
+            first.close();
+            assertEquals(1, scheduler.activeParses());
+            assertEquals(30, scheduler.reservedBytes());
+            final ParseScheduler.Admission third = scheduler.admit(70, null);
+            final Future<ParseScheduler.Admission> fourth = admitLater(scheduler, 0, null);
+            assertBlocked(fourth);
+            third.close();
+            third.close();
+            admitted(fourth).close();
+        }
+        assertEquals(0, scheduler.activeParses());
+        assertEquals(0, scheduler.reservedBytes());
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#admit(long, ExecutionMonitor)}, an interrupted waiting parse is removed
+     * from the queue and the next one is admitted.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testInterrupted() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(3, 100);
+        try (final ParseScheduler.Admission running = scheduler.admit(90, null)) {
+            final Future<ParseScheduler.Admission> interrupted = admitLater(scheduler, 50, null);
+            final Future<ParseScheduler.Admission> next = admitLater(scheduler, 5, null);
+            assertBlocked(next);
+            interrupted.cancel(true);
+            try (final ParseScheduler.Admission admission = admitted(next)) {
+                assertEquals(95, scheduler.reservedBytes());
+            }
+            await("not abandoned", () -> scheduler.abandonedCount() == 1);
+            assertEquals(0, scheduler.queueDepth());
+            assertEquals(1, scheduler.activeParses());
+        }
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#admit(long, ExecutionMonitor)}, a cancelled waiting parse is removed from
+     * the queue and the next one is admitted.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testCancelled() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(3, 100);
+        final boolean[] cancelled = {false};
+        final ExecutionMonitor exec = new ExecutionMonitor() {
+            @Override
+            public void checkCanceled() throws CanceledExecutionException {
+                synchronized (cancelled) {
+                    if (cancelled[0]) {
+                        throw new CanceledExecutionException();
+                    }
+                }
+            }
+        };
+        try (final ParseScheduler.Admission running = scheduler.admit(90, null)) {
+            final Future<ParseScheduler.Admission> cancelledParse = admitLater(scheduler, 50, exec);
+            final Future<ParseScheduler.Admission> next = admitLater(scheduler, 5, null);
+            assertBlocked(next);
+            synchronized (cancelled) {
+                cancelled[0] = true;
+            }
+            try {
+                cancelledParse.get(TIMEOUT, TimeUnit.MILLISECONDS);
+                fail("admitted");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().toString(), e.getCause() instanceof CanceledExecutionException);
+            }
+            admitted(next).close();
+            assertEquals(1, scheduler.abandonedCount());
+            assertEquals(0, scheduler.queueDepth());
+        }
+        assertEquals(0, scheduler.activeParses());
+    }
+
+    /**
+     * Test method for {@link ParseScheduler#tryAdmit(long)}, additional workers take shares of the parallelism and do
+     * not pass the waiting parses.
+     *
+     * @throws Exception Waiting failed.
+     */
+    @Test
+    public void testTryAdmit() throws Exception {
+        final ParseScheduler scheduler = new ParseScheduler(3, 100);
+        try (final ParseScheduler.Admission parse = scheduler.admit(60, null)) {
+            final ParseScheduler.Admission worker = scheduler.tryAdmit(0);
+            try (final ParseScheduler.Admission other = scheduler.tryAdmit(0)) {
+                assertEquals(3, scheduler.activeParses());
+                assertNull(scheduler.tryAdmit(0));
+                final Future<ParseScheduler.Admission> waiting = admitLater(scheduler, 10, null);
+                worker.close();
+                try (final ParseScheduler.Admission admission = admitted(waiting)) {
+                    assertEquals(70, scheduler.reservedBytes());
+                }
+                final Future<ParseScheduler.Admission> tooLarge = admitLater(scheduler, 50, null);
+                assertNull(scheduler.tryAdmit(0));
+                tooLarge.cancel(true);
+                await("not abandoned", () -> scheduler.queueDepth() == 0);
+                assertNull(scheduler.tryAdmit(50));
+                scheduler.tryAdmit(40).close();
+            }
+        }
+        assertEquals(0, scheduler.activeParses());
+        assertEquals(0, scheduler.reservedBytes());
+    }
+}
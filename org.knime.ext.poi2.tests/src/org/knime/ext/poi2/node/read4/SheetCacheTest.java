@@ -0,0 +1,235 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Tests for {@link SheetCache}, the entries are only evicted when all of their leases are closed.
+ *
+ * @author agent
+ */
+public class SheetCacheTest {
+
+    /** A temporary folder for the workbook. */
+    @Rule
+    public final TemporaryFolder m_folder = new TemporaryFolder();
+
+    private Path m_workbook;
+
+    private List<CachedExcelTable> m_tables;
+
+    /**
+     * A load completed by the test.
+     */
+    private static final class TestLoad implements SheetCache.Load {
+        private final CompletableFuture<List<CachedExcelTable>> m_tables = new CompletableFuture<>();
+
+        private boolean m_cancelled;
+
+        @Override
+        public List<CachedExcelTable> get() throws InterruptedException, ExecutionException {
+            return m_tables.get();
+        }
+
+        @Override
+        public void cancel() {
+            m_cancelled = true;
+            m_tables.cancel(true);
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    /**
+     * Creates and parses a workbook.
+     *
+     * @throws Exception Writing or parsing failed.
+     */
+    @Before
+    public void createTables() throws Exception {
+        m_workbook = m_folder.newFile("cached.xlsx").toPath();
+        try (final XSSFWorkbook wb = new XSSFWorkbook(); final OutputStream out = Files.newOutputStream(m_workbook)) {
+            final XSSFSheet sheet = wb.createSheet("S");
+            for (int i = 0; i < 100; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("row " + i);
+            }
+            wb.write(out);
+        }
+        try (final InputStream in = Files.newInputStream(m_workbook)) {
+            m_tables = Collections.singletonList(CachedExcelTable.fillCacheFromXlsxStreaming(m_workbook, in, "S",
+                SheetRange.ALL, Locale.ENGLISH, new ExecutionMonitor(), null).get());
+        }
+        assertTrue(m_tables.get(0).estimatedSize() > 0);
+    }
+
+    private SheetCache.Key key(final String sheets) {
+        final SheetCache.Key key = SheetCache.Key.of(m_workbook, sheets, false, Locale.ENGLISH);
+        assertNotNull(key);
+        return key;
+    }
+
+    private static boolean isCached(final SheetCache cache, final SheetCache.Key key) {
+        final SheetCache.Lease lease = cache.acquireLoaded(key);
+        if (lease == null) {
+            return false;
+        }
+        lease.close();
+        return true;
+    }
+
+    /**
+     * Test method for {@link SheetCache.Lease#close()}, a leased entry is not evicted even if the cache is full, it is
+     * evicted when its last lease is closed.
+     *
+     * @throws Exception Reading the tables failed.
+     */
+    @Test
+    public void testLeasedEntriesSurviveEviction() throws Exception {
+        final SheetCache cache = new SheetCache(0);
+        final SheetCache.Key key = key("sheet: S");
+        final SheetCache.Lease lease = cache.put(key, m_tables);
+        final SheetCache.Lease other = cache.acquireLoaded(key);
+        assertNotNull(other);
+        assertSame(m_tables, other.get());
+        // an entry without leases is evicted right away, the leased one is kept
+        final SheetCache.Key unused = key("pattern: .*");
+        cache.put(unused, m_tables).close();
+        assertFalse(isCached(cache, unused));
+        assertTrue(isCached(cache, key));
+        lease.close();
+        assertTrue(isCached(cache, key));
+        assertSame(m_tables, other.get());
+        other.close();
+        assertFalse(isCached(cache, key));
+    }
+
+    /**
+     * Test method for {@link SheetCache.Lease#close()}, closing a lease again does not release the entry of the
+     * others.
+     *
+     * @throws Exception Reading the tables failed.
+     */
+    @Test
+    public void testRepeatedClose() throws Exception {
+        final SheetCache cache = new SheetCache(0);
+        final SheetCache.Key key = key("sheet: S");
+        final SheetCache.Lease lease = cache.put(key, m_tables);
+        final SheetCache.Lease other = cache.acquireLoaded(key);
+        lease.close();
+        lease.close();
+        lease.close();
+        assertTrue(isCached(cache, key));
+        assertSame(m_tables, other.get());
+        other.close();
+        other.close();
+        assertFalse(isCached(cache, key));
+        // the count starts from zero again
+        final SheetCache.Lease again = cache.put(key, m_tables);
+        assertTrue(isCached(cache, key));
+        again.close();
+        assertFalse(isCached(cache, key));
+    }
+
+    /**
+     * Test method for {@link SheetCache#acquire(SheetCache.Key, java.util.function.Supplier)}, the load is shared by
+     * the leases and only cancelled when the last one is closed before it is finished.
+     *
+     * @throws Exception Reading the tables failed.
+     */
+    @Test
+    public void testSharedLoad() throws Exception {
+        final SheetCache cache = new SheetCache(Long.MAX_VALUE);
+        final TestLoad load = new TestLoad();
+        final SheetCache.Key key = key("sheet: S");
+        final SheetCache.Lease first = cache.acquire(key, () -> load);
+        final SheetCache.Lease second = cache.acquire(key, () -> {
+            throw new AssertionError("loaded again");
+        });
+        assertNull(cache.acquireLoaded(key));
+        first.close();
+        first.close();
+        assertFalse(load.m_cancelled);
+        second.close();
+        assertTrue(load.m_cancelled);
+
+        final TestLoad completed = new TestLoad();
+        try (final SheetCache.Lease lease = cache.acquire(key, () -> completed)) {
+            completed.m_tables.complete(m_tables);
+            assertSame(m_tables, lease.get());
+        }
+        assertTrue(isCached(cache, key));
+        assertFalse(completed.m_cancelled);
+    }
+}
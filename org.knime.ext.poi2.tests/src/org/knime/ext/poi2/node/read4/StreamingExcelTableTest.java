@@ -0,0 +1,247 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.ExecutionMonitor;
+import org.xml.sax.SAXException;
+
+/**
+ * Tests for {@link StreamingExcelTable}, the rows are handed over from the parser thread through a bounded queue.
+ *
+ * @author agent
+ */
+public class StreamingExcelTableTest {
+
+    /** The time to wait for the parser, in milliseconds. */
+    private static final long TIMEOUT = 10000L;
+
+    /** A temporary folder for the workbooks. */
+    @Rule
+    public final TemporaryFolder m_folder = new TemporaryFolder();
+
+    /**
+     * @param rows The number of rows with values.
+     * @param emptyRows The number of rows without cells after them.
+     */
+    private Path writeWorkbook(final int rows, final int emptyRows) throws Exception {
+        final Path path = m_folder.newFile().toPath().resolveSibling("rows" + rows + ".xlsx");
+        try (final XSSFWorkbook wb = new XSSFWorkbook(); final OutputStream out = Files.newOutputStream(path)) {
+            final XSSFSheet sheet = wb.createSheet("S");
+            for (int i = 0; i < rows; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("row " + i);
+            }
+            for (int i = rows; i < rows + emptyRows; i++) {
+                sheet.createRow(i);
+            }
+            wb.write(out);
+        }
+        return path;
+    }
+
+    private static XLSUserSettings settings() {
+        final XLSUserSettings settings = new XLSUserSettings();
+        settings.setSheetName("S");
+        settings.setHasColHeaders(false);
+        settings.setSkipEmptyColumns(false);
+        return settings;
+    }
+
+    private static DataTableSpec spec(final Path path, final XLSUserSettings settings) throws Exception {
+        return new ExcelTableReader(settings).createDataTableSpec(Collections.singletonList(path),
+            new ExecutionMonitor());
+    }
+
+    private static StreamingExcelTable open(final Path path, final InputStream in, final XLSUserSettings settings,
+        final DataTableSpec spec) throws Exception {
+        return StreamingExcelTable.open(path, in, "S", SheetRange.of(settings, false), Locale.ENGLISH,
+            new ExecutionMonitor(), settings, spec);
+    }
+
+    private static void awaitNoParses() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (ParseScheduler.shared().activeParses() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("the parser is still running");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Test method for {@link StreamingExcelTable#close()}, the parser blocked on the full queue is stopped when the
+     * consumer stops early.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testCloseWhileQueueFull() throws Exception {
+        final int rows = 4 * StreamingExcelTable.DEFAULT_QUEUE_SIZE;
+        final Path path = writeWorkbook(rows, 0);
+        final XLSUserSettings settings = settings();
+        final DataTableSpec spec = spec(path, settings);
+        awaitNoParses();
+        try (final InputStream in = Files.newInputStream(path);
+                final StreamingExcelTable table = open(path, in, settings, spec)) {
+            final Iterator<DataRow> it = table.createDataTable(0, 0, new ValueUniquifier()).iterator();
+            assertEquals("row 0", it.next().getCell(0).toString());
+            // the parser fills the queue and waits for the consumer
+            Thread.sleep(500);
+            assertEquals(1, ParseScheduler.shared().activeParses());
+            assertTrue(Integer.toString(table.lastRowIndex()), table.lastRowIndex() < rows - 1);
+        }
+        awaitNoParses();
+    }
+
+    /**
+     * Test method for {@link StreamingExcelTable#nextRow()}, a failure of the parser is rethrown to the consumer after
+     * the rows parsed before it.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testParserFailure() throws Exception {
+        final Path valid = writeWorkbook(100, 0);
+        final XLSUserSettings settings = settings();
+        final DataTableSpec spec = spec(valid, settings);
+        // the number of the row with index 50 is an unknown entity reference
+        final Path broken = m_folder.newFile("broken.xlsx").toPath();
+        try (final ZipFile zip = new ZipFile(valid.toFile());
+                final ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(broken))) {
+            for (final Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+                final ZipEntry entry = entries.nextElement();
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                try (final InputStream in = zip.getInputStream(entry)) {
+                    final byte[] content = readFully(in);
+                    if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+                        final String xml = new String(content, StandardCharsets.UTF_8);
+                        out.write(xml.replace("<row r=\"51\"", "<row r=\"&fifty;\"").getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.write(content);
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+        int read = 0;
+        try (final InputStream in = Files.newInputStream(broken);
+                final StreamingExcelTable table = open(broken, in, settings, spec)) {
+            for (final DataRow row : table.createDataTable(0, 0, new ValueUniquifier())) {
+                assertEquals("row " + read, row.getCell(0).toString());
+                read++;
+            }
+            fail("the parser failure is not rethrown");
+        } catch (final RuntimeException e) {
+            assertTrue(e.toString(), e.getCause() instanceof SAXException);
+            assertTrue(e.toString(), e.getCause().getMessage().contains("&fifty;"));
+            assertEquals(50, read);
+        }
+        awaitNoParses();
+    }
+
+    private static byte[] readFully(final InputStream in) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Test method for {@link StreamingExcelTable#lastRowIndex()}, the trailing rows without cells are not counted,
+     * just like for {@link CachedExcelTable#lastRow()}.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testLastRowIndexWithTrailingEmptyRows() throws Exception {
+        final Path path = writeWorkbook(10, 5);
+        final XLSUserSettings settings = settings();
+        final DataTableSpec spec = spec(path, settings);
+        int read = 0;
+        try (final InputStream in = Files.newInputStream(path);
+                final StreamingExcelTable table = open(path, in, settings, spec)) {
+            for (final DataRow row : table.createDataTable(0, 0, new ValueUniquifier())) {
+                assertEquals("row " + read, row.getCell(0).toString());
+                read++;
+            }
+            assertEquals(10, read);
+            assertEquals(9, table.lastRowIndex());
+        }
+        try (final InputStream in = Files.newInputStream(path)) {
+            assertEquals(9, CachedExcelTable.fillCacheFromXlsxStreaming(path, in, "S", SheetRange.ALL, Locale.ENGLISH,
+                new ExecutionMonitor(), null).get().lastRow());
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.ext.poi2.node.read4.XLSUserSettings.TypeMismatchPolicy;
+import org.knime.filehandling.core.defaultnodesettings.SettingsModelFileChooser2;
+
+/**
+ * Tests for the {@link TypeMismatchPolicy policies} of the values not fitting the column types inferred from the
+ * first rows.
+ *
+ * @author agent
+ */
+public class TypeMismatchPolicyTest {
+
+    /** The number of rows the column types are inferred from. */
+    private static final int INFERENCE_ROWS = 5;
+
+    /** The number of rows of the sheet, the one after the inferred rows has a text in the integer column. */
+    private static final int ROWS = 20;
+
+    /** A temporary folder for the workbook. */
+    @Rule
+    public final TemporaryFolder m_folder = new TemporaryFolder();
+
+    private Path m_workbook;
+
+    /**
+     * Creates a workbook with an integer column with a text after the first {@link #INFERENCE_ROWS} rows.
+     *
+     * @throws Exception Writing failed.
+     */
+    @Before
+    public void createWorkbook() throws Exception {
+        m_workbook = m_folder.newFile("mismatch.xlsx").toPath();
+        try (final XSSFWorkbook wb = new XSSFWorkbook(); final OutputStream out = Files.newOutputStream(m_workbook)) {
+            final XSSFSheet sheet = wb.createSheet("S");
+            for (int i = 0; i < ROWS; i++) {
+                final XSSFRow row = sheet.createRow(i);
+                if (i == INFERENCE_ROWS) {
+                    row.createCell(0).setCellValue("text");
+                } else {
+                    row.createCell(0).setCellValue(i);
+                }
+                row.createCell(1).setCellValue("row " + i);
+            }
+            wb.write(out);
+        }
+    }
+
+    private static XLSUserSettings settings(final TypeMismatchPolicy policy) {
+        final XLSUserSettings settings = new XLSUserSettings();
+        settings.setSheetName("S");
+        settings.setHasColHeaders(false);
+        settings.setSkipEmptyColumns(false);
+        settings.setTypeInferenceRows(INFERENCE_ROWS);
+        settings.setTypeMismatchPolicy(policy);
+        return settings;
+    }
+
+    /**
+     * Reads the rows of the workbook the way the node streams them, with the spec of the settings.
+     */
+    private List<DataRow> read(final XLSUserSettings settings) throws Exception {
+        final DataTableSpec spec = new ExcelTableReader(settings)
+            .createDataTableSpec(Collections.singletonList(m_workbook), new ExecutionMonitor());
+        final List<DataRow> rows = new ArrayList<>();
+        try (final InputStream in = Files.newInputStream(m_workbook);
+                final StreamingExcelTable table = StreamingExcelTable.open(m_workbook, in, "S",
+                    SheetRange.of(settings, false), Locale.ENGLISH, new ExecutionMonitor(), settings, spec)) {
+            for (final DataRow row : table.createDataTable(0, 0, new ValueUniquifier())) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static void assertCell(final Class<? extends DataCell> type, final String value, final DataCell cell) {
+        assertEquals(value, type, cell.getClass());
+        assertEquals(value, cell.toString());
+    }
+
+    private TypeMismatchException readMismatch(final XLSUserSettings settings) throws Exception {
+        try {
+            read(settings);
+        } catch (final Exception e) {
+            final TypeMismatchException mismatch = TypeMismatchException.find(e);
+            assertNotNull(e.toString(), mismatch);
+            assertTrue(mismatch.getMessage(), mismatch.getMessage().contains("A" + (INFERENCE_ROWS + 1)));
+            return mismatch;
+        }
+        fail("no type mismatch");
+        return null;
+    }
+
+    /**
+     * {@link TypeMismatchPolicy#MISSING} replaces the value by a missing cell.
+     *
+     * @throws Exception Reading failed.
+     */
+    @Test
+    public void testMissing() throws Exception {
+        final List<DataRow> rows = read(settings(TypeMismatchPolicy.MISSING));
+        assertEquals(ROWS, rows.size());
+        for (int i = 0; i < ROWS; i++) {
+            final DataCell cell = rows.get(i).getCell(0);
+            if (i == INFERENCE_ROWS) {
+                assertTrue(cell.toString(), cell.isMissing());
+            } else {
+                assertCell(IntCell.class, Integer.toString(i), cell);
+            }
+        }
+    }
+
+    /**
+     * {@link TypeMismatchPolicy#FAIL} fails the read.
+     *
+     * @throws Exception Reading failed.
+     */
+    @Test
+    public void testFail() throws Exception {
+        assertFalse(readMismatch(settings(TypeMismatchPolicy.FAIL)).isWiden());
+    }
+
+    /**
+     * {@link TypeMismatchPolicy#WIDEN} fails the read, so it can be {@link XLSReaderNodeModel#readWidening read
+     * again} with the column types inferred from all rows.
+     *
+     * @throws Exception Reading failed.
+     */
+    @Test
+    public void testWiden() throws Exception {
+        final XLSUserSettings settings = settings(TypeMismatchPolicy.WIDEN);
+        assertTrue(readMismatch(settings).isWiden());
+        final List<DataRow> rows = XLSReaderNodeModel.readWidening(() -> read(settings),
+            () -> read(XLSReaderNodeModel.withAllRowsInferred(settings)));
+        assertEquals(ROWS, rows.size());
+        assertCell(StringCell.class, "text", rows.get(INFERENCE_ROWS).getCell(0));
+        assertCell(StringCell.class, "19", rows.get(ROWS - 1).getCell(0));
+        assertEquals(INFERENCE_ROWS, settings.getTypeInferenceRows());
+    }
+
+    /**
+     * {@link XLSReaderNodeModel#readWidening} does not read again when the policy is not to widen.
+     *
+     * @throws Exception Reading failed.
+     */
+    @Test
+    public void testNotWidened() throws Exception {
+        final XLSUserSettings settings = settings(TypeMismatchPolicy.FAIL);
+        try {
+            XLSReaderNodeModel.readWidening(() -> read(settings), () -> {
+                throw new AssertionError("read again");
+            });
+            fail("no type mismatch");
+        } catch (final TypeMismatchException e) {
+            assertFalse(e.isWiden());
+        }
+    }
+
+    /**
+     * Test method for {@link SettingsIDBuilder#getID(SettingsModelFileChooser2, XLSUserSettings)}, the inferred rows
+     * and the policy are part of the id only when the types are not inferred from all rows.
+     */
+    @Test
+    public void testSettingsID() {
+        final SettingsModelFileChooser2 fileChooser = XLSReaderNodeModel.getSettingsModelFileChooser();
+        final XLSUserSettings allRows = settings(TypeMismatchPolicy.FAIL);
+        allRows.setTypeInferenceRows(0);
+        final XLSUserSettings allRowsWiden = settings(TypeMismatchPolicy.WIDEN);
+        allRowsWiden.setTypeInferenceRows(0);
+        final String id = SettingsIDBuilder.getID(fileChooser, allRows);
+        assertEquals(id, SettingsIDBuilder.getID(fileChooser, allRowsWiden));
+        final String sampled = SettingsIDBuilder.getID(fileChooser, settings(TypeMismatchPolicy.FAIL));
+        assertNotEquals(id, sampled);
+        assertTrue(sampled, sampled.startsWith(id));
+        assertNotEquals(sampled, SettingsIDBuilder.getID(fileChooser, settings(TypeMismatchPolicy.WIDEN)));
+        final XLSUserSettings moreRows = settings(TypeMismatchPolicy.FAIL);
+        moreRows.setTypeInferenceRows(INFERENCE_ROWS + 1);
+        assertNotEquals(sampled, SettingsIDBuilder.getID(fileChooser, moreRows));
+    }
+}
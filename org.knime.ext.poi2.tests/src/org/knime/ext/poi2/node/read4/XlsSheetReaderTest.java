@@ -0,0 +1,156 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Tests for {@link XlsSheetReader}, the xls sheets read from the records have to be cached the same way as the ones
+ * read with the DOM-based API.
+ *
+ * @author agent
+ */
+public class XlsSheetReaderTest {
+
+    /** A temporary folder for the workbooks. */
+    @Rule
+    public final TemporaryFolder m_folder = new TemporaryFolder();
+
+    /**
+     * Writes a workbook with formulae of every cached result type.
+     */
+    private Path writeWorkbook() throws Exception {
+        final Path path = m_folder.newFile("formulae.xls").toPath();
+        try (final HSSFWorkbook wb = new HSSFWorkbook(); final OutputStream out = Files.newOutputStream(path)) {
+            final HSSFSheet sheet = wb.createSheet("formulae");
+            for (int i = 0; i < 20; i++) {
+                final HSSFRow row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i + 0.5);
+                row.createCell(1).setCellValue("text " + i);
+                // numeric, string, boolean and error results
+                row.createCell(2).setCellFormula("A" + (i + 1) + "*2");
+                row.createCell(3).setCellFormula("B" + (i + 1) + "&\"!\"");
+                row.createCell(4).setCellFormula("A" + (i + 1) + ">10");
+                row.createCell(5).setCellFormula(i % 2 == 0 ? "SQRT(-1)" : "A" + (i + 1) + "/0");
+                // empty string result and error values
+                row.createCell(6).setCellFormula("\"\"");
+                row.createCell(7).setCellErrorValue(FormulaError.NA);
+            }
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            wb.write(out);
+        }
+        return path;
+    }
+
+    private static List<String> rows(final CachedExcelTable table) throws Exception {
+        final XLSUserSettings settings = new XLSUserSettings();
+        settings.setSheetName(table.sheetName());
+        settings.setHasColHeaders(false);
+        settings.setSkipEmptyColumns(false);
+        final DataTable dataTable = table.createDataTable(settings, null);
+        final List<String> rows = new ArrayList<>();
+        for (final DataRow row : dataTable) {
+            final StringBuilder cells = new StringBuilder(row.getKey().toString());
+            for (final DataCell cell : row) {
+                cells.append('|').append(cell.getType()).append(':').append(cell);
+            }
+            rows.add(cells.toString());
+        }
+        return rows;
+    }
+
+    /**
+     * Test method for {@link CachedExcelTable#fillCacheFromXls(Path, InputStream, String, SheetRange, Locale,
+     * ExecutionMonitor, java.util.concurrent.atomic.AtomicReference)} against
+     * {@link CachedExcelTable#fillCacheFromDOM(Path, InputStream, String, SheetRange, Locale, boolean,
+     * ExecutionMonitor, java.util.concurrent.atomic.AtomicReference)} with the cached results of formulae.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testFormulaResults() throws Exception {
+        final Path path = writeWorkbook();
+        final CachedExcelTable records;
+        try (final InputStream in = Files.newInputStream(path)) {
+            records = CachedExcelTable.fillCacheFromXls(path, in, "formulae", SheetRange.ALL, Locale.ENGLISH,
+                new ExecutionMonitor(), null).get();
+        }
+        final CachedExcelTable dom;
+        try (final InputStream in = Files.newInputStream(path)) {
+            dom = CachedExcelTable.fillCacheFromDOM(path, in, "formulae", SheetRange.ALL, Locale.ENGLISH, false,
+                new ExecutionMonitor(), null).get();
+        }
+        assertEquals(dom.lastRow(), records.lastRow());
+        final List<String> expected = rows(dom);
+        assertEquals(20, expected.size());
+        assertTrue(expected.get(3), expected.get(3).contains("text 3!"));
+        assertEquals(expected, rows(records));
+    }
+}
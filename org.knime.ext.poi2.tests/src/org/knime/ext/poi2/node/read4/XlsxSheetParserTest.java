@@ -0,0 +1,390 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.DataType;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.KNIMESheetContentsHandler;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.StyleFormats;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests for {@link XlsxSheetParser}, the callbacks have to be the same as the ones of the SAX based
+ * {@link KNIMEXSSFSheetXMLHandler}.
+ *
+ * @author agent
+ */
+public class XlsxSheetParserTest {
+
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private static final String WORKSHEET =
+        "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+            + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">";
+
+    /** The shared strings of the workbook. */
+    private static final String[] STRINGS = {"alpha", "beta & <gamma>", "é☺"};
+
+    /** The style of the dates. */
+    private static int dateStyle;
+
+    /** The style of the numbers with two decimal places. */
+    private static int decimalStyle;
+
+    private static OPCPackage pkg;
+
+    private static SharedStringsStore strings;
+
+    private static StylesTable styles;
+
+    /**
+     * Creates a workbook with the shared strings and the styles of the sheets.
+     *
+     * @throws Exception Creating the workbook failed.
+     */
+    @BeforeClass
+    public static void createWorkbook() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final XSSFWorkbook wb = new XSSFWorkbook()) {
+            final XSSFSheet sheet = wb.createSheet();
+            final XSSFRow row = sheet.createRow(0);
+            for (int i = 0; i < STRINGS.length; i++) {
+                row.createCell(i).setCellValue(STRINGS[i]);
+            }
+            final CellStyle date = wb.createCellStyle();
+            date.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+            dateStyle = date.getIndex();
+            final CellStyle decimal = wb.createCellStyle();
+            decimal.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+            decimalStyle = decimal.getIndex();
+            wb.write(bytes);
+        }
+        pkg = OPCPackage.open(new ByteArrayInputStream(bytes.toByteArray()));
+        strings = SharedStringsStore.read(pkg, false);
+        styles = new XSSFReader(pkg).getStylesTable();
+    }
+
+    /**
+     * Releases the workbook.
+     *
+     * @throws IOException Closing the shared strings failed.
+     */
+    @AfterClass
+    public static void closeWorkbook() throws IOException {
+        strings.close();
+        pkg.revert();
+    }
+
+    /**
+     * Records the callbacks.
+     */
+    static final class Recorder implements KNIMESheetContentsHandler {
+        private final List<String> m_events = new ArrayList<>();
+
+        /**
+         * @return The recorded callbacks.
+         */
+        List<String> events() {
+            return m_events;
+        }
+
+        @Override
+        public void startRow(final int rowNum) {
+            m_events.add("startRow " + rowNum);
+        }
+
+        @Override
+        public void endRow(final int rowNum) {
+            m_events.add("endRow " + rowNum);
+        }
+
+        @Override
+        public void nextCellType(final DataType type) {
+            m_events.add("type " + type);
+        }
+
+        @Override
+        public void cell(final int column, final String formattedValue) {
+            m_events.add("cell " + column + " " + formattedValue);
+        }
+
+        @Override
+        public void numberCell(final int column, final double value, final CellFormat format,
+            final boolean isDate) {
+            m_events.add("number " + column + " " + value + " " + (format == null ? null : format.formatString())
+                + (isDate ? " date" : ""));
+        }
+    }
+
+    /**
+     * Parses the sheet with both parsers and checks that their callbacks and hidden columns are the same.
+     *
+     * @param sheetData The XML of the sheet after the {@code worksheet} start tag.
+     * @return The callbacks.
+     * @throws Exception Parsing failed.
+     */
+    private static List<String> assertSameCallbacks(final String sheetData) throws Exception {
+        return assertSameCallbacks(PROLOG + WORKSHEET, sheetData + "</worksheet>");
+    }
+
+    private static List<String> assertSameCallbacks(final String start, final String rest) throws Exception {
+        final byte[] xml = (start + rest).getBytes(StandardCharsets.UTF_8);
+        final KNIMEDataFormatter formatter = new KNIMEDataFormatter(Locale.US);
+
+        final Recorder expected = new Recorder();
+        final Set<Integer> expectedHidden = new HashSet<>();
+        final XMLReader reader = SAXHelper.newXMLReader();
+        reader.setContentHandler(new KNIMEXSSFSheetXMLHandler(new StyleFormats(styles, formatter, false), strings,
+            expected, expectedHidden));
+        reader.parse(new InputSource(new ByteArrayInputStream(xml)));
+
+        final Recorder actual = new Recorder();
+        final XlsxSheetParser parser = new XlsxSheetParser(styles, strings, actual, formatter, false);
+        try (final InputStream in = new ByteArrayInputStream(xml)) {
+            // otherwise the sheet would be parsed by the SAX handler, too
+            assertTrue(XlsxSheetParser.isUTF8WithoutDocType(in));
+            parser.parse(in);
+        }
+        assertEquals(expected.events(), actual.events());
+        assertEquals(expectedHidden, parser.getHiddenColumns());
+        return actual.events();
+    }
+
+    private static void assertContains(final List<String> events, final String event) {
+        assertTrue(event + " in " + events, events.contains(event));
+    }
+
+    /**
+     * Inline strings, also rich text and empty ones.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testInlineStrings() throws Exception {
+        final List<String> events = assertSameCallbacks("<sheetData><row r=\"1\">"
+            + "<c r=\"A1\" t=\"inlineStr\"><is><t>inline</t></is></c>"
+            + "<c r=\"B1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">  padded  </t></is></c>"
+            + "<c r=\"C1\" t=\"inlineStr\"><is><r><rPr><b/></rPr><t>rich</t></r><r><t> text</t></r></is></c>"
+            + "<c r=\"D1\" t=\"inlineStr\"><is><t/></is></c>"
+            + "<c r=\"E1\" t=\"inlineStr\"><is><t>phonetic</t><rPh sb=\"0\" eb=\"1\"><t>p</t></rPh></is></c>"
+            + "</row></sheetData>");
+        assertContains(events, "cell 0 inline");
+        assertContains(events, "cell 1   padded  ");
+    }
+
+    /**
+     * Shared strings, including the ones with markup characters and non-ASCII characters.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testSharedStrings() throws Exception {
+        final List<String> events = assertSameCallbacks("<sheetData><row r=\"2\">"
+            + "<c r=\"A2\" t=\"s\"><v>0</v></c><c r=\"C2\" t=\"s\"><v>1</v></c><c r=\"AA2\" t=\"s\"><v>2</v></c>"
+            + "</row></sheetData>");
+        assertContains(events, "cell 0 " + STRINGS[0]);
+        assertContains(events, "cell 2 " + STRINGS[1]);
+        assertContains(events, "cell 26 " + STRINGS[2]);
+    }
+
+    /**
+     * Formulas with numeric, string, boolean and error results, with and without styles.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testFormulas() throws Exception {
+        assertSameCallbacks("<sheetData><row r=\"1\">"
+            + "<c r=\"A1\"><f>1+1</f><v>2</v></c>"
+            + "<c r=\"B1\" s=\"" + decimalStyle + "\"><f>1/3</f><v>0.33333333333333331</v></c>"
+            + "<c r=\"C1\" s=\"" + decimalStyle + "\"><f>\"x\"</f><v>x</v></c>"
+            + "<c r=\"D1\" t=\"str\"><f>\"a\"&amp;\"b\"</f><v>ab</v></c>"
+            + "<c r=\"E1\" t=\"b\"><f>TRUE()</f><v>1</v></c>"
+            + "<c r=\"F1\" t=\"e\"><f>1/0</f><v>#DIV/0!</v></c>"
+            + "<c r=\"G1\" s=\"" + decimalStyle + "\"><f t=\"shared\" ref=\"G1:G2\" si=\"0\">A1*2</f><v>4</v></c>"
+            + "</row><row r=\"2\"><c r=\"G2\" s=\"" + decimalStyle + "\"><f t=\"shared\" si=\"0\"/><v>8</v></c>"
+            + "</row></sheetData>");
+    }
+
+    /**
+     * Error values.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testErrors() throws Exception {
+        final List<String> events = assertSameCallbacks("<sheetData><row r=\"1\">"
+            + "<c r=\"A1\" t=\"e\"><v>#N/A</v></c><c r=\"B1\" t=\"e\"><v>#REF!</v></c>"
+            + "<c r=\"C1\" t=\"e\"><v>#VALUE!</v></c></row></sheetData>");
+        assertContains(events, "cell 0 ERROR:#N/A");
+    }
+
+    /**
+     * Booleans.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testBooleans() throws Exception {
+        final List<String> events = assertSameCallbacks("<sheetData><row r=\"1\">"
+            + "<c r=\"A1\" t=\"b\"><v>1</v></c><c r=\"B1\" t=\"b\"><v>0</v></c></row></sheetData>");
+        assertContains(events, "cell 0 TRUE");
+        assertContains(events, "cell 1 FALSE");
+    }
+
+    /**
+     * Numbers and dates, with and without styles.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testNumbersAndDates() throws Exception {
+        final List<String> events = assertSameCallbacks("<sheetData><row r=\"1\">"
+            + "<c r=\"A1\"><v>42</v></c><c r=\"B1\"><v>-1.5E-3</v></c>"
+            + "<c r=\"C1\" s=\"" + dateStyle + "\"><v>43831.5</v></c>"
+            + "<c r=\"D1\" s=\"" + dateStyle + "\" t=\"n\"><v>1</v></c>"
+            + "<c r=\"E1\" s=\"" + decimalStyle + "\"><v>3.14159</v></c>"
+            + "<c r=\"F1\" s=\"" + decimalStyle + "\"/><c r=\"G1\" s=\"" + decimalStyle + "\"><v></v></c>"
+            + "</row></sheetData>");
+        assertContains(events, "number 2 43831.5 yyyy-mm-dd date");
+    }
+
+    /**
+     * Entities, character references and CDATA sections in values and inline strings.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testEntitiesAndCData() throws Exception {
+        final List<String> events = assertSameCallbacks("<sheetData><row r=\"1\">"
+            + "<c r=\"A1\" t=\"inlineStr\"><is><t>a &lt; b &amp;&amp; c &gt; d &quot;&apos;</t></is></c>"
+            + "<c r=\"B1\" t=\"inlineStr\"><is><t>&#233;&#x263A;&#x1F600;</t></is></c>"
+            + "<c r=\"C1\" t=\"inlineStr\"><is><t><![CDATA[x < y & ]]]]><![CDATA[>]]></t></is></c>"
+            + "<c r=\"D1\" t=\"inlineStr\"><is><t>line&#10;break&#13;\r\nand\ttab</t></is></c>"
+            + "<c r=\"E1\"><v><![CDATA[1.5]]></v></c>"
+            + "<c r=\"F1\" t=\"str\"><f>A1</f><v>&lt;tag&gt;</v></c>"
+            + "<c r=\"G1\" t=\"inlineStr\"><is><t>ü中😀</t></is></c>"
+            + "</row></sheetData>");
+        assertContains(events, "cell 0 a < b && c > d \"'");
+        assertContains(events, "cell 1 é☺😀");
+        assertContains(events, "cell 2 x < y & ]]>");
+    }
+
+    /**
+     * Rows and cells without the {@code r} attribute, rows with gaps and empty rows.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testMissingReferences() throws Exception {
+        assertSameCallbacks("<sheetData>"
+            + "<row><c><v>1</v></c><c><v>2</v></c></row>"
+            + "<row><c t=\"inlineStr\"><is><t>x</t></is></c></row>"
+            + "<row r=\"5\"><c r=\"B5\"><v>3</v></c></row>"
+            + "<row><c r=\"C6\"><v>4</v></c></row>"
+            + "<row r=\"8\" spans=\"1:3\" ht=\"20\" customHeight=\"1\"/>"
+            + "<row/>"
+            + "</sheetData>");
+    }
+
+    /**
+     * Hidden columns, the invalid ones are ignored.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testHiddenColumns() throws Exception {
+        assertSameCallbacks("<cols><col min=\"2\" max=\"3\" width=\"0\" hidden=\"1\"/>"
+            + "<col min=\"5\" max=\"5\" hidden=\"true\"/><col min=\"6\" max=\"6\" hidden=\"0\"/>"
+            + "<col min=\"7\" max=\"7\" width=\"12\"/><col min=\"x\" max=\"8\" hidden=\"1\"/></cols>"
+            + "<sheetData><row r=\"1\"><c r=\"A1\"><v>1</v></c><c r=\"B1\"><v>2</v></c></row></sheetData>");
+    }
+
+    /**
+     * A sheet with a namespace prefix, comments, processing instructions and the elements after the data.
+     *
+     * @throws Exception Parsing failed.
+     */
+    @Test
+    public void testPrefixedNamespace() throws Exception {
+        assertSameCallbacks(PROLOG + "<!-- comment <row r=\"9\"> -->"
+            + "<x:worksheet xmlns:x=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">",
+            "<x:sheetData><x:row r=\"1\"><?pi <c r=\"Z1\"><v>9</v></c>?>"
+                + "<x:c r=\"A1\" t=\"inlineStr\"><x:is><x:t>prefixed</x:t></x:is></x:c>"
+                + "<other:c xmlns:other=\"urn:other\" r=\"B1\"><other:v>7</other:v></other:c>"
+                + "<x:c r=\"C1\"><x:v>1</x:v></x:c></x:row></x:sheetData>"
+                + "<x:mergeCells count=\"1\"><x:mergeCell ref=\"A1:B1\"/></x:mergeCells></x:worksheet>");
+    }
+}
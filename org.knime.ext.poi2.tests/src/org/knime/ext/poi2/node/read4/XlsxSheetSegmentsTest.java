@@ -0,0 +1,214 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.junit.Test;
+import org.knime.ext.poi2.node.read4.XlsxSheetParserTest.Recorder;
+
+/**
+ * Tests for {@link XlsxSheetSegments}, parsing the segments one after the other has to report the same rows as
+ * parsing the sheet at once.
+ *
+ * @author agent
+ */
+public class XlsxSheetSegmentsTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+        + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+        + "<dimension ref=\"A1:C3000\"/><cols><col min=\"2\" max=\"3\" hidden=\"1\"/></cols>\n<sheetData>";
+
+    private static final String FOOTER =
+        "</sheetData><mergeCells count=\"1\"><mergeCell ref=\"A1:B1\"/></mergeCells></worksheet>";
+
+    /**
+     * @param rows The number of rows.
+     * @return A sheet with rows that cannot be split before (without {@code r} attribute, looking like rows in CDATA
+     *         sections, comments, processing instructions and text) between the ones that can.
+     */
+    private static String sheet(final int rows) {
+        final StringBuilder sheet = new StringBuilder(HEADER);
+        for (int i = 1; i <= rows; i++) {
+            if (i % 37 == 0) {
+                sheet.append("<row><c t=\"inlineStr\"><is><t>no reference</t></is></c></row>");
+                continue;
+            }
+            if (i % 10 == 0) {
+                sheet.append("\n  ");
+            }
+            if (i % 70 == 0) {
+                sheet.append("<!-- > <row r=\"77777\"> --><?pi > <row r=\"66666\">?>");
+            }
+            sheet.append("<row r=\"").append(i).append("\" spans=\"1:3\">");
+            sheet.append("<c r=\"A").append(i).append("\" t=\"inlineStr\"><is><t>row ").append(i)
+                .append("</t></is></c>");
+            if (i % 50 == 0) {
+                sheet.append("<c r=\"B").append(i).append("\" t=\"inlineStr\"><is><t><![CDATA[> <row r=\"99999\">]]>")
+                    .append("&gt; <row r=\"88888\"></t></is></c>");
+            } else {
+                sheet.append("<c r=\"B").append(i).append("\"><v>").append(i).append(".5</v></c>");
+            }
+            sheet.append("<c r=\"C").append(i).append("\" t=\"b\"><v>").append(i % 2).append("</v></c></row>");
+        }
+        return sheet.append(FOOTER).toString();
+    }
+
+    private static List<String> parse(final InputStream in, final Set<Integer> hiddenColumns) throws Exception {
+        final Recorder recorder = new Recorder();
+        final XlsxSheetParser parser =
+            new XlsxSheetParser(null, null, recorder, new KNIMEDataFormatter(Locale.US), false);
+        parser.parse(in);
+        hiddenColumns.addAll(parser.getHiddenColumns());
+        return recorder.events();
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Splits the sheet, checks that the segments are the sheet (after the prefix of all but the first one) and that
+     * they are parsed to the same rows as the whole sheet.
+     *
+     * @return The number of segments.
+     */
+    private static int assertSameRows(final byte[] xml, final long segmentSize) throws Exception {
+        final Set<Integer> expectedHidden = new HashSet<>();
+        final List<String> expected = parse(new ByteArrayInputStream(xml), expectedHidden);
+        try (final XlsxSheetSegments segments =
+            XlsxSheetSegments.split(new ByteArrayInputStream(xml), segmentSize)) {
+            final ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+            final List<String> actual = new ArrayList<>();
+            for (int i = 0; i < segments.size(); i++) {
+                final byte[] segment;
+                try (final InputStream in = segments.open(i)) {
+                    segment = readFully(in);
+                }
+                final int prefix = i == 0 ? 0 : HEADER.length();
+                concatenated.write(segment, prefix, segment.length - prefix);
+                final Set<Integer> hidden = new HashSet<>();
+                actual.addAll(parse(new ByteArrayInputStream(segment), hidden));
+                assertEquals("segment " + i, expectedHidden, hidden);
+            }
+            assertArrayEquals(xml, concatenated.toByteArray());
+            assertEquals(expected, actual);
+            return segments.size();
+        }
+    }
+
+    /**
+     * Test method for {@link XlsxSheetSegments#split(InputStream, long)} with small segments.
+     *
+     * @throws Exception Splitting or parsing failed.
+     */
+    @Test
+    public void testSplit() throws Exception {
+        final byte[] xml = sheet(3000).getBytes(StandardCharsets.UTF_8);
+        final int segments = assertSameRows(xml, 4096);
+        assertTrue(Integer.toString(segments), segments > xml.length / 8192);
+    }
+
+    /**
+     * Test method for {@link XlsxSheetSegments#split(InputStream, long)} with segments from a single row to the
+     * whole sheet.
+     *
+     * @throws Exception Splitting or parsing failed.
+     */
+    @Test
+    public void testSegmentSizes() throws Exception {
+        final byte[] xml = sheet(500).getBytes(StandardCharsets.UTF_8);
+        for (final long segmentSize : new long[]{HEADER.length(), 1000, 30000, xml.length / 2}) {
+            assertSameRows(xml, segmentSize);
+        }
+        assertEquals(1, assertSameRows(xml, xml.length));
+        assertEquals(1, assertSameRows(sheet(0).getBytes(StandardCharsets.UTF_8), 100));
+    }
+
+    /**
+     * Test method for {@link XlsxSheetSegments#split(InputStream, long)}, the sheets not parsed from their UTF-8
+     * bytes and the ones with a larger header than a segment are not split.
+     *
+     * @throws Exception Splitting failed.
+     */
+    @Test
+    public void testNotSplit() throws Exception {
+        final String sheet = sheet(500);
+        final byte[] utf16 = sheet.replace("UTF-8", "UTF-16").getBytes(StandardCharsets.UTF_16);
+        try (final XlsxSheetSegments segments = XlsxSheetSegments.split(new ByteArrayInputStream(utf16), 1000)) {
+            assertEquals(1, segments.size());
+            try (final InputStream in = segments.open(0)) {
+                assertArrayEquals(utf16, readFully(in));
+            }
+        }
+        final byte[] utf8 = sheet.getBytes(StandardCharsets.UTF_8);
+        try (final XlsxSheetSegments segments =
+            XlsxSheetSegments.split(new ByteArrayInputStream(utf8), HEADER.length() - 1)) {
+            assertEquals(1, segments.size());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link RawZipWriter} and {@link RawZipFile}, the written files are read back with {@link ZipFile},
+ * {@link ZipInputStream} and POI.
+ *
+ * @author agent
+ */
+public class RawZipTest {
+
+    /** The size of the blocks deflated concurrently by {@link RawZipWriter}. */
+    private static final int BLOCK_SIZE = 1 << 17;
+
+    /** A temporary folder for the zip files. */
+    @Rule
+    public final TemporaryFolder m_folder = new TemporaryFolder();
+
+    /**
+     * @param length The length of the content.
+     * @return Compressible content, repeating words with references further back than a block.
+     */
+    private static byte[] content(final int length) {
+        final Random random = new Random(length);
+        final String[] words = new String[500];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "<c r=\"A" + i + "\"><v>" + random.nextInt() + "</v></c>";
+        }
+        final StringBuilder content = new StringBuilder(length + 64);
+        while (content.length() < length) {
+            content.append(words[random.nextInt(words.length)]);
+        }
+        content.setLength(length);
+        return content.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks the entries of a zip file with {@link ZipFile}, {@link ZipInputStream} (which reads the local headers
+     * and the data descriptors) and {@link RawZipFile}.
+     */
+    private static void assertEntries(final Map<String, byte[]> expected, final Path path) throws IOException {
+        try (final ZipFile zip = new ZipFile(path.toFile())) {
+            final List<String> names = new ArrayList<>();
+            for (final Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+                final ZipEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                final byte[] content = expected.get(entry.getName());
+                assertEquals(entry.getName(), content.length, entry.getSize());
+                try (final InputStream in = zip.getInputStream(entry)) {
+                    assertArrayEquals(entry.getName(), content, readFully(in));
+                }
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), names);
+        }
+        try (final ZipInputStream zip = new ZipInputStream(Files.newInputStream(path))) {
+            final List<String> names = new ArrayList<>();
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+                assertArrayEquals(entry.getName(), expected.get(entry.getName()), readFully(zip));
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), names);
+        }
+        try (final RawZipFile zip = new RawZipFile(path)) {
+            final List<String> names = new ArrayList<>();
+            for (final RawZipFile.Entry entry : zip.entries()) {
+                names.add(entry.name());
+                final byte[] content = expected.get(entry.name());
+                assertEquals(entry.name(), content.length, entry.size());
+                final CRC32 crc = new CRC32();
+                crc.update(content);
+                assertEquals(entry.name(), crc.getValue(), entry.crc());
+                try (final InputStream in = zip.data(entry)) {
+                    assertArrayEquals(entry.name(), content, readFully(in));
+                }
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), names);
+        }
+    }
+
+    /**
+     * Entries deflated while they are written, empty ones, ones smaller than a block and ones of several blocks
+     * (also written in chunks not aligned to the blocks).
+     *
+     * @throws IOException Writing or reading failed.
+     */
+    @Test
+    public void testNewEntries() throws IOException {
+        for (final int level : new int[]{Deflater.DEFAULT_COMPRESSION, 0, 1, 9}) {
+            final Map<String, byte[]> expected = new LinkedHashMap<>();
+            expected.put("empty", new byte[0]);
+            expected.put("dir/small.xml", content(1000));
+            expected.put("dir/block.xml", content(BLOCK_SIZE));
+            expected.put("dir/blocks.xml", content(7 * BLOCK_SIZE + 12345));
+            expected.put("ünïcödé.xml", content(3 * BLOCK_SIZE));
+            final Path path = m_folder.newFile().toPath();
+            try (final RawZipWriter zip = new RawZipWriter(Files.newOutputStream(path), level)) {
+                int chunk = 1;
+                for (final Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                    try (final OutputStream out = zip.newEntry(entry.getKey())) {
+                        final byte[] content = entry.getValue();
+                        for (int written = 0; written < content.length; written += chunk, chunk = chunk * 7 % 70001) {
+                            out.write(content, written, Math.min(chunk, content.length - written));
+                        }
+                    }
+                }
+            }
+            assertEntries(expected, path);
+        }
+    }
+
+    /**
+     * Stored and deflated entries written by {@link ZipOutputStream} copied without decompressing them.
+     *
+     * @throws IOException Writing or reading failed.
+     */
+    @Test
+    public void testCopy() throws IOException {
+        final Map<String, byte[]> expected = new LinkedHashMap<>();
+        expected.put("stored", content(2 * BLOCK_SIZE + 1));
+        expected.put("stored-empty", new byte[0]);
+        expected.put("deflated", content(5 * BLOCK_SIZE - 1));
+        expected.put("deflated-small", content(10));
+        final Path source = m_folder.newFile().toPath();
+        try (final ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(source))) {
+            for (final Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                final ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                if (entry.getKey().startsWith("stored")) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(zipEntry);
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        final Path copy = m_folder.newFile().toPath();
+        try (final RawZipFile zip = new RawZipFile(source);
+                final RawZipWriter writer = new RawZipWriter(Files.newOutputStream(copy), 1)) {
+            for (final RawZipFile.Entry entry : zip.entries()) {
+                assertEquals(entry.name(),
+                    entry.name().startsWith("stored") ? RawZipFile.STORED : RawZipFile.DEFLATED, entry.method());
+                try (final InputStream raw = zip.rawData(entry)) {
+                    writer.copy(entry, raw);
+                }
+            }
+        }
+        assertEntries(expected, copy);
+        try (final ZipFile zip = new ZipFile(copy.toFile())) {
+            assertEquals(ZipEntry.STORED, zip.getEntry("stored").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("deflated").getMethod());
+        }
+    }
+
+    /**
+     * Stored entries written from their content.
+     *
+     * @throws IOException Writing or reading failed.
+     */
+    @Test
+    public void testStoredRawEntries() throws IOException {
+        final Map<String, byte[]> expected = new LinkedHashMap<>();
+        expected.put("a", content(3 * BLOCK_SIZE));
+        expected.put("b", content(17));
+        final Path path = m_folder.newFile().toPath();
+        try (final RawZipWriter writer = new RawZipWriter(Files.newOutputStream(path), Deflater.DEFAULT_COMPRESSION)) {
+            for (final Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                final byte[] content = entry.getValue();
+                final CRC32 crc = new CRC32();
+                crc.update(content);
+                try (final InputStream in = new ByteArrayInputStream(content)) {
+                    writer.rawEntry(entry.getKey(), RawZipFile.STORED, 0x21, crc.getValue(), content.length,
+                        content.length, in);
+                }
+            }
+        }
+        assertEntries(expected, path);
+    }
+
+    /**
+     * An xlsx file copied entry by entry (its workbook part rewritten) can be opened by POI.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testXlsx() throws Exception {
+        final Path source = m_folder.newFile("source.xlsx").toPath();
+        try (final XSSFWorkbook wb = new XSSFWorkbook(); final OutputStream out = Files.newOutputStream(source)) {
+            final XSSFSheet sheet = wb.createSheet("data");
+            for (int i = 0; i < 20000; i++) {
+                sheet.createRow(i).createCell(0).setCellValue("row " + i);
+            }
+            wb.write(out);
+        }
+        final Path copy = m_folder.newFile("copy.xlsx").toPath();
+        try (final RawZipFile zip = new RawZipFile(source);
+                final RawZipWriter writer = new RawZipWriter(Files.newOutputStream(copy), 6)) {
+            for (final RawZipFile.Entry entry : zip.entries()) {
+                if (entry.name().equals("xl/workbook.xml")) {
+                    try (final InputStream in = zip.data(entry);
+                            final OutputStream out = writer.newEntry(entry.name())) {
+                        out.write(new String(readFully(in), StandardCharsets.UTF_8)
+                            .replace("name=\"data\"", "name=\"renamed\"").getBytes(StandardCharsets.UTF_8));
+                    }
+                } else {
+                    try (final InputStream raw = zip.rawData(entry)) {
+                        writer.copy(entry, raw);
+                    }
+                }
+            }
+        }
+        try (final OPCPackage pkg = OPCPackage.open(copy.toFile(), PackageAccess.READ);
+                final XSSFWorkbook wb = new XSSFWorkbook(pkg)) {
+            assertNull(wb.getSheet("data"));
+            final XSSFSheet sheet = wb.getSheet("renamed");
+            assertEquals(19999, sheet.getLastRowNum());
+            assertEquals("row 12345", sheet.getRow(12345).getCell(0).getStringCellValue());
+        }
+    }
+
+    /**
+     * An entry has to be closed before the next one is added.
+     *
+     * @throws IOException Writing failed.
+     */
+    @Test(expected = ZipException.class)
+    public void testEntryNotClosed() throws IOException {
+        try (final RawZipWriter writer =
+            new RawZipWriter(Files.newOutputStream(m_folder.newFile().toPath()), Deflater.DEFAULT_COMPRESSION)) {
+            writer.newEntry("a");
+            writer.newEntry("b");
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link XlsxAppender} and {@link XlsxAppendCoalescer}, the written workbooks are read back with
+ * {@link ZipFile} and POI.
+ *
+ * @author agent
+ */
+public class XlsxAppenderTest {
+
+    /** The number of rows of the appended sheets, their XML is several blocks of {@link RawZipWriter}. */
+    private static final int ROWS = 5000;
+
+    /** The time to wait for the other appends, in seconds. */
+    private static final long TIMEOUT = 30;
+
+    /** The worksheet part of a template workbook for {@link XlsxAppendCoalescer}. */
+    private static final byte[] TEMPLATE = ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+        + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData/></worksheet>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** A temporary folder for the workbooks. */
+    @Rule
+    public final TemporaryFolder m_folder = new TemporaryFolder();
+
+    private Path m_workbook;
+
+    private final ExecutorService m_threads = Executors.newCachedThreadPool();
+
+    /**
+     * Creates a workbook with a sheet.
+     *
+     * @throws IOException Writing failed.
+     */
+    @Before
+    public void createWorkbook() throws IOException {
+        m_workbook = m_folder.newFile("existing.xlsx").toPath();
+        try (final XSSFWorkbook wb = new XSSFWorkbook(); final OutputStream out = Files.newOutputStream(m_workbook)) {
+            wb.createSheet("existing").createRow(0).createCell(0).setCellValue("kept");
+            wb.write(out);
+        }
+    }
+
+    /**
+     * Stops the appends still running.
+     */
+    @After
+    public void stopThreads() {
+        m_threads.shutdownNow();
+    }
+
+    /**
+     * Writes the XML of a sheet as the single (deflated) entry of a zip file.
+     */
+    private Path writeSheet(final String sheetEntry, final int dateStyle) throws IOException {
+        final Path path = m_folder.newFile().toPath();
+        try (final RawZipWriter zip = new RawZipWriter(Files.newOutputStream(path), Deflater.DEFAULT_COMPRESSION);
+                final Writer out = new OutputStreamWriter(zip.newEntry(sheetEntry), StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<worksheet xmlns=\""
+                + "http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+            for (int i = 1; i <= ROWS; i++) {
+                out.write("<row r=\"" + i + "\"><c r=\"A" + i + "\" t=\"inlineStr\"><is><t>row " + i
+                    + "</t></is></c><c r=\"B" + i + "\" s=\"" + dateStyle + "\"><v>" + (43831 + i) + "</v></c></row>");
+            }
+            out.write("</sheetData></worksheet>");
+        }
+        return path;
+    }
+
+    private void append(final XlsxAppender appender, final Path sheet, final Path out) throws IOException {
+        try (final RawZipFile sheetZip = new RawZipFile(sheet)) {
+            appender.write(Collections.singletonList(sheetZip), Deflater.DEFAULT_COMPRESSION,
+                Files.newOutputStream(out));
+        }
+    }
+
+    private static void assertReadable(final Path path) throws IOException {
+        try (final ZipFile zip = new ZipFile(path.toFile())) {
+            for (final Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+                final ZipEntry entry = entries.nextElement();
+                try (final InputStream in = zip.getInputStream(entry)) {
+                    long size = 0;
+                    for (long skipped = in.skip(Long.MAX_VALUE); skipped > 0; skipped = in.skip(Long.MAX_VALUE)) {
+                        size += skipped;
+                    }
+                    assertEquals(entry.getName(), entry.getSize(), size);
+                }
+            }
+        }
+    }
+
+    /**
+     * A sheet with dates appended to a workbook written by POI.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testAddSheet() throws Exception {
+        final Path out = m_folder.newFile("appended.xlsx").toPath();
+        try (final XlsxAppender appender = XlsxAppender.open(m_workbook)) {
+            assertNotNull(appender);
+            assertFalse(appender.isDate1904());
+            assertNull(appender.addSheet("EXISTING"));
+            final String sheetEntry = appender.addSheet("new");
+            assertEquals("xl/worksheets/sheet2.xml", sheetEntry);
+            final int dateStyle = appender.dateStyle("yyyy-mm-dd");
+            assertEquals(dateStyle, appender.dateStyle("yyyy-mm-dd"));
+            append(appender, writeSheet(sheetEntry, dateStyle), out);
+        }
+        assertReadable(out);
+        try (final OPCPackage pkg = OPCPackage.open(out.toFile(), PackageAccess.READ);
+                final XSSFWorkbook wb = new XSSFWorkbook(pkg)) {
+            assertEquals(2, wb.getNumberOfSheets());
+            assertEquals("existing", wb.getSheetName(0));
+            assertEquals("kept", wb.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+            final XSSFSheet sheet = wb.getSheet("new");
+            assertEquals(ROWS - 1, sheet.getLastRowNum());
+            assertEquals("row 4321", sheet.getRow(4320).getCell(0).getStringCellValue());
+            final XSSFCell date = sheet.getRow(0).getCell(1);
+            assertEquals("yyyy-mm-dd", date.getCellStyle().getDataFormatString());
+            assertEquals(43832, date.getNumericCellValue(), 0);
+        }
+    }
+
+    /**
+     * A removed sheet is not written.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testRemoveSheet() throws Exception {
+        final Path out = m_folder.newFile("removed.xlsx").toPath();
+        try (final XlsxAppender appender = XlsxAppender.open(m_workbook)) {
+            final String removed = appender.addSheet("removed");
+            appender.removeSheet(removed);
+            final String sheetEntry = appender.addSheet("new");
+            append(appender, writeSheet(sheetEntry, 0), out);
+        }
+        assertReadable(out);
+        try (final OPCPackage pkg = OPCPackage.open(out.toFile(), PackageAccess.READ);
+                final XSSFWorkbook wb = new XSSFWorkbook(pkg)) {
+            assertEquals(2, wb.getNumberOfSheets());
+            assertNull(wb.getSheet("removed"));
+            assertEquals("row 1", wb.getSheet("new").getRow(0).getCell(0).getStringCellValue());
+        }
+    }
+
+    /**
+     * Files which are not zip files are not supported.
+     *
+     * @throws IOException Writing or reading failed.
+     */
+    @Test
+    public void testNoZipFile() throws IOException {
+        final Path path = m_folder.newFile("invalid.xlsx").toPath();
+        Files.write(path, "no zip file".getBytes(StandardCharsets.US_ASCII));
+        assertNull(XlsxAppender.open(path));
+    }
+
+    /**
+     * @param before Run before the rows are written.
+     * @return Rows with the sheet name in the first column.
+     */
+    private static XlsxAppendCoalescer.Rows rows(final String sheetName, final Callable<?> before) {
+        return (sheetWriter, dateStyle, date1904) -> {
+            try {
+                before.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            for (int i = 0; i < 100; i++) {
+                sheetWriter.beginRow(i);
+                sheetWriter.stringCell(0, sheetName + " " + i);
+                sheetWriter.endRow();
+            }
+        };
+    }
+
+    private Future<Boolean> appendLater(final String sheetName, final Callable<?> before) {
+        return m_threads.submit(() -> XlsxAppendCoalescer.append(m_workbook, sheetName, TEMPLATE,
+            Deflater.DEFAULT_COMPRESSION, rows(sheetName, before)));
+    }
+
+    private static boolean await(final CountDownLatch latch) throws InterruptedIOException {
+        try {
+            assertTrue("not counted down", latch.await(TIMEOUT, TimeUnit.SECONDS));
+            return true;
+        } catch (final InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static boolean appended(final Future<Boolean> append) throws Exception {
+        return append.get(TIMEOUT, TimeUnit.SECONDS).booleanValue();
+    }
+
+    private List<String> sheetNames() throws Exception {
+        assertReadable(m_workbook);
+        try (final OPCPackage pkg = OPCPackage.open(m_workbook.toFile(), PackageAccess.READ);
+                final XSSFWorkbook wb = new XSSFWorkbook(pkg)) {
+            final List<String> names = new ArrayList<>();
+            for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+                final XSSFSheet sheet = wb.getSheetAt(i);
+                names.add(sheet.getSheetName());
+                if (i > 0) {
+                    assertEquals(sheet.getSheetName() + " 99", sheet.getRow(99).getCell(0).getStringCellValue());
+                }
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Appends to the same file arriving while the first one writes its rows are committed with it.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        final CountDownLatch leaderWriting = new CountDownLatch(1);
+        final CountDownLatch joined = new CountDownLatch(3);
+        // the others join the batch, so they can write their rows while the first one waits for them
+        final Future<Boolean> leader = appendLater("leader", () -> {
+            leaderWriting.countDown();
+            return await(joined);
+        });
+        await(leaderWriting);
+        final List<Future<Boolean>> joiners = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            joiners.add(appendLater("joiner " + i, () -> {
+                joined.countDown();
+                return null;
+            }));
+        }
+        assertTrue(appended(leader));
+        for (final Future<Boolean> joiner : joiners) {
+            assertTrue(appended(joiner));
+        }
+        final List<String> names = sheetNames();
+        assertEquals(5, names.size());
+        assertEquals(Arrays.asList("existing", "leader"), names.subList(0, 2));
+        assertTrue(names.toString(), names.containsAll(Arrays.asList("joiner 0", "joiner 1", "joiner 2")));
+    }
+
+    /**
+     * An append arriving after the first one of a batch wrote its rows starts the next batch, so it cannot postpone
+     * the commit of the batch.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testAppendAfterBatchClosed() throws Exception {
+        final CountDownLatch leaderWriting = new CountDownLatch(1);
+        final CountDownLatch joined = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<Boolean> leader = appendLater("leader", () -> {
+            leaderWriting.countDown();
+            return await(joined);
+        });
+        await(leaderWriting);
+        final Future<Boolean> joiner = appendLater("joiner", () -> {
+            joined.countDown();
+            return await(release);
+        });
+        // the leader writes its rows and waits for the joiner
+        await(joined);
+        Thread.sleep(300);
+        final Future<Boolean> late = appendLater("late", () -> {
+            assertEquals(Arrays.asList("existing", "leader", "joiner"), sheetNames());
+            return null;
+        });
+        Thread.sleep(300);
+        assertFalse(leader.isDone());
+        release.countDown();
+        assertTrue(appended(leader));
+        assertTrue(appended(joiner));
+        assertTrue(appended(late));
+        assertEquals(Arrays.asList("existing", "leader", "joiner", "late"), sheetNames());
+    }
+
+    /**
+     * The appends of existing sheets and to files which cannot be appended to are declined, so the workbook is
+     * written with POI; the other appends of the batch are committed.
+     *
+     * @throws Exception Writing or reading failed.
+     */
+    @Test
+    public void testDeclinedAppends() throws Exception {
+        final CountDownLatch leaderWriting = new CountDownLatch(1);
+        final CountDownLatch declined = new CountDownLatch(1);
+        final Future<Boolean> leader = appendLater("new", () -> {
+            leaderWriting.countDown();
+            return await(declined);
+        });
+        await(leaderWriting);
+        final Future<Boolean> existing = appendLater("EXISTING", () -> {
+            throw new AssertionError("rows written");
+        });
+        assertFalse(appended(existing));
+        declined.countDown();
+        assertTrue(appended(leader));
+        assertEquals(Arrays.asList("existing", "new"), sheetNames());
+
+        Files.write(m_workbook, "no zip file".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(appended(appendLater("new", () -> {
+            throw new AssertionError("rows written");
+        })));
+        assertEquals("no zip file", new String(Files.readAllBytes(m_workbook), StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Converts between the serial numbers of Excel dates and epoch days, seconds or milliseconds with plain arithmetic,
+ * without {@link java.util.Calendar}s or time zones (the dates and times of the cells are local). Both date systems
+ * are supported: the 1900 one, which counts the non-existent 1900-02-29 (serial number {@code 60}) like Lotus 1-2-3
+ * did, and the 1904 one. The results are the same as the ones of POI's {@code DateUtil} in the default time zone
+ * (except for the local times skipped by daylight saving time changes there).
+ *
+ * @author agent
+ */
+public final class ExcelDates {
+
+    /** The serial number of 1904-01-01 in the 1900 date system. */
+    public static final int DAYS_1900_TO_1904 = 1462;
+
+    /** The serial number returned for dates before the start of the date system (like POI does). */
+    public static final double BAD_DATE = -1;
+
+    /** The number of seconds of a day. */
+    public static final int SECONDS_PER_DAY = 86_400;
+
+    private static final long MILLIS_PER_DAY = SECONDS_PER_DAY * 1000L;
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /** The epoch day of 1899-12-31, day {@code 0} of the 1900 date system. */
+    private static final long DAY_0_1900 = -25_568L;
+
+    /** The epoch day of 1904-01-01, day {@code 0} of the 1904 date system. */
+    private static final long DAY_0_1904 = -24_107L;
+
+    /** The serial number of the non-existent 1900-02-29 of the 1900 date system. */
+    private static final int LEAP_DAY_1900 = 60;
+
+    private ExcelDates() {
+        // utility class
+    }
+
+    /**
+     * @param serial A valid (non-negative) serial number of a date.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The epoch second of the local date and time, rounded to whole seconds (like Excel shows it).
+     */
+    public static long toEpochSecond(final double serial, final boolean date1904) {
+        final long wholeDays = (long)Math.floor(serial);
+        final long secondOfDay = Math.round(SECONDS_PER_DAY * (serial - wholeDays));
+        return toEpochDay(wholeDays, date1904) * SECONDS_PER_DAY + secondOfDay;
+    }
+
+    /**
+     * @param serial A valid (non-negative) serial number of a date.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The epoch day of the local date (the time rounded to whole seconds can make it the next day).
+     */
+    public static long toEpochDay(final double serial, final boolean date1904) {
+        return Math.floorDiv(toEpochSecond(serial, date1904), SECONDS_PER_DAY);
+    }
+
+    /**
+     * Serial number {@code 60} of the 1900 date system (the non-existent 1900-02-29) is 1900-03-01, like in POI.
+     */
+    private static long toEpochDay(final long wholeDays, final boolean date1904) {
+        if (date1904) {
+            return DAY_0_1904 + wholeDays;
+        }
+        return wholeDays > LEAP_DAY_1900 ? DAY_0_1900 - 1 + wholeDays : DAY_0_1900 + wholeDays;
+    }
+
+    /**
+     * @param epochDay The epoch day of a local date.
+     * @param millisOfDay The milliseconds of the local time.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The serial number, or {@link #BAD_DATE} if the date is before the start of the date system.
+     */
+    public static double fromEpochDay(final long epochDay, final int millisOfDay, final boolean date1904) {
+        final double fraction = millisOfDay / (double)MILLIS_PER_DAY;
+        // the same operations as in POI, so the results are the same
+        if (date1904) {
+            if (epochDay < DAY_0_1904) {
+                return BAD_DATE;
+            }
+            final double value = fraction + (epochDay - DAY_0_1904 + 1);
+            return value - 1;
+        }
+        if (epochDay <= DAY_0_1900) {
+            return BAD_DATE;
+        }
+        final double value = fraction + (epochDay - DAY_0_1900);
+        return value >= LEAP_DAY_1900 ? value + 1 : value;
+    }
+
+    /**
+     * @param epochMilli The milliseconds since the epoch of a date and time in UTC.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The serial number of the date and time in UTC, or {@link #BAD_DATE} if it is before the start of the
+     *         date system.
+     */
+    public static double fromEpochMilli(final long epochMilli, final boolean date1904) {
+        return fromEpochDay(Math.floorDiv(epochMilli, MILLIS_PER_DAY), (int)Math.floorMod(epochMilli, MILLIS_PER_DAY),
+            date1904);
+    }
+
+    /**
+     * @param date A local date.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The serial number, or {@link #BAD_DATE} if the date is before the start of the date system.
+     */
+    public static double fromLocalDate(final LocalDate date, final boolean date1904) {
+        return fromEpochDay(date.toEpochDay(), 0, date1904);
+    }
+
+    /**
+     * @param dateTime A local date and time, only the milliseconds of the time are considered.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The serial number, or {@link #BAD_DATE} if the date is before the start of the date system.
+     */
+    public static double fromLocalDateTime(final LocalDateTime dateTime, final boolean date1904) {
+        return fromEpochDay(dateTime.toLocalDate().toEpochDay(), millisOfDay(dateTime.toLocalTime()), date1904);
+    }
+
+    /**
+     * @param time A local time, only its milliseconds are considered.
+     * @return The fraction of the day (the serial number without date).
+     */
+    public static double fromLocalTime(final LocalTime time) {
+        return millisOfDay(time) / (double)MILLIS_PER_DAY;
+    }
+
+    private static int millisOfDay(final LocalTime time) {
+        return (int)(time.toNanoOfDay() / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,2775 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2 Sep 2016 (Gabor Bakos): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.nio.file.Path;
+import java.text.DateFormat;
+import java.text.Format;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFReader.SheetIterator;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.knime.core.data.BooleanValue;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataTableSpecCreator;
+import org.knime.core.data.DataType;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.IntValue;
+import org.knime.core.data.MissingCell;
+import org.knime.core.data.MissingValue;
+import org.knime.core.data.RowIterator;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.def.BooleanCell;
+import org.knime.core.data.def.BooleanCell.BooleanCellFactory;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.time.localdatetime.LocalDateTimeCellFactory;
+import org.knime.core.data.time.localdatetime.LocalDateTimeValue;
+import org.knime.core.data.util.CancellableReportingInputStream;
+import org.knime.core.data.util.memory.MemoryAlert;
+import org.knime.core.data.util.memory.MemoryAlertListener;
+import org.knime.core.data.util.memory.MemoryAlertSystem;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.util.CheckUtils;
+import org.knime.core.util.FileUtil;
+import org.knime.core.util.Pair;
+import org.knime.core.util.ThreadUtils;
+import org.knime.ext.poi2.ExcelDates;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.KNIMESheetContentsHandler;
+import org.knime.ext.poi2.node.read4.POIUtils.EndOfRange;
+import org.knime.ext.poi2.node.read4.POIUtils.StopProcessing;
+import org.knime.ext.poi2.node.read4.XLSUserSettings.TypeMismatchPolicy;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Caches the read data and creates iterators based on that.
+ *
+ * @author Gabor Bakos
+ */
+final class CachedExcelTable {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(CachedExcelTable.class);
+
+    private static final AtomicInteger CACHED_THREAD_POOL_INDEX = new AtomicInteger();
+
+    /**
+     * Threadpool that can be used to create new cached tables. The parses on its threads are admitted by the
+     * {@link ParseScheduler}, so their number and heap usage are bounded.
+     */
+    private static final ExecutorService CACHED_THREAD_POOL = Executors.newCachedThreadPool(
+        r -> ThreadUtils.threadWithContext(r, "KNIME-XLS-Parser-" + CACHED_THREAD_POOL_INDEX.getAndIncrement()));
+
+    /** The tables whose complete chunks are spilled to disk when the {@link MemoryAlertSystem} reports low memory. */
+    private static final Map<CachedExcelTable, Boolean> SPILLABLE =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    static {
+        MemoryAlertSystem.getInstanceUncollected().addListener(new MemoryAlertListener() {
+            @Override
+            protected boolean memoryAlert(final MemoryAlert alert) {
+                spillAll();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Container for a cached value.
+     */
+    static final class Content {
+        /** {@link #valueAsString()} is stored as text. */
+        static final byte TEXT = 0;
+
+        /** {@link #valueAsString()} is rendered with {@link Double#toString(double)}. */
+        static final byte DOUBLE = 1;
+
+        /** {@link #valueAsString()} is rendered with {@link Long#toString(long)}. */
+        static final byte LONG = 2;
+
+        /** {@link #valueAsString()} is an ISO date ({@code yyyy-MM-dd}) rendered from the epoch day. */
+        static final byte DATE = 3;
+
+        /** {@link #valueAsString()} is an ISO date and time rendered from the epoch second. */
+        static final byte DATE_TIME = 4;
+
+        /** {@link #originalValue()} is stored as text. */
+        static final byte ORIGINAL_TEXT = 0;
+
+        /** {@link #originalValue()} is the same as {@link #valueAsString()}. */
+        static final byte ORIGINAL_SAME = 1;
+
+        /** {@link #originalValue()} is the number rendered with {@link Long#toString(long)}. */
+        static final byte ORIGINAL_LONG = 2;
+
+        /** {@link #originalValue()} is the number formatted with {@link #format()} when first requested. */
+        static final byte ORIGINAL_FORMAT = 3;
+
+        private static final DateTimeFormatter DATE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss", Locale.ROOT);
+
+        /** The last epoch second rendered with a four digit year (the last one of Excel dates too). */
+        private static final long LAST_RENDERED_EPOCH_SECOND =
+            LocalDateTime.of(9999, 12, 31, 23, 59, 59).toEpochSecond(ZoneOffset.UTC);
+
+        private String m_originalValue;
+        private String m_valueAsString;
+        private final ActualDataType m_type;
+        private final double m_number;
+        private final byte m_rendering;
+        private final byte m_originalRendering;
+        private final CellFormat m_format;
+
+        /**
+         * @param valueAsString The contained value in a parseable {@link String}.
+         * @param type The {@link ActualDataType} of the content.
+         */
+        Content(final String valueAsString, final ActualDataType type) {
+            this(valueAsString, valueAsString, type);
+        }
+
+        /**
+         * @param valueAsString The contained value in a parseable {@link String}.
+         * @param originalValue The original {@link String} format of the value (for example for dates or numbers the
+         *            formatted value).
+         * @param type The {@link ActualDataType} of the content.
+         */
+        Content(final String valueAsString, final String originalValue, final ActualDataType type) {
+            m_originalValue = originalValue;
+            m_valueAsString = valueAsString;
+            m_type = type;
+            m_number = Double.NaN;
+            m_rendering = TEXT;
+            m_originalRendering = ORIGINAL_TEXT;
+            m_format = null;
+        }
+
+        /**
+         * Creates a content whose {@link String} representations are computed only when requested.
+         *
+         * @param number The numeric value (number, epoch day or epoch second depending on {@code rendering}).
+         * @param rendering How to render {@link #valueAsString()} from {@code number}, one of {@link #DOUBLE},
+         *            {@link #LONG}, {@link #DATE}, {@link #DATE_TIME}.
+         * @param originalValue The original formatted value, used only for {@link #ORIGINAL_TEXT}.
+         * @param originalRendering How to get the {@link #originalValue()}.
+         * @param type The {@link ActualDataType} of the content.
+         */
+        Content(final double number, final byte rendering, final String originalValue, final byte originalRendering,
+            final ActualDataType type) {
+            m_number = number;
+            m_rendering = rendering;
+            m_originalValue = originalValue;
+            m_originalRendering = originalRendering;
+            m_type = type;
+            m_format = null;
+        }
+
+        /**
+         * Creates a numeric content whose original value is formatted with {@code format} only when requested.
+         *
+         * @param number The numeric value.
+         * @param rendering How to render {@link #valueAsString()} from {@code number}, {@link #DOUBLE} or
+         *            {@link #LONG}.
+         * @param format The number format of the cell.
+         * @param type The {@link ActualDataType} of the content.
+         */
+        Content(final double number, final byte rendering, final CellFormat format, final ActualDataType type) {
+            m_number = number;
+            m_rendering = rendering;
+            m_originalRendering = ORIGINAL_FORMAT;
+            m_format = format;
+            m_type = type;
+        }
+
+        /**
+         * Creates the content of a date cell. The standardized dates are rendered from the epoch day or second when
+         * requested (they are computed from the value without {@link java.util.Calendar}s), the original value is
+         * formatted right away.
+         *
+         * @param value A valid Excel date value (in the 1900 date system).
+         * @param format The (date) number format of the cell.
+         * @return The {@link ActualDataType#DATE} content.
+         */
+        static Content date(final double value, final CellFormat format) {
+            final long epochSecond = ExcelDates.toEpochSecond(value, false);
+            if (!format.isStandardizedDate() || epochSecond > LAST_RENDERED_EPOCH_SECOND) {
+                return new Content(format.formatDate(value), format.format(value), ActualDataType.DATE);
+            }
+            if ((long)value == value) {
+                return new Content(Math.floorDiv(epochSecond, ExcelDates.SECONDS_PER_DAY), DATE, format.format(value),
+                    ORIGINAL_TEXT, ActualDataType.DATE);
+            }
+            return new Content(epochSecond, DATE_TIME, format.format(value), ORIGINAL_TEXT, ActualDataType.DATE);
+        }
+
+        /**
+         * @return The contained value in a parseable {@link String}, can be {@code null}.
+         */
+        String valueAsString() {
+            if (m_valueAsString == null && m_rendering != TEXT) {
+                m_valueAsString = render(m_number, m_rendering);
+            }
+            return m_valueAsString;
+        }
+
+        /**
+         * @return The original {@link String} format of the value.
+         */
+        String originalValue() {
+            switch (m_originalRendering) {
+                case ORIGINAL_SAME:
+                    return valueAsString();
+                case ORIGINAL_LONG:
+                    return Long.toString((long)m_number);
+                case ORIGINAL_FORMAT:
+                    if (m_originalValue == null) {
+                        m_originalValue = m_format.format(m_number);
+                    }
+                    return m_originalValue;
+                default:
+                    return m_originalValue;
+            }
+        }
+
+        /**
+         * @return The {@link ActualDataType} of the content.
+         */
+        ActualDataType type() {
+            return m_type;
+        }
+
+        /**
+         * @return How {@link #valueAsString()} is rendered, one of {@link #TEXT}, {@link #DOUBLE}, {@link #LONG},
+         *         {@link #DATE}, {@link #DATE_TIME}.
+         */
+        byte rendering() {
+            return m_rendering;
+        }
+
+        /**
+         * @return How {@link #originalValue()} is computed, one of {@link #ORIGINAL_TEXT}, {@link #ORIGINAL_SAME},
+         *         {@link #ORIGINAL_LONG}, {@link #ORIGINAL_FORMAT}.
+         */
+        byte originalRendering() {
+            return m_originalRendering;
+        }
+
+        /**
+         * @return The number format for {@link #ORIGINAL_FORMAT}, otherwise {@code null}.
+         */
+        CellFormat format() {
+            return m_format;
+        }
+
+        /**
+         * @return Whether {@link #valueAsString()} is not {@code null}.
+         */
+        boolean hasValue() {
+            return m_rendering != TEXT || m_valueAsString != null;
+        }
+
+        /**
+         * @param pattern A {@link String}, can be {@code null}.
+         * @return Whether {@link #valueAsString()} equals to {@code pattern}.
+         */
+        boolean isValue(final String pattern) {
+            if (pattern == null || (m_rendering != TEXT && pattern.isEmpty())) {
+                return false;
+            }
+            return pattern.equals(valueAsString());
+        }
+
+        /**
+         * @return Whether {@link #number()} holds the exact value of a number ({@link #valueAsString()} parses to it).
+         */
+        boolean isNumeric() {
+            return m_rendering == DOUBLE || m_rendering == LONG;
+        }
+
+        /**
+         * @return The numeric value, only meaningful when {@link #isNumeric()}, or the epoch day or second for
+         *         {@link #DATE} and {@link #DATE_TIME}.
+         */
+        double number() {
+            return m_number;
+        }
+
+        /**
+         * @param number A number, epoch day or epoch second.
+         * @param rendering The rendering kind.
+         * @return The {@link String} representation.
+         */
+        static String render(final double number, final byte rendering) {
+            switch (rendering) {
+                case DOUBLE:
+                    return Double.toString(number);
+                case LONG:
+                    return Long.toString((long)number);
+                case DATE:
+                    return LocalDate.ofEpochDay((long)number).toString();
+                case DATE_TIME:
+                    return DATE_TIME_FORMAT.format(LocalDateTime.ofEpochSecond((long)number, 0, ZoneOffset.UTC));
+                default:
+                    throw new IllegalStateException("Not a rendered value: " + rendering);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return String.format("Content [valueAsString=%s, type=%s]", valueAsString(), m_type);
+        }
+
+    }
+
+    private final ContentColumn[] m_contents = new ContentColumn[16_384];
+
+    private final ContentColumn.Dictionary m_dictionary = new ContentColumn.Dictionary();
+
+    private final Set<Integer> m_hiddenColumns = new HashSet<>();
+
+    private final DateFormat m_dateFormat = new SimpleDateFormat("yyyy-MM-dd"),
+            m_dateAndTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+
+    {
+        m_dateFormat.setTimeZone(TimeZone.getTimeZone(ZoneOffset.UTC));
+        m_dateAndTimeFormat.setTimeZone(TimeZone.getTimeZone(ZoneOffset.UTC));
+    }
+
+    private volatile boolean m_incomplete = true;
+
+    private int m_lastColumnIndex = Integer.MIN_VALUE;
+    private int m_lastRowIndex = Integer.MIN_VALUE;
+
+    private final Path m_path;
+
+    /** The name of the sheet, set when resolved by the parse in case the first sheet with data is read. */
+    private String m_sheet;
+
+    /** The part of the sheet to cache. */
+    private final SheetRange m_range;
+
+    /** The last column with cells skipped by {@link #m_range}, {@code -1} if none. */
+    private int m_lastSkippedColumn = -1;
+
+    /** The file of the spilled chunks, created on the first spill. */
+    private ChunkSpillFile m_spillFile;
+
+    /** Hide constructor.
+     * @param path
+     * @param sheet The sheet's name, {@code null} for the first sheet with data.
+     * @param range The part of the sheet to cache. */
+    private CachedExcelTable(final Path path, final String sheet, final SheetRange range) {
+        m_path = path;
+        m_sheet = sheet;
+        m_range = range;
+        SPILLABLE.put(this, Boolean.TRUE);
+    }
+
+    /**
+     * Receives the rows completed by {@link KNIMESheetContentVisitor}.
+     */
+    @FunctionalInterface
+    interface RowSink {
+        /**
+         * @param rowIndex The {@code 0}-based index of the row.
+         * @param row The cells of the row ({@code 0}-based column indices), only valid during the call.
+         * @param hiddenColumns The {@code 1}-based indices of the hidden columns of the sheet.
+         */
+        void row(int rowIndex, Map<Integer, Content> row, Set<Integer> hiddenColumns);
+    }
+
+    /**
+     * Visits the sheet for xlsx streaming and fills {@link CachedExcelTable} (or passes the rows to a {@link RowSink}).
+     */
+    final class KNIMESheetContentVisitor extends KNIMESheetContentsHandler.Abstract {
+        private Map<Integer, Content> m_currentRowMap = new HashMap<>();
+
+        private ExecutionMonitor m_exec;
+
+        private final Interner<String> m_stringInterner = Interners.newWeakInterner();
+
+        private final Supplier<OptionalDouble> m_progressSupplier;
+
+        private final RowSink m_rowSink;
+
+        private Set<Integer> m_hiddenColumns = Collections.emptySet();
+
+        /**
+         * The original value of the last number formatted as boolean, if no other number followed it (not known at the
+         * start of a segment of a split sheet).
+         */
+        private String m_lastBooleanOriginal;
+
+        /** The last column with cells skipped by {@link #m_range} in the rows visited so far, {@code -1} if none. */
+        private int m_lastSkipped = -1;
+
+        /**
+         * @param exec
+         * @param progressSupplier a supplier that reports in [0, 1], or null if unknown progress
+         */
+        public KNIMESheetContentVisitor(final ExecutionMonitor exec, final Supplier<OptionalDouble> progressSupplier) {
+            this(exec, progressSupplier, (rowIndex, row, hiddenColumns) -> appendRow(rowIndex, row));
+        }
+
+        /**
+         * @param exec
+         * @param progressSupplier a supplier that reports in [0, 1], or null if unknown progress
+         * @param rowSink the receiver of the read rows
+         */
+        KNIMESheetContentVisitor(final ExecutionMonitor exec, final Supplier<OptionalDouble> progressSupplier,
+            final RowSink rowSink) {
+            m_exec = exec;
+            m_progressSupplier = progressSupplier;
+            m_rowSink = rowSink;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startRow(final int rowNum) {
+            super.startRow(rowNum);
+            checkCancelled();
+            if (m_range.isAfter(rowNum)) {
+                throw new EndOfRange();
+            }
+            m_currentRowMap.clear();
+            if (m_exec != null) {
+                // fallback: we do not know the actual size of the XLS, provide a logarithmic progress for max row count
+                double progress = m_progressSupplier.get().orElseGet(() -> Math.log1p(rowNum) / Math.log(1_048_576d));
+                m_exec.setProgress(progress, () -> "Reading row " + rowNum);
+            }
+        }
+
+        /**
+         * Checks whether execution has been cancelled trhough the monitor or the current thread is intterrupted.
+         */
+        private void checkCancelled() {
+            if (m_exec != null) {
+                try {
+                    m_exec.checkCanceled();
+                } catch (CanceledExecutionException e) {
+                    throw new POIUtils.StopProcessing();
+                }
+            }
+            final Thread currentThread = Thread.currentThread();
+            if (currentThread.isInterrupted()) {
+                currentThread.interrupt();
+                throw new POIUtils.StopProcessing();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void endRow(final int rowNum) {
+            super.endRow(rowNum);
+            checkCancelled();
+            m_rowSink.row(rowNum, m_currentRowMap, m_hiddenColumns);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void cell(final int thisCol, final String formattedValue) {
+            checkCancelled();
+            final ActualDataType type;
+            final String valueAsString;
+            switch (m_dataType) {
+                case NUMBER_OR_DATE:
+                    //Missing cell with a comment or an unformatted value, the numbers are reported to numberCell
+                    type = ActualDataType.MISSING;
+                    valueAsString = null;
+                    break;
+                case STRING:
+                    type = ActualDataType.STRING;
+                    valueAsString = formattedValue;
+                    break;
+                case BOOLEAN:
+                    type = ActualDataType.BOOLEAN;
+                    valueAsString = formattedValue.endsWith("+")
+                        ? formattedValue.substring(0, formattedValue.length() - 1) : formattedValue;
+                    break;
+                case ERROR:
+                    type = ActualDataType.ERROR;
+                    valueAsString = formattedValue;
+                    break;
+                case FORMULA:
+                    //TODO should we visit again to find positive and negative infinity formulae?
+                    type = formattedValue == null ? ActualDataType.MISSING_FORMULA : ActualDataType.STRING_FORMULA;
+                    valueAsString = formattedValue;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown type: " + m_dataType);
+            }
+            if ((valueAsString != null || ActualDataType.isBoolean(type)) && isSkipped(thisCol)) {
+                return;
+            }
+            if (ActualDataType.isBoolean(type)) {
+                final String original =
+                    m_lastBooleanOriginal == null ? m_stringInterner.intern(valueAsString) : m_lastBooleanOriginal;
+                m_currentRowMap.put(thisCol, new Content(m_stringInterner.intern(valueAsString), original, type));
+            } else if (valueAsString != null) {
+                m_currentRowMap.put(thisCol, new Content(m_stringInterner.intern(valueAsString), type));
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void numberCell(final int thisCol, final double value, final CellFormat format,
+            final boolean isDate) {
+            checkCancelled();
+            m_lastBooleanOriginal = null;
+            final boolean skipped = isSkipped(thisCol);
+            if (isDate) {
+                if (!skipped) {
+                    m_currentRowMap.put(thisCol, Content.date(value, format));
+                }
+                return;
+            }
+            if (format.mayBeBoolean()) {
+                final String original = format.format(value);
+                if (original.startsWith(KNIMEDataFormatter.TRUE) || original.startsWith(KNIMEDataFormatter.FALSE)) {
+                    m_lastBooleanOriginal = original;
+                    if (!skipped) {
+                        m_currentRowMap.put(thisCol, new Content(m_stringInterner.intern(toBooleanString(original)),
+                            original, ActualDataType.BOOLEAN));
+                    }
+                    return;
+                }
+            }
+            if (!skipped) {
+                m_currentRowMap.put(thisCol, new Content(value, Content.DOUBLE, format,
+                    value == (int)value ? ActualDataType.NUMBER_INT : ActualDataType.NUMBER_DOUBLE));
+            }
+        }
+
+        /**
+         * @param column The {@code 0}-based index of a column with a value.
+         * @return Whether the column is outside of the cached range (the values are not cached then).
+         */
+        private boolean isSkipped(final int column) {
+            if (m_range.isSkipped(column, m_hiddenColumns)) {
+                if (column > m_lastSkipped) {
+                    m_lastSkipped = column;
+                    skippedColumn(column);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param formattedValue
+         * @return
+         */
+        private String toBooleanString(final String formattedValue) {
+            final String tmp = formattedValue.toLowerCase();
+            return tmp.endsWith("+") ? tmp.substring(0, tmp.length() - 1) : tmp;
+        }
+    }
+
+    /**
+     *
+     * Constructs {@link CachedExcelTable} using the xlsx streaming representation.
+     *
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheet The sheet's name, {@code null} for the first sheet with data.
+     * @param range The part of the sheet to cache.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param incompleteResult The container for the incomplete result, can be {@code null}.
+     * @param reevaluate Should we reevaluate the formulae?
+     * @return The {@link Future} representing the computation of {@link CachedExcelTable}.
+     */
+    static Future<CachedExcelTable> fillCacheFromXlsxStreaming(final Path path, final InputStream stream,
+        final String sheet, final SheetRange range, final Locale locale, final ExecutionMonitor exec,
+        final AtomicReference<CachedExcelTable> incompleteResult) {
+        return CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+            final CachedExcelTable table = new CachedExcelTable(path, sheet, range);
+            try {
+                parseXlsxSheet(path, stream, sheet, locale, exec, table, null);
+                table.m_incomplete = false;
+                table.m_dictionary.seal();
+            } catch (StopProcessing e) {
+                if (incompleteResult != null) {
+                    incompleteResult.set(table);
+                }
+                throw e;
+            }
+            return table;
+        }));
+    }
+
+    /**
+     * Parses the xlsx sheet on the {@link #CACHED_THREAD_POOL} and passes every read row to {@code rowSink} as soon as
+     * its end is reached (the rows are not cached).
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheet The sheet's name, {@code null} for the first sheet with data.
+     * @param range The part of the sheet to cache.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param rowSink The receiver of the rows, called on the parser thread.
+     * @return The {@link Future} representing the parsing, its value is the hidden columns ({@code 1}-based).
+     */
+    static Future<Set<Integer>> streamFromXlsx(final Path path, final InputStream stream, final String sheet,
+        final SheetRange range, final Locale locale, final ExecutionMonitor exec, final RowSink rowSink) {
+        return CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+            final CachedExcelTable table = new CachedExcelTable(path, sheet, range);
+            parseXlsxSheet(path, stream, sheet, locale, exec, table, rowSink);
+            return Collections.unmodifiableSet(table.m_hiddenColumns);
+        }));
+    }
+
+    /**
+     * Constructs a {@link CachedExcelTable} for each sheet of the xlsx workbook with a name matching {@code sheets}.
+     * The sheets are parsed concurrently, sharing the shared strings and the styles of the workbook.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheets The pattern of the sheet names to read.
+     * @param range The part of the sheets to cache.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @return The {@link Future} representing the computation of the {@link CachedExcelTable}s (in the order of the
+     *         sheets in the workbook).
+     */
+    static Future<List<CachedExcelTable>> fillCacheFromXlsxSheets(final Path path, final InputStream stream,
+        final Pattern sheets, final SheetRange range, final Locale locale, final ExecutionMonitor exec) {
+        return CACHED_THREAD_POOL.submit(
+            ThreadUtils.callableWithContext(() -> parseXlsxSheets(path, stream, sheets, range, locale, exec)));
+    }
+
+    /**
+     * Parses the sheets of an xlsx workbook with a name matching {@code sheets} concurrently.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream.
+     * @param sheets The pattern of the sheet names to read.
+     * @param range The part of the sheets to cache.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @return The {@link CachedExcelTable}s in the order of the sheets in the workbook.
+     */
+    @SuppressWarnings("try") // the admissions are only held while parsing
+    private static List<CachedExcelTable> parseXlsxSheets(final Path path, final InputStream stream,
+        final Pattern sheets, final SheetRange range, final Locale locale, final ExecutionMonitor exec)
+        throws Exception {
+        final OPCPackage opc = POIUtils.openPackage(path, stream);
+        try (final SharedStringsStore sharedStrings = SharedStringsStore.read(opc, false)) {
+            final XSSFReader xssfReader = new XSSFReader(opc);
+            final StylesTable styles = xssfReader.getStylesTable();
+            final boolean date1904 = POIUtils.isDate1904(xssfReader);
+            final Map<String, PackagePart> sheetParts = new LinkedHashMap<>();
+            for (final SheetIterator sheetIt = (SheetIterator)xssfReader.getSheetsData(); sheetIt.hasNext();) {
+                try (final InputStream unused = sheetIt.next()) {
+                    if (sheets.matcher(sheetIt.getSheetName()).matches()) {
+                        sheetParts.put(sheetIt.getSheetName(), sheetIt.getSheetPart());
+                    }
+                }
+            }
+            if (sheetParts.isEmpty()) {
+                throw new IOException("Workbook \"" + path.getFileName().toString()
+                    + "\" does not contain a sheet matching \"" + sheets.pattern() + "\"");
+            }
+            final List<Future<CachedExcelTable>> futures = new ArrayList<>();
+            try {
+                for (final Entry<String, PackagePart> entry : sheetParts.entrySet()) {
+                    final ExecutionMonitor sheetExec = exec.createSubProgress(1.0 / sheetParts.size());
+                    futures.add(CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+                        LocaleUtil.setUserLocale(locale);
+                        final CachedExcelTable table = new CachedExcelTable(path, entry.getKey(), range);
+                        try (final InputStream is = entry.getValue().getInputStream()) {
+                            final long size = sheetSize(is, entry.getValue());
+                            try (final ParseScheduler.Admission admission = ParseScheduler.shared()
+                                .admit(size * ParseScheduler.STREAMING_EXPANSION, sheetExec)) {
+                                parseXlsxSheet(is, size, styles, date1904, sharedStrings,
+                                    new KNIMEDataFormatter(locale), sheetExec, table, null);
+                            }
+                        }
+                        table.m_incomplete = false;
+                        table.m_dictionary.seal();
+                        return table;
+                    })));
+                }
+                final List<CachedExcelTable> tables = new ArrayList<>(futures.size());
+                for (final Future<CachedExcelTable> future : futures) {
+                    tables.add(getUnwrapped(future));
+                }
+                return tables;
+            } finally {
+                // stops the other sheets on failure (no-op for the completed ones)
+                for (final Future<CachedExcelTable> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        } finally {
+            opc.revert();
+        }
+    }
+
+    /**
+     * @return The result of {@code future}, with the cause of the failure thrown when it could not be computed.
+     */
+    private static <T> T getUnwrapped(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Parses the sheet of an xlsx workbook with the event API.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream.
+     * @param sheet The sheet's name, {@code null} for the first sheet with data.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param table The table to collect the hidden columns (and by default the rows).
+     * @param rowSink The receiver of the rows, when {@code null} the rows are stored in {@code table}.
+     */
+    @SuppressWarnings("try") // the admissions are only held while parsing
+    private static void parseXlsxSheet(final Path path, final InputStream stream, final String sheet,
+        final Locale locale, final ExecutionMonitor exec, final CachedExcelTable table, final RowSink rowSink)
+        throws Exception {
+        LocaleUtil.setUserLocale(locale);
+        final KNIMEDataFormatter formatter = new KNIMEDataFormatter(locale);
+
+        final OPCPackage opc = POIUtils.openPackage(path, stream);
+        try {
+            final XSSFReader xssfReader = new XSSFReader(opc);
+            // resolved on the opened package to avoid opening it twice
+            final String sheetName = sheet != null ? sheet : POIUtils.getFirstSheetNameWithData(xssfReader);
+            table.m_sheet = sheetName;
+            try (final SharedStringsStore sharedStrings = SharedStringsStore.read(opc, false)) {
+                for (final SheetIterator sheetIt = (SheetIterator)xssfReader.getSheetsData(); sheetIt.hasNext();) {
+                    final InputStream is = sheetIt.next();
+                    if (sheetName.equals(sheetIt.getSheetName())) { // not closed here; method arg to be closed by caller
+                        final long size = sheetSize(is, sheetIt.getSheetPart());
+                        try (final ParseScheduler.Admission admission = ParseScheduler.shared()
+                            .admit(size * ParseScheduler.STREAMING_EXPANSION, exec)) {
+                            parseXlsxSheet(is, size, xssfReader.getStylesTable(), POIUtils.isDate1904(xssfReader),
+                                sharedStrings, formatter, exec, table, rowSink);
+                        }
+                        return;
+                    }
+                }
+                throw new IOException("Workbook \"" + path.getFileName().toString()
+                    + "\" does not contain a sheet called \"" + sheetName + "\"");
+            }
+        } finally {
+            opc.revert();
+        }
+    }
+
+    /**
+     * Waits until the workbook at {@code path} can be parsed.
+     *
+     * @param expansion The estimated heap usage per byte of the workbook file.
+     * @see ParseScheduler#admit(long, ExecutionMonitor)
+     */
+    private static ParseScheduler.Admission admitWorkbook(final Path path, final int expansion,
+        final ExecutionMonitor exec) throws InterruptedException, CanceledExecutionException {
+        return ParseScheduler.shared().admit(getFileSize(path.toString()).orElse(0L) * expansion, exec);
+    }
+
+    /**
+     * @return The (uncompressed) size of the sheet's XML or a negative value when unknown.
+     */
+    private static long sheetSize(final InputStream is, final PackagePart sheetPart) {
+        if (is instanceof ByteArrayInputStream) { // debugger told me this is often a BAIS
+            return ((ByteArrayInputStream)is).available();
+        }
+        return sheetPart.getSize();
+    }
+
+    /**
+     * Parses the XML of an xlsx sheet. Large sheets are split into {@link XlsxSheetSegments} parsed concurrently when
+     * the rows are cached and the {@link ParseScheduler} leaves processors for them: the admission of the sheet's parse
+     * covers one worker, each further one is {@link ParseScheduler#tryAdmit(long) admitted} separately.
+     *
+     * @param sheetStream The sheet's XML.
+     * @param sheetSize The size of the sheet's XML, negative when unknown.
+     * @param styles The styles of the workbook.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     * @param sharedStrings The shared strings of the workbook.
+     * @param formatter The formatter to use (not shared between threads).
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param table The table to collect the hidden columns (and by default the rows).
+     * @param rowSink The receiver of the rows, when {@code null} the rows are stored in {@code table}.
+     */
+    private static void parseXlsxSheet(final InputStream sheetStream, final long sheetSize, final StylesTable styles,
+        final boolean date1904, final SharedStringsStore sharedStrings, final KNIMEDataFormatter formatter,
+        final ExecutionMonitor exec, final CachedExcelTable table, final RowSink rowSink) throws Exception {
+        final List<ParseScheduler.Admission> extraWorkers = new ArrayList<>();
+        try {
+            if (rowSink == null && XlsxSheetSegments.isSplittable(sheetSize)) {
+                admitExtraWorkers(extraWorkers, 1);
+            }
+            if (extraWorkers.isEmpty()) {
+                parseXlsxSheetStream(sheetStream, sheetSize, styles, date1904, sharedStrings, formatter, exec, table,
+                    rowSink);
+                return;
+            }
+            exec.setMessage("Splitting the sheet");
+            try (final XlsxSheetSegments segments = XlsxSheetSegments.split(sheetStream)) {
+                if (segments.size() == 1) {
+                    try (final InputStream is = segments.open(0)) {
+                        parseXlsxSheetStream(is, sheetSize, styles, date1904, sharedStrings, formatter, exec, table,
+                            null);
+                    }
+                } else {
+                    admitExtraWorkers(extraWorkers, segments.size() - 1);
+                    parseXlsxSheetSegments(segments, 1 + extraWorkers.size(), styles, date1904, sharedStrings,
+                        formatter, exec, table);
+                }
+            }
+        } finally {
+            for (final ParseScheduler.Admission worker : extraWorkers) {
+                worker.close();
+            }
+        }
+    }
+
+    /**
+     * Admits additional workers of a parse as long as the {@link ParseScheduler} can start them without waiting.
+     *
+     * @param extraWorkers The admissions of the additional workers, the new ones are added.
+     * @param count The maximal number of additional workers.
+     */
+    private static void admitExtraWorkers(final List<ParseScheduler.Admission> extraWorkers, final int count) {
+        while (extraWorkers.size() < count) {
+            final ParseScheduler.Admission worker = ParseScheduler.shared().tryAdmit(0);
+            if (worker == null) {
+                return;
+            }
+            extraWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Parses the segments of a split xlsx sheet on the {@link #CACHED_THREAD_POOL}, at most {@code workers} at the
+     * same time, and appends their rows to {@code table} in order.
+     *
+     * @param segments The segments of the sheet's XML.
+     * @param workers The maximal number of segments parsed concurrently.
+     * @param styles The styles of the workbook.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     * @param sharedStrings The shared strings of the workbook.
+     * @param formatter The formatter of the first segment, the others use its {@link KNIMEDataFormatter#sibling()
+     *            siblings}.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param table The table to fill.
+     */
+    private static void parseXlsxSheetSegments(final XlsxSheetSegments segments, final int workers,
+        final StylesTable styles, final boolean date1904, final SharedStringsStore sharedStrings,
+        final KNIMEDataFormatter formatter, final ExecutionMonitor exec, final CachedExcelTable table)
+        throws Exception {
+        final Locale locale = LocaleUtil.getUserLocale();
+        final int count = segments.size();
+        final List<Future<SegmentRows>> futures = new ArrayList<>(count);
+        try {
+            for (int merged = 0; merged < count; merged++) {
+                while (futures.size() < Math.min(count, merged + workers)) {
+                    final int index = futures.size();
+                    final KNIMEDataFormatter segmentFormatter = index == 0 ? formatter : formatter.sibling();
+                    futures.add(CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+                        LocaleUtil.setUserLocale(locale);
+                        return parseXlsxSheetSegment(segments, index, styles, date1904, sharedStrings,
+                            segmentFormatter, table);
+                    })));
+                }
+                final SegmentRows rows = getUnwrapped(futures.get(merged));
+                try {
+                    exec.checkCanceled();
+                } catch (CanceledExecutionException e) {
+                    throw new StopProcessing();
+                }
+                rows.appendTo(table);
+                final int done = merged + 1;
+                exec.setProgress(done / (double)count, () -> "Reading segment " + done + " of " + count);
+            }
+            exec.setProgress(1.0, () -> "Reading finished");
+        } finally {
+            // stops the other segments on failure (no-op for the completed ones)
+            for (final Future<SegmentRows> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return The rows of the segment at {@code index}.
+     */
+    private static SegmentRows parseXlsxSheetSegment(final XlsxSheetSegments segments, final int index,
+        final StylesTable styles, final boolean date1904, final SharedStringsStore sharedStrings,
+        final KNIMEDataFormatter formatter, final CachedExcelTable table) throws Exception {
+        final SegmentRows rows = new SegmentRows();
+        // the progress and the cancellation are checked while merging the segments
+        final KNIMESheetContentVisitor visitor = table.new KNIMESheetContentVisitor(null, null, rows);
+        final XlsxSheetParser sheetParser = new XlsxSheetParser(styles, sharedStrings, visitor, formatter, date1904);
+        visitor.m_hiddenColumns = sheetParser.getHiddenColumns();
+        try (final InputStream is = segments.open(index)) {
+            sheetParser.parse(is);
+        } catch (EndOfRange e) {
+            // the rest of the segment (and the following segments) is not needed
+        }
+        rows.m_hiddenColumns = sheetParser.getHiddenColumns();
+        return rows;
+    }
+
+    /**
+     * The rows of a segment of a split sheet, kept until the rows of the previous segments are appended to the table.
+     */
+    private static final class SegmentRows implements RowSink {
+        private int[] m_rowIndices = new int[256];
+
+        /** The end of the cells of each row in {@link #m_columns} and {@link #m_contents}. */
+        private int[] m_rowEnds = new int[256];
+
+        private int m_rowCount;
+
+        private int[] m_columns = new int[1024];
+
+        private Content[] m_contents = new Content[1024];
+
+        private int m_cellCount;
+
+        private Set<Integer> m_hiddenColumns = Collections.emptySet();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void row(final int rowIndex, final Map<Integer, Content> row, final Set<Integer> hiddenColumns) {
+            if (m_rowCount == m_rowIndices.length) {
+                m_rowIndices = Arrays.copyOf(m_rowIndices, m_rowCount * 2);
+                m_rowEnds = Arrays.copyOf(m_rowEnds, m_rowCount * 2);
+            }
+            if (m_cellCount + row.size() > m_columns.length) {
+                final int length = Math.max(m_columns.length * 2, m_cellCount + row.size());
+                m_columns = Arrays.copyOf(m_columns, length);
+                m_contents = Arrays.copyOf(m_contents, length);
+            }
+            for (final Entry<Integer, Content> entry : row.entrySet()) {
+                m_columns[m_cellCount] = entry.getKey().intValue();
+                m_contents[m_cellCount++] = entry.getValue();
+            }
+            m_rowIndices[m_rowCount] = rowIndex;
+            m_rowEnds[m_rowCount++] = m_cellCount;
+        }
+
+        /**
+         * Appends the rows to {@code table}.
+         *
+         * @param table The table being filled.
+         */
+        private void appendTo(final CachedExcelTable table) {
+            table.m_hiddenColumns.addAll(m_hiddenColumns);
+            for (int row = 0, cell = 0; row < m_rowCount; row++) {
+                for (; cell < m_rowEnds[row]; cell++) {
+                    table.appendCell(m_rowIndices[row], m_columns[cell], m_contents[cell]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the XML of an xlsx sheet as a whole.
+     *
+     * @param sheetStream The sheet's XML.
+     * @param sheetSize The size of the sheet's XML, negative when unknown.
+     * @param styles The styles of the workbook.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     * @param sharedStrings The shared strings of the workbook.
+     * @param formatter The formatter to use (not shared between threads).
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param table The table to collect the hidden columns (and by default the rows).
+     * @param rowSink The receiver of the rows, when {@code null} the rows are stored in {@code table}.
+     */
+    private static void parseXlsxSheetStream(final InputStream sheetStream, final long sheetSize,
+        final StylesTable styles, final boolean date1904, final SharedStringsStore sharedStrings,
+        final KNIMEDataFormatter formatter, final ExecutionMonitor exec, final CachedExcelTable table,
+        final RowSink rowSink) {
+        InputStream is = sheetStream;
+        final Supplier<OptionalDouble> progressSupplier;
+        if (sheetSize >= 0L) {
+            final double asDouble = sheetSize;
+            @SuppressWarnings("resource")
+            CountingInputStream countingStream = new CountingInputStream(is);
+            is = countingStream;
+            progressSupplier = () -> OptionalDouble.of(countingStream.getByteCount() / asDouble);
+        } else {
+            progressSupplier = () -> OptionalDouble.empty();
+        }
+        final KNIMESheetContentVisitor sheetContentsHandler = rowSink == null
+            ? table.new KNIMESheetContentVisitor(exec, progressSupplier)
+            : table.new KNIMESheetContentVisitor(exec, progressSupplier, rowSink);
+
+        final XlsxSheetParser sheetParser =
+            new XlsxSheetParser(styles, sharedStrings, sheetContentsHandler, formatter, date1904);
+        // the <cols> element precedes <sheetData>, so it is complete before the first row is reported
+        sheetContentsHandler.m_hiddenColumns = sheetParser.getHiddenColumns();
+        try {
+            sheetParser.parse(is);
+            exec.setProgress(1.0, () -> "Reading finished");
+        } catch (EndOfRange e) {
+            // the rest of the sheet is not needed
+            exec.setProgress(1.0, () -> "Reading finished");
+        } catch (RuntimeException e) {//Includes StopProcessing
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            table.m_hiddenColumns.addAll(sheetParser.getHiddenColumns());
+        }
+    }
+
+    /**
+     * Constructs {@link CachedExcelTable} from the records of an xls workbook (event API, the cached values of the
+     * formulae are read). Only the cells of the sheet are kept in memory, not the object model of the workbook.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheet The sheet's name, {@code null} for the first sheet with data.
+     * @param range The part of the sheet to cache.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param incompleteResult The container for the incomplete result, can be {@code null}.
+     * @return The {@link Future} representing the computation of {@link CachedExcelTable}.
+     */
+    @SuppressWarnings("try") // the admissions are only held while parsing
+    static Future<CachedExcelTable> fillCacheFromXls(final Path path, final InputStream stream, final String sheet,
+        final SheetRange range, final Locale locale, final ExecutionMonitor exec,
+        final AtomicReference<CachedExcelTable> incompleteResult) {
+        return CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+            LocaleUtil.setUserLocale(locale);
+            final CachedExcelTable table = new CachedExcelTable(path, sheet, range);
+            try {
+                final InputStream is = FileMagic.prepareToCheckMagic(stream);
+                if (FileMagic.valueOf(is) == FileMagic.OOXML) {
+                    // xlsx content with a different extension
+                    parseXlsxSheet(path, is, sheet, locale, exec, table, null);
+                } else {
+                    try (final ParseScheduler.Admission admission =
+                        admitWorkbook(path, ParseScheduler.STREAMING_EXPANSION, exec);
+                            final NPOIFSFileSystem fs = POIUtils.openFileSystem(path, is)) {
+                        if (XlsSheetReader.isWorkbook(fs.getRoot())) {
+                            final XlsSheetReader reader =
+                                new XlsSheetReader(fs.getRoot(), new KNIMEDataFormatter(locale));
+                            if (table.m_sheet == null) {
+                                table.m_sheet = reader.firstSheetNameWithData();
+                            }
+                            final KNIMESheetContentVisitor visitor =
+                                table.new KNIMESheetContentVisitor(exec, reader::progress);
+                            visitor.m_hiddenColumns = table.m_hiddenColumns;
+                            final boolean[] found = new boolean[1];
+                            reader.read(name -> {
+                                if (!found[0] && name.equals(table.m_sheet)) {
+                                    found[0] = true;
+                                    return new XlsSheetReader.SheetTarget(visitor, table.m_hiddenColumns);
+                                }
+                                return null;
+                            });
+                            if (!found[0]) {
+                                throw new IOException("Workbook \"" + path.getFileName().toString()
+                                    + "\" does not contain a sheet called \"" + table.m_sheet + "\"");
+                            }
+                            exec.setProgress(1.0, () -> "Reading finished");
+                        } else {
+                            // for example encrypted workbooks
+                            try (final Workbook workbook = WorkbookFactory.create(fs)) {
+                                table.readSheet(workbook, false, exec, exec.createSubProgress(1.0));
+                            }
+                        }
+                    }
+                }
+                table.m_incomplete = false;
+                table.m_dictionary.seal();
+            } catch (StopProcessing | CancellationException e) {
+                if (incompleteResult != null) {
+                    incompleteResult.set(table);
+                }
+                throw e;
+            }
+            return table;
+        }));
+    }
+
+    /**
+     * Constructs a {@link CachedExcelTable} for each sheet of the xls workbook with a name matching {@code sheets},
+     * see {@link #fillCacheFromXls(Path, InputStream, String, Locale, ExecutionMonitor, AtomicReference)}. The
+     * sheets are read in a single pass over the records of the workbook.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheets The pattern of the sheet names to read.
+     * @param range The part of the sheets to cache.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @return The {@link Future} representing the computation of the {@link CachedExcelTable}s (in the order of the
+     *         sheets in the workbook).
+     */
+    @SuppressWarnings("try") // the admissions are only held while parsing
+    static Future<List<CachedExcelTable>> fillCacheFromXlsSheets(final Path path, final InputStream stream,
+        final Pattern sheets, final SheetRange range, final Locale locale, final ExecutionMonitor exec) {
+        return CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+            LocaleUtil.setUserLocale(locale);
+            final InputStream is = FileMagic.prepareToCheckMagic(stream);
+            if (FileMagic.valueOf(is) == FileMagic.OOXML) {
+                // xlsx content with a different extension
+                return parseXlsxSheets(path, is, sheets, range, locale, exec);
+            }
+            try (final ParseScheduler.Admission admission =
+                admitWorkbook(path, ParseScheduler.STREAMING_EXPANSION, exec);
+                    final NPOIFSFileSystem fs = POIUtils.openFileSystem(path, is)) {
+                if (!XlsSheetReader.isWorkbook(fs.getRoot())) {
+                    // for example encrypted workbooks
+                    try (final Workbook workbook = WorkbookFactory.create(fs)) {
+                        return readSheets(path, workbook, sheets, range, false, exec, exec.createSubProgress(1.0));
+                    }
+                }
+                final XlsSheetReader reader = new XlsSheetReader(fs.getRoot(), new KNIMEDataFormatter(locale));
+                final List<CachedExcelTable> tables = new ArrayList<>();
+                reader.read(name -> {
+                    if (!sheets.matcher(name).matches()) {
+                        return null;
+                    }
+                    final CachedExcelTable table = new CachedExcelTable(path, name, range);
+                    tables.add(table);
+                    final KNIMESheetContentVisitor visitor = table.new KNIMESheetContentVisitor(exec, reader::progress);
+                    visitor.m_hiddenColumns = table.m_hiddenColumns;
+                    return new XlsSheetReader.SheetTarget(visitor, table.m_hiddenColumns);
+                });
+                if (tables.isEmpty()) {
+                    throw new IOException("Workbook \"" + path.getFileName().toString()
+                        + "\" does not contain a sheet matching \"" + sheets.pattern() + "\"");
+                }
+                exec.setProgress(1.0, () -> "Reading finished");
+                for (final CachedExcelTable table : tables) {
+                    table.m_incomplete = false;
+                    table.m_dictionary.seal();
+                }
+                return tables;
+            }
+        }));
+    }
+
+    /**
+     * Appends the cells of a row to the cache.
+     *
+     * @param rowIndex The {@code 0}-based index of the row.
+     * @param row The cells of the row with {@code 0}-based column indices.
+     */
+    private void appendRow(final int rowIndex, final Map<Integer, Content> row) {
+        for (Entry<Integer, Content> entry : row.entrySet()) {
+            appendCell(rowIndex, entry.getKey().intValue(), entry.getValue());
+        }
+    }
+
+    private void appendCell(final int rowIndex, final int col, final Content content) {
+        if (m_contents[col] == null) {
+            m_contents[col] = new ContentColumn(m_dictionary);
+        }
+        m_contents[col].add(rowIndex, content);
+    }
+
+    /**
+     * Notes that the cells of {@code column} are not cached (the segments of a split sheet are visited concurrently).
+     *
+     * @param column A column skipped by {@link #m_range}.
+     */
+    private synchronized void skippedColumn(final int column) {
+        m_lastSkippedColumn = Math.max(m_lastSkippedColumn, column);
+    }
+
+    /**
+     * Spills the complete chunks of the columns of all tables (including the ones being parsed) to disk.
+     */
+    static void spillAll() {
+        ChunkSpillFile.expunge();
+        final List<CachedExcelTable> tables;
+        synchronized (SPILLABLE) {
+            tables = new ArrayList<>(SPILLABLE.keySet());
+        }
+        int spilled = 0;
+        for (final CachedExcelTable table : tables) {
+            try {
+                spilled += table.spill();
+            } catch (IOException e) {
+                LOGGER.debug("Cannot spill the cached content of sheet " + table.m_sheet + ": " + e.getMessage(), e);
+            }
+        }
+        if (spilled > 0) {
+            LOGGER.debugWithFormat("Spilled %d chunk(s) of cached sheet content to disk", spilled);
+        }
+    }
+
+    /**
+     * @return The number of spilled chunks.
+     */
+    private synchronized int spill() throws IOException {
+        if (m_spillFile == null) {
+            m_spillFile = ChunkSpillFile.create(this);
+        }
+        int spilled = 0;
+        for (final ContentColumn column : m_contents) {
+            if (column != null) {
+                spilled += column.spill(m_spillFile);
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * @return The estimated heap size of the cached content in bytes.
+     */
+    long estimatedSize() {
+        long size = m_dictionary.estimatedSize();
+        for (final ContentColumn column : m_contents) {
+            size += column == null ? 0 : column.estimatedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the parsed content of this (complete) table, so it can be restored by
+     * {@link #read(DataInput, Path, KNIMEDataFormatter)} without parsing the workbook again.
+     *
+     * @param out The output.
+     * @throws IOException Writing failed.
+     */
+    void write(final DataOutput out) throws IOException {
+        ContentColumn.writeString(out, m_sheet);
+        out.writeInt(m_hiddenColumns.size());
+        for (final Integer hidden : m_hiddenColumns) {
+            out.writeInt(hidden.intValue());
+        }
+        out.writeInt(m_lastSkippedColumn);
+        m_dictionary.write(out);
+        int columns = 0;
+        for (final ContentColumn column : m_contents) {
+            columns += column == null ? 0 : 1;
+        }
+        out.writeInt(columns);
+        for (int i = 0; i < m_contents.length; i++) {
+            if (m_contents[i] != null) {
+                out.writeInt(i);
+                m_contents[i].write(out);
+            }
+        }
+    }
+
+    /**
+     * @param in The input with a table written by {@link #write(DataOutput)}.
+     * @param path The path of the workbook.
+     * @param formatter The formatter to recreate the number formats of the cells.
+     * @return The complete table.
+     * @throws IOException Reading failed.
+     */
+    static CachedExcelTable read(final DataInput in, final Path path, final KNIMEDataFormatter formatter)
+        throws IOException {
+        final CachedExcelTable table = new CachedExcelTable(path, ContentColumn.readString(in), SheetRange.ALL);
+        final int hiddenColumns = in.readInt();
+        for (int i = 0; i < hiddenColumns; i++) {
+            table.m_hiddenColumns.add(in.readInt());
+        }
+        table.m_lastSkippedColumn = in.readInt();
+        table.m_dictionary.read(in, formatter);
+        final int columns = in.readInt();
+        for (int i = 0; i < columns; i++) {
+            final int index = in.readInt();
+            table.m_contents[index] = ContentColumn.read(in, table.m_dictionary);
+        }
+        table.m_incomplete = false;
+        return table;
+    }
+
+    /**
+     * Constructs {@link CachedExcelTable} using the DOM-based representation.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheet The sheet's name, {@code null} for the first sheet with data.
+     * @param range The part of the sheet to cache.
+     * @param locale The {@link Locale} to use.
+     * @param reevaluate Should we reevaluate the formulae?
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @param incompleteResult The container for the incomplete result, can be {@code null}.
+     * @return The {@link Future} representing the computation of {@link CachedExcelTable}.
+     */
+    @SuppressWarnings("try") // the admissions are only held while parsing
+    static Future<CachedExcelTable> fillCacheFromDOM(final Path path, final InputStream stream,
+        final String sheet, final SheetRange range, final Locale locale, final boolean reevaluate,
+        final ExecutionMonitor exec, final AtomicReference<CachedExcelTable> incompleteResult) {
+        return CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+            LocaleUtil.setUserLocale(locale);
+            OptionalLong fileSize = getFileSize(path.toString());
+            CachedExcelTable table = new CachedExcelTable(path, sheet, range);
+            ExecutionMonitor workbookCreateProgress = exec.createSubProgress(.2);
+            ExecutionMonitor workBookParseProgress = exec.createSubProgress(.8);
+            exec.setMessage("Reading workbooks...");
+            try (final ParseScheduler.Admission admission =
+                ParseScheduler.shared().admit(fileSize.orElse(0L) * ParseScheduler.DOM_EXPANSION, exec);
+                    final CancellableReportingInputStream cancellableStream =
+                        new CancellableReportingInputStream(stream, workbookCreateProgress, fileSize.orElse(-1L));
+                    final Workbook workbook = WorkbookFactory.create(cancellableStream)) {
+                workbookCreateProgress.setProgress(1.0);
+                exec.setMessage("Parsing workbooks...");
+                table.readSheet(workbook, reevaluate, exec, workBookParseProgress);
+                table.m_incomplete = false;
+                table.m_dictionary.seal();
+            } catch (StopProcessing | CancellationException e) {
+                if (incompleteResult != null) {
+                    incompleteResult.set(table);
+                }
+                throw e;
+            }
+            return table;
+        }));
+    }
+
+    /**
+     * Constructs a {@link CachedExcelTable} for each sheet of the workbook with a name matching {@code sheets} using
+     * the DOM-based representation. The workbook is loaded only once.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream (to handle knime:// urls too, we do not create it on the thread of
+     *            threadpool).
+     * @param sheets The pattern of the sheet names to read.
+     * @param range The part of the sheets to cache.
+     * @param locale The {@link Locale} to use.
+     * @param reevaluate Should we reevaluate the formulae?
+     * @param exec The {@link ExecutionMonitor} to use.
+     * @return The {@link Future} representing the computation of the {@link CachedExcelTable}s (in the order of the
+     *         sheets in the workbook).
+     */
+    @SuppressWarnings("try") // the admissions are only held while parsing
+    static Future<List<CachedExcelTable>> fillCacheFromDOMSheets(final Path path, final InputStream stream,
+        final Pattern sheets, final SheetRange range, final Locale locale, final boolean reevaluate,
+        final ExecutionMonitor exec) {
+        return CACHED_THREAD_POOL.submit(ThreadUtils.callableWithContext(() -> {
+            LocaleUtil.setUserLocale(locale);
+            OptionalLong fileSize = getFileSize(path.toString());
+            ExecutionMonitor workbookCreateProgress = exec.createSubProgress(.2);
+            ExecutionMonitor workBookParseProgress = exec.createSubProgress(.8);
+            exec.setMessage("Reading workbooks...");
+            try (final ParseScheduler.Admission admission =
+                ParseScheduler.shared().admit(fileSize.orElse(0L) * ParseScheduler.DOM_EXPANSION, exec);
+                    final CancellableReportingInputStream cancellableStream =
+                        new CancellableReportingInputStream(stream, workbookCreateProgress, fileSize.orElse(-1L));
+                    final Workbook workbook = WorkbookFactory.create(cancellableStream)) {
+                workbookCreateProgress.setProgress(1.0);
+                exec.setMessage("Parsing workbooks...");
+                return readSheets(path, workbook, sheets, range, reevaluate, exec, workBookParseProgress);
+            }
+        }));
+    }
+
+    /**
+     * Reads the sheet of a loaded workbook, the first sheet with data when the table's sheet is {@code null}.
+     *
+     * @param workbook The workbook.
+     * @param reevaluate Should we reevaluate the formulae?
+     * @param exec The {@link ExecutionMonitor} to check for cancellation.
+     * @param parseProgress The {@link ExecutionMonitor} to report the progress.
+     */
+    private void readSheet(final Workbook workbook, final boolean reevaluate, final ExecutionMonitor exec,
+        final ExecutionMonitor parseProgress) throws IOException, CanceledExecutionException {
+        if (m_sheet == null) {
+            m_sheet = POIUtils.getFirstSheetNameWithData(workbook);
+        }
+        final Sheet sheetXls = workbook.getSheet(m_sheet);
+        if (sheetXls == null) {
+            throw new IOException("Workbook \"" + m_path.getFileName().toString()
+                + "\" does not contain a sheet called \"" + m_sheet + "\"");
+        }
+        final FormulaEvaluator evaluator = reevaluate ? workbook.getCreationHelper().createFormulaEvaluator() : null;
+        readSheet(sheetXls, evaluator, isDate1904(workbook), exec, parseProgress);
+    }
+
+    /**
+     * Reads the sheets of a loaded workbook with a name matching {@code sheets}.
+     *
+     * @param path The path of the workbook.
+     * @param workbook The workbook.
+     * @param sheets The pattern of the sheet names to read.
+     * @param range The part of the sheets to cache.
+     * @param reevaluate Should we reevaluate the formulae?
+     * @param exec The {@link ExecutionMonitor} to check for cancellation.
+     * @param parseProgress The {@link ExecutionMonitor} to report the progress.
+     * @return The {@link CachedExcelTable}s in the order of the sheets in the workbook.
+     */
+    private static List<CachedExcelTable> readSheets(final Path path, final Workbook workbook, final Pattern sheets,
+        final SheetRange range, final boolean reevaluate, final ExecutionMonitor exec,
+        final ExecutionMonitor parseProgress) throws IOException, CanceledExecutionException {
+        final List<Sheet> sheetsXls = new ArrayList<>();
+        for (final Sheet sheetXls : workbook) {
+            if (sheets.matcher(sheetXls.getSheetName()).matches()) {
+                sheetsXls.add(sheetXls);
+            }
+        }
+        if (sheetsXls.isEmpty()) {
+            throw new IOException("Workbook \"" + path.getFileName().toString()
+                + "\" does not contain a sheet matching \"" + sheets.pattern() + "\"");
+        }
+        final FormulaEvaluator evaluator = reevaluate ? workbook.getCreationHelper().createFormulaEvaluator() : null;
+        final boolean date1904 = isDate1904(workbook);
+        final List<CachedExcelTable> tables = new ArrayList<>(sheetsXls.size());
+        for (final Sheet sheetXls : sheetsXls) {
+            final CachedExcelTable table = new CachedExcelTable(path, sheetXls.getSheetName(), range);
+            table.readSheet(sheetXls, evaluator, date1904, exec,
+                parseProgress.createSubProgress(1.0 / sheetsXls.size()));
+            table.m_incomplete = false;
+            table.m_dictionary.seal();
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    /**
+     * @return Whether the workbook uses the 1904 date system.
+     */
+    private static boolean isDate1904(final Workbook workbook) {
+        if (workbook instanceof XSSFWorkbook) {
+            @SuppressWarnings("resource")
+            final XSSFWorkbook xssfWorkbook = (XSSFWorkbook)workbook;
+            return xssfWorkbook.isDate1904();
+        } else if (workbook instanceof HSSFWorkbook) {
+            @SuppressWarnings("resource")
+            final HSSFWorkbook hssfWorkbook = (HSSFWorkbook)workbook;
+            return hssfWorkbook.getInternalWorkbook().isUsing1904DateWindowing();
+        } else {
+            //Probably unsupported
+            return false;
+        }
+    }
+
+    /**
+     * Reads the cells and the hidden columns of a sheet from the DOM-based representation.
+     *
+     * @param sheetXls The sheet to read.
+     * @param evaluator The formula evaluator, {@code null} when the cached values should be used.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     * @param exec The {@link ExecutionMonitor} to check for cancellation.
+     * @param parseProgress The {@link ExecutionMonitor} to report the progress.
+     */
+    private void readSheet(final Sheet sheetXls, final FormulaEvaluator evaluator, final boolean date1904,
+        final ExecutionMonitor exec, final ExecutionMonitor parseProgress) throws CanceledExecutionException {
+        Thread currentThread = Thread.currentThread();
+        for (Row row : sheetXls) {
+            if (m_range.isAfter(row.getRowNum())) {
+                break;
+            }
+            parseProgress.setProgress(((double)row.getRowNum()) / sheetXls.getLastRowNum(),
+                () -> "Row: " + row.getRowNum());
+            if (currentThread.isInterrupted()) {
+                currentThread.interrupt();
+                throw new StopProcessing();
+            }
+            exec.checkCanceled();
+            Map<Integer, Content> rowMap = new HashMap<>();
+            for (Cell cell : row) {
+                final int column = cell.getColumnIndex();
+                if (m_range.isSkipped(column, sheetXls.isColumnHidden(column))) {
+                    m_lastSkippedColumn = Math.max(m_lastSkippedColumn, column);
+                } else {
+                    rowMap.put(column, createContentFromXLCell(cell, evaluator, date1904));
+                }
+            }
+            if (!rowMap.values().stream().allMatch(c -> ActualDataType.isMissing(c.type()))) {
+                appendRow(row.getRowNum(), rowMap);
+            }
+        }
+        parseProgress.setProgress(1.0);
+        int lastCol = Math.max(lastNonNull(m_contents), m_lastSkippedColumn);
+        for (int i = 1; i <= lastCol + 1; ++i) {
+            if (sheetXls.isColumnHidden(i - 1)) {
+                m_hiddenColumns.add(i);
+            }
+        }
+    }
+
+    /**
+     * @param contents
+     * @return
+     */
+    private static int lastNonNull(final Object[] contents) {
+        int lastNonNull = -1;
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != null) {
+                lastNonNull = i;
+            }
+        }
+        return lastNonNull;
+    }
+
+    /** The size of the file as per argument or an empty {@link OptionalLong} if not possible
+     * (e.g. remote file or invalid file).
+     * @param loc The location
+     * @return The size of the file.
+     */
+    private static OptionalLong getFileSize(final String loc) {
+        if (Strings.isNullOrEmpty(loc)) {
+            return OptionalLong.empty();
+        }
+        try {
+            File f = FileUtil.getFileFromURL(FileUtil.toURL(loc));
+            if (f != null) {
+                return OptionalLong.of(f.length());
+            }
+        } catch (MalformedURLException | IllegalArgumentException e) {
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Used for DOM-based reading. Converts {@code cell} to {@link Content}.
+     *
+     * @param cell A {@link Cell}.
+     * @param evaluator The evaluator.
+     * @param use1904windowing
+     */
+    private Content createContentFromXLCell(final Cell cell, final FormulaEvaluator evaluator, final boolean use1904windowing) {
+        if (cell == null) {
+            return new Content(null, ActualDataType.MISSING);
+        }
+        // determine the type
+        return createContentFromXLCell(cell, evaluator, cell.getCellType(), use1904windowing);
+
+    }
+
+    /**
+     * Used for DOM-based reading. Converts {@code cell} to {@link Content}.
+     *
+     * @param cell A {@link Cell}.
+     * @param evaluator The evaluator.
+     * @param cellType The type of {@code cell} (in case it is not the same as {@code cell}'s {@link Cell#getCellType()}
+     *            ).
+     * @param use1904windowing
+     */
+    private Content createContentFromXLCell(final Cell cell, final FormulaEvaluator evaluator, final int cellType, final boolean use1904windowing) {
+        final int colIdx = cell.getColumnIndex();
+        DataFormatter formatter = new DataFormatter();
+        Format cellFormat;
+        try {
+            cellFormat = formatter.createFormat(cell);
+        } catch (RuntimeException e) {
+            cellFormat = null;
+        }
+        switch (cellType) {
+            case Cell.CELL_TYPE_BLANK:
+                return new Content(null, ActualDataType.MISSING);
+            case Cell.CELL_TYPE_BOOLEAN:
+                boolean b = cell.getBooleanCellValue();
+                return new Content(Boolean.toString(b),
+                    cellFormat == null ? Boolean.toString(b) : cellFormat.format(Double.valueOf(b ? 1d : 0d)),
+                    ActualDataType.BOOLEAN);
+            case Cell.CELL_TYPE_ERROR:
+                return new Content(Integer.toString(cell.getErrorCellValue()), ActualDataType.ERROR);
+            case Cell.CELL_TYPE_FORMULA:
+                CellValue cellValue = null;
+                // Check if the formula is the replacement formula for infinity (see XLSWriter2.write())
+                if (cell.getCellFormula().equals("1/0")) {
+                    return new Content(Double.toString(Double.POSITIVE_INFINITY),
+                        Double.toString(Double.POSITIVE_INFINITY), ActualDataType.NUMBER_DOUBLE_FORMULA);
+                } else if (cell.getCellFormula().equals("-1/0")) {
+                    return new Content(Double.toString(Double.NEGATIVE_INFINITY),
+                        Double.toString(Double.NEGATIVE_INFINITY), ActualDataType.NUMBER_DOUBLE_FORMULA);
+                }
+                if (evaluator == null) {
+                    CheckUtils.checkState(cell.getCachedFormulaResultType() != Cell.CELL_TYPE_FORMULA,
+                        "Formula cannot create another formula");
+                    //Use cached value.
+                    return createContentFromXLCell(cell, evaluator, cell.getCachedFormulaResultType(), use1904windowing);
+                }
+                try {
+                    cellValue = evaluator.evaluate(cell);
+                } catch (Exception e) {
+                    return new Content(e.getMessage(), ActualDataType.ERROR_FORMULA);
+                }
+                switch (cellValue.getCellType()) {
+                    case Cell.CELL_TYPE_BOOLEAN:
+                        boolean bvalue = cellValue.getBooleanValue();
+                        return new Content(Boolean.toString(bvalue),
+                            cellFormat == null ? Boolean.toString(bvalue) : cellFormat.format(bvalue ? 1d : 0d),
+                            ActualDataType.BOOLEAN_FORMULA);
+                    case Cell.CELL_TYPE_NUMERIC:
+                        //Checking for data, based on  DateUtil#isCellDateFormatted(Cell)
+                        double d = cellValue.getNumberValue();
+                        if (DateUtil.isADateFormat(cell.getCellStyle().getDataFormat(), cell.getCellStyle().getDataFormatString())) {
+                            //Date date = cell.getDateCellValue();
+                            Date date = DateUtil.getJavaDate(cellValue.getNumberValue(), use1904windowing);
+                            Date dateUTC = DateUtil.getJavaDate(d, use1904windowing, TimeZone.getTimeZone(ZoneOffset.UTC), true);
+                            return new Content(
+                                d == (long)d ? m_dateFormat.format(dateUTC) : m_dateAndTimeFormat.format(dateUTC),
+                                cellFormat == null ? m_dateFormat.format(date) : cellFormat.format(date),
+                                ActualDataType.DATE_FORMULA);
+                        } else {
+                            double value = cellValue.getNumberValue();
+                            if (POIUtils.isInteger(Double.toString(value))) {
+                                return new Content(Integer.toString((int)value),
+                                    cellFormat == null ? Integer.toString((int)value) : cellFormat.format(value),
+                                    ActualDataType.NUMBER_INT_FORMULA);
+                            } else {
+                                return new Content(/*KNIMEDataFormatter.NUMBER_PREFIX + */Double.toString(value),
+                                    cellFormat == null ? Double.toString(value) : cellFormat.format(value),
+                                    ActualDataType.NUMBER_DOUBLE_FORMULA);
+                            }
+                        }
+                    case Cell.CELL_TYPE_STRING:
+                        return new Content(cellValue.getStringValue(), ActualDataType.STRING_FORMULA);
+                    case Cell.CELL_TYPE_BLANK:
+                        return new Content(null, ActualDataType.MISSING_FORMULA);
+                    case Cell.CELL_TYPE_ERROR:
+                        return new Content("Err (#" + (cellValue.getErrorValue() & 0xff) + ")",
+                            ActualDataType.ERROR_FORMULA);
+                    case Cell.CELL_TYPE_FORMULA:
+                        throw new IllegalStateException("Invalid formula result type in column idx " + colIdx
+                        /*+ ", sheet '" + settings.getSheetName()*/ + "', row " + cell.getRowIndex());
+                }
+            case Cell.CELL_TYPE_NUMERIC:
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    final Date date = cell.getDateCellValue();
+                    final double d = cell.getNumericCellValue();
+                    Date dateUTC = DateUtil.getJavaDate(d, use1904windowing, TimeZone.getTimeZone(ZoneOffset.UTC), true);
+                    return new Content(
+                        d == (long)d ? m_dateFormat.format(dateUTC) : m_dateAndTimeFormat.format(dateUTC),
+                        cellFormat == null ? m_dateAndTimeFormat.format(date) : cellFormat.format(date),
+                        ActualDataType.DATE);
+                } else {
+                    double value = cell.getNumericCellValue();
+                    if (POIUtils.isInteger(Double.toString(value))) {
+                        return new Content(Integer.toString((int)value),
+                            cellFormat == null ? Integer.toString((int)value) : cellFormat.format(value),
+                            ActualDataType.NUMBER_INT);
+                    } else {
+                        return new Content(/*KNIMEDataFormatter.NUMBER_PREFIX + */Double.toString(value),
+                            cellFormat == null ? Double.toString(value) : cellFormat.format(value),
+                            ActualDataType.NUMBER_DOUBLE);
+                    }
+                }
+            case Cell.CELL_TYPE_STRING:
+                return new Content(cell.getRichStringCellValue().getString(), ActualDataType.STRING);
+            default:
+                throw new IllegalStateException("Invalid cell type in column idx " + colIdx + ", sheet '"
+                /*+ settings.getSheetName() */ + "', row " + cell.getRowIndex());
+        }
+    }
+
+    /**
+     * Generates a {@link DataTable} based on {@code rawSettings}.
+     *
+     * @param rawSettings The settings to be used to generate the table.
+     * @param resultExcelToKNIME The mapping of excel {@code 1-based} columns to KNIME output columns {@code 0}-based.
+     *            This will be a result.
+     * @param uniquifier the {@link ValueUniquifier} to use accross all files
+     * @return The {@link DataTable}.
+     * @throws InvalidSettingsException Some settings in {@code rawSettings} is incorrect.
+     */
+    DataTable createDataTable(final XLSUserSettings rawSettings, final Map<Integer, Integer> resultExcelToKNIME,
+        final long rowNoToStart, final long totalNoOfPreviousRows, final ValueUniquifier uniquifier)
+        throws InvalidSettingsException {
+        return createDataTable(rawSettings, resultExcelToKNIME, () -> rowNoToStart, totalNoOfPreviousRows,
+            uniquifier);
+    }
+
+    /**
+     * Generates a {@link DataTable} based on {@code rawSettings}, the row key index to start with is queried when the
+     * iteration starts (so it can depend on the rows of the tables iterated before).
+     *
+     * @param rawSettings The settings to be used to generate the table.
+     * @param resultExcelToKNIME The mapping of excel {@code 1-based} columns to KNIME output columns {@code 0}-based.
+     *            This will be a result.
+     * @param rowNoToStart The row key index to start with.
+     * @param totalNoOfPreviousRows The number of rows in the previously read tables.
+     * @param uniquifier the {@link ValueUniquifier} to use accross all files
+     * @return The {@link DataTable}.
+     * @throws InvalidSettingsException Some settings in {@code rawSettings} is incorrect.
+     */
+    DataTable createDataTable(final XLSUserSettings rawSettings, final Map<Integer, Integer> resultExcelToKNIME,
+        final LongSupplier rowNoToStart, final long totalNoOfPreviousRows, final ValueUniquifier uniquifier)
+        throws InvalidSettingsException {
+
+        final XLSUserSettings settings = XLSUserSettings.normalizeSettings(rawSettings);
+        settings.setSheetName(m_sheet);
+
+        final Set<Integer> skippedCols = new HashSet<>();
+        final DataTableSpec spec = createSpec(settings, skippedCols);
+        final DataTableSpec knimeSpec = updatedSpec(spec);
+        final Map<Integer, Integer> mapFromExcelColumnIndicesToKNIME =
+            excelToKNIMEColumns(spec.getNumColumns(), skippedCols);
+        final DataTable dataTable = new DataTable() {
+
+            @Override
+            public DataTableSpec getDataTableSpec() {
+                return knimeSpec;
+            }
+
+            @Override
+            public RowIterator iterator() {
+                return new ContentRowIterator(settings, spec, mapFromExcelColumnIndicesToKNIME,
+                    rowNoToStart.getAsLong(), totalNoOfPreviousRows, uniquifier,
+                    new CachedRowSource(Math.max(0, settings.getFirstRow0())), TypeMismatchPolicy.MISSING);
+            }
+        };
+        if (resultExcelToKNIME != null) {
+            try {
+                resultExcelToKNIME.putAll(mapFromExcelColumnIndicesToKNIME.entrySet().stream()
+                    .collect(Collectors.toMap(e -> e.getValue(), e -> e.getKey())));
+            } catch (RuntimeException e) {
+                //Probably read-only, ignore.
+                e.printStackTrace();
+            }
+        }
+        return dataTable;
+    }
+
+    /**
+     * Computes the mapping of the Excel columns to the KNIME columns.
+     *
+     * @param numOfColumns The number of KNIME columns.
+     * @param skippedCols The skipped Excel columns ({@code 0}-based).
+     * @return The mapping from the {@code 0}-based Excel column indices to the {@code 0}-based KNIME column indices.
+     */
+    static Map<Integer, Integer> excelToKNIMEColumns(final int numOfColumns, final Set<Integer> skippedCols) {
+        final Map<Integer, Integer> ret = new HashMap<>();
+        int exCol = 0, knCol = 0;
+        while (knCol < numOfColumns) {
+            if (!skippedCols.contains(exCol)) {
+                ret.put(exCol, knCol++);
+            }
+            ++exCol;
+        }
+        return ret;
+    }
+
+    /**
+     * Provides the raw rows for {@link ContentRowIterator}.
+     */
+    interface RowSource {
+        /**
+         * @return The next row (the indices are consecutive, empty rows are represented by empty maps), or
+         *         {@code null} if there are no more rows.
+         */
+        Entry<Integer, Map<Integer, Content>> nextRow();
+
+        /**
+         * @return The {@code 0}-based index of the last row with content.
+         */
+        int lastRowIndex();
+
+        /**
+         * @param column A {@code 0}-based Excel column index not mapped to a KNIME column.
+         * @return Whether the column is left out on purpose (not after the columns of the spec).
+         */
+        boolean isSkippedColumn(int column);
+    }
+
+    /**
+     * {@link RowSource} reading the cached contents.
+     */
+    private final class CachedRowSource implements RowSource {
+        private int m_rowNumber;
+
+        /** The reused map of the returned row, each source has its own as the table can be shared. */
+        private final Map<Integer, Content> m_row = new HashMap<>();
+
+        /**
+         * @param firstRow The {@code 0}-based index of the first row to return.
+         */
+        CachedRowSource(final int firstRow) {
+            m_rowNumber = firstRow;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Entry<Integer, Map<Integer, Content>> nextRow() {
+            if (m_rowNumber <= numOfRows()) {
+                return new AbstractMap.SimpleImmutableEntry<>(m_rowNumber, constructRow(m_rowNumber++, m_row));
+            }
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int lastRowIndex() {
+            return numOfRows();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isSkippedColumn(final int column) {
+            // the spec was computed from all the cached rows
+            return true;
+        }
+    }
+
+    /**
+     * Converts the raw rows of a {@link RowSource} to {@link DataRow}s according to the settings.
+     */
+    static final class ContentRowIterator extends RowIterator {
+        private final XLSUserSettings m_settings;
+
+        private final DataTableSpec m_spec;
+
+        private final Map<Integer, Integer> m_excelToKNIME;
+
+        private final ValueUniquifier m_uniquifier;
+
+        private final RowSource m_source;
+
+        private final TypeMismatchPolicy m_policy;
+
+        private Entry<Integer, Map<Integer, Content>> m_nextRow;
+
+        private final long m_noOfRowsPreviousTables;
+
+        private long m_lastRow;
+
+        private long m_rowKeyIndex;
+
+        private boolean m_calledNext = true;
+
+        private boolean m_hasNext;
+
+        private final DataCell[] m_cells;
+
+        private RowKey m_rowKey;
+
+        /**
+         * @param settings The normalized settings.
+         * @param spec The spec of the table (the types of the columns are used for conversion).
+         * @param excelToKNIME The mapping of the {@code 0}-based Excel columns to the KNIME columns.
+         * @param rowNoToStart The row key index to start with.
+         * @param totalNoOfPreviousRows The number of rows in the previously read tables.
+         * @param uniquifier The {@link ValueUniquifier} for the row keys.
+         * @param source The {@link RowSource} providing the rows.
+         * @param policy What happens with the values not fitting {@code spec}, {@link TypeMismatchPolicy#MISSING}
+         *            when it was computed from all rows of {@code source} (the values are not checked then).
+         */
+        ContentRowIterator(final XLSUserSettings settings, final DataTableSpec spec,
+            final Map<Integer, Integer> excelToKNIME, final long rowNoToStart, final long totalNoOfPreviousRows,
+            final ValueUniquifier uniquifier, final RowSource source, final TypeMismatchPolicy policy) {
+            m_settings = settings;
+            m_policy = policy;
+            m_spec = spec;
+            m_excelToKNIME = excelToKNIME;
+            m_uniquifier = uniquifier;
+            m_source = source;
+            m_noOfRowsPreviousTables = totalNoOfPreviousRows;
+            m_lastRow = Math.max(0, settings.getFirstRow0()) - 1;
+            m_rowKeyIndex = rowNoToStart;
+            m_cells = new DataCell[spec.getNumColumns()];
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!m_calledNext) {
+                return m_hasNext;
+            }
+            Arrays.fill(m_cells, DataType.getMissingCell());
+            if (m_settings.getSkipEmptyRows()) {
+                Entry<Integer, Map<Integer, Content>> next;
+                do {
+                    next = nextEntry();
+                } while (next != null && (isAllMissing(next) || isSkipRow(next.getKey())));
+                m_hasNext = next != null;
+                if (next != null) {
+                    m_lastRow = next.getKey().longValue() + m_noOfRowsPreviousTables;
+                    m_rowKeyIndex++;
+                    process(next);
+                }
+            } else {//keep empty rows
+                if (m_nextRow == null) {
+                    m_nextRow = nextEntry();
+                }
+                if (m_nextRow == null) {//We are after the last real row
+                    m_lastRow++;
+                    //TODO handle the case when it should be skipped.
+                    m_hasNext = m_lastRow >= m_settings.getFirstRow0() && m_lastRow <= m_settings.getLastRow0()
+                        && m_lastRow < m_source.lastRowIndex();
+                    m_rowKeyIndex++;
+                    rowKey(new AbstractMap.SimpleImmutableEntry<>(Integer.valueOf((int)m_lastRow),
+                        Collections.emptyMap()));
+                    //cells are already empty
+                } else if (m_lastRow + 1 == m_nextRow.getKey().longValue()) {
+                    //next row should come unless it is to be skipped
+                    while (m_nextRow != null && isSkipRow(m_nextRow.getKey())) {
+                        m_lastRow++;
+                        if (!isHeader(m_nextRow.getKey())) {
+                            m_rowKeyIndex++;
+                        }
+                        m_nextRow = nextEntry();
+                    }
+                    if (m_nextRow == null) {
+                        return hasNext();
+                    }
+                    m_lastRow++;
+                    m_rowKeyIndex++;
+                    process(m_nextRow);
+                    m_hasNext = true;
+                    m_nextRow = nextEntry();
+                } else {//empty row, but it might be before or after the first/last
+                    m_lastRow++;
+                    //TODO handle the case when it should be skipped.
+                    m_hasNext = m_lastRow >= m_settings.getFirstRow0()
+                        && (m_settings.getLastRow0() < 0 || m_lastRow <= m_settings.getLastRow0());
+                    rowKey(new AbstractMap.SimpleImmutableEntry<>(Integer.valueOf((int)m_lastRow),
+                        Collections.emptyMap()));
+                    m_rowKeyIndex++;
+                    //cells are already empty
+                }
+            }
+            m_calledNext = false;
+            return m_hasNext;
+        }
+
+        /**
+         * @param next The entry representing the row.
+         * @return If all non-skipped values in the row is missing, {@code true}, otherwise {@code false}.
+         */
+        private boolean isAllMissing(final Entry<Integer, Map<Integer, Content>> next) {
+            return next.getValue().entrySet().stream().allMatch(entry -> {
+                Integer key = entry.getKey();
+                Content content = entry.getValue();
+                Integer index = m_excelToKNIME.get(key);
+                return !m_excelToKNIME.containsKey(key)
+                    || convertToCell(content, m_spec.getColumnSpec(index).getType())
+                        .isMissing();
+            });
+        }
+
+        /**
+         * Processes the row.
+         *
+         * @param next An entry representing a new row.
+         */
+        private void process(final Entry<Integer, Map<Integer, Content>> next) {
+            rowKey(next);
+            for (Entry<Integer, Content> cell : next.getValue().entrySet()) {
+                int col = cell.getKey();
+                final Content content = cell.getValue();
+                final ActualDataType type = content.type();
+                //Necessary condition as there might be excessive missing value
+                if (m_excelToKNIME.containsKey(col)) {
+                    final int idx = m_excelToKNIME.get(col);
+                    DataType expectedType = m_spec.getColumnSpec(idx).getType();
+                    if (content.hasValue()) {
+                        if (content.isValue(m_settings.getMissValuePattern())) {
+                            expectedType = DataType.getMissingCell().getType();
+                        } else if (m_policy != TypeMismatchPolicy.MISSING && isValue(type)
+                            && combine(expectedType, type, m_settings) != expectedType) {
+                            throw new TypeMismatchException(m_spec.getColumnSpec(idx).getName(), col, next.getKey(),
+                                content.valueAsString(), expectedType, m_policy == TypeMismatchPolicy.WIDEN);
+                        }
+                        switch (type) {
+                            case DATE:
+                            case DATE_FORMULA:
+                                m_cells[idx] = convertDateToCell(content, expectedType);
+                                break;
+                            case NUMBER:
+                            case NUMBER_DOUBLE:
+                            case NUMBER_INT:
+                            case NUMBER_FORMULA:
+                            case NUMBER_DOUBLE_FORMULA:
+                            case NUMBER_INT_FORMULA:
+                                if (expectedType.isCompatible(DoubleValue.class)) {
+                                    m_cells[idx] = convertToCell(content, expectedType);
+                                } else {
+                                    m_cells[idx] = convertToCell(content.originalValue(), expectedType);
+                                }
+                                break;
+                            case ERROR:
+                            case ERROR_FORMULA:
+                                if (m_settings.getUseErrorPattern()) {
+                                    m_cells[idx] =
+                                        convertToCell(m_settings.getErrorPattern(), StringCell.TYPE);
+                                } else {
+                                    m_cells[idx] = convertToCell(content.valueAsString(),
+                                        DataType.getMissingCell().getType());
+                                }
+                                break;
+                            case BOOLEAN:
+                            case BOOLEAN_FORMULA:
+                            case MISSING:
+                            case MISSING_FORMULA:
+                                m_cells[idx] = convertToCell(content.valueAsString(), expectedType);
+                                break;
+                            case STRING:
+                            case STRING_FORMULA:
+                                m_cells[idx] = convertToCell(content.valueAsString(), expectedType);
+                                break;
+                            default:
+                                throw new UnsupportedOperationException("Not supported type: " + type);
+                        }
+                    } else {
+                        m_cells[idx] = convertToCell(content.valueAsString(), expectedType);
+                    }
+                } else if (m_policy != TypeMismatchPolicy.MISSING && content.hasValue()
+                    && !content.isValue(m_settings.getMissValuePattern()) && isValue(type)
+                    && !m_source.isSkippedColumn(col)) {
+                    // a column not present in the rows the spec was computed from
+                    throw new TypeMismatchException(null, col, next.getKey(), content.valueAsString(), null,
+                        m_policy == TypeMismatchPolicy.WIDEN);
+                }
+            }
+        }
+
+        /**
+         * @return Whether a content of {@code type} is considered when the column types are computed.
+         */
+        private boolean isValue(final ActualDataType type) {
+            return !ActualDataType.isMissing(type) && (m_settings.getUseErrorPattern() || !ActualDataType.isError(type));
+        }
+
+        /**
+         * Sets the rowkey based on the row.
+         *
+         * @param next The next row raw representation.
+         */
+        private void rowKey(final Entry<Integer, Map<Integer, Content>> next) {
+            if (m_settings.getHasRowHeaders()) {
+                Content content = next.getValue().get(m_settings.getRowHdrCol0());
+                String rowKey =
+                    content == null ? "" : content.valueAsString() == null ? "" : content.valueAsString();
+                if (m_settings.getUniquifyRowIDs()) {
+                    rowKey = m_uniquifier.uniquifyRowHeader(rowKey);
+                } else if (rowKey.isEmpty()) {
+                    rowKey = RowKey.createRowKey(m_lastRow + m_noOfRowsPreviousTables).getString();
+                }
+                m_rowKey = new RowKey(rowKey);
+            } else if (m_settings.getKeepXLColNames()) {
+                m_rowKey = new RowKey(Long.toString(m_rowKeyIndex + 1L));
+            } else if (m_settings.isIndexContinuous()){
+                m_rowKey = RowKey.createRowKey(m_rowKeyIndex);
+            } else if (m_settings.isIndexSkipJumps()) {
+                m_rowKey = RowKey.createRowKey(m_lastRow + m_noOfRowsPreviousTables);
+            }
+        }
+
+        /**
+         * Converts the content to a cell, numbers are converted without parsing their {@link String} representation
+         * when possible.
+         */
+        private DataCell convertToCell(final Content content, final DataType type) {
+            if (content.isNumeric() && !content.isValue(m_settings.getMissValuePattern())
+                && type.isCompatible(DoubleValue.class) && !type.isCompatible(MissingValue.class)
+                && !type.isCompatible(BooleanValue.class)) {
+                final double d = content.number();
+                if (!type.isCompatible(IntValue.class)) {
+                    return new DoubleCell(d);
+                }
+                if (d == (int)d) {
+                    return new IntCell((int)d);
+                }
+            }
+            return convertToCell(content.valueAsString(), type);
+        }
+
+        /**
+         * Creates the date and time cells of the dates rendered from their epoch day or second without parsing.
+         */
+        private DataCell convertDateToCell(final Content content, final DataType type) {
+            if (!type.isCompatible(MissingValue.class) && type.isCompatible(LocalDateTimeValue.class)) {
+                switch (content.rendering()) {
+                    case Content.DATE:
+                        return LocalDateTimeCellFactory
+                            .create(LocalDate.ofEpochDay((long)content.number()).atStartOfDay());
+                    case Content.DATE_TIME:
+                        return LocalDateTimeCellFactory
+                            .create(LocalDateTime.ofEpochSecond((long)content.number(), 0, ZoneOffset.UTC));
+                    default:
+                        break;
+                }
+            }
+            return convertToCell(content.valueAsString(), type);
+        }
+
+        private DataCell convertToCell(final String valueAsString, final DataType type) {
+            if (valueAsString == null) {
+                return DataType.getMissingCell();
+            }
+            if (valueAsString.equals(m_settings.getMissValuePattern())) {
+                return new MissingCell(valueAsString);
+            }
+            try {
+                if (type.isCompatible(MissingValue.class)) {
+                    return new MissingCell(valueAsString);
+                }
+                if (type.isCompatible(BooleanValue.class)) {
+                    final String lowerCase = valueAsString.toLowerCase();
+                    CheckUtils.checkState("true".equals(lowerCase) || "false".equals(lowerCase),
+                        "Not a boolean value: " + valueAsString);
+                    return BooleanCellFactory.create(lowerCase);
+                }
+                if (type.isCompatible(IntValue.class)) {
+                    try {
+                        double d = Double.parseDouble(valueAsString);
+                        if (d != (int)d) {
+                            //Just for the exception.
+                            Integer.parseInt(valueAsString);
+                        }
+                        return new IntCell((int)d);
+                    } catch (NumberFormatException e) {
+                        return new MissingCell(e.getMessage());
+                    }
+                }
+                if (type.isCompatible(DoubleValue.class)) {
+                    try {
+                        return new DoubleCell(Double.parseDouble(valueAsString));
+                    } catch (NumberFormatException e) {
+                        return new MissingCell(e.getMessage());
+                    }
+                }
+                if (type.isCompatible(LocalDateTimeValue.class)) {
+                    try {
+                        return LocalDateTimeCellFactory.create(valueAsString);
+                    } catch (DateTimeParseException e) {
+                        try {
+                            LocalDate date = LocalDate.parse(valueAsString);
+                            return LocalDateTimeCellFactory.create(LocalDateTime.from(date.atStartOfDay()));
+                        } catch (DateTimeParseException ed) {
+                            LocalTime time = LocalTime.parse(valueAsString);
+                            return LocalDateTimeCellFactory
+                                .create(LocalDateTime.from(time.atDate(LocalDate.of(1900, 1, 1))));
+                        }
+                    }
+                }
+                if (type.isCompatible(StringValue.class)) {
+                    //TODO the dates are in standardized format, which does not work as probably expected.
+                    return new StringCell(valueAsString);
+                }
+            } catch (RuntimeException e) {
+                return new MissingCell(e.getMessage());
+            }
+            //TODO anything missing? Should we support other types?
+            return DataType.getMissingCell();
+        }
+
+        private boolean isSkipRow(final Integer key) {
+            boolean isHeader = isHeader(key);
+            int lastRow = m_settings.getLastRow0();
+            return isHeader || (!m_settings.getReadAllData()
+                && (key < m_settings.getFirstRow0() || (lastRow >= 0 && key > lastRow)));
+        }
+
+        /**
+         * @param key
+         * @return
+         */
+        private boolean isHeader(final Integer key) {
+            boolean isHeader = m_settings.getHasColHeaders() && key == m_settings.getColHdrRow0();
+            return isHeader;
+        }
+
+        private Entry<Integer, Map<Integer, Content>> nextEntry() {
+            return m_source.nextRow();
+        }
+
+        @Override
+        public DataRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            m_calledNext = true;
+            return new DefaultRow(m_rowKey, m_cells);
+        }
+    }
+
+    /**
+     * Generates a {@link DataTable} based on {@code rawSettings}.
+     *
+     * @param rawSettings The settings to be used to generate the table.
+     * @param resultExcelToKNIME The mapping of excel {@code 1-based} columns to KNIME output columns {@code 0}-based.
+     *            This will be a result.
+     * @return The {@link DataTable}.
+     * @throws InvalidSettingsException Some settings in {@code rawSettings} is incorrect.
+     */
+    DataTable createDataTable(final XLSUserSettings rawSettings,
+        final Map<Integer, Integer> resultExcelToKNIME) throws InvalidSettingsException {
+        return createDataTable(rawSettings, resultExcelToKNIME, -1, 0, new ValueUniquifier());
+    }
+
+    /**
+     * @param spec Original spec with all information present.
+     * @return The updated spec with no data and time columns.
+     */
+    private static DataTableSpec updatedSpec(final DataTableSpec spec) {
+        final DataTableSpecCreator tableSpecCreator = new DataTableSpecCreator(spec);
+        for (int i = 0; i < spec.getNumColumns(); i++) {
+            if (spec.getColumnSpec(i).getType().isCompatible(LocalDateTimeValue.class)) {
+                tableSpecCreator.replaceColumn(i,
+                    new DataColumnSpecCreator(spec.getColumnSpec(i).getName(), LocalDateTimeCellFactory.TYPE).createSpec());
+            }
+        }
+        return tableSpecCreator.createSpec();
+    }
+
+    /**
+     * Looks at the specified XLS file and tries to determine the type of all columns contained. Also returns the number
+     * of columns and rows in all sheets.
+     *
+     * @param the path or url
+     * @param settings the pre-set settings.
+     * @return the result settings
+     */
+    private List<DataType> analyzeColumnTypes(final XLSUserSettings settings,
+        final Set<Integer> skippedCols) {
+
+        if (settings == null) {
+            throw new NullPointerException("Settings can't be null");
+        }
+
+        return setColumnTypes(settings, skippedCols);
+    }
+
+    /**
+     * Traverses the specified sheet in the file and detects the type for all columns in the sheets.
+     *
+     * @param settings The user settings
+     * @param skippedCols The skipped columns (non-{@code null}, {@code 0}=based. this method fills it)
+     */
+    private List<DataType> setColumnTypes(final XLSUserSettings settings, final Set<Integer> skippedCols) {
+
+        skippedCols.clear();
+
+        String sheetName = settings.getSheetName();
+        if (sheetName == null || sheetName.isEmpty() || sheetName.equals(XLSReaderNodeDialog.FIRST_SHEET)) {
+            throw new IllegalStateException("At this point sheetName has to be an existing sheet name: " + sheetName);
+        }
+        //CombinationStrategies.KeepEverythingAsIsCombineOnlyIdentical
+        return collectDataTypes(settings, skippedCols);
+    }
+
+    /**
+     * @param settings The {@link XLSUserSettings} to be used.
+     * @param skippedCols The skipped columns ({@code 0-based, this method fills it}.
+     * @return The data types of the columns.
+     */
+    private List<DataType> collectDataTypes(final XLSUserSettings settings, final Set<Integer> skippedCols) {
+        final List<DataType> ret = new ArrayList<>();
+        int firstColumn = settings.getFirstColumn0(), lastColumn = settings.getLastColumn0();
+        SortedMap<Integer, SortedMap<Integer, Pair<ActualDataType, Integer>>> dataTypes = dataTypes();
+        //        System.out.println(dataTypes);
+        // the columns skipped while parsing are not cached, but they are still part of the sheet
+        int actualLastColumn = Math.max(lastColumnIndex(), m_lastSkippedColumn);
+        if (actualLastColumn < 0) {
+            return Collections.emptyList();
+        }
+        if (lastColumn < 0) {
+            lastColumn = Math.max(dataTypes.isEmpty() ? -1 : dataTypes.lastKey(), m_lastSkippedColumn);
+        }
+        for (int i = 0; i <= lastColumn; ++i) {
+            if ((settings.getSkipHiddenColumns() && m_hiddenColumns.contains(i + 1))
+                || (firstColumn >= 0 && i < firstColumn)
+                || (settings.getHasRowHeaders() && i == settings.getRowHdrCol0())) {
+                skippedCols.add(i);
+            }
+        }
+        for (int i = 0; i <= lastColumn; ++i) {
+            if (settings.getSkipHiddenColumns() && m_hiddenColumns.contains(i + 1)) {
+                skippedCols.add(i);
+            } else if (firstColumn >= 0 && i < firstColumn) {
+                skippedCols.add(i);
+            } else if (settings.getHasRowHeaders() && i == settings.getRowHdrCol0()) {
+                skippedCols.add(i);
+            } else if (dataTypes.get(i) == null || POIUtils.isAllEmpty(dataTypes.get(i), settings)) {
+                if (settings.getSkipEmptyColumns()) {
+                    skippedCols.add(i);
+                } else {
+                    ret.add(StringCell.TYPE);
+                }
+            } else {
+                ret.add(dataTypeOf(dataTypes.get(i), settings));
+            }
+        }
+        for (int i = actualLastColumn + 1; i <= lastColumn; ++i) {
+            if (settings.getSkipEmptyColumns()) {
+                skippedCols.add(i);
+            } else {
+                ret.add(StringCell.TYPE);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Collects the column's compressed type information, kept up to date by the columns while the cells are added.
+     *
+     * @return A {@link SortedMap} with {@code 0}-based keys and values (both inclusive, an interval) and the type of
+     *         the cells.
+     */
+    private SortedMap<Integer, SortedMap<Integer, Pair<ActualDataType, Integer>>> dataTypes() {
+        SortedMap<Integer, SortedMap<Integer, Pair<ActualDataType, Integer>>> ret = new TreeMap<>();
+        for (int i = 0; i < m_contents.length; i++) {
+            ContentColumn column = m_contents[i];
+            if (column != null) {
+                ret.put(i, column.typeRuns());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The last column index within the cache.
+     */
+    private int lastColumnIndex() {
+        return m_lastColumnIndex > Integer.MIN_VALUE ? m_lastColumnIndex
+            : (m_lastColumnIndex = lastNonNull(m_contents));
+    }
+
+    /**
+     * @return The name of the cached sheet.
+     */
+    String sheetName() {
+        return m_sheet;
+    }
+
+    /**
+     * @return The last row's index in case it was fully read, otherwise the {@code -(number of read rows) - 1}.
+     */
+    int lastRow() {
+        int length = numOfRows();
+        return m_incomplete ? -length - 1 : length;
+    }
+
+    /**
+     * @return
+     */
+    private int numOfRows() {
+        return m_lastRowIndex > Integer.MIN_VALUE ? m_lastRowIndex : (m_lastRowIndex = lastRow(m_contents));
+    }
+
+    /**
+     * @param contents
+     * @return
+     */
+    private static int lastRow(final ContentColumn[] contents) {
+        int max = 0;
+        for (ContentColumn column : contents) {
+            max = Math.max(realSize(column), max);
+        }
+        return max;
+    }
+
+    /**
+     * @param column
+     * @return The last cell containing value.
+     */
+    private static int realSize(final ContentColumn column) {
+        // only non-null contents are added, so the last row has content
+        return column == null ? -1 : column.size() - 1;
+    }
+
+    /**
+     * @param columnMap A column's type map.
+     * @param settings The user settings.
+     * @return The KNIME {@link DataType} of the column.
+     */
+    private static DataType dataTypeOf(final SortedMap<Integer, Pair<ActualDataType, Integer>> columnMap,
+        final XLSUserSettings settings) {
+        //Not all empty
+        int firstRow = settings.getFirstRow0(), lastRow = settings.getLastRow0();
+
+        DataType common = DataType.getMissingCell().getType();
+        final int colHdrRow = settings.getColHdrRow0();
+        //TODO use head and tail
+        for (Entry<Integer, Pair<ActualDataType, Integer>> entry : columnMap.entrySet()) {
+            if (firstRow >= 0 && entry.getValue().getSecond() < firstRow) {
+                continue;
+            }
+            if (lastRow >= 0 && entry.getKey() > lastRow) {
+                break;
+            }
+            if (settings.getHasColHeaders() && colHdrRow == entry.getKey()
+                && colHdrRow == entry.getValue().getSecond()) {
+                continue;
+            }
+            ActualDataType dataType = entry.getValue().getFirst();
+            if (ActualDataType.isMissing(dataType)
+                || (!settings.getUseErrorPattern() && ActualDataType.isError(dataType))) {
+                continue;
+            }
+            common = combine(common, dataType, settings);
+        }
+        return common == DataType.getMissingCell().getType() ? /* probably should not happen */StringCell.TYPE : common;
+    }
+
+    /**
+     * Combines {@link ActualDataType}s and {@link DataType}s.
+     *
+     * @param common The previous {@link DataType}.
+     * @param dataType The new {@link ActualDataType} to combine.
+     * @param settings The user settings.
+     * @return The new {@link DataType}.
+     */
+    private static DataType combine(final DataType common, ActualDataType dataType, final XLSUserSettings settings) {
+        //if (true/*!settings.isWriteFormula()*/) {
+        switch (dataType) {
+            case BOOLEAN_FORMULA:
+                dataType = ActualDataType.BOOLEAN;
+                break;
+            case DATE_FORMULA:
+                dataType = ActualDataType.DATE;
+                break;
+            case ERROR_FORMULA:
+                dataType = ActualDataType.ERROR;
+                break;
+            case MISSING_FORMULA:
+                dataType = ActualDataType.MISSING;
+                break;
+            case NUMBER_FORMULA:
+                dataType = ActualDataType.NUMBER;
+                break;
+            case NUMBER_DOUBLE_FORMULA:
+                dataType = ActualDataType.NUMBER_DOUBLE;
+                break;
+            case NUMBER_INT_FORMULA:
+                dataType = ActualDataType.NUMBER_INT;
+                break;
+            case STRING_FORMULA:
+                dataType = ActualDataType.STRING;
+                break;
+            case BOOLEAN:
+            case DATE:
+            case ERROR:
+            case MISSING:
+            case NUMBER:
+            case NUMBER_DOUBLE:
+            case NUMBER_INT:
+            case STRING:
+                //Nothing to change
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown type: " + dataType);
+        }
+        //        }
+        switch (dataType) {
+            case BOOLEAN:
+                if (common == BooleanCell.TYPE) {
+                    return common;
+                }
+                if (common.isCompatible(MissingValue.class)) {
+                    return BooleanCell.TYPE;
+                }
+                if (common == StringCell.TYPE || common == IntCell.TYPE || common == DoubleCell.TYPE
+                    || common == LocalDateTimeCellFactory.TYPE) {
+                    return StringCell.TYPE;
+                }
+                throw new IllegalStateException("common: " + common);
+            case DATE:
+                if (common == LocalDateTimeCellFactory.TYPE || common.isCompatible(MissingValue.class)) {
+                    return LocalDateTimeCellFactory.TYPE;
+                }
+                if (common == StringCell.TYPE || common == IntCell.TYPE || common == DoubleCell.TYPE
+                    || common == BooleanCell.TYPE) {
+                    return StringCell.TYPE;
+                }
+                throw new IllegalStateException("common: " + common);
+            case ERROR:
+                if (settings.getUseErrorPattern()) {
+                    return StringCell.TYPE;
+                }
+                return common;
+            case MISSING:
+                return common;
+            case NUMBER:
+            case NUMBER_DOUBLE:
+                if (common == DoubleCell.TYPE || common == IntCell.TYPE || common.isCompatible(MissingValue.class)) {
+                    return DoubleCell.TYPE;
+                }
+                if (common == StringCell.TYPE || common == LocalDateTimeCellFactory.TYPE || common == BooleanCell.TYPE) {
+                    return StringCell.TYPE;
+                }
+                throw new IllegalStateException("common: " + common);
+            case NUMBER_INT:
+                if (common == IntCell.TYPE || common.isCompatible(MissingValue.class)) {
+                    return IntCell.TYPE;
+                }
+                if (common == DoubleCell.TYPE) {
+                    return common;
+                }
+                if (common == StringCell.TYPE || common == LocalDateTimeCellFactory.TYPE || common == BooleanCell.TYPE) {
+                    return StringCell.TYPE;
+                }
+                throw new IllegalStateException("common: " + common);
+
+            case STRING:
+                return StringCell.TYPE;
+            default:
+                throw new IllegalStateException("common: " + common + " Formulae are not yet supported: " + dataType);
+        }
+    }
+
+    /**
+     * Creates and returns a new table spec from the current settings.
+     *
+     * @return a new table spec from the current settings
+     * @throws InvalidSettingsException if settings are invalid.
+     */
+    private DataTableSpec createSpec(final XLSUserSettings settings, final Set<Integer> skippedCols) {
+
+        List<DataType> columnTypes = analyzeColumnTypes(settings, skippedCols);
+
+        int numOfCols = columnTypes.size();
+        String[] colHdrs = createColHeaders(settings, numOfCols, skippedCols);
+        assert colHdrs.length == numOfCols;
+
+        DataColumnSpec[] colSpecs = new DataColumnSpec[numOfCols];
+
+        for (int col = 0; col < numOfCols; col++) {
+            assert(col < columnTypes.size() && columnTypes.get(col) != null);
+            colSpecs[col] = new DataColumnSpecCreator(colHdrs[col], columnTypes.get(col)).createSpec();
+        }
+
+        String tableName = m_path.toString() + " [" + m_sheet + "]";
+        return new DataTableSpec(tableName, colSpecs);
+    }
+
+    /**
+     * Either reads the column names from the sheet, of generates new ones.
+     *
+     */
+    private String[] createColHeaders(final XLSUserSettings settings, final int numOfCols,
+        final Set<Integer> skippedCols) {
+
+        String[] result = null;
+        if (settings.getHasColHeaders() && !settings.getKeepXLColNames()) {
+            result = readColumnHeaders(settings, numOfCols, skippedCols);
+        }
+        if (result == null) {
+            result = new String[numOfCols];
+        }
+        POIUtils.fillEmptyColHeaders(settings, skippedCols, result);
+        return result;
+    }
+
+    /**
+     * Reads the contents of the specified column header row. Names not specified in the sheet are null in the result.
+     * Uniquifies the names from the sheet. The length of the returned array is determined by the first and last column
+     * to read. The result is null, if the hasColHdr flag is not set, or the specified header row is not in the sheet.
+     *
+     * @param settings valid settings
+     * @param numOfCols number of columns to read headers for
+     * @param skippedCols columns in the sheet being skipped (due to emptiness or row headers)
+     * @return Returns null, if sheet contains no column headers, or the specified header row is not in the sheet,
+     *         otherwise an array with unique names, or null strings, if the sheet didn't contain a name for that
+     *         column.
+     * @throws InvalidSettingsException if settings are invalid
+     */
+    private String[] readColumnHeaders(final XLSUserSettings settings, final int numOfCols,
+        final Set<Integer> skippedCols) {
+
+        String[] result = new String[numOfCols];
+
+        if (!settings.getHasColHeaders()) {
+            return result;
+        }
+        final Map<Integer, Content> colHeader = constructRow(settings.getColHdrRow0(), new HashMap<>());
+        //        if (colHeader == null) {
+        //            // table had too few rows
+        //            LOGGER.warn("Specified column header row not contained " + "in sheet");
+        //            return result;
+        //        }
+        //        if (numOfCols <= colHeader.getNumCells()) {
+        //            LOGGER.debug("The column header row just read has " + row.getNumCells() + " cells, but we expected "
+        //                + numOfCols);
+        //        }
+        final ValueUniquifier uniquifier = new ValueUniquifier();
+        colHeader.keySet().stream().max(Comparator.naturalOrder()).ifPresent((max) -> {
+            //Necessary to skip the same columns.
+            int idx = 0;
+            for (int i = 0; i <= max && idx < result.length; ++i) {
+                if (!skippedCols.contains(i)) {
+                    if (colHeader.containsKey(i)) {
+                        final Content content = colHeader.get(i);
+                        final String valueAsString = content == null ? null : content.valueAsString();
+                        result[idx++] =
+                            valueAsString == null ? null : uniquifier.uniquifyRowHeader(valueAsString.trim());
+                    } else {
+                        result[idx++] = null;
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     *
+     *
+     * @param rowIndex0
+     * @param row The map to fill with the contents of the row.
+     * @return {@code row}
+     */
+    private Map<Integer, Content> constructRow(final int rowIndex0, final Map<Integer, Content> row) {
+        row.clear();
+        if (rowIndex0 < 0) {
+            return row;
+        }
+        for (int i = 0; i <= lastColumnIndex(); i++) {
+            ContentColumn column = m_contents[i];
+            if (column != null) {
+                Content content = column.get(rowIndex0);
+                if (content != null) {
+                    row.put(i, content);
+                }
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.knime.core.util.FileUtil;
+
+/**
+ * A temporary file the cold chunks of the {@link ContentColumn}s of a {@link CachedExcelTable} are appended to when
+ * memory is low. The chunks are read back at their positions, concurrently if necessary. The file is deleted when its
+ * table is garbage collected (checked whenever a file is created or memory is low).
+ *
+ * @author agent
+ */
+final class ChunkSpillFile {
+
+    /** The owners of the files, enqueued when garbage collected. */
+    private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<>();
+
+    /** Keeps the references of {@link #COLLECTED} reachable. */
+    private static final Set<Cleanup> CLEANUPS = Collections.synchronizedSet(new HashSet<>());
+
+    /** Deletes the file when its owner was garbage collected. */
+    private static final class Cleanup extends PhantomReference<Object> {
+        private final ChunkSpillFile m_file;
+
+        private Cleanup(final Object owner, final ChunkSpillFile file) {
+            super(owner, COLLECTED);
+            m_file = file;
+        }
+    }
+
+    private final File m_file;
+
+    private final FileChannel m_channel;
+
+    private long m_length;
+
+    private ChunkSpillFile(final File file) throws IOException {
+        m_file = file;
+        m_channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @param owner The object whose garbage collection deletes the file, it must not be reachable from the file.
+     * @return A new (empty) temporary file.
+     * @throws IOException Creating the file failed.
+     */
+    static ChunkSpillFile create(final Object owner) throws IOException {
+        expunge();
+        final ChunkSpillFile file = new ChunkSpillFile(FileUtil.createTempFile("excelChunks", ".bin"));
+        CLEANUPS.add(new Cleanup(owner, file));
+        return file;
+    }
+
+    /**
+     * Deletes the files of the garbage collected owners.
+     */
+    static void expunge() {
+        for (Reference<?> ref = COLLECTED.poll(); ref != null; ref = COLLECTED.poll()) {
+            CLEANUPS.remove(ref);
+            ((Cleanup)ref).m_file.delete();
+        }
+    }
+
+    /**
+     * @param bytes The bytes to append.
+     * @return The position of {@code bytes} in the file.
+     * @throws IOException Writing failed.
+     */
+    synchronized long append(final byte[] bytes) throws IOException {
+        final long position = m_length;
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            m_channel.write(buffer, position + buffer.position());
+        }
+        m_length += bytes.length;
+        return position;
+    }
+
+    /**
+     * @param position A position returned by {@link #append(byte[])}.
+     * @param length The number of bytes appended there.
+     * @return The appended bytes.
+     * @throws IOException Reading failed.
+     */
+    byte[] read(final long position, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (m_channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + m_file);
+            }
+        }
+        return bytes;
+    }
+
+    private void delete() {
+        try {
+            m_channel.close();
+        } catch (IOException e) {
+            // nothing to do, the file is deleted anyway
+        }
+        try {
+            Files.deleteIfExists(m_file.toPath());
+        } catch (IOException e) {
+            // try again on exit
+            m_file.deleteOnExit();
+        }
+    }
+}
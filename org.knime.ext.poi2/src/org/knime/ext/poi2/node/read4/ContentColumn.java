@@ -0,0 +1,755 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.knime.core.util.Pair;
+
+import org.knime.ext.poi2.node.read4.CachedExcelTable.Content;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
+
+/**
+ * A column of {@link CachedExcelTable} which stores its {@link Content}s in primitive arrays instead of objects: a
+ * byte for the type, a byte for the encoding and a {@code long} for the number, date or dictionary id of each cell.
+ * The original (formatted) values are only stored (as dictionary ids) when they cannot be derived from the value;
+ * numbers keep the id of their {@link CellFormat} instead, which is stored once per chunk while all numbers of the
+ * chunk share it. The {@link Content} objects are created on access.
+ * <p>
+ * The rows are stored in chunks of fixed size. When memory is low, the complete chunks can be spilled to a
+ * {@link ChunkSpillFile}; they are read back one at a time on access, so iterating the rows reads the file
+ * sequentially.
+ *
+ * @author agent
+ */
+final class ContentColumn {
+
+    private static final ActualDataType[] TYPES = ActualDataType.values();
+
+    private static final int CHUNK_BITS = 12;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Bits of the encoding byte for the {@link Content#rendering()}. */
+    private static final int RENDERING_MASK = 0x07;
+
+    /** Shift of the {@link Content#originalRendering()} within the encoding byte. */
+    private static final int ORIGINAL_SHIFT = 4;
+
+    private static final long NULL_ID = -1L;
+
+    /**
+     * Dictionary of the {@link String}s and {@link CellFormat}s of a table, shared by its columns.
+     */
+    static final class Dictionary {
+        private Map<String, Integer> m_ids = new HashMap<>();
+
+        private final ArrayList<String> m_values = new ArrayList<>();
+
+        private final ArrayList<CellFormat> m_formats = new ArrayList<>();
+
+        /**
+         * @param format A {@link CellFormat}, all formats of a table should be created by the same
+         *            {@link KNIMEDataFormatter}.
+         * @return The id of {@code format}.
+         */
+        int id(final CellFormat format) {
+            final int id = format.id();
+            if (id >= m_formats.size() || m_formats.get(id) != format) {
+                while (m_formats.size() <= id) {
+                    m_formats.add(null);
+                }
+                m_formats.set(id, format);
+            }
+            return id;
+        }
+
+        /**
+         * @param id An id returned by {@link #id(CellFormat)}.
+         * @return The {@link CellFormat} belonging to {@code id}.
+         */
+        CellFormat format(final int id) {
+            return m_formats.get(id);
+        }
+
+        /**
+         * @param value A non-{@code null} {@link String}.
+         * @return The id of {@code value}.
+         */
+        int id(final String value) {
+            if (m_ids == null) {
+                m_ids = new HashMap<>();
+                for (int i = 0; i < m_values.size(); i++) {
+                    m_ids.put(m_values.get(i), i);
+                }
+            }
+            final Integer id = m_ids.get(value);
+            if (id != null) {
+                return id.intValue();
+            }
+            final int newId = m_values.size();
+            m_values.add(value);
+            m_ids.put(value, newId);
+            return newId;
+        }
+
+        /**
+         * @param id An id returned by {@link #id(String)}.
+         * @return The {@link String} belonging to {@code id}.
+         */
+        String get(final int id) {
+            return m_values.get(id);
+        }
+
+        /**
+         * Releases the lookup structures, should be called when no more values are added (adding is still possible,
+         * but slower for the first time).
+         */
+        void seal() {
+            m_ids = null;
+            m_values.trimToSize();
+        }
+
+        /**
+         * @return The estimated heap size of the stored {@link String}s in bytes.
+         */
+        long estimatedSize() {
+            long size = 0;
+            for (final String value : m_values) {
+                // object headers, fields and the characters
+                size += 40 + 2L * value.length();
+            }
+            return size;
+        }
+
+        /**
+         * Writes the {@link String}s and the {@link CellFormat}s (their index and format string).
+         *
+         * @param out The output.
+         * @throws IOException Writing failed.
+         */
+        void write(final DataOutput out) throws IOException {
+            out.writeInt(m_values.size());
+            for (final String value : m_values) {
+                writeString(out, value);
+            }
+            out.writeInt(m_formats.size());
+            for (final CellFormat format : m_formats) {
+                out.writeBoolean(format != null);
+                if (format != null) {
+                    out.writeInt(format.formatIndex());
+                    writeString(out, format.formatString());
+                }
+            }
+        }
+
+        /**
+         * Reads the values written by {@link #write(DataOutput)} into this (empty) dictionary and seals it. The
+         * {@link CellFormat}s are recreated by {@code formatter} at their original positions, so the ids stored in
+         * the columns stay valid.
+         *
+         * @param in The input.
+         * @param formatter The formatter to create the {@link CellFormat}s.
+         * @throws IOException Reading failed.
+         */
+        void read(final DataInput in, final KNIMEDataFormatter formatter) throws IOException {
+            final int valueCount = in.readInt();
+            m_values.ensureCapacity(valueCount);
+            for (int i = 0; i < valueCount; i++) {
+                m_values.add(readString(in));
+            }
+            final int formatCount = in.readInt();
+            for (int i = 0; i < formatCount; i++) {
+                m_formats.add(in.readBoolean() ? formatter.cellFormat(in.readInt(), readString(in)) : null);
+            }
+            seal();
+        }
+    }
+
+    /**
+     * The contents of {@link #CHUNK_SIZE} consecutive rows.
+     */
+    private static final class Chunk {
+        private final byte[] m_types = new byte[CHUNK_SIZE];
+
+        private final byte[] m_encodings = new byte[CHUNK_SIZE];
+
+        private final long[] m_values = new long[CHUNK_SIZE];
+
+        /** Allocated only when there is an original value (or a second format) to store. */
+        private int[] m_originals;
+
+        /** The format id of the rows without {@link #m_originals}, {@code -1} when none was added yet. */
+        private int m_format = -1;
+
+        /** The index of the chunk in its column. */
+        private final int m_index;
+
+        private Chunk(final int index) {
+            m_index = index;
+        }
+
+        /**
+         * @return The originals, allocated (with the format of the chunk) if necessary.
+         */
+        private int[] originals() {
+            if (m_originals == null) {
+                m_originals = new int[CHUNK_SIZE];
+                Arrays.fill(m_originals, m_format);
+            }
+            return m_originals;
+        }
+
+        /**
+         * Writes the first {@code length} rows column-wise (types, encodings, values, then the format ids).
+         */
+        private void write(final DataOutput out, final int length) throws IOException {
+            out.write(m_types, 0, length);
+            out.write(m_encodings, 0, length);
+            for (int i = 0; i < length; i++) {
+                out.writeLong(m_values[i]);
+            }
+            out.writeInt(m_format);
+            out.writeBoolean(m_originals != null);
+            if (m_originals != null) {
+                for (int i = 0; i < length; i++) {
+                    out.writeInt(m_originals[i]);
+                }
+            }
+        }
+
+        /**
+         * Reads the first {@code length} rows written by {@link #write(DataOutput, int)}.
+         */
+        private void read(final DataInput in, final int length) throws IOException {
+            in.readFully(m_types, 0, length);
+            in.readFully(m_encodings, 0, length);
+            for (int i = 0; i < length; i++) {
+                m_values[i] = in.readLong();
+            }
+            m_format = in.readInt();
+            if (in.readBoolean()) {
+                m_originals = new int[CHUNK_SIZE];
+                for (int i = 0; i < length; i++) {
+                    m_originals[i] = in.readInt();
+                }
+            }
+        }
+    }
+
+    private final Dictionary m_dictionary;
+
+    /** The chunks in memory, {@code null} for the empty and the spilled ones. */
+    private Chunk[] m_chunks = new Chunk[1];
+
+    /** The positions of the spilled chunks in {@link #m_spillFile}, {@code -1} for the others. */
+    private long[] m_spillPositions = {-1L};
+
+    /** The encoded lengths of the spilled chunks. */
+    private int[] m_spillLengths = new int[1];
+
+    private ChunkSpillFile m_spillFile;
+
+    /** The chunks before this index are complete and can be spilled. (Guarded by {@code this}.) */
+    private int m_completeChunks;
+
+    /** The last chunk read back from {@link #m_spillFile}. */
+    private volatile Chunk m_pagedIn;
+
+    private int m_size;
+
+    /** The first rows of the runs of consecutive rows with the same type (empty rows are {@code MISSING}). */
+    private int[] m_runStarts = new int[1];
+
+    /** The ordinals of the {@link ActualDataType}s of the runs. */
+    private byte[] m_runTypes = new byte[1];
+
+    private int m_runs;
+
+    /**
+     * @param dictionary The {@link Dictionary} to store the {@link String}s.
+     */
+    ContentColumn(final Dictionary dictionary) {
+        m_dictionary = dictionary;
+    }
+
+    /**
+     * @return The number of rows in this column (the index of the last added content + 1).
+     */
+    int size() {
+        return m_size;
+    }
+
+    /**
+     * Appends {@code content} at {@code rowIndex}, the rows between the last added content and {@code rowIndex} are
+     * empty. In case {@code rowIndex} is before the end of the column, the content is appended at the end.
+     *
+     * @param rowIndex The {@code 0}-based row index.
+     * @param content The non-{@code null} {@link Content}.
+     */
+    void add(final int rowIndex, final Content content) {
+        final int row = Math.max(rowIndex, m_size);
+        final Chunk chunk = lastChunk(row >>> CHUNK_BITS);
+        final int pos = row & CHUNK_MASK;
+        final ActualDataType type = content.type();
+        chunk.m_types[pos] = (byte)(type.ordinal() + 1);
+        if (row > m_size) {
+            addRun(m_size, ActualDataType.MISSING);
+        }
+        addRun(row, type);
+
+        byte rendering = content.rendering();
+        final boolean textValue = rendering == Content.TEXT;
+        final long value;
+        final String valueAsString;
+        if (textValue) {
+            valueAsString = content.valueAsString();
+            if (valueAsString == null) {
+                value = NULL_ID;
+            } else {
+                final byte numberRendering =
+                    ActualDataType.isNumber(type) ? numberRendering(valueAsString) : Content.TEXT;
+                final long epoch = ActualDataType.isDate(type) ? encodeDate(valueAsString) : Long.MIN_VALUE;
+                if (numberRendering == Content.DOUBLE) {
+                    rendering = numberRendering;
+                    value = Double.doubleToRawLongBits(Double.parseDouble(valueAsString));
+                } else if (numberRendering == Content.LONG) {
+                    rendering = numberRendering;
+                    value = Long.parseLong(valueAsString);
+                } else if (epoch != Long.MIN_VALUE) {
+                    rendering = valueAsString.length() == 10 ? Content.DATE : Content.DATE_TIME;
+                    value = epoch;
+                } else {
+                    value = m_dictionary.id(valueAsString);
+                }
+            }
+        } else {
+            valueAsString = null;
+            value = rendering == Content.DOUBLE ? Double.doubleToRawLongBits(content.number())
+                : (long)content.number();
+        }
+        chunk.m_values[pos] = value;
+
+        byte originalRendering = content.originalRendering();
+        if (originalRendering == Content.ORIGINAL_TEXT) {
+            final String original = content.originalValue();
+            if (textValue && Objects.equals(original, valueAsString)) {
+                originalRendering = Content.ORIGINAL_SAME;
+            } else if (original != null && isLongRendering(rendering, value, original)) {
+                originalRendering = Content.ORIGINAL_LONG;
+            } else {
+                chunk.originals()[pos] = original == null ? (int)NULL_ID : m_dictionary.id(original);
+            }
+        } else if (originalRendering == Content.ORIGINAL_FORMAT) {
+            final int formatId = m_dictionary.id(content.format());
+            if (chunk.m_originals != null) {
+                chunk.m_originals[pos] = formatId;
+            } else if (chunk.m_format < 0) {
+                chunk.m_format = formatId;
+            } else if (chunk.m_format != formatId) {
+                chunk.originals()[pos] = formatId;
+            }
+        }
+        chunk.m_encodings[pos] = (byte)(rendering | (originalRendering << ORIGINAL_SHIFT));
+        m_size = row + 1;
+    }
+
+    /**
+     * @param row The {@code 0}-based row index.
+     * @return The {@link ActualDataType} of the content in {@code row}, or {@code null} if there is no content.
+     */
+    ActualDataType type(final int row) {
+        if (row >= m_size) {
+            return null;
+        }
+        final Chunk chunk = chunk(row >>> CHUNK_BITS);
+        final byte type = chunk == null ? 0 : chunk.m_types[row & CHUNK_MASK];
+        return type == 0 ? null : TYPES[type - 1];
+    }
+
+    /**
+     * @param row The {@code 0}-based row index.
+     * @return The (newly created) {@link Content} in {@code row}, or {@code null} if there is no content.
+     */
+    Content get(final int row) {
+        if (row >= m_size) {
+            return null;
+        }
+        final Chunk chunk = chunk(row >>> CHUNK_BITS);
+        final int pos = row & CHUNK_MASK;
+        final byte type = chunk == null ? 0 : chunk.m_types[pos];
+        if (type == 0) {
+            return null;
+        }
+        final byte encoding = chunk.m_encodings[pos];
+        final byte rendering = (byte)(encoding & RENDERING_MASK);
+        final byte originalRendering = (byte)(encoding >>> ORIGINAL_SHIFT);
+        final long value = chunk.m_values[pos];
+        final String original;
+        if (originalRendering == Content.ORIGINAL_TEXT) {
+            final int id = chunk.m_originals[pos];
+            original = id < 0 ? null : m_dictionary.get(id);
+        } else {
+            original = null;
+        }
+        if (rendering == Content.TEXT) {
+            final String valueAsString = value < 0 ? null : m_dictionary.get((int)value);
+            return new Content(valueAsString,
+                originalRendering == Content.ORIGINAL_SAME ? valueAsString : original, TYPES[type - 1]);
+        }
+        final double number = rendering == Content.DOUBLE ? Double.longBitsToDouble(value) : value;
+        if (originalRendering == Content.ORIGINAL_FORMAT) {
+            final int formatId = chunk.m_originals == null ? chunk.m_format : chunk.m_originals[pos];
+            return new Content(number, rendering, m_dictionary.format(formatId), TYPES[type - 1]);
+        }
+        return new Content(number, rendering, original, originalRendering, TYPES[type - 1]);
+    }
+
+    /**
+     * Continues the last run with the rows from {@code row} if it has the same type, otherwise starts a new one.
+     *
+     * @param row The first row with {@code type}, the next one after the last run.
+     * @param type The type of the rows.
+     */
+    private void addRun(final int row, final ActualDataType type) {
+        final byte ordinal = (byte)type.ordinal();
+        if (m_runs > 0 && m_runTypes[m_runs - 1] == ordinal) {
+            return;
+        }
+        if (m_runs == m_runStarts.length) {
+            m_runStarts = Arrays.copyOf(m_runStarts, m_runs * 2);
+            m_runTypes = Arrays.copyOf(m_runTypes, m_runs * 2);
+        }
+        m_runStarts[m_runs] = row;
+        m_runTypes[m_runs] = ordinal;
+        m_runs++;
+    }
+
+    /**
+     * Recomputes the runs from the types of the rows (after reading the chunks).
+     */
+    private void computeRuns() {
+        m_runs = 0;
+        for (int row = 0; row < m_size; row++) {
+            final ActualDataType type = type(row);
+            addRun(row, type == null ? ActualDataType.MISSING : type);
+        }
+    }
+
+    /**
+     * @return The runs of consecutive rows with the same type (empty rows are {@link ActualDataType#MISSING}) by their
+     *         first row, the values are the type and the last row of the run.
+     */
+    SortedMap<Integer, Pair<ActualDataType, Integer>> typeRuns() {
+        final SortedMap<Integer, Pair<ActualDataType, Integer>> runs = new TreeMap<>();
+        for (int i = 0; i < m_runs; i++) {
+            final int end = i + 1 < m_runs ? m_runStarts[i + 1] - 1 : m_size - 1;
+            runs.put(m_runStarts[i], Pair.create(TYPES[m_runTypes[i]], end));
+        }
+        return runs;
+    }
+
+    /**
+     * @return The estimated heap size of the chunks in memory (without the {@link Dictionary}) in bytes.
+     */
+    synchronized long estimatedSize() {
+        long size = m_runStarts.length * (long)(Integer.BYTES + Byte.BYTES);
+        for (final Chunk chunk : m_chunks) {
+            if (chunk != null) {
+                // types, encodings and values
+                size += CHUNK_SIZE * (Byte.BYTES + Byte.BYTES + Long.BYTES);
+                if (chunk.m_originals != null) {
+                    size += CHUNK_SIZE * Integer.BYTES;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Appends the complete chunks in memory to {@code file} and releases them. They are read back one at a time on
+     * access. The last chunk, which may still be added to, is kept.
+     *
+     * @param file The spill file of the table of this column, the same for all calls.
+     * @return The number of spilled chunks.
+     * @throws IOException Writing failed, the chunks not yet written are kept in memory.
+     */
+    synchronized int spill(final ChunkSpillFile file) throws IOException {
+        m_spillFile = file;
+        int spilled = 0;
+        for (int index = 0; index < m_completeChunks; index++) {
+            final Chunk chunk = m_chunks[index];
+            if (chunk != null) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE * Long.BYTES);
+                try (final DataOutputStream out = new DataOutputStream(bytes)) {
+                    chunk.write(out, CHUNK_SIZE);
+                }
+                m_spillPositions[index] = file.append(bytes.toByteArray());
+                m_spillLengths[index] = bytes.size();
+                m_chunks[index] = null;
+                spilled++;
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * @param index The index of a chunk.
+     * @return The chunk, read back when spilled, or {@code null} if it is empty.
+     */
+    private Chunk chunk(final int index) {
+        final Chunk chunk = m_chunks[index];
+        if (chunk != null) {
+            return chunk;
+        }
+        final Chunk pagedIn = m_pagedIn;
+        if (pagedIn != null && pagedIn.m_index == index) {
+            return pagedIn;
+        }
+        final long position;
+        final int length;
+        synchronized (this) {
+            if (m_chunks[index] != null || m_spillPositions[index] < 0) {
+                return m_chunks[index];
+            }
+            position = m_spillPositions[index];
+            length = m_spillLengths[index];
+        }
+        final Chunk read = new Chunk(index);
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(m_spillFile.read(position,
+            length)))) {
+            read.read(in, CHUNK_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the spilled contents: " + e.getMessage(), e);
+        }
+        m_pagedIn = read;
+        return read;
+    }
+
+    /**
+     * @param index The index of the chunk containing the row to be added, not before the last chunk.
+     * @return The last chunk, allocated if necessary.
+     */
+    private Chunk lastChunk(final int index) {
+        if (index < m_chunks.length && m_chunks[index] != null) {
+            return m_chunks[index];
+        }
+        // the chunks before the new one are complete from now on, publish them for spilling
+        synchronized (this) {
+            if (index >= m_chunks.length) {
+                final int oldLength = m_chunks.length;
+                final int newLength = Math.max(index + 1, oldLength * 2);
+                m_chunks = Arrays.copyOf(m_chunks, newLength);
+                m_spillPositions = Arrays.copyOf(m_spillPositions, newLength);
+                Arrays.fill(m_spillPositions, oldLength, newLength, -1L);
+                m_spillLengths = Arrays.copyOf(m_spillLengths, newLength);
+            }
+            // the chunks between the previous and the new one stay empty (null), as there are no contents
+            m_chunks[index] = new Chunk(index);
+            m_completeChunks = index;
+            return m_chunks[index];
+        }
+    }
+
+    /**
+     * Writes the column chunk by chunk, each chunk column-wise (types, encodings, values, then the format ids).
+     *
+     * @param out The output.
+     * @throws IOException Writing failed.
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(m_size);
+        final int chunks = m_size == 0 ? 0 : ((m_size - 1) >>> CHUNK_BITS) + 1;
+        for (int index = 0; index < chunks; index++) {
+            final Chunk chunk = chunk(index);
+            out.writeBoolean(chunk != null);
+            if (chunk != null) {
+                chunk.write(out, Math.min(CHUNK_SIZE, m_size - (index << CHUNK_BITS)));
+            }
+        }
+    }
+
+    /**
+     * @param in The input with a column written by {@link #write(DataOutput)}.
+     * @param dictionary The (already read) {@link Dictionary} of the column.
+     * @return The read column.
+     * @throws IOException Reading failed.
+     */
+    static ContentColumn read(final DataInput in, final Dictionary dictionary) throws IOException {
+        final ContentColumn column = new ContentColumn(dictionary);
+        final int size = in.readInt();
+        final int chunks = size == 0 ? 0 : ((size - 1) >>> CHUNK_BITS) + 1;
+        for (int index = 0; index < chunks; index++) {
+            if (in.readBoolean()) {
+                column.lastChunk(index).read(in, Math.min(CHUNK_SIZE, size - (index << CHUNK_BITS)));
+            }
+        }
+        column.m_size = size;
+        column.computeRuns();
+        return column;
+    }
+
+    /**
+     * Writes {@code value} as {@code UTF-8} (unlike {@link DataOutput#writeUTF(String)} not limited in length).
+     *
+     * @param out The output.
+     * @param value A {@link String}, can be {@code null}.
+     * @throws IOException Writing failed.
+     */
+    static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @param in The input.
+     * @return The {@link String} written by {@link #writeString(DataOutput, String)}.
+     * @throws IOException Reading failed.
+     */
+    static String readString(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param value A {@link String} representing a number.
+     * @return {@link Content#LONG} or {@link Content#DOUBLE} if {@code value} can be restored from a {@code long} or
+     *         {@code double}, otherwise {@link Content#TEXT}.
+     */
+    private static byte numberRendering(final String value) {
+        final int length = value.length();
+        if (length == 0 || length > 24) {
+            return Content.TEXT;
+        }
+        boolean plain = true;
+        for (int i = 0; i < length && plain; i++) {
+            final char c = value.charAt(i);
+            plain = (c >= '0' && c <= '9') || (c == '-' && i == 0);
+        }
+        try {
+            if (plain) {
+                final long l = Long.parseLong(value);
+                if (Math.abs(l) < (1L << 53) && Long.toString(l).equals(value)) {
+                    return Content.LONG;
+                }
+            }
+            if (Double.toString(Double.parseDouble(value)).equals(value)) {
+                return Content.DOUBLE;
+            }
+        } catch (NumberFormatException e) {
+            // not a number, stored as text
+        }
+        return Content.TEXT;
+    }
+
+    /**
+     * @param value A {@link String} possibly representing a date ({@code yyyy-MM-dd}) or date and time
+     *            ({@code yyyy-MM-dd'T'HH:mm:ss}).
+     * @return The epoch day or second, or {@link Long#MIN_VALUE} if it cannot be restored from those.
+     */
+    private static long encodeDate(final String value) {
+        try {
+            if (value.length() == 10) {
+                final long epochDay = LocalDate.parse(value).toEpochDay();
+                return Content.render(epochDay, Content.DATE).equals(value) ? epochDay : Long.MIN_VALUE;
+            }
+            if (value.length() == 19) {
+                final long epochSecond = LocalDateTime.parse(value).toEpochSecond(ZoneOffset.UTC);
+                return Content.render(epochSecond, Content.DATE_TIME).equals(value) ? epochSecond : Long.MIN_VALUE;
+            }
+        } catch (DateTimeParseException e) {
+            // not a standard date, stored as text
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static boolean isLongRendering(final byte rendering, final long value, final String original) {
+        final double number;
+        if (rendering == Content.DOUBLE) {
+            number = Double.longBitsToDouble(value);
+        } else if (rendering == Content.LONG) {
+            number = value;
+        } else {
+            return false;
+        }
+        return number == (long)number && Math.abs(number) < (1L << 53)
+            && Long.toString((long)number).equals(original);
+    }
+}
@@ -50,22 +50,39 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
-import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.knime.base.node.io.filehandling.FilesToDataTableReader;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTable;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataTableSpecCreator;
+import org.knime.core.data.RowIterator;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.StringCell;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
@@ -100,6 +117,169 @@ class ExcelTableReader implements FilesToDataTableReader {
 
     private final ValueUniquifier m_uniquifier = new ValueUniquifier();
 
+    /** The spec the rows of xlsx files are streamed with, known in advance or inferred from the first rows. */
+    private DataTableSpec m_streamingSpec;
+
+    /** The name of the column containing the sheet names when all (matching) sheets are read. */
+    static final String SHEET_COLUMN = "Sheet";
+
+    /** All files to read, set when the spec is created. */
+    private List<Path> m_paths = Collections.emptyList();
+
+    /** The files already being parsed. */
+    private final Map<Path, PendingTable> m_pending = new HashMap<>();
+
+    /**
+     * A workbook being parsed with its (still open) stream, the tables restored from the {@link ParseCache}, or the
+     * lease of the tables shared by the {@link SheetCache}.
+     */
+    private static final class PendingTable implements SheetCache.Load {
+        /** The stream of the parsed workbook, {@code null} for cached or shared tables. */
+        private final InputStream m_stream;
+
+        /** The single sheet, {@code null} when all (matching) sheets are read. */
+        private final Future<CachedExcelTable> m_table;
+
+        /** The sheets, {@code null} when a single sheet is read. */
+        private final Future<List<CachedExcelTable>> m_sheets;
+
+        /** The key to store the parsed tables with, {@code null} when they are not stored. */
+        private final ParseCache.Key m_cacheKey;
+
+        /** The lease of the shared tables, {@code null} when they are not shared. */
+        private final SheetCache.Lease m_lease;
+
+        private PendingTable(final InputStream stream, final Future<CachedExcelTable> table,
+            final Future<List<CachedExcelTable>> sheets, final ParseCache.Key cacheKey,
+            final SheetCache.Lease lease) {
+            m_stream = stream;
+            m_table = table;
+            m_sheets = sheets;
+            m_cacheKey = cacheKey;
+            m_lease = lease;
+        }
+
+        static PendingTable ofTable(final InputStream stream, final Future<CachedExcelTable> table,
+            final ParseCache.Key cacheKey) {
+            return new PendingTable(stream, table, null, cacheKey, null);
+        }
+
+        static PendingTable ofSheets(final InputStream stream, final Future<List<CachedExcelTable>> sheets,
+            final ParseCache.Key cacheKey) {
+            return new PendingTable(stream, null, sheets, cacheKey, null);
+        }
+
+        static PendingTable ofCached(final List<CachedExcelTable> tables) {
+            return new PendingTable(null, null, CompletableFuture.completedFuture(tables), null, null);
+        }
+
+        static PendingTable ofLease(final SheetCache.Lease lease) {
+            return new PendingTable(null, null, null, null, lease);
+        }
+
+        /**
+         * @return The tables of the read sheets.
+         */
+        @Override
+        public List<CachedExcelTable> get() throws InterruptedException, ExecutionException {
+            if (m_lease != null) {
+                return m_lease.get();
+            }
+            final List<CachedExcelTable> tables =
+                m_sheets != null ? m_sheets.get() : Collections.singletonList(m_table.get());
+            if (m_cacheKey != null) {
+                ParseCache.getInstance().put(m_cacheKey, tables);
+            }
+            return tables;
+        }
+
+        @Override
+        public void cancel() {
+            if (m_lease != null) {
+                // the parse is only cancelled when no other node uses it
+                m_lease.close();
+                return;
+            }
+            (m_sheets != null ? m_sheets : m_table).cancel(true);
+            try {
+                close();
+            } catch (IOException e) {
+                // the result is not used anyway
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            if (m_lease != null) {
+                m_lease.close();
+            } else if (m_stream != null) {
+                m_stream.close();
+            }
+        }
+    }
+
+    /**
+     * The concatenation of the tables of the sheets of a workbook with the sheet names in an additional column. The
+     * tables of the sheets are iterated one after the other, so their row keys continue the previous ones.
+     */
+    private static final class SheetsTable implements DataTable {
+        private final DataTableSpec m_spec;
+
+        private final List<DataTable> m_tables;
+
+        private final List<DataCell> m_sheetNames;
+
+        SheetsTable(final DataTableSpec spec, final List<DataTable> tables, final List<DataCell> sheetNames) {
+            m_spec = spec;
+            m_tables = tables;
+            m_sheetNames = sheetNames;
+        }
+
+        @Override
+        public DataTableSpec getDataTableSpec() {
+            return m_spec;
+        }
+
+        @Override
+        public RowIterator iterator() {
+            return new RowIterator() {
+                private int m_index = -1;
+
+                private RowIterator m_current;
+
+                @Override
+                public boolean hasNext() {
+                    while (m_current == null || !m_current.hasNext()) {
+                        if (++m_index >= m_tables.size()) {
+                            m_index = m_tables.size();
+                            return false;
+                        }
+                        // created lazily, so the row keys continue after the rows of the previous sheets
+                        m_current = m_tables.get(m_index).iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public DataRow next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final DataRow row = m_current.next();
+                    final DataCell[] cells = new DataCell[row.getNumCells() + 1];
+                    for (int i = 0; i < row.getNumCells(); i++) {
+                        cells[i] = row.getCell(i);
+                    }
+                    cells[cells.length - 1] = m_sheetNames.get(m_index);
+                    return new DefaultRow(row.getKey(), cells);
+                }
+            };
+        }
+    }
+
     /**
      * Creates a new instance of {@code ExcelTableReader}.
      *
@@ -107,35 +287,218 @@ class ExcelTableReader implements FilesToDataTableReader {
      * @throws InvalidSettingsException
      */
     ExcelTableReader(final XLSUserSettings settings) throws InvalidSettingsException {
+        this(settings, null);
+    }
+
+    /**
+     * Creates a new instance of {@code ExcelTableReader} that pushes the rows of xlsx files to the output while they
+     * are parsed (when the settings allow it).
+     *
+     * @param settings {@code XLSUserSettings} containing all necessary information how to process the files
+     * @param streamingSpec The already known spec of the result (can be {@code null}, in that case the sheets are
+     *            always read completely before their rows are pushed)
+     * @throws InvalidSettingsException
+     */
+    ExcelTableReader(final XLSUserSettings settings, final DataTableSpec streamingSpec)
+        throws InvalidSettingsException {
         m_settings = XLSUserSettings.clone(settings);
         m_sheetName = m_settings.getSheetName();
+        m_streamingSpec = streamingSpec;
     }
 
     private DataTable createDataTable(final Path path, final ExecutionMonitor parseExec)
         throws IOException, InterruptedException, ExecutionException, InvalidSettingsException, SAXException,
         OpenXML4JException, ParserConfigurationException {
-        // Validate and set sheet name based on first path handled by this instance of ExcelTableReader
-        if (!m_sheetNameSet) {
-            m_sheetName = settings(path, m_settings, m_sheetName);
-            m_settings.setSheetName(m_sheetName);
-            m_sheetNameSet = true;
-        }
-        try (final InputStream is = Files.newInputStream(path)) {
-            final CachedExcelTable table = isXlsx(path) && !m_settings.isReevaluateFormulae()
-                ? CachedExcelTable.fillCacheFromXlsxStreaming(path, is, m_sheetName, Locale.ENGLISH, parseExec, null)
-                    .get()
-                : CachedExcelTable.fillCacheFromDOM(path, is, m_sheetName, Locale.ENGLISH,
-                    m_settings.isReevaluateFormulae(), parseExec, null).get();
-
-            final DataTable dt = table.createDataTable(m_settings, null, m_curRow, m_totalRows, m_uniquifier);
+        final PendingTable pending = m_pending.containsKey(path) ? m_pending.remove(path) : parse(path, parseExec);
+        try {
+            if (m_sheetNameSet || m_settings.isReadAllSheets()) {
+                readAhead(path, parseExec);
+            }
+            final List<CachedExcelTable> tables = pending.get();
+            if (!m_sheetNameSet && !m_settings.isReadAllSheets()) {
+                // the first file is parsed with the sheet resolved on its already opened workbook
+                setSheetName(tables.get(0).sheetName());
+                readAhead(path, parseExec);
+            }
+
+            final DataTable dt = m_settings.isReadAllSheets() ? createSheetsDataTable(path, tables)
+                : tables.get(0).createDataTable(m_settings, null, m_curRow, m_totalRows, m_uniquifier);
             if (!m_processedTableFromSpecCreation && (m_firstTable == null)) {
                 m_firstTable = dt;
             }
             validateTableSpecs(path, dt);
-            m_lastNoOfRows = table.lastRow();
+            m_lastNoOfRows = 0;
+            for (final CachedExcelTable table : tables) {
+                m_lastNoOfRows += table.lastRow();
+            }
             m_totalRows += m_lastNoOfRows;
             return dt;
+        } finally {
+            pending.close();
+        }
+    }
+
+    /**
+     * Creates the concatenation of the sheets' tables, their structure has to be the same.
+     */
+    private DataTable createSheetsDataTable(final Path path, final List<CachedExcelTable> tables)
+        throws InvalidSettingsException {
+        final List<DataTable> sheetTables = new ArrayList<>(tables.size());
+        final List<DataCell> sheetNames = new ArrayList<>(tables.size());
+        DataTableSpec sheetSpec = null;
+        long previousRows = m_totalRows;
+        for (final CachedExcelTable table : tables) {
+            final DataTable dt =
+                table.createDataTable(m_settings, null, () -> m_curRow, previousRows, m_uniquifier);
+            if (sheetSpec == null) {
+                sheetSpec = dt.getDataTableSpec();
+            } else if (!dt.getDataTableSpec().equalStructure(sheetSpec)) {
+                throw new RuntimeException("Sheet '" + table.sheetName() + "' of file '"
+                    + path.getFileName().toString() + "' has different structure than the previously read sheet(s)");
+            }
+            sheetTables.add(dt);
+            sheetNames.add(new StringCell(table.sheetName()));
+            previousRows += table.lastRow();
+        }
+        final Set<String> columnNames = new HashSet<>(Arrays.asList(sheetSpec.getColumnNames()));
+        final DataTableSpec spec = new DataTableSpecCreator(sheetSpec).addColumns(
+            new DataColumnSpecCreator(POIUtils.getUniqueName(SHEET_COLUMN, columnNames), StringCell.TYPE).createSpec())
+            .createSpec();
+        return new SheetsTable(spec, sheetTables, sheetNames);
+    }
+
+    /**
+     * Starts parsing the workbook on the thread pool, or acquires its tables shared by the {@link SheetCache}.
+     */
+    private PendingTable parse(final Path path, final ExecutionMonitor parseExec) throws IOException {
+        // null reads the first sheet with data
+        final String sheet = m_sheetNameSet || !isFirstSheet(m_sheetName) ? m_sheetName : null;
+        final String sheets =
+            m_settings.isReadAllSheets() ? "pattern: " + m_settings.getSheetNamePattern() : "sheet: " + sheet;
+        final SheetCache.Key sharedKey = m_settings.isShareParsedSheets()
+            ? SheetCache.Key.of(path, sheets, m_settings.isReevaluateFormulae(), Locale.ENGLISH) : null;
+        if (sharedKey == null) {
+            return parse(path, sheet, sheets, sheetRange(), m_settings.isUseParseCache(), parseExec);
+        }
+        try {
+            // the whole sheets are shared, so other nodes can use them with different row and column settings
+            return PendingTable.ofLease(SheetCache.getInstance().acquire(sharedKey, () -> {
+                try {
+                    return parse(path, sheet, sheets, SheetRange.ALL, m_settings.isUseParseCache(), parseExec);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Starts parsing the workbook on the thread pool, unless it is restored from the {@link ParseCache}.
+     *
+     * @param sheet The name of the single sheet, {@code null} for the first sheet with data.
+     * @param sheets The description of the read sheet(s) for the caches.
+     * @param range The part of the sheets to parse.
+     * @param useParseCache Whether the tables are looked up in and stored to the {@link ParseCache}.
+     */
+    private PendingTable parse(final Path path, final String sheet, final String sheets, final SheetRange range,
+        final boolean useParseCache, final ExecutionMonitor parseExec) throws IOException {
+        // without reevaluation the cached values are read from the event API of the formats
+        final boolean reevaluate = m_settings.isReevaluateFormulae();
+        final boolean xlsx = isXlsx(path);
+        final ParseCache.Key cacheKey = useParseCache ? ParseCache.Key.of(path, sheets, range,
+            reevaluate, Locale.ENGLISH, m_settings.isHashCachedContent()) : null;
+        if (cacheKey != null) {
+            final List<CachedExcelTable> cached = ParseCache.getInstance().get(cacheKey, Locale.ENGLISH);
+            if (cached != null) {
+                return PendingTable.ofCached(cached);
+            }
         }
+        final InputStream is = Files.newInputStream(path);
+        try {
+            if (m_settings.isReadAllSheets()) {
+                final Pattern pattern = Pattern.compile(m_settings.getSheetNamePattern());
+                return PendingTable.ofSheets(is, reevaluate
+                    ? CachedExcelTable.fillCacheFromDOMSheets(path, is, pattern, range, Locale.ENGLISH, true, parseExec)
+                    : xlsx
+                        ? CachedExcelTable.fillCacheFromXlsxSheets(path, is, pattern, range, Locale.ENGLISH, parseExec)
+                        : CachedExcelTable.fillCacheFromXlsSheets(path, is, pattern, range, Locale.ENGLISH, parseExec),
+                    cacheKey);
+            }
+            return PendingTable.ofTable(is, reevaluate
+                ? CachedExcelTable.fillCacheFromDOM(path, is, sheet, range, Locale.ENGLISH, true, parseExec, null)
+                : xlsx
+                    ? CachedExcelTable.fillCacheFromXlsxStreaming(path, is, sheet, range, Locale.ENGLISH, parseExec,
+                        null)
+                    : CachedExcelTable.fillCacheFromXls(path, is, sheet, range, Locale.ENGLISH, parseExec, null),
+                cacheKey);
+        } catch (RuntimeException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The part of the sheets needed for the result. The rows after the last selected one are still read when
+     *         the row keys of the following tables depend on the number of rows (the files might not be known yet).
+     */
+    private SheetRange sheetRange() {
+        final boolean rowKeysFromIndex = m_settings.isIndexSkipJumps() || m_settings.getHasRowHeaders();
+        return SheetRange.of(m_settings,
+            rowKeysFromIndex && (m_paths.size() != 1 || m_settings.isReadAllSheets()));
+    }
+
+    /**
+     * Starts parsing the files following {@code current}, so at most {@link XLSUserSettings#getReadAheadFiles()}
+     * files are parsed (and kept in memory) in advance. The tables are still created in the order of the files, so
+     * the row keys do not depend on which parse finishes first.
+     */
+    private void readAhead(final Path current, final ExecutionMonitor parseExec) throws IOException {
+        final int index = m_paths.indexOf(current);
+        if (index < 0) {
+            return;
+        }
+        final int last = Math.min(m_paths.size() - 1, index + m_settings.getReadAheadFiles());
+        for (int i = index + 1; i <= last; i++) {
+            final Path next = m_paths.get(i);
+            if (!m_pending.containsKey(next)) {
+                m_pending.put(next, parse(next, parseExec.createSilentSubProgress(0)));
+            }
+        }
+    }
+
+    /**
+     * Cancels the parsing of the files read ahead.
+     */
+    private void cancelReadAhead() {
+        for (final PendingTable pending : m_pending.values()) {
+            pending.cancel();
+        }
+        m_pending.clear();
+    }
+
+    /**
+     * Validates and sets sheet name based on first path handled by this instance of ExcelTableReader.
+     */
+    private void initSheetName(final Path path)
+        throws IOException, SAXException, OpenXML4JException, ParserConfigurationException {
+        if (!m_sheetNameSet && !m_settings.isReadAllSheets()) {
+            setSheetName(settings(path, m_settings, m_sheetName));
+        }
+    }
+
+    private void setSheetName(final String sheetName) {
+        m_sheetName = sheetName;
+        m_settings.setSheetName(m_sheetName);
+        m_sheetNameSet = true;
+    }
+
+    /**
+     * @return Whether {@code sheetName} refers to the first sheet with data.
+     */
+    private static boolean isFirstSheet(final String sheetName) {
+        return (sheetName == null) || XLSReaderNodeDialog.FIRST_SHEET.equals(sheetName);
     }
 
     private void validateTableSpecs(final Path path, final DataTable table) {
@@ -153,7 +516,19 @@ private void validateTableSpecs(final Path path, final DataTable table) {
     @Override
     public void pushRowsToOutput(final Path path, final RowOutput output, final ExecutionContext exec)
         throws Exception {
-        if ((m_firstTable != null) && !m_processedTableFromSpecCreation) {
+        try {
+            pushFileRows(path, output, exec);
+        } catch (final Exception e) {
+            cancelReadAhead();
+            throw e;
+        }
+    }
+
+    private void pushFileRows(final Path path, final RowOutput output, final ExecutionContext exec)
+        throws Exception {
+        if (isStreamable(path)) {
+            streamRowsToOutput(path, output, exec);
+        } else if ((m_firstTable != null) && !m_processedTableFromSpecCreation) {
             exec.setMessage("Writing cashed rows to table");
             pushRows(output, m_firstTable, exec);
             exec.setMessage("Writing finished");
@@ -170,6 +545,32 @@ public void pushRowsToOutput(final Path path, final RowOutput output, final Exec
         }
     }
 
+    private boolean isStreamable(final Path path) {
+        return (m_streamingSpec != null) && (m_firstTable == null) && isXlsx(path)
+            && StreamingExcelTable.isApplicable(m_settings);
+    }
+
+    /**
+     * Pushes the rows to the output while the sheet is parsed, so only a bounded number of rows is kept in memory.
+     */
+    private void streamRowsToOutput(final Path path, final RowOutput output, final ExecutionContext exec)
+        throws Exception {
+        initSheetName(path);
+        try (final InputStream is = Files.newInputStream(path);
+                final StreamingExcelTable table = StreamingExcelTable.open(path, is, m_sheetName, sheetRange(),
+                    Locale.ENGLISH, exec, m_settings, m_streamingSpec)) {
+            exec.setMessage("Streaming rows to table");
+            for (final DataRow r : table.createDataTable(m_curRow, m_totalRows, m_uniquifier)) {
+                exec.checkCanceled();
+                output.push(r);
+                m_curRow += 1L;
+            }
+            exec.setMessage("Writing finished");
+            m_lastNoOfRows = table.lastRowIndex();
+            m_totalRows += m_lastNoOfRows;
+        }
+    }
+
     private void pushRows(final RowOutput output, final DataTable table, final ExecutionMonitor exec)
             throws InterruptedException, CanceledExecutionException {
         double counter = 0;
@@ -185,27 +586,71 @@ private void pushRows(final RowOutput output, final DataTable table, final Execu
     @Override
     public DataTableSpec createDataTableSpec(final List<Path> paths, final ExecutionMonitor exec)
             throws InvalidSettingsException {
+        m_paths = new ArrayList<>(paths);
         if (m_firstTable != null) {
             return m_firstTable.getDataTableSpec();
         }
+        if (m_streamingSpec != null) {
+            return m_streamingSpec;
+        }
         try {
+            if (isSampled(paths.get(0))) {
+                m_streamingSpec = createSampledSpec(paths.get(0), exec);
+                return m_streamingSpec;
+            }
             return createDataTable(paths.get(0), exec).getDataTableSpec();
         } catch (final Exception e) {
+            cancelReadAhead();
             throw new InvalidSettingsException(e);
         }
     }
 
+    /**
+     * @return Whether the column types are inferred from the first rows only, so the rows can be streamed right after
+     *         them.
+     */
+    private boolean isSampled(final Path path) {
+        return isSampling(m_settings) && isXlsx(path);
+    }
+
+    /**
+     * @param settings The user settings.
+     * @return Whether the column types of xlsx files are inferred from the first rows only, so the spec is only known
+     *         after reading them (the spec of the preview is inferred from all rows).
+     */
+    static boolean isSampling(final XLSUserSettings settings) {
+        return settings.getTypeInferenceRows() > 0 && StreamingExcelTable.isApplicable(settings);
+    }
+
+    /**
+     * Creates the spec from the first {@link XLSUserSettings#getTypeInferenceRows()} rows of the sheet. The parsed
+     * rows are neither stored in the {@link ParseCache} nor shared by the {@link SheetCache}, the rows are read again
+     * while they are streamed.
+     */
+    private DataTableSpec createSampledSpec(final Path path, final ExecutionMonitor exec) throws Exception {
+        initSheetName(path);
+        final PendingTable pending = parse(path, m_sheetName, "sheet: " + m_sheetName,
+            SheetRange.sample(m_settings, m_settings.getTypeInferenceRows()), false, exec);
+        try {
+            return pending.get().get(0).createDataTable(m_settings, null).getDataTableSpec();
+        } finally {
+            pending.close();
+        }
+    }
+
     private static String settings(final Path path, final XLSUserSettings settings, String sheetName)
         throws IOException, SAXException, OpenXML4JException, ParserConfigurationException {
 
-        if ((sheetName == null) || XLSReaderNodeDialog.FIRST_SHEET.equals(sheetName)) {
+        if (isFirstSheet(sheetName)) {
             if (isXlsx(path)) {
-                try (InputStream stream = Files.newInputStream(path); final OPCPackage pack = OPCPackage.open(stream)) {
-                    sheetName = POIUtils.getFirstSheetNameWithData(new XSSFReader(pack),
-                        new ReadOnlySharedStringsTable(pack, false));
+                final OPCPackage pack = POIUtils.openPackage(path);
+                try {
+                    sheetName = POIUtils.getFirstSheetNameWithData(new XSSFReader(pack));
+                } finally {
+                    pack.revert();
                 }
             } else {
-                sheetName = POIUtils.getFirstSheetNameWithData(POIUtils.getWorkbook(path));
+                sheetName = POIUtils.getFirstXlsSheetNameWithData(path);
             }
             settings.setSheetName(sheetName);
         }
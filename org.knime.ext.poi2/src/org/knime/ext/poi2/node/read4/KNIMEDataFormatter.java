@@ -48,14 +48,22 @@
  */
 package org.knime.ext.poi2.node.read4;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.LocaleUtil;
+import org.knime.ext.poi2.ExcelDates;
 
 /**
  * KNIME specific data formatter which encodes the type of the value in the first character of the formatted value.
@@ -64,8 +72,12 @@
  * @author Gabor Bakos
  */
 class KNIMEDataFormatter extends DataFormatter {
-    private final SimpleDateFormat m_dateAndTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss"),
-            m_dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    /** {@code yyyy-MM-dd} (years after 9999 without sign). */
+    private static final DateTimeFormatter DATE_FORMAT = new DateTimeFormatterBuilder()
+        .appendValue(ChronoField.YEAR, 4, 10, SignStyle.NORMAL).appendPattern("-MM-dd").toFormatter(Locale.ROOT);
+
+    private static final DateTimeFormatter DATE_AND_TIME_FORMAT = new DateTimeFormatterBuilder().append(DATE_FORMAT)
+        .appendPattern("'T'HH:mm:ss").toFormatter(Locale.ROOT);
 
     //Intentionally invalid UFT-16 encoding to avoid collision with valid UTF-16 Strings:
     //https://en.wikipedia.org/wiki/UTF-16
@@ -73,10 +85,8 @@ class KNIMEDataFormatter extends DataFormatter {
     static final String NUMBER_PREFIX = "\uDC73\uDC73";
     static final String BOOL_PREFIX = "\uDC45\uDC45";
 
-    private static final String TRUE = Boolean.toString(true).toUpperCase();
-    private static final String FALSE = Boolean.toString(false).toUpperCase();
-
-    private static final int SEC_PER_DAY = 24*3600;
+    static final String TRUE = Boolean.toString(true).toUpperCase();
+    static final String FALSE = Boolean.toString(false).toUpperCase();
 
     /**
      * The date format to be produced.
@@ -92,10 +102,116 @@ public enum DateFormat {
 
     private final DateFormat m_standardizeDate;
 
+    /** The locale given to the constructor, {@code null} for the default one. */
+    private final Locale m_locale;
+
+    /** The next id of a {@link CellFormat}, shared with the {@link #sibling() siblings}. */
+    private final AtomicInteger m_nextFormatId;
+
     private String m_lastOriginalFormattedValue;
 
     private final DateFormatCache m_dateFormatCache = new DateFormatCache();
 
+    private final Map<String, CellFormat> m_cellFormats = new HashMap<>();
+
+    /**
+     * A number format of the cells (index and format string of a style) bound to the {@link KNIMEDataFormatter} that
+     * created it, so the formatted values can be computed later.
+     */
+    static final class CellFormat {
+        private final KNIMEDataFormatter m_formatter;
+
+        private final int m_id;
+
+        private final int m_formatIndex;
+
+        private final String m_formatString;
+
+        private final boolean m_dateFormat;
+
+        private final boolean m_mayBeBoolean;
+
+        private CellFormat(final KNIMEDataFormatter formatter, final int id, final int formatIndex,
+            final String formatString) {
+            m_formatter = formatter;
+            m_id = id;
+            m_formatIndex = formatIndex;
+            m_formatString = formatString;
+            m_dateFormat = formatter.m_dateFormatCache.isDateFormat(formatIndex, formatString);
+            // TRUE/FALSE can only be the result of literal text in the format
+            m_mayBeBoolean = formatString.indexOf('T') >= 0 || formatString.indexOf('t') >= 0
+                || formatString.indexOf('F') >= 0 || formatString.indexOf('f') >= 0;
+        }
+
+        /**
+         * @return The {@code 0}-based id of the format, unique within the creating {@link KNIMEDataFormatter} and its
+         *         siblings.
+         */
+        int id() {
+            return m_id;
+        }
+
+        /**
+         * @return The index of the number format.
+         */
+        int formatIndex() {
+            return m_formatIndex;
+        }
+
+        /**
+         * @return The number format.
+         */
+        String formatString() {
+            return m_formatString;
+        }
+
+        /**
+         * @return Whether this is a date format.
+         */
+        boolean isDateFormat() {
+            return m_dateFormat;
+        }
+
+        /**
+         * @return Whether the formatted values might start with {@code TRUE} or {@code FALSE}.
+         */
+        boolean mayBeBoolean() {
+            return m_mayBeBoolean;
+        }
+
+        /**
+         * @param value A numeric cell value.
+         * @return {@code value} formatted as Excel shows it.
+         */
+        String format(final double value) {
+            return m_formatter.formatOriginal(value, m_formatIndex, m_formatString);
+        }
+
+        /**
+         * @param value A valid Excel date value (only meaningful for {@link #isDateFormat() date formats}).
+         * @return The date formatted according to the {@link DateFormat} of the formatter.
+         */
+        String formatDate(final double value) {
+            return m_formatter.formatDate(value, m_formatIndex, m_formatString);
+        }
+
+        /**
+         * @return Whether {@link #formatDate(double)} returns the standardized ISO dates, which can be computed from
+         *         the epoch day or second.
+         */
+        boolean isStandardizedDate() {
+            return m_formatter.m_standardizeDate == DateFormat.Standardized;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return m_formatIndex + ": " + m_formatString;
+        }
+    }
+
     /**
      * Consructs a data formatter with standardized date formatting and with default Locale.
      */
@@ -110,6 +226,8 @@ public enum DateFormat {
      */
     KNIMEDataFormatter(final DateFormat df) {
         m_standardizeDate = df;
+        m_locale = null;
+        m_nextFormatId = new AtomicInteger();
     }
 
     /**
@@ -126,8 +244,25 @@ public enum DateFormat {
      * @param dateFormat {@link DateFormat} to use.
      */
     protected KNIMEDataFormatter(final Locale locale, final DateFormat dateFormat) {
+        this(locale, dateFormat, new AtomicInteger());
+    }
+
+    private KNIMEDataFormatter(final Locale locale, final DateFormat dateFormat, final AtomicInteger nextFormatId) {
         super(locale);
         m_standardizeDate = dateFormat;
+        m_locale = locale;
+        m_nextFormatId = nextFormatId;
+    }
+
+    /**
+     * Creates a formatter for another thread filling the same table: it formats like this one, and the ids of the
+     * {@link CellFormat}s of both never collide (the same format gets different ids though).
+     *
+     * @return A new formatter with the settings of this one.
+     */
+    KNIMEDataFormatter sibling() {
+        return new KNIMEDataFormatter(m_locale == null ? LocaleUtil.getUserLocale() : m_locale, m_standardizeDate,
+            m_nextFormatId);
     }
 
     /**
@@ -142,11 +277,7 @@ public String formatRawCellContents(final double value, final int formatIndex, f
                 m_lastOriginalFormattedValue = DATE_PREFIX + orig;
                 switch (m_standardizeDate) {
                     case Standardized:
-                        Date date = getRoundedDate(value, use1904Windowing);
-                        if ((long)value == value) {
-                            return DATE_PREFIX + m_dateFormat.format(date);
-                        }
-                        return DATE_PREFIX + m_dateAndTimeFormat.format(date);
+                        return DATE_PREFIX + standardizedDate(value, use1904Windowing);
                     case ExcelFormat:
                         return m_lastOriginalFormattedValue;
                 }
@@ -160,14 +291,52 @@ public String formatRawCellContents(final double value, final int formatIndex, f
         return NUMBER_PREFIX + value;
     }
 
-    private static Date getRoundedDate(final double date, final boolean use1904Windowing) {
-        int wholeDays = (int)Math.floor(date);
-        double ms = date - wholeDays;
-        int millisecondsInDay = (int)Math.round(SEC_PER_DAY * ms) * 1000;
+    /**
+     * @param formatIndex The index of the number format.
+     * @param formatString The number format, not {@code null}.
+     * @return The (shared) {@link CellFormat} for the parameters.
+     */
+    synchronized CellFormat cellFormat(final int formatIndex, final String formatString) {
+        return m_cellFormats.computeIfAbsent(formatIndex + "\u0000" + formatString,
+            k -> new CellFormat(this, m_nextFormatId.getAndIncrement(), formatIndex, formatString));
+    }
+
+    /**
+     * Formats the value as Excel would do, without type prefix.
+     *
+     * @param value A numeric cell value.
+     * @param formatIndex The index of the number format.
+     * @param formatString The number format.
+     * @return The formatted value.
+     */
+    synchronized String formatOriginal(final double value, final int formatIndex, final String formatString) {
+        return super.formatRawCellContents(value, formatIndex, formatString, false);
+    }
+
+    /**
+     * @param value A valid Excel date value.
+     * @param formatIndex The index of the (date) number format.
+     * @param formatString The (date) number format.
+     * @return The date formatted according to the {@link DateFormat} of this formatter, without type prefix.
+     */
+    String formatDate(final double value, final int formatIndex, final String formatString) {
+        if (m_standardizeDate == DateFormat.ExcelFormat) {
+            return formatOriginal(value, formatIndex, formatString);
+        }
+        return standardizedDate(value, false);
+    }
 
-        Calendar calendar = new GregorianCalendar();
-        DateUtil.setCalendar(calendar, wholeDays, millisecondsInDay, use1904Windowing, false);
-        return calendar.getTime();
+    /**
+     * @param value A valid Excel date value.
+     * @param date1904 Whether the 1904 date system is used.
+     * @return The ISO date ({@code yyyy-MM-dd}) for whole days, otherwise the ISO date and time rounded to seconds.
+     */
+    private static String standardizedDate(final double value, final boolean date1904) {
+        final long epochSecond = ExcelDates.toEpochSecond(value, date1904);
+        if ((long)value == value) {
+            return DATE_FORMAT.format(LocalDate.ofEpochDay(Math.floorDiv(epochSecond, ExcelDates.SECONDS_PER_DAY)));
+        }
+        return DATE_AND_TIME_FORMAT.format(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
     }
 
     /**
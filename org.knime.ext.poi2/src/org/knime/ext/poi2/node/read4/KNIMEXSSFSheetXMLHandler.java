@@ -48,24 +48,33 @@
  */
 package org.knime.ext.poi2.node.read4;
 
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
 import java.util.Set;
 
-import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
-import org.apache.poi.xssf.model.CommentsTable;
 import org.apache.poi.xssf.model.StylesTable;
-import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.knime.core.node.NodeLogger;
+import org.knime.ext.poi2.ExcelDates;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * A slightly modified version of {@link XSSFSheetXMLHandler} which stores the last cell's type.
+ * A variant of {@link XSSFSheetXMLHandler} which reports the type of the cells and passes the numeric values without
+ * formatting them to {@link String}s. Comments, headers and footers are not reported.
  *
  * @author Gabor Bakos
+ * @see XlsxSheetParser
  */
-final class KNIMEXSSFSheetXMLHandler extends XSSFSheetXMLHandler {
+final class KNIMEXSSFSheetXMLHandler extends DefaultHandler {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(KNIMEXSSFSheetXMLHandler.class);
 
     /** Data type of the cell. */
     public enum DataType {
@@ -82,10 +91,25 @@ public enum DataType {
     }
 
     /**
-     * An extension of {@link SheetContentsHandler} that can provide type information of the next cell.
+     * Receives the rows and cells of a sheet, the cells are reported with their {@code 0}-based column index, the
+     * numeric values unformatted.
      * @see #nextCellType(DataType)
      */
-    interface KNIMESheetContentsHandler extends SheetContentsHandler {
+    interface KNIMESheetContentsHandler {
+        /**
+         * A row with the (zero based) row number has started.
+         *
+         * @param rowNum The {@code 0}-based row index.
+         */
+        void startRow(int rowNum);
+
+        /**
+         * A row with the (zero based) row number has ended.
+         *
+         * @param rowNum The {@code 0}-based row index.
+         */
+        void endRow(int rowNum);
+
         /**
          * The type of the next cell's type.
          *
@@ -93,6 +117,24 @@ interface KNIMESheetContentsHandler extends SheetContentsHandler {
          */
         void nextCellType(DataType type);
 
+        /**
+         * A non-numeric cell (or a numeric one without number format) was encountered.
+         *
+         * @param column The {@code 0}-based column index.
+         * @param formattedValue The value of the cell, can be {@code null}.
+         */
+        void cell(int column, String formattedValue);
+
+        /**
+         * A numeric cell (number, date or numeric formula result) with a number format was encountered.
+         *
+         * @param column The {@code 0}-based column index.
+         * @param value The raw value of the cell.
+         * @param format The number format of the cell.
+         * @param isDate Whether the format is a date format and {@code value} is a valid Excel date.
+         */
+        void numberCell(int column, double value, CellFormat format, boolean isDate);
+
         /**
          * Simple implementation of {@link KNIMESheetContentsHandler}.
          */
@@ -115,21 +157,6 @@ public void endRow(final int rowNum) {
                 //Do nothing
             }
 
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public abstract void cell(final String cellReference, final String formattedValue,
-                final XSSFComment comment);
-
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public void headerFooter(final String text, final boolean isHeader, final String tagName) {
-                //Do nothing
-            }
-
             /**
              * {@inheritDoc}
              */
@@ -141,100 +168,306 @@ public void nextCellType(final DataType type) {
         }
     }
 
-    private DataType m_nextDataType;
+    /**
+     * The {@link CellFormat}s of the cell styles of a workbook, looked up once per style.
+     */
+    static final class StyleFormats {
+        private final StylesTable m_styles;
 
-    private SheetContentsHandler m_output;
+        private final KNIMEDataFormatter m_formatter;
 
-    private final Set<Integer> m_hiddenColumns = new LinkedHashSet<>();
+        private final CellFormat[] m_formats;
 
-    /**
-     * @param styles The styles to use.
-     * @param strings The {@link String}s.
-     * @param sheetContentsHandler The sheet contents.
-     * @param dataFormatter Special {@link KNIMEDataFormatter}.
-     * @param formulasNotResults Results in formulae instead of their values (usually {@code false}).
-     * @see XSSFSheetXMLHandler#XSSFSheetXMLHandler(StylesTable, ReadOnlySharedStringsTable, SheetContentsHandler,
-     *      boolean)
-     */
-    KNIMEXSSFSheetXMLHandler(final StylesTable styles, final ReadOnlySharedStringsTable strings,
-        final SheetContentsHandler sheetContentsHandler, final KNIMEDataFormatter dataFormatter,
-        final boolean formulasNotResults) {
-        super(styles, strings, sheetContentsHandler, dataFormatter, formulasNotResults);
-        m_output = sheetContentsHandler;
+        private final boolean m_date1904;
+
+        /**
+         * @param styles The styles of the workbook (can be {@code null}).
+         * @param formatter The formatter creating the {@link CellFormat}s.
+         * @param date1904 Whether the workbook uses the 1904 date system.
+         */
+        StyleFormats(final StylesTable styles, final KNIMEDataFormatter formatter, final boolean date1904) {
+            m_styles = styles;
+            m_formatter = formatter;
+            m_formats = new CellFormat[styles == null ? 0 : styles.getNumCellStyles()];
+            m_date1904 = date1904;
+        }
+
+        /**
+         * @return Whether the workbook uses the 1904 date system.
+         */
+        boolean isDate1904() {
+            return m_date1904;
+        }
+
+        /**
+         * @param styleIndex The style index of the cell, negative if the cell has no style attribute.
+         * @return The number format of the style, or {@code null} if there is no style or format.
+         */
+        CellFormat format(final int styleIndex) {
+            if (m_styles == null || (styleIndex < 0 && m_formats.length == 0)) {
+                return null;
+            }
+            final int index = Math.max(styleIndex, 0);
+            if (index < m_formats.length && m_formats[index] != null) {
+                return m_formats[index];
+            }
+            final XSSFCellStyle style = m_styles.getStyleAt(index);
+            if (style == null) {
+                return null;
+            }
+            final short formatIndex = style.getDataFormat();
+            String formatString = style.getDataFormatString();
+            if (formatString == null) {
+                formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+            }
+            final CellFormat format = formatString == null ? null : m_formatter.cellFormat(formatIndex, formatString);
+            if (index < m_formats.length) {
+                m_formats[index] = format;
+            }
+            return format;
+        }
     }
 
+    private final SharedStringsStore m_strings;
+
+    private final KNIMESheetContentsHandler m_output;
+
+    private final StyleFormats m_formats;
+
+    private final Set<Integer> m_hiddenColumns;
+
+    private final StringBuilder m_value = new StringBuilder();
+
+    private boolean m_valueIsOpen;
+
+    private boolean m_inlineStringIsOpen;
+
+    private DataType m_nextDataType = DataType.NUMBER_OR_DATE;
+
+    private boolean m_inlineString;
+
+    /** A formula of a cell without type, its (cached) result is either a number or a {@link String}. */
+    private boolean m_formula;
+
+    private CellFormat m_format;
+
+    private int m_column;
+
+    private int m_rowNum;
+
+    private int m_nextRowNum;
+
     /**
-     * @param styles The styles to use.
-     * @param comments The comments.
+     * @param formats The formats of the cell styles.
      * @param strings The {@link String}s.
      * @param sheetContentsHandler The sheet contents.
-     * @param dataFormatter Special {@link KNIMEDataFormatter}.
-     * @param formulasNotResults Results in formulae instead of their values (usually {@code false}).
-     * @see XSSFSheetXMLHandler#XSSFSheetXMLHandler(StylesTable, ReadOnlySharedStringsTable, SheetContentsHandler,
-     *      org.apache.poi.ss.usermodel.DataFormatter, boolean)
+     * @param hiddenColumns The set to collect the {@code 1}-based indices of the hidden columns.
      */
-    KNIMEXSSFSheetXMLHandler(final StylesTable styles, final CommentsTable comments,
-        final ReadOnlySharedStringsTable strings, final SheetContentsHandler sheetContentsHandler,
-        final KNIMEDataFormatter dataFormatter, final boolean formulasNotResults) {
-        super(styles, comments, strings, sheetContentsHandler, dataFormatter, formulasNotResults);
+    KNIMEXSSFSheetXMLHandler(final StyleFormats formats, final SharedStringsStore strings,
+        final KNIMESheetContentsHandler sheetContentsHandler, final Set<Integer> hiddenColumns) {
+        m_formats = formats;
+        m_strings = strings;
         m_output = sheetContentsHandler;
+        m_hiddenColumns = hiddenColumns;
+    }
+
+    private boolean isTextTag(final String name) {
+        return "v".equals(name) || "inlineStr".equals(name) || ("t".equals(name) && m_inlineStringIsOpen);
     }
 
     /**
-     * {@inheritDoc} Based on its super implementation. ()
+     * {@inheritDoc} Based on {@link XSSFSheetXMLHandler#startElement(String, String, String, Attributes)}.
      */
     @Override
     public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
         throws SAXException {
-        if ("c".equals(localName)) {
+        if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+            return;
+        }
+        if (isTextTag(localName)) {
+            m_valueIsOpen = true;
+            m_value.setLength(0);
+        } else if ("is".equals(localName)) {
+            m_inlineStringIsOpen = true;
+        } else if ("f".equals(localName)) {
+            // the reported type stays NUMBER_OR_DATE, only the parsing of the value changes
+            m_formula = m_nextDataType == DataType.NUMBER_OR_DATE;
+        } else if ("row".equals(localName)) {
+            final String rowNumStr = attributes.getValue("r");
+            m_rowNum = rowNumStr != null ? Integer.parseInt(rowNumStr) - 1 : m_nextRowNum;
+            m_output.startRow(m_rowNum);
+        } else if ("c".equals(localName)) {
             // Set up defaults.
             m_nextDataType = DataType.NUMBER_OR_DATE;
-            String cellType = attributes.getValue("t");
+            m_inlineString = false;
+            m_formula = false;
+            m_format = null;
+            m_column = column(attributes.getValue("r"));
+            final String cellType = attributes.getValue("t");
             if ("b".equals(cellType)) {
                 m_nextDataType = DataType.BOOLEAN;
             } else if ("e".equals(cellType)) {
                 m_nextDataType = DataType.ERROR;
             } else if ("inlineStr".equals(cellType)) {
                 m_nextDataType = DataType.STRING;
+                m_inlineString = true;
             } else if ("s".equals(cellType)) {
                 m_nextDataType = DataType.STRING;
             } else if ("str".equals(cellType)) {
                 m_nextDataType = DataType.FORMULA;
             } else {
+                // Number, but almost certainly with a special style or format
+                final String cellStyleStr = attributes.getValue("s");
+                m_format = m_formats.format(cellStyleStr == null ? -1 : Integer.parseInt(cellStyleStr));
             }
-        }
-        if ("col".equals(localName)) {
-            String hidden = attributes.getValue("hidden");
+        } else if ("col".equals(localName)) {
+            final String hidden = attributes.getValue("hidden");
             if ("true".equalsIgnoreCase(hidden) || "1".equals(hidden)) {
                 try {
-                    for (int i = Integer.parseInt(attributes.getValue("min")); i <= Integer
-                        .parseInt(attributes.getValue("max")); ++i) {
-                        m_hiddenColumns.add(i);
-                    }
+                    addHiddenColumns(m_hiddenColumns, Integer.parseInt(attributes.getValue("min")),
+                        Integer.parseInt(attributes.getValue("max")));
                 } catch (RuntimeException e) {
-                    e.printStackTrace();
+                    // like a column without the hidden attribute
+                    LOGGER.debug("Ignoring the invalid hidden columns: " + e.getMessage(), e);
                 }
             }
         }
-        super.startElement(uri, localName, qName, attributes);
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc} Based on {@link XSSFSheetXMLHandler#endElement(String, String, String)}.
      */
     @Override
     public void endElement(final String uri, final String localName, final String qName) throws SAXException {
-        if (m_output instanceof KNIMESheetContentsHandler) {
-            ((KNIMESheetContentsHandler)m_output).nextCellType(m_nextDataType);
+        if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+            return;
+        }
+        if (isTextTag(localName)) {
+            m_valueIsOpen = false;
+            m_output.nextCellType(m_nextDataType);
+            switch (m_nextDataType) {
+                case BOOLEAN:
+                    m_output.cell(m_column, m_value.charAt(0) == '0' ? "FALSE" : "TRUE");
+                    break;
+                case ERROR:
+                    m_output.cell(m_column, "ERROR:" + m_value);
+                    break;
+                case FORMULA:
+                    // String result, no formatting applied
+                    m_output.cell(m_column, m_value.toString());
+                    break;
+                case STRING:
+                    m_output.cell(m_column,
+                        m_inlineString ? richText(m_value.toString()) : sharedString(m_strings, m_value.toString()));
+                    break;
+                case NUMBER_OR_DATE:
+                    if (m_format == null || (!m_formula && m_value.length() == 0)) {
+                        // No formatting applied, just do raw value
+                        m_output.cell(m_column, m_value.toString());
+                    } else if (m_formula) {
+                        final double d;
+                        try {
+                            // Try to use the value as a formattable number
+                            d = Double.parseDouble(m_value.toString());
+                        } catch (NumberFormatException e) {
+                            // Formula is a String result not a Numeric one
+                            m_output.cell(m_column, m_value.toString());
+                            break;
+                        }
+                        numberCell(m_output, m_column, d, m_format, m_formats.isDate1904());
+                    } else {
+                        numberCell(m_output, m_column, Double.parseDouble(m_value.toString()), m_format,
+                            m_formats.isDate1904());
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected type: " + m_nextDataType);
+            }
+        } else if ("is".equals(localName)) {
+            m_inlineStringIsOpen = false;
+        } else if ("row".equals(localName)) {
+            m_output.endRow(m_rowNum);
+            // some sheets do not have rowNum set in the XML, Excel can read them so we should try to read them as well
+            m_nextRowNum = m_rowNum + 1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (m_valueIsOpen) {
+            m_value.append(ch, start, length);
+        }
+    }
+
+    /**
+     * @param cellReference A cell reference like {@code AB12} (can be {@code null}).
+     * @return The {@code 0}-based column index of the reference ({@code 0} for {@code null}).
+     */
+    static int column(final String cellReference) {
+        if (cellReference == null) {
+            // gracefully handle missing CellRef here in a similar way as XSSFCell does;
+            // according to the API description the cellReference argument shouldn't be null,
+            // though it can be as seen in the file attached to AP-9380
+            return 0;
+        }
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            final char c = cellReference.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                column = column * 26 + c - 'A' + 1;
+            } else if (c >= 'a' && c <= 'z') {
+                column = column * 26 + c - 'a' + 1;
+            } else if (c != '$') {
+                break;
+            }
+        }
+        return column - 1;
+    }
+
+    /**
+     * Reports a number to {@code output}. The dates of the 1904 date system are reported in the 1900 one.
+     */
+    static void numberCell(final KNIMESheetContentsHandler output, final int column, final double value,
+        final CellFormat format, final boolean date1904) {
+        if (format.isDateFormat() && DateUtil.isValidExcelDate(value)) {
+            output.numberCell(column, date1904 ? value + ExcelDates.DAYS_1900_TO_1904 : value, format, true);
+        } else {
+            output.numberCell(column, value, format, false);
         }
+    }
 
-        super.endElement(uri, localName, qName);
+    /**
+     * @param hiddenColumns The set of {@code 1}-based hidden column indices.
+     * @param min The first hidden column.
+     * @param max The last hidden column.
+     */
+    static void addHiddenColumns(final Set<Integer> hiddenColumns, final int min, final int max) {
+        for (int i = min; i <= max; ++i) {
+            hiddenColumns.add(i);
+        }
+    }
+
+    /**
+     * @param strings The shared strings.
+     * @param sstIndex The index of the shared string.
+     * @return The shared string, or {@code null} if {@code sstIndex} is not a number.
+     */
+    static String sharedString(final SharedStringsStore strings, final String sstIndex) {
+        try {
+            return richText(strings.getEntryAt(Integer.parseInt(sstIndex)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
-     * @return the hiddenColumns
+     * @param value The text of a string cell.
+     * @return {@code value} with the {@code _xHHHH_} escapes decoded as {@link XSSFRichTextString} does.
      */
-    public Set<Integer> getHiddenColumns() {
-        return Collections.unmodifiableSet(m_hiddenColumns);
+    static String richText(final String value) {
+        return value != null && value.contains("_x") ? new XSSFRichTextString(value).toString() : value;
     }
 }
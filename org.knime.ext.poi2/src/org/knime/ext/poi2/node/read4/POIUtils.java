@@ -50,41 +50,37 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
-import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.util.SAXHelper;
-import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.apache.poi.xssf.eventusermodel.XSSFReader.SheetIterator;
-import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
-import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
-import org.apache.poi.xssf.model.StylesTable;
-import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.knime.core.node.InvalidSettingsException;
-import org.knime.core.node.util.CheckUtils;
 import org.knime.core.util.Pair;
-import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.DataType;
-import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.KNIMESheetContentsHandler;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Utility methods for accessing xls/xlsx files.
@@ -93,127 +89,78 @@
  */
 class POIUtils {
     /**
-     * Checks whether the sheet is empty or not.
+     * Checks whether an xlsx sheet has a cell with a value, the parsing stops at the first one.
      */
-    static class IsEmpty implements KNIMESheetContentsHandler {
-        private boolean m_isEmpty = true;
+    private static final class HasValue extends DefaultHandler {
+        private boolean m_inCell;
 
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void cell(final String cellReference, final String formattedValue, final XSSFComment comment) {
-            m_isEmpty = false;
-            throw new POIUtils.StopProcessing();
-        }
-
-        /**
-         * @return the isEmpty
-         */
-        public boolean isEmpty() {
-            return m_isEmpty;
-        }
+        private boolean m_hasValue;
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void startRow(final int rowNum) {
+        public void startElement(final String uri, final String localName, final String qName,
+            final Attributes attributes) throws SAXException {
+            if ("c".equals(localName)) {
+                m_inCell = true;
+            } else if (m_inCell && ("v".equals(localName) || "is".equals(localName))) {
+                // the same cells are reported by the sheet handlers
+                m_hasValue = true;
+                throw new StopProcessing();
+            }
         }
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void endRow(final int rowNum) {
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if ("c".equals(localName)) {
+                m_inCell = false;
+            } else if ("sheetData".equals(localName)) {
+                throw new StopProcessing();
+            }
         }
+    }
 
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void headerFooter(final String text, final boolean isHeader, final String tagName) {
-        }
+    /**
+     * Reads the date system from the {@code <workbookPr>} of an xlsx workbook, the parsing stops at it (or at the
+     * {@code <sheets>} following it).
+     */
+    private static final class Date1904 extends DefaultHandler {
+        private boolean m_date1904;
 
         /**
          * {@inheritDoc}
          */
         @Override
-        public void nextCellType(final DataType type) {
+        public void startElement(final String uri, final String localName, final String qName,
+            final Attributes attributes) throws SAXException {
+            if ("workbookPr".equals(localName)) {
+                final String date1904 = attributes.getValue("date1904");
+                m_date1904 = "1".equals(date1904) || "true".equals(date1904);
+                throw new StopProcessing();
+            } else if ("sheets".equals(localName)) {
+                throw new StopProcessing();
+            }
         }
-
     }
 
     /**
      * Stops streaming visiting when this {@link RuntimeException} is thrown.
      */
-    static final class StopProcessing extends RuntimeException {
+    static class StopProcessing extends RuntimeException {
         private static final long serialVersionUID = -6707877454679192967L;
 
     }
 
     /**
-     * Combines column types. Combines only identical values, no further processing, keeps formulae.
+     * Stops visiting a sheet when the rest of it is not needed (see {@link SheetRange}), the result is complete.
      */
-    static class ColumnTypeCombinator {
-        private final SortedMap<Integer, Pair<ActualDataType, Integer>> m_currentTypes = new TreeMap<>();
-
-        ColumnTypeCombinator(final int firstRow, final Pair<ActualDataType, Integer> firstPair) {
-            m_currentTypes.put(firstRow, firstPair);
-        }
-
-        private ActualDataType canonical(final ActualDataType type) {
-            return type;
-        }
+    static final class EndOfRange extends StopProcessing {
+        private static final long serialVersionUID = 3921870437598203412L;
 
-        private Optional<ActualDataType> compatibility(final ActualDataType last, final ActualDataType next) {
-            return last == next ? Optional.of(last) : Optional.empty();
-        }
-
-        void combine(final int rowIndex0, final ActualDataType type) {
-            CheckUtils.checkArgument(rowIndex0 >= 0, "Row index should be non-negative: " + rowIndex0);
-            final ActualDataType canonical = canonical(type);
-            CheckUtils.checkState((m_currentTypes != null) && !m_currentTypes.isEmpty(), "Current type is empty");
-
-            final Integer lastKey = m_currentTypes.lastKey();
-            CheckUtils.checkState(lastKey < rowIndex0,
-                "Cannot process a map with rows higher than the current " + lastKey + " >= " + rowIndex0);
-            final Pair<ActualDataType, Integer> lastValue = m_currentTypes.get(lastKey);
-            CheckUtils.checkState(lastValue.getSecond() < rowIndex0,
-                "Cannot process a map with rows right interval higher than the current " + lastValue.getSecond()
-                    + " >= " + rowIndex0);
-            if ((lastValue.getSecond() + 1) == rowIndex0) {//No missing rows are in-between
-                final Optional<ActualDataType> compatibility = compatibility(lastValue.getFirst(), canonical);
-                if (compatibility.isPresent()) {
-                    m_currentTypes.put(lastKey, Pair.create(compatibility.get(), rowIndex0));
-                } else {
-                    m_currentTypes.put(rowIndex0, Pair.create(canonical, rowIndex0));
-                }
-            } else {//Missings are between
-                final Optional<ActualDataType> compatibility =
-                    compatibility(lastValue.getFirst(), ActualDataType.MISSING);
-                if (compatibility.isPresent()) {
-                    final Optional<ActualDataType> missingCompatibility =
-                        compatibility(ActualDataType.MISSING, canonical);
-                    if (missingCompatibility.isPresent()) {
-                        m_currentTypes.put(lastKey, Pair.create(compatibility.get(), rowIndex0));
-                    } else {
-                        m_currentTypes.put(lastKey, Pair.create(compatibility.get(), rowIndex0 - 1));
-                        m_currentTypes.put(rowIndex0, Pair.create(canonical, rowIndex0));
-                    }
-                } else {
-                    m_currentTypes.put(lastValue.getSecond() + 1, Pair.create(ActualDataType.MISSING, rowIndex0 - 1));
-                    m_currentTypes.put(rowIndex0, Pair.create(canonical, rowIndex0));
-                }
-            }
-        }
-
-        /**
-         * @return the currentTypes
-         */
-        public SortedMap<Integer, Pair<ActualDataType, Integer>> getCurrentTypes() {
-            return new TreeMap<>(m_currentTypes);
-        }
     }
 
     /**
@@ -262,6 +209,50 @@ public static String getFirstSheetNameWithData(final Workbook wBook) {
 
     }
 
+    /**
+     * Returns the names of the sheets contained in the specified xls file, only the workbook globals are read (the
+     * whole workbook is loaded for encrypted or misnamed files).
+     *
+     * @param path The path of the workbook.
+     * @return The sheet names in the order of the workbook.
+     * @throws IOException Problem reading.
+     * @throws InvalidFormatException Problem reading.
+     */
+    static List<String> getXlsSheetNames(final Path path) throws IOException, InvalidFormatException {
+        try (final InputStream stream = FileMagic.prepareToCheckMagic(Files.newInputStream(path))) {
+            if (FileMagic.valueOf(stream) == FileMagic.OLE2) {
+                try (final NPOIFSFileSystem fs = openFileSystem(path, stream)) {
+                    if (XlsSheetReader.isWorkbook(fs.getRoot())) {
+                        return new XlsSheetReader(fs.getRoot(), null).sheetNames();
+                    }
+                }
+            }
+        }
+        return getSheetNames(getWorkbook(path));
+    }
+
+    /**
+     * Finds out the name of the first sheet with data in the xls file, the sheets are read only up to the first one
+     * with rows (the whole workbook is loaded for encrypted or misnamed files).
+     *
+     * @param path The path of the workbook.
+     * @return the name of the first sheet with data, the first sheet if none has data
+     * @throws IOException Problem reading.
+     * @throws InvalidFormatException Problem reading.
+     */
+    static String getFirstXlsSheetNameWithData(final Path path) throws IOException, InvalidFormatException {
+        try (final InputStream stream = FileMagic.prepareToCheckMagic(Files.newInputStream(path))) {
+            if (FileMagic.valueOf(stream) == FileMagic.OLE2) {
+                try (final NPOIFSFileSystem fs = openFileSystem(path, stream)) {
+                    if (XlsSheetReader.isWorkbook(fs.getRoot())) {
+                        return new XlsSheetReader(fs.getRoot(), null).firstSheetNameWithData();
+                    }
+                }
+            }
+        }
+        return getFirstSheetNameWithData(getWorkbook(path));
+    }
+
     /**
      * @param A character between {@code A} and {@code Z}.c
      * @return Its numeric value (from {@code A = 1}).
@@ -292,20 +283,21 @@ public static List<String> getSheetNames(final XSSFReader wb) throws InvalidForm
     }
 
     /**
-     * Finds out the name of the first sheet in the workbook.
+     * Finds out the name of the first sheet with data in the workbook. Only the beginning of the sheets' XML is read,
+     * up to the first cell with a value, neither the shared strings nor the styles are needed. (The
+     * {@code <dimension>} of the sheets is not enough, formatted cells without values are also within it.)
      *
      * @param wBook the workbook to examine.
-     * @param strings the strings of the workbook.
-     * @return the name of the first sheet
+     * @return the name of the first sheet with data, the first sheet if none has data
      * @throws SAXException Problem reading.
      * @throws IOException Problem reading.
      * @throws OpenXML4JException Problem reading.
      * @throws ParserConfigurationException Problem reading.
      */
-    public static String getFirstSheetNameWithData(final XSSFReader wBook, final ReadOnlySharedStringsTable strings)
+    static String getFirstSheetNameWithData(final XSSFReader wBook)
         throws IOException, SAXException, OpenXML4JException, ParserConfigurationException {
         String result = null;
-        final StylesTable styles = wBook.getStylesTable();
+        final XMLReader reader = SAXHelper.newXMLReader();
         final SheetIterator iter = (SheetIterator)wBook.getSheetsData();
         while (iter.hasNext()) {
             try (final InputStream stream = iter.next()) {
@@ -313,13 +305,14 @@ public static String getFirstSheetNameWithData(final XSSFReader wBook, final Rea
                 if (result == null) {
                     result = sheetName;
                 }
-                final IsEmpty isEmpty = new IsEmpty();
+                final HasValue hasValue = new HasValue();
+                reader.setContentHandler(hasValue);
                 try {
-                    processSheet(styles, strings, isEmpty, stream);
-                } catch (final POIUtils.StopProcessing discard) {
-                    //Ignore, this just means it is not empty.
+                    reader.parse(new InputSource(stream));
+                } catch (final StopProcessing discard) {
+                    //Ignore, the result is known.
                 }
-                if (!isEmpty.isEmpty()) {
+                if (hasValue.m_hasValue) {
                     return sheetName;
                 }
             }
@@ -328,6 +321,27 @@ public static String getFirstSheetNameWithData(final XSSFReader wBook, final Rea
 
     }
 
+    /**
+     * @param wBook The workbook to examine.
+     * @return Whether the workbook uses the 1904 date system.
+     * @throws SAXException Problem reading.
+     * @throws IOException Problem reading.
+     * @throws OpenXML4JException Problem reading.
+     * @throws ParserConfigurationException Problem reading.
+     */
+    static boolean isDate1904(final XSSFReader wBook)
+        throws IOException, SAXException, OpenXML4JException, ParserConfigurationException {
+        final XMLReader reader = SAXHelper.newXMLReader();
+        final Date1904 date1904 = new Date1904();
+        reader.setContentHandler(date1904);
+        try (final InputStream stream = wBook.getWorkbookData()) {
+            reader.parse(new InputSource(stream));
+        } catch (final StopProcessing discard) {
+            //Ignore, the result is known.
+        }
+        return date1904.m_date1904;
+    }
+
     /**
      * Loads a workbook from the file system.
      *
@@ -343,6 +357,63 @@ public static Workbook getWorkbook(final Path path) throws IOException, InvalidF
         }
     }
 
+    /**
+     * Opens an xlsx package for reading. Files of the default file system are opened as random-access zip files, so
+     * only the parts actually read are inflated; other paths are read from {@code stream}, which buffers the whole
+     * package in memory. The package should be released with {@link OPCPackage#revert()}.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream, only read when {@code path} is not a local file.
+     * @return The opened package.
+     * @throws IOException Problem reading.
+     * @throws InvalidFormatException Not an OOXML package.
+     */
+    static OPCPackage openPackage(final Path path, final InputStream stream)
+        throws IOException, InvalidFormatException {
+        if (isLocalFile(path)) {
+            return OPCPackage.open(path.toFile(), PackageAccess.READ);
+        }
+        return OPCPackage.open(stream);
+    }
+
+    /**
+     * Opens an xlsx package for reading, see {@link #openPackage(Path, InputStream)}.
+     *
+     * @param path The path of the workbook.
+     * @return The opened package.
+     * @throws IOException Problem reading.
+     * @throws InvalidFormatException Not an OOXML package.
+     */
+    static OPCPackage openPackage(final Path path) throws IOException, InvalidFormatException {
+        if (isLocalFile(path)) {
+            return OPCPackage.open(path.toFile(), PackageAccess.READ);
+        }
+        try (final InputStream stream = Files.newInputStream(path)) {
+            return OPCPackage.open(stream);
+        }
+    }
+
+    /**
+     * Opens an xls (OLE2) file system for reading. Files of the default file system are opened read-only without
+     * being copied to memory; other paths are read from {@code stream}, which buffers the whole file in memory. The
+     * file system should be closed after use.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream, only read when {@code path} is not a local file.
+     * @return The opened file system.
+     * @throws IOException Problem reading, or not an OLE2 file.
+     */
+    static NPOIFSFileSystem openFileSystem(final Path path, final InputStream stream) throws IOException {
+        if (isLocalFile(path)) {
+            return new NPOIFSFileSystem(path.toFile(), true);
+        }
+        return new NPOIFSFileSystem(stream);
+    }
+
+    private static boolean isLocalFile(final Path path) {
+        return (path.getFileSystem() == FileSystems.getDefault()) && Files.isRegularFile(path);
+    }
+
     /**
      * Works around the weirdness of the POI/XLS API.
      *
@@ -384,29 +455,6 @@ static int getColumnIndex(final String columnLabel) {
         return result - 1;
     }
 
-    /**
-     * Parses and shows the content of one sheet using the specified styles and shared-strings tables.
-     *
-     * @param styles The styles table.
-     * @param strings The strings.
-     * @param sheetInputStream The sheet's input stream.
-     */
-    private static void processSheet(final StylesTable styles, final ReadOnlySharedStringsTable strings,
-        final SheetContentsHandler sheetHandler, final InputStream sheetInputStream)
-        throws IOException, ParserConfigurationException, SAXException {
-        final DataFormatter formatter = new KNIMEDataFormatter();
-        final InputSource sheetSource = new InputSource(sheetInputStream);
-        try {
-            final XMLReader sheetParser = SAXHelper.newXMLReader();
-            final org.xml.sax.ContentHandler handler =
-                new XSSFSheetXMLHandler(styles, null, strings, sheetHandler, formatter, false);
-            sheetParser.setContentHandler(handler);
-            sheetParser.parse(sheetSource);
-        } catch (final ParserConfigurationException e) {
-            throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage());
-        }
-    }
-
     /**
      * @param str A non-{@code null} {@link String}.
      * @return Checks whether it is an integer or not.
@@ -0,0 +1,326 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.knime.core.node.KNIMEConstants;
+import org.knime.core.node.NodeLogger;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Keeps the parsed content of workbooks on disk between executions, so unchanged workbooks are not parsed again. Each
+ * entry is a compressed file with the columns of the {@link CachedExcelTable}s of a parse, named after the hash of its
+ * {@link Key}. The least recently used entries are deleted when the directory gets larger than the megabytes in the
+ * {@value #SIZE_PROPERTY} system property (default {@value #DEFAULT_SIZE_MB}).
+ *
+ * @author agent
+ */
+final class ParseCache {
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(ParseCache.class);
+
+    /** The system property of the maximal size of the cache directory in megabytes. */
+    static final String SIZE_PROPERTY = "knime.excel.reader.cache.size";
+
+    /** The default maximal size of the cache directory in megabytes. */
+    static final long DEFAULT_SIZE_MB = 1024;
+
+    private static final String SUFFIX = ".cache";
+
+    private static final int MAGIC = 0x4B584C43;
+
+    /** Has to be increased when the written content of the tables changes. */
+    private static final int VERSION = 1;
+
+    private static ParseCache instance;
+
+    private final Path m_directory;
+
+    private final long m_maxSize;
+
+    private final AtomicLong m_hits = new AtomicLong(), m_misses = new AtomicLong(), m_stores = new AtomicLong(),
+            m_evictions = new AtomicLong(), m_evictedBytes = new AtomicLong();
+
+    /**
+     * Identifies the result of a parse: the fingerprint of the workbook (path, size, modification time and optionally
+     * the hash of its content) and the parameters of the parse.
+     */
+    static final class Key {
+        private final Path m_path;
+
+        private final long m_size;
+
+        private final long m_modified;
+
+        private final String m_id;
+
+        private Key(final Path path, final long size, final long modified, final String id) {
+            m_path = path;
+            m_size = size;
+            m_modified = modified;
+            m_id = id;
+        }
+
+        /**
+         * @param path The path of the workbook.
+         * @param sheets The read sheet(s), for example the sheet name or the pattern of the sheet names.
+         * @param range The read part of the sheets.
+         * @param reevaluate Whether the formulae are reevaluated.
+         * @param locale The {@link Locale} of the parse.
+         * @param hashContent Whether the hash of the content is part of the fingerprint (the workbook is read once
+         *            more for that).
+         * @return The key, or {@code null} if the workbook has no size or modification time.
+         */
+        static Key of(final Path path, final String sheets, final SheetRange range, final boolean reevaluate,
+            final Locale locale, final boolean hashContent) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                final long modified = attributes.lastModifiedTime().toMillis();
+                final String id = path.toUri() + "\n" + attributes.size() + "\n" + modified + "\n"
+                    + (hashContent ? contentHash(path) : "") + "\n" + sheets + "\n" + range + "\n" + reevaluate
+                    + "\n" + locale;
+                return new Key(path, attributes.size(), modified, id);
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.debug("The parsed content of " + path + " is not cached: " + e.getMessage(), e);
+                return null;
+            }
+        }
+
+        private static String contentHash(final Path path) throws IOException {
+            final Hasher hasher = Hashing.sha256().newHasher();
+            try (final InputStream is = Files.newInputStream(path)) {
+                final byte[] buffer = new byte[1 << 16];
+                for (int read = is.read(buffer); read >= 0; read = is.read(buffer)) {
+                    hasher.putBytes(buffer, 0, read);
+                }
+            }
+            return hasher.hash().toString();
+        }
+
+        /**
+         * @return Whether the workbook still has the size and modification time of the key.
+         */
+        private boolean isCurrent() {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(m_path, BasicFileAttributes.class);
+                return attributes.size() == m_size && attributes.lastModifiedTime().toMillis() == m_modified;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private String fileName() {
+            return Hashing.sha256().hashString(m_id, StandardCharsets.UTF_8) + SUFFIX;
+        }
+    }
+
+    /**
+     * @param directory The directory of the entries.
+     * @param maxSize The maximal size of the directory in bytes.
+     */
+    ParseCache(final Path directory, final long maxSize) {
+        m_directory = directory;
+        m_maxSize = maxSize;
+    }
+
+    /**
+     * @return The cache in the KNIME temp directory shared by the nodes.
+     */
+    static synchronized ParseCache getInstance() {
+        if (instance == null) {
+            instance = new ParseCache(KNIMEConstants.getKNIMETempPath().resolve("excel-reader-cache"),
+                Long.getLong(SIZE_PROPERTY, DEFAULT_SIZE_MB) << 20);
+        }
+        return instance;
+    }
+
+    /**
+     * @param key The key of the parse.
+     * @param locale The {@link Locale} of the parse.
+     * @return The tables of the parse, or {@code null} if they are not cached.
+     */
+    List<CachedExcelTable> get(final Key key, final Locale locale) {
+        final Path file = m_directory.resolve(key.fileName());
+        if (!Files.isRegularFile(file)) {
+            m_misses.incrementAndGet();
+            return null;
+        }
+        try (final DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file)), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.m_id.equals(ContentColumn.readString(in))) {
+                m_misses.incrementAndGet();
+                return null;
+            }
+            final KNIMEDataFormatter formatter = new KNIMEDataFormatter(locale);
+            final int count = in.readInt();
+            final List<CachedExcelTable> tables = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tables.add(CachedExcelTable.read(in, key.m_path, formatter));
+            }
+            // the modification time orders the entries for the eviction
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            m_hits.incrementAndGet();
+            return tables;
+        } catch (IOException | RuntimeException e) {
+            // for example evicted in the meantime
+            LOGGER.debug("Could not read the cached content of " + key.m_path + ": " + e.getMessage(), e);
+            m_misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the tables of a parse, unless the workbook changed since the key was created. Failures are only logged.
+     *
+     * @param key The key of the parse.
+     * @param tables The complete tables of the parse.
+     */
+    void put(final Key key, final List<CachedExcelTable> tables) {
+        if (!key.isCurrent()) {
+            return;
+        }
+        try {
+            Files.createDirectories(m_directory);
+            final Path tmp = Files.createTempFile(m_directory, "parse", ".tmp");
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(tmp), deflater), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    ContentColumn.writeString(out, key.m_id);
+                    out.writeInt(tables.size());
+                    for (final CachedExcelTable table : tables) {
+                        table.write(out);
+                    }
+                }
+                Files.move(tmp, m_directory.resolve(key.fileName()), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                deflater.end();
+                Files.deleteIfExists(tmp);
+            }
+            m_stores.incrementAndGet();
+            evict();
+        } catch (IOException e) {
+            LOGGER.debug("Could not cache the parsed content of " + key.m_path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries while the directory is larger than the maximal size.
+     */
+    private synchronized void evict() throws IOException {
+        final List<Entry<Path, BasicFileAttributes>> entries = new ArrayList<>();
+        long size = 0;
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(m_directory, "*" + SUFFIX)) {
+            for (final Path file : files) {
+                try {
+                    final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(file, attributes));
+                    size += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // deleted in the meantime
+                }
+            }
+        }
+        if (size <= m_maxSize) {
+            return;
+        }
+        entries.sort((a, b) -> a.getValue().lastModifiedTime().compareTo(b.getValue().lastModifiedTime()));
+        int evicted = 0;
+        long evictedBytes = 0;
+        for (final Entry<Path, BasicFileAttributes> entry : entries) {
+            if (size <= m_maxSize) {
+                break;
+            }
+            if (Files.deleteIfExists(entry.getKey())) {
+                size -= entry.getValue().size();
+                evicted++;
+                evictedBytes += entry.getValue().size();
+            }
+        }
+        m_evictions.addAndGet(evicted);
+        m_evictedBytes.addAndGet(evictedBytes);
+        LOGGER.debugWithFormat("Evicted %d parsed workbook(s) (%d bytes) from %s, %s", evicted, evictedBytes,
+            m_directory, statistics());
+    }
+
+    /**
+     * @return The number of hits, misses, stored and evicted entries (with their size) since the start.
+     */
+    String statistics() {
+        return String.format("hits: %d, misses: %d, stored: %d, evicted: %d (%d bytes)", m_hits.get(),
+            m_misses.get(), m_stores.get(), m_evictions.get(), m_evictedBytes.get());
+    }
+}
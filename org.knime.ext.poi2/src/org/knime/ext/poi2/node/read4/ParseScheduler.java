@@ -0,0 +1,304 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Admits the parses of the workbooks, shared by all readers. At most {@link #parallelism()} parses run at the same
+ * time and their estimated heap usage stays within {@link #budget()}; the others wait in the order they arrived. A
+ * parse estimated to need more than the whole budget is admitted when no other parse runs. So many concurrent reads
+ * of large workbooks take longer instead of running out of memory.
+ * <p>
+ * The parser threads themselves are not limited, only the parsing, so a read waiting for the parses of its sheets
+ * cannot block them. A parse splitting its work (e.g. the {@link XlsxSheetSegments} of a sheet) takes a further share
+ * of the parallelism for each additional worker with {@link #tryAdmit(long)}, so all parses together keep within
+ * {@link #parallelism()} processors.
+ * <p>
+ * The limits can be set with the system properties {@value #PARALLELISM_PROPERTY} (default: the number of
+ * processors) and {@value #HEAP_PERCENT_PROPERTY} (the percentage of the maximal heap, default: 50).
+ *
+ * @author agent
+ */
+final class ParseScheduler {
+
+    /** The system property of the maximal number of concurrent parses. */
+    static final String PARALLELISM_PROPERTY = "knime.xls.parser.parallelism";
+
+    /** The system property of the percentage of the maximal heap the concurrent parses may use. */
+    static final String HEAP_PERCENT_PROPERTY = "knime.xls.parser.heapPercent";
+
+    /** The estimated heap usage per byte of streamed content (the sheet's XML or the xls records). */
+    static final int STREAMING_EXPANSION = 4;
+
+    /** The estimated heap usage per byte of a (compressed) workbook file loaded with the DOM-based API. */
+    static final int DOM_EXPANSION = 40;
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(ParseScheduler.class);
+
+    /** The interval of checking the cancellation while waiting, in milliseconds. */
+    private static final long CANCEL_CHECK_INTERVAL = 500L;
+
+    private static final ParseScheduler SHARED = new ParseScheduler(
+        Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()).intValue()),
+        Runtime.getRuntime().maxMemory() / 100
+            * Math.max(1, Math.min(100, Integer.getInteger(HEAP_PERCENT_PROPERTY, 50).intValue())));
+
+    /**
+     * An admitted parse, closing it releases its share.
+     */
+    final class Admission implements AutoCloseable {
+        private final long m_cost;
+
+        private boolean m_released;
+
+        private Admission(final long cost) {
+            m_cost = cost;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            synchronized (m_waiting) {
+                if (!m_released) {
+                    m_released = true;
+                    m_active--;
+                    m_reserved -= m_cost;
+                    m_waiting.notifyAll();
+                }
+            }
+        }
+    }
+
+    private final int m_parallelism;
+
+    private final long m_budget;
+
+    /** The costs of the waiting parses, in arrival order. (Also guards the state.) */
+    private final Deque<long[]> m_waiting = new ArrayDeque<>();
+
+    private int m_active;
+
+    private long m_reserved;
+
+    private long m_deferred;
+
+    private long m_abandoned;
+
+    /**
+     * @param parallelism The maximal number of concurrent parses (positive).
+     * @param budget The estimated heap the concurrent parses may use in bytes.
+     */
+    ParseScheduler(final int parallelism, final long budget) {
+        m_parallelism = parallelism;
+        m_budget = budget;
+    }
+
+    /**
+     * @return The scheduler shared by the readers.
+     */
+    static ParseScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Waits until the parse can start.
+     *
+     * @param cost The estimated heap usage of the parse in bytes, {@code 0} when unknown (only the number of parses is
+     *            limited then).
+     * @param exec The {@link ExecutionMonitor} to check for cancellation while waiting, can be {@code null}.
+     * @return The admission, to be closed when the parse is finished.
+     * @throws InterruptedException The thread was interrupted while waiting.
+     * @throws CanceledExecutionException Execution cancelled while waiting.
+     */
+    Admission admit(final long cost, final ExecutionMonitor exec)
+        throws InterruptedException, CanceledExecutionException {
+        final long[] ticket = {Math.max(0L, cost)};
+        synchronized (m_waiting) {
+            m_waiting.addLast(ticket);
+            boolean deferred = false;
+            try {
+                while (m_waiting.peekFirst() != ticket || !fits(ticket[0])) {
+                    if (!deferred) {
+                        deferred = true;
+                        m_deferred++;
+                        LOGGER.info("Parse deferred: " + statisticsUnsynchronized());
+                    }
+                    if (exec != null) {
+                        exec.checkCanceled();
+                    }
+                    m_waiting.wait(CANCEL_CHECK_INTERVAL);
+                }
+            } catch (InterruptedException | CanceledExecutionException | RuntimeException e) {
+                m_waiting.remove(ticket);
+                m_abandoned++;
+                LOGGER.info("Parse abandoned while waiting: " + statisticsUnsynchronized());
+                // the next one might fit now
+                m_waiting.notifyAll();
+                throw e;
+            }
+            m_waiting.removeFirst();
+            m_active++;
+            m_reserved += ticket[0];
+            // the next one might fit too
+            m_waiting.notifyAll();
+            return new Admission(ticket[0]);
+        }
+    }
+
+    /**
+     * Admits an additional worker of a running parse if that is possible without waiting. The waiting parses have
+     * precedence, so the workers cannot postpone them.
+     *
+     * @param cost The estimated heap usage of the worker in bytes in addition to the parse's, usually {@code 0}.
+     * @return The admission, to be closed when the worker is finished, or {@code null} if the worker cannot start now.
+     */
+    Admission tryAdmit(final long cost) {
+        final long workerCost = Math.max(0L, cost);
+        synchronized (m_waiting) {
+            if (!m_waiting.isEmpty() || !fits(workerCost)) {
+                return null;
+            }
+            m_active++;
+            m_reserved += workerCost;
+            return new Admission(workerCost);
+        }
+    }
+
+    /**
+     * @return Whether a parse with {@code cost} can start now.
+     */
+    private boolean fits(final long cost) {
+        return m_active == 0 || (m_active < m_parallelism && m_reserved + cost <= m_budget);
+    }
+
+    /**
+     * @return The maximal number of concurrent parses.
+     */
+    int parallelism() {
+        return m_parallelism;
+    }
+
+    /**
+     * @return The estimated heap the concurrent parses may use in bytes.
+     */
+    long budget() {
+        return m_budget;
+    }
+
+    /**
+     * @return The number of parses waiting to start.
+     */
+    int queueDepth() {
+        synchronized (m_waiting) {
+            return m_waiting.size();
+        }
+    }
+
+    /**
+     * @return The number of running parses.
+     */
+    int activeParses() {
+        synchronized (m_waiting) {
+            return m_active;
+        }
+    }
+
+    /**
+     * @return The estimated heap usage of the running parses in bytes.
+     */
+    long reservedBytes() {
+        synchronized (m_waiting) {
+            return m_reserved;
+        }
+    }
+
+    /**
+     * @return The number of parses which had to wait before starting (so far).
+     */
+    long deferredCount() {
+        synchronized (m_waiting) {
+            return m_deferred;
+        }
+    }
+
+    /**
+     * @return The number of parses cancelled while waiting (so far).
+     */
+    long abandonedCount() {
+        synchronized (m_waiting) {
+            return m_abandoned;
+        }
+    }
+
+    /**
+     * @return The current state and the counters in a human readable form, for the log.
+     */
+    String statistics() {
+        synchronized (m_waiting) {
+            return statisticsUnsynchronized();
+        }
+    }
+
+    /**
+     * @return The {@link #statistics()}, the caller holds the lock.
+     */
+    private String statisticsUnsynchronized() {
+        return String.format(
+            "%d waiting, %d of %d active, %d of %d bytes reserved, %d deferred and %d abandoned so far",
+            m_waiting.size(), m_active, m_parallelism, m_reserved, m_budget, m_deferred, m_abandoned);
+    }
+}
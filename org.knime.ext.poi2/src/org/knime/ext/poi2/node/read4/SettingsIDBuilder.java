@@ -104,6 +104,15 @@ private static final String getID(final XLSUserSettings settings) {
         id.append(getID(settings.isReevaluateFormulae()));
         id.append(getID(settings.getTimeoutInSeconds()));
         id.append(getID(settings.isNoPreview()));
+        if (settings.isReadAllSheets()) {
+            // only when set, so the ids of the earlier settings remain valid
+            id.append(getID(settings.getSheetNamePattern()));
+        }
+        if (settings.getTypeInferenceRows() > 0) {
+            // only when set, so the ids of the earlier settings remain valid
+            id.append(getID(settings.getTypeInferenceRows()));
+            id.append(getID(settings.getTypeMismatchPolicy().name()));
+        }
         return id.toString();
     }
 
@@ -0,0 +1,408 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.knime.core.util.FileUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The shared strings of an xlsx workbook with the same content as {@link ReadOnlySharedStringsTable}. Small tables are
+ * kept on the heap, larger ones are spilled to temporary files (the UTF-8 bytes of the strings and their offsets),
+ * which are memory mapped for reading, and only the recently used entries are kept decoded. This way the heap use
+ * does not depend on the size of {@code sharedStrings.xml}.
+ *
+ * @author agent
+ */
+final class SharedStringsStore implements Closeable {
+
+    /** The number of characters kept on the heap before the strings are spilled to disk. */
+    private static final long SPILL_THRESHOLD = 1L << 22;
+
+    /** The number of decoded strings cached when spilled. */
+    private static final int CACHE_SIZE = 1 << 12;
+
+    /** The mapped regions are {@code 1 << SEGMENT_SHIFT} bytes (a multiple of {@link Long#BYTES}). */
+    private static final int SEGMENT_SHIFT = 30;
+
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    /** The strings while they are kept on the heap, {@code null} when spilled. */
+    private List<String> m_strings = new ArrayList<>();
+
+    private long m_heapChars;
+
+    private int m_size;
+
+    private File m_dataFile, m_indexFile;
+
+    private OutputStream m_data;
+
+    private DataOutputStream m_index;
+
+    private long m_dataLength;
+
+    private ByteBuffer[] m_dataSegments, m_indexSegments;
+
+    private final Map<Integer, String> m_cache = new LinkedHashMap<Integer, String>(CACHE_SIZE, .75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Entry<Integer, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private SharedStringsStore() {
+    }
+
+    /**
+     * Reads the shared strings of a workbook.
+     *
+     * @param pkg The workbook's package.
+     * @param includePhoneticRuns Whether the phonetic runs should be appended to the text (like
+     *            {@link ReadOnlySharedStringsTable}).
+     * @return The shared strings, empty when the workbook has no shared strings table.
+     * @throws IOException Problem reading or writing the temporary files.
+     * @throws SAXException Malformed XML.
+     */
+    static SharedStringsStore read(final OPCPackage pkg, final boolean includePhoneticRuns)
+        throws IOException, SAXException {
+        final SharedStringsStore store = new SharedStringsStore();
+        final List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        if (parts.isEmpty()) {
+            return store;
+        }
+        try (final InputStream stream = parts.get(0).getInputStream()) {
+            store.readFrom(stream, includePhoneticRuns);
+            store.finish();
+        } catch (IOException | SAXException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void readFrom(final InputStream stream, final boolean includePhoneticRuns)
+        throws IOException, SAXException {
+        // test if the part is empty, otherwise parse it
+        final PushbackInputStream in = new PushbackInputStream(stream, 1);
+        final int first = in.read();
+        if (first < 0) {
+            return;
+        }
+        in.unread(first);
+        try {
+            final XMLReader reader = SAXHelper.newXMLReader();
+            reader.setContentHandler(new Handler(includePhoneticRuns));
+            reader.parse(new InputSource(in));
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage());
+        } catch (SAXException e) {
+            if (e.getException() instanceof IOException) {
+                throw (IOException)e.getException();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of strings.
+     */
+    int size() {
+        return m_size;
+    }
+
+    /**
+     * @param idx The {@code 0}-based index of the string.
+     * @return The string at {@code idx}.
+     * @throws IndexOutOfBoundsException When there is no string with the index.
+     */
+    synchronized String getEntryAt(final int idx) {
+        if (idx < 0 || idx >= m_size) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + m_size);
+        }
+        if (m_strings != null) {
+            return m_strings.get(idx);
+        }
+        if (m_indexSegments == null) {
+            throw new IllegalStateException("The shared strings are already closed");
+        }
+        final Integer key = Integer.valueOf(idx);
+        String result = m_cache.get(key);
+        if (result == null) {
+            final long start = readLong(idx * (long)Long.BYTES);
+            final long end = readLong((idx + 1L) * Long.BYTES);
+            final byte[] bytes = new byte[Math.toIntExact(end - start)];
+            read(start, bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+            m_cache.put(key, result);
+        }
+        return result;
+    }
+
+    private void add(final String value) throws IOException {
+        if (m_strings != null) {
+            m_strings.add(value);
+            m_heapChars += value.length();
+            if (m_heapChars > SPILL_THRESHOLD) {
+                spill();
+            }
+        } else {
+            write(value);
+        }
+        m_size++;
+    }
+
+    private void spill() throws IOException {
+        m_dataFile = FileUtil.createTempFile("sharedStrings", ".bin");
+        m_indexFile = FileUtil.createTempFile("sharedStrings", ".idx");
+        m_data = new BufferedOutputStream(new FileOutputStream(m_dataFile), 1 << 16);
+        m_index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_indexFile), 1 << 16));
+        for (final String value : m_strings) {
+            write(value);
+        }
+        m_strings = null;
+    }
+
+    private void write(final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        m_index.writeLong(m_dataLength);
+        m_data.write(bytes);
+        m_dataLength += bytes.length;
+    }
+
+    /**
+     * Completes the temporary files (if spilled) and maps them for reading.
+     */
+    private void finish() throws IOException {
+        if (m_strings != null) {
+            return;
+        }
+        m_index.writeLong(m_dataLength);
+        m_index.close();
+        m_index = null;
+        m_data.close();
+        m_data = null;
+        m_indexSegments = map(m_indexFile);
+        m_dataSegments = map(m_dataFile);
+    }
+
+    private static ByteBuffer[] map(final File file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final ByteBuffer[] segments = new ByteBuffer[(int)((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                final long position = (long)i << SEGMENT_SHIFT;
+                segments[i] = channel.map(MapMode.READ_ONLY, position, Math.min(SEGMENT_MASK + 1, size - position));
+            }
+            return segments;
+        }
+    }
+
+    private long readLong(final long position) {
+        return m_indexSegments[(int)(position >>> SEGMENT_SHIFT)].getLong((int)(position & SEGMENT_MASK));
+    }
+
+    private void read(final long position, final byte[] bytes) {
+        int done = 0;
+        while (done < bytes.length) {
+            final long current = position + done;
+            final ByteBuffer segment = m_dataSegments[(int)(current >>> SEGMENT_SHIFT)];
+            final int offset = (int)(current & SEGMENT_MASK);
+            final int length = Math.min(bytes.length - done, segment.capacity() - offset);
+            segment.position(offset);
+            segment.get(bytes, done, length);
+            done += length;
+        }
+    }
+
+    /**
+     * Releases the strings and deletes the temporary files.
+     */
+    @Override
+    public synchronized void close() {
+        m_strings = null;
+        m_cache.clear();
+        m_indexSegments = null;
+        m_dataSegments = null;
+        closeQuietly(m_index);
+        m_index = null;
+        closeQuietly(m_data);
+        m_data = null;
+        delete(m_indexFile);
+        m_indexFile = null;
+        delete(m_dataFile);
+        m_dataFile = null;
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing to do, the file is deleted anyway
+            }
+        }
+    }
+
+    private static void delete(final File file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                // still mapped (on Windows), try again on exit
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Collects the text of the {@code <si>} elements the same way as {@link ReadOnlySharedStringsTable}.
+     */
+    private final class Handler extends DefaultHandler {
+        private final boolean m_includePhoneticRuns;
+
+        private final StringBuilder m_characters = new StringBuilder();
+
+        private boolean m_tIsOpen;
+
+        private boolean m_inRPh;
+
+        Handler(final boolean includePhoneticRuns) {
+            m_includePhoneticRuns = includePhoneticRuns;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+            final Attributes attributes) throws SAXException {
+            if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+                return;
+            }
+            if ("si".equals(localName)) {
+                m_characters.setLength(0);
+            } else if ("t".equals(localName)) {
+                m_tIsOpen = true;
+            } else if ("rPh".equals(localName)) {
+                m_inRPh = true;
+                //this assumes that rPh always comes after regular <t>
+                if (m_includePhoneticRuns && m_characters.length() > 0) {
+                    m_characters.append(' ');
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+                return;
+            }
+            if ("si".equals(localName)) {
+                try {
+                    add(m_characters.toString());
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            } else if ("t".equals(localName)) {
+                m_tIsOpen = false;
+            } else if ("rPh".equals(localName)) {
+                m_inRPh = false;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void characters(final char[] ch, final int start, final int length) throws SAXException {
+            if (m_tIsOpen && (!m_inRPh || m_includePhoneticRuns)) {
+                m_characters.append(ch, start, length);
+            }
+        }
+    }
+}
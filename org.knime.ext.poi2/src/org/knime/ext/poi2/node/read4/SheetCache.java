@@ -0,0 +1,431 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.knime.core.data.util.memory.MemoryAlert;
+import org.knime.core.data.util.memory.MemoryAlertListener;
+import org.knime.core.data.util.memory.MemoryAlertSystem;
+import org.knime.core.node.NodeLogger;
+
+/**
+ * The {@link CachedExcelTable}s of the workbooks read in this JVM, shared by the nodes and their dialogs, so reading a
+ * sheet again (even with different row or column settings) only creates a new {@link org.knime.core.data.DataTable}
+ * from the cached content. The users of an entry hold a {@link Lease}; a parse is shared by the concurrent users of
+ * its key and cancelled when none of them is left. Entries without leases are evicted (least recently used first)
+ * when their estimated size exceeds the megabytes in the {@value #SIZE_PROPERTY} system property (default: a quarter of
+ * the maximal heap), and all of them when the {@link MemoryAlertSystem} reports low memory.
+ *
+ * @author agent
+ */
+final class SheetCache {
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(SheetCache.class);
+
+    /** The system property of the maximal size of the entries without leases in megabytes. */
+    static final String SIZE_PROPERTY = "knime.excel.reader.sharedcache.size";
+
+    private static final SheetCache INSTANCE = new SheetCache(
+        Long.getLong(SIZE_PROPERTY, Runtime.getRuntime().maxMemory() >> 22) << 20);
+
+    /** The entries in the order of their last use. */
+    private final LinkedHashMap<Key, Entry> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long m_maxSize;
+
+    /** The estimated size of the loaded entries. */
+    private long m_size;
+
+    /**
+     * Loads the tables of an entry, for example a parse.
+     */
+    interface Load extends Closeable {
+        /**
+         * @return The tables, waits for them if necessary.
+         * @throws InterruptedException Interrupted while waiting.
+         * @throws ExecutionException The load failed.
+         */
+        List<CachedExcelTable> get() throws InterruptedException, ExecutionException;
+
+        /**
+         * Cancels the load and releases its resources.
+         */
+        void cancel();
+    }
+
+    /**
+     * Identifies the content of a workbook: the fingerprint of the file (path, size and modification time) and the
+     * parameters of the parse that change the cached content.
+     */
+    static final class Key {
+        private final String m_uri;
+
+        private final long m_size;
+
+        private final long m_modified;
+
+        private final String m_sheets;
+
+        private final boolean m_reevaluate;
+
+        private final Locale m_locale;
+
+        private Key(final String uri, final long size, final long modified, final String sheets,
+            final boolean reevaluate, final Locale locale) {
+            m_uri = uri;
+            m_size = size;
+            m_modified = modified;
+            m_sheets = sheets;
+            m_reevaluate = reevaluate;
+            m_locale = locale;
+        }
+
+        /**
+         * @param path The path of the workbook.
+         * @param sheets The read sheet(s), for example the sheet name or the pattern of the sheet names.
+         * @param reevaluate Whether the formulae are reevaluated.
+         * @param locale The {@link Locale} of the parse.
+         * @return The key, or {@code null} if the workbook has no size or modification time.
+         */
+        static Key of(final Path path, final String sheets, final boolean reevaluate, final Locale locale) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new Key(path.toUri().toString(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    sheets, reevaluate, locale);
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.debug("The parsed content of " + path + " is not shared: " + e.getMessage(), e);
+                return null;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_uri, m_size, m_modified, m_sheets, m_reevaluate, m_locale);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)obj;
+            return m_uri.equals(other.m_uri) && m_size == other.m_size && m_modified == other.m_modified
+                && Objects.equals(m_sheets, other.m_sheets) && m_reevaluate == other.m_reevaluate
+                && m_locale.equals(other.m_locale);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return m_uri + " [" + m_sheets + "]";
+        }
+    }
+
+    /**
+     * A cached (or being loaded) content with the number of its leases.
+     */
+    private final class Entry {
+        private final Key m_key;
+
+        private Load m_load;
+
+        private volatile List<CachedExcelTable> m_tables;
+
+        private long m_tableSize;
+
+        private int m_leases;
+
+        private Entry(final Key key, final Load load, final List<CachedExcelTable> tables) {
+            m_key = key;
+            m_load = load;
+            m_tables = tables;
+        }
+
+        /**
+         * @return The tables, waits for the load if necessary.
+         */
+        private List<CachedExcelTable> tables() throws InterruptedException, ExecutionException {
+            final List<CachedExcelTable> tables = m_tables;
+            if (tables != null) {
+                return tables;
+            }
+            // the other users wait for the same load
+            synchronized (this) {
+                if (m_tables == null) {
+                    try {
+                        m_tables = m_load.get();
+                    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                        remove(this);
+                        throw e;
+                    } finally {
+                        closeLoad();
+                    }
+                    loaded(this);
+                }
+                return m_tables;
+            }
+        }
+
+        private void closeLoad() {
+            try {
+                m_load.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close the workbook of " + m_key + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * The use of an entry, the entry is only evicted when all of its leases are closed.
+     */
+    final class Lease implements Closeable {
+        private final Entry m_entry;
+
+        private boolean m_closed;
+
+        private Lease(final Entry entry) {
+            m_entry = entry;
+        }
+
+        /**
+         * @return The tables of the entry, waits for them if they are still loaded.
+         * @throws InterruptedException Interrupted while waiting.
+         * @throws ExecutionException The load failed.
+         */
+        List<CachedExcelTable> get() throws InterruptedException, ExecutionException {
+            return m_entry.tables();
+        }
+
+        /**
+         * Releases the entry, cancels its load when it was the last lease of an unfinished load.
+         */
+        @Override
+        public void close() {
+            synchronized (SheetCache.this) {
+                if (m_closed) {
+                    return;
+                }
+                m_closed = true;
+                m_entry.m_leases--;
+            }
+            release(m_entry);
+        }
+    }
+
+    /**
+     * @param maxSize The maximal estimated size of the entries without leases in bytes.
+     */
+    SheetCache(final long maxSize) {
+        m_maxSize = maxSize;
+        MemoryAlertSystem.getInstanceUncollected().addListener(new MemoryAlertListener() {
+            @Override
+            protected boolean memoryAlert(final MemoryAlert alert) {
+                evict(0);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return The cache shared in this JVM.
+     */
+    static SheetCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param key The key of the content.
+     * @param load Starts loading the content when it is neither cached nor being loaded.
+     * @return The lease of the (possibly still loading) content, to be closed when it is no longer used.
+     */
+    Lease acquire(final Key key, final Supplier<Load> load) {
+        synchronized (this) {
+            final Entry entry = m_entries.get(key);
+            if (entry != null) {
+                entry.m_leases++;
+                return new Lease(entry);
+            }
+        }
+        // loads are started outside of the lock, in case two of them start at once the first one is kept
+        final Load newLoad = load.get();
+        final Entry newEntry = new Entry(key, newLoad, null);
+        final Entry entry;
+        synchronized (this) {
+            entry = m_entries.computeIfAbsent(key, k -> newEntry);
+            entry.m_leases++;
+        }
+        if (entry != newEntry) {
+            newLoad.cancel();
+        }
+        return new Lease(entry);
+    }
+
+    /**
+     * @param key The key of the content.
+     * @return The lease of the loaded content, or {@code null} if it is not (yet) loaded.
+     */
+    synchronized Lease acquireLoaded(final Key key) {
+        final Entry entry = m_entries.get(key);
+        if (entry == null || entry.m_tables == null) {
+            return null;
+        }
+        entry.m_leases++;
+        return new Lease(entry);
+    }
+
+    /**
+     * @param key The key of the content.
+     * @param tables The complete tables of the content.
+     * @return The lease of the content, which is the already cached one if there is any.
+     */
+    Lease put(final Key key, final List<CachedExcelTable> tables) {
+        final Entry entry;
+        final boolean added;
+        synchronized (this) {
+            final Entry existing = m_entries.get(key);
+            added = existing == null;
+            entry = added ? new Entry(key, null, tables) : existing;
+            if (added) {
+                m_entries.put(key, entry);
+            }
+            entry.m_leases++;
+        }
+        if (added) {
+            loaded(entry);
+        }
+        return new Lease(entry);
+    }
+
+    /**
+     * Accounts the size of a loaded entry.
+     */
+    private void loaded(final Entry entry) {
+        long tableSize = 0;
+        for (final CachedExcelTable table : entry.m_tables) {
+            tableSize += table.estimatedSize();
+        }
+        synchronized (this) {
+            entry.m_load = null;
+            if (m_entries.get(entry.m_key) == entry) {
+                entry.m_tableSize = tableSize;
+                m_size += tableSize;
+            }
+        }
+        evict(m_maxSize);
+    }
+
+    private synchronized void remove(final Entry entry) {
+        if (m_entries.get(entry.m_key) == entry) {
+            m_entries.remove(entry.m_key);
+            m_size -= entry.m_tableSize;
+        }
+    }
+
+    /**
+     * Cancels the load of an entry without leases, or evicts the loaded entries above the maximal size.
+     */
+    private void release(final Entry entry) {
+        final Load load;
+        synchronized (this) {
+            if (entry.m_leases > 0) {
+                return;
+            }
+            load = entry.m_tables == null ? entry.m_load : null;
+            if (load != null) {
+                remove(entry);
+            }
+        }
+        if (load != null) {
+            load.cancel();
+        } else {
+            evict(m_maxSize);
+        }
+    }
+
+    /**
+     * Evicts the least recently used loaded entries without leases while the size of the entries is above
+     * {@code maxSize}.
+     */
+    private synchronized void evict(final long maxSize) {
+        int evicted = 0;
+        long evictedSize = 0;
+        for (final Iterator<Entry> it = m_entries.values().iterator(); it.hasNext() && m_size > maxSize;) {
+            final Entry entry = it.next();
+            if (entry.m_leases == 0 && entry.m_tables != null) {
+                it.remove();
+                m_size -= entry.m_tableSize;
+                evicted++;
+                evictedSize += entry.m_tableSize;
+            }
+        }
+        if (evicted > 0) {
+            LOGGER.debugWithFormat("Evicted %d shared sheet content(s) (about %d bytes), %d remaining (about %d bytes)",
+                evicted, evictedSize, m_entries.size(), m_size);
+        }
+    }
+}
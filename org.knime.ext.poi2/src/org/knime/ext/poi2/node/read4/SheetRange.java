@@ -0,0 +1,162 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.util.Set;
+
+/**
+ * The part of a sheet the result is computed from, so the parsers can skip the rest: the cells of unselected (or
+ * skipped hidden) columns are not cached and the sheet is not read after the last selected row. The row ID column
+ * and the column header row are always kept.
+ *
+ * @author agent
+ */
+final class SheetRange {
+    /** The whole sheet. */
+    static final SheetRange ALL = new SheetRange(-1, -1, -1, -1, false);
+
+    private final int m_lastRow;
+
+    private final int m_firstColumn;
+
+    private final int m_lastColumn;
+
+    private final int m_rowHeaderColumn;
+
+    private final boolean m_skipHiddenColumns;
+
+    private SheetRange(final int lastRow, final int firstColumn, final int lastColumn, final int rowHeaderColumn,
+        final boolean skipHiddenColumns) {
+        m_lastRow = lastRow;
+        m_firstColumn = firstColumn;
+        m_lastColumn = lastColumn;
+        m_rowHeaderColumn = rowHeaderColumn;
+        m_skipHiddenColumns = skipHiddenColumns;
+    }
+
+    /**
+     * @param settings The user settings.
+     * @param keepAllRows Whether the rows after the last selected one are still needed (their number is used for the
+     *            row keys of the following tables).
+     * @return The range needed for the result of {@code settings}.
+     */
+    static SheetRange of(final XLSUserSettings settings, final boolean keepAllRows) {
+        final boolean readAll = settings.getReadAllData();
+        int lastRow = readAll || keepAllRows ? -1 : settings.getLastRow0();
+        if (lastRow >= 0 && settings.getHasColHeaders()) {
+            lastRow = Math.max(lastRow, settings.getColHdrRow0());
+        }
+        return new SheetRange(lastRow, readAll ? -1 : settings.getFirstColumn0(),
+            readAll ? -1 : settings.getLastColumn0(), settings.getHasRowHeaders() ? settings.getRowHdrCol0() : -1,
+            settings.getSkipHiddenColumns());
+    }
+
+    /**
+     * @param settings The user settings.
+     * @param rows The number of rows to infer the column types from (positive).
+     * @return The range of the first {@code rows} selected rows (and the column header row) of {@code settings}.
+     */
+    static SheetRange sample(final XLSUserSettings settings, final int rows) {
+        final SheetRange range = of(settings, false);
+        final int firstRow = settings.getReadAllData() ? 0 : Math.max(0, settings.getFirstRow0());
+        long lastRow = (long)firstRow + rows - 1;
+        if (settings.getHasColHeaders() && settings.getColHdrRow0() >= firstRow
+            && settings.getColHdrRow0() <= lastRow) {
+            // the header row is not a data row
+            lastRow++;
+        }
+        if (range.m_lastRow >= 0) {
+            lastRow = Math.min(lastRow, range.m_lastRow);
+        }
+        if (settings.getHasColHeaders()) {
+            lastRow = Math.max(lastRow, settings.getColHdrRow0());
+        }
+        return new SheetRange((int)Math.min(Integer.MAX_VALUE, lastRow), range.m_firstColumn, range.m_lastColumn,
+            range.m_rowHeaderColumn, range.m_skipHiddenColumns);
+    }
+
+    /**
+     * @param row A {@code 0}-based row index.
+     * @return Whether the row (and so every later one) is after the range.
+     */
+    boolean isAfter(final int row) {
+        return m_lastRow >= 0 && row > m_lastRow;
+    }
+
+    /**
+     * @param column A {@code 0}-based column index.
+     * @param hiddenColumns The {@code 1}-based indices of the hidden columns.
+     * @return Whether the cells of the column are not needed.
+     */
+    boolean isSkipped(final int column, final Set<Integer> hiddenColumns) {
+        return isSkipped(column, m_skipHiddenColumns && hiddenColumns.contains(column + 1));
+    }
+
+    /**
+     * @param column A {@code 0}-based column index.
+     * @param hidden Whether the column is hidden.
+     * @return Whether the cells of the column are not needed.
+     */
+    boolean isSkipped(final int column, final boolean hidden) {
+        if (column == m_rowHeaderColumn) {
+            return false;
+        }
+        return (m_firstColumn >= 0 && column < m_firstColumn) || (m_lastColumn >= 0 && column > m_lastColumn)
+            || (m_skipHiddenColumns && hidden);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SheetRange [lastRow=" + m_lastRow + ", columns=" + m_firstColumn + "-" + m_lastColumn
+            + ", rowHeaderColumn=" + m_rowHeaderColumn + ", skipHiddenColumns=" + m_skipHiddenColumns + "]";
+    }
+}
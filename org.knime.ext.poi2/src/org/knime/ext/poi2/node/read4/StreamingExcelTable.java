@@ -0,0 +1,331 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.RowIterator;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.ext.poi2.node.read4.CachedExcelTable.Content;
+import org.knime.ext.poi2.node.read4.CachedExcelTable.ContentRowIterator;
+import org.knime.ext.poi2.node.read4.CachedExcelTable.RowSource;
+import org.knime.ext.poi2.node.read4.POIUtils.StopProcessing;
+
+/**
+ * An xlsx sheet whose rows are handed over from the parser thread to the consumer through a bounded queue while the
+ * sheet is still being parsed. Unlike {@link CachedExcelTable} it does not keep the sheet in memory, but it requires
+ * the {@link DataTableSpec} to be known in advance and can be iterated only once.
+ *
+ * @author agent
+ */
+final class StreamingExcelTable implements RowSource, AutoCloseable {
+
+    /** The maximal number of parsed rows waiting for the consumer. */
+    static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private static final long POLL_MILLIS = 50;
+
+    private final BlockingQueue<Entry<Integer, Map<Integer, Content>>> m_queue;
+
+    private final Map<Integer, Integer> m_excelToKNIME = new HashMap<>();
+
+    /** The {@code 0}-based Excel columns left out on purpose, filled with {@link #m_excelToKNIME}. */
+    private final Set<Integer> m_skippedColumns = new HashSet<>();
+
+    private final XLSUserSettings m_settings;
+
+    private final DataTableSpec m_spec;
+
+    private Future<Set<Integer>> m_parse;
+
+    /** Written by the parser thread before the first row is queued. */
+    private volatile Set<Integer> m_hiddenColumns;
+
+    private Entry<Integer, Map<Integer, Content>> m_pending;
+
+    private boolean m_finished;
+
+    private boolean m_mappingCreated;
+
+    private int m_nextIndex;
+
+    private int m_lastRowIndex = 0;
+
+    private boolean m_iteratorCreated;
+
+    private StreamingExcelTable(final XLSUserSettings settings, final DataTableSpec spec, final int queueSize) {
+        m_settings = settings;
+        m_spec = spec;
+        m_queue = new ArrayBlockingQueue<>(queueSize);
+        m_nextIndex = Math.max(0, settings.getFirstRow0());
+    }
+
+    /**
+     * Checks whether the columns of the result can be determined without reading the whole sheet.
+     *
+     * @param settings The user settings.
+     * @return {@code true} if the rows of an xlsx file can be streamed with these settings.
+     */
+    static boolean isApplicable(final XLSUserSettings settings) {
+        // skipping the empty columns requires all the values of the column, multiple sheets are read concurrently
+        return !settings.getSkipEmptyColumns() && !settings.isReevaluateFormulae() && !settings.isReadAllSheets();
+    }
+
+    /**
+     * Starts parsing the sheet on a separate thread.
+     *
+     * @param path The path of the workbook.
+     * @param stream The workbook's stream, should be closed after this table.
+     * @param sheet The sheet's name.
+     * @param range The part of the sheet to read.
+     * @param locale The {@link Locale} to use.
+     * @param exec The {@link ExecutionMonitor} for the parsing.
+     * @param rawSettings The user settings.
+     * @param spec The spec of the result, most probably the one saved in the settings.
+     * @return The table which is filled while it is iterated.
+     * @throws InvalidSettingsException Some settings in {@code rawSettings} is incorrect.
+     */
+    static StreamingExcelTable open(final Path path, final InputStream stream, final String sheet,
+        final SheetRange range, final Locale locale, final ExecutionMonitor exec, final XLSUserSettings rawSettings,
+        final DataTableSpec spec) throws InvalidSettingsException {
+        final XLSUserSettings settings = XLSUserSettings.normalizeSettings(rawSettings);
+        settings.setSheetName(sheet);
+        final StreamingExcelTable table = new StreamingExcelTable(settings, spec, DEFAULT_QUEUE_SIZE);
+        table.m_parse = CachedExcelTable.streamFromXlsx(path, stream, sheet, range, locale, exec, table::enqueue);
+        return table;
+    }
+
+    /**
+     * Called on the parser thread, blocks while the queue is full.
+     */
+    private void enqueue(final int rowIndex, final Map<Integer, Content> row, final Set<Integer> hiddenColumns) {
+        if (row.isEmpty()) {
+            return;
+        }
+        if (m_hiddenColumns == null) {
+            m_hiddenColumns = new HashSet<>(hiddenColumns);
+        }
+        try {
+            m_queue.put(new AbstractMap.SimpleImmutableEntry<>(rowIndex, new HashMap<>(row)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StopProcessing();
+        }
+    }
+
+    /**
+     * Creates the {@link DataTable} view of the streamed rows, its iterator can be created only once.
+     *
+     * @param rowNoToStart The row key index to start with.
+     * @param totalNoOfPreviousRows The number of rows in the previously read tables.
+     * @param uniquifier the {@link ValueUniquifier} to use accross all files
+     * @return The {@link DataTable}.
+     */
+    DataTable createDataTable(final long rowNoToStart, final long totalNoOfPreviousRows,
+        final ValueUniquifier uniquifier) {
+        return new DataTable() {
+            @Override
+            public DataTableSpec getDataTableSpec() {
+                return m_spec;
+            }
+
+            @Override
+            public RowIterator iterator() {
+                if (m_iteratorCreated) {
+                    throw new IllegalStateException("The rows of a streamed table can be iterated only once.");
+                }
+                m_iteratorCreated = true;
+                // the mapping is filled before the first row is returned by the source
+                return new ContentRowIterator(m_settings, m_spec, m_excelToKNIME, rowNoToStart,
+                    totalNoOfPreviousRows, uniquifier, StreamingExcelTable.this, m_settings.getTypeMismatchPolicy());
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry<Integer, Map<Integer, Content>> nextRow() {
+        while (m_pending == null && !m_finished) {
+            m_pending = take();
+            if (m_pending != null) {
+                m_lastRowIndex = Math.max(m_lastRowIndex, m_pending.getKey());
+                if (m_pending.getKey() < m_nextIndex) {
+                    // before the first row to read
+                    m_pending = null;
+                }
+            }
+        }
+        if (!m_mappingCreated) {
+            createMapping();
+        }
+        if (m_pending == null) {
+            return null;
+        }
+        final int index = m_nextIndex++;
+        if (m_pending.getKey() == index) {
+            final Entry<Integer, Map<Integer, Content>> ret = m_pending;
+            m_pending = null;
+            return ret;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(index, Collections.emptyMap());
+    }
+
+    /**
+     * @return The next row from the queue or {@code null} if the parsing has finished (in this case
+     *         {@link #m_finished} is set).
+     */
+    private Entry<Integer, Map<Integer, Content>> take() {
+        try {
+            Entry<Integer, Map<Integer, Content>> ret;
+            while ((ret = m_queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (m_parse.isDone()) {
+                    // the last rows were put before the parsing finished
+                    ret = m_queue.poll();
+                    if (ret == null) {
+                        m_finished = true;
+                        checkParseResult();
+                    }
+                    return ret;
+                }
+            }
+            return ret;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            m_parse.cancel(true);
+            throw new StopProcessing();
+        }
+    }
+
+    /**
+     * Rethrows the failure of the parser thread, if any.
+     */
+    private void checkParseResult() throws InterruptedException {
+        try {
+            final Set<Integer> hiddenColumns = m_parse.get();
+            if (m_hiddenColumns == null) {
+                m_hiddenColumns = hiddenColumns;
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Computes the mapping of Excel columns to KNIME columns the same way as
+     * {@link CachedExcelTable#createDataTable(XLSUserSettings, Map, long, long, ValueUniquifier)} does when empty
+     * columns are kept.
+     */
+    private void createMapping() {
+        final Set<Integer> skippedCols = new HashSet<>();
+        for (int i = 0; i < m_settings.getFirstColumn0(); i++) {
+            skippedCols.add(i);
+        }
+        if (m_settings.getHasRowHeaders()) {
+            skippedCols.add(m_settings.getRowHdrCol0());
+        }
+        if (m_settings.getSkipHiddenColumns() && m_hiddenColumns != null) {
+            for (final Integer hidden : m_hiddenColumns) {
+                skippedCols.add(hidden - 1);
+            }
+        }
+        m_excelToKNIME.putAll(CachedExcelTable.excelToKNIMEColumns(m_spec.getNumColumns(), skippedCols));
+        m_skippedColumns.addAll(skippedCols);
+        m_mappingCreated = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSkippedColumn(final int column) {
+        return m_skippedColumns.contains(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int lastRowIndex() {
+        return m_lastRowIndex;
+    }
+
+    /**
+     * Stops the parsing if it is still running.
+     */
+    @Override
+    public void close() {
+        if (m_parse != null) {
+            m_parse.cancel(true);
+        }
+        m_queue.clear();
+    }
+}
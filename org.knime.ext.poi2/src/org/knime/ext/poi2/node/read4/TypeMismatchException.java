@@ -0,0 +1,107 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import org.knime.core.data.DataType;
+
+/**
+ * Thrown while the rows are converted when a value does not fit the type of its column (or is in a column not part
+ * of the spec) and the {@link XLSUserSettings.TypeMismatchPolicy} is not to insert a missing value.
+ *
+ * @author agent
+ */
+final class TypeMismatchException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean m_widen;
+
+    /**
+     * @param column The name of the column, {@code null} if the value is in a column not part of the spec.
+     * @param excelColumn The {@code 0}-based Excel column index.
+     * @param row The {@code 0}-based row index.
+     * @param value The value as {@link String}.
+     * @param type The type of the column, {@code null} if the value is in a column not part of the spec.
+     * @param widen Whether the rows should be read again with wider types.
+     */
+    TypeMismatchException(final String column, final int excelColumn, final int row, final String value,
+        final DataType type, final boolean widen) {
+        super(message(column, excelColumn, row, value, type));
+        m_widen = widen;
+    }
+
+    private static String message(final String column, final int excelColumn, final int row, final String value,
+        final DataType type) {
+        final String cell = POIUtils.oneBasedColumnNumber(excelColumn + 1) + (row + 1);
+        return column == null ? "Value '" + value + "' in cell " + cell + " is after the last column of the table"
+            : "Value '" + value + "' in cell " + cell + " does not fit the type " + type + " of column '" + column
+                + "'";
+    }
+
+    /**
+     * @return Whether the rows should be read again with wider types.
+     */
+    boolean isWiden() {
+        return m_widen;
+    }
+
+    /**
+     * @param t A {@link Throwable}.
+     * @return The {@link TypeMismatchException} which caused {@code t} (or {@code t} itself), {@code null} if there
+     *         is none.
+     */
+    static TypeMismatchException find(final Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof TypeMismatchException) {
+                return (TypeMismatchException)cause;
+            }
+        }
+        return null;
+    }
+}
@@ -72,6 +72,7 @@
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -118,9 +119,6 @@
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.knime.core.data.DataTable;
 import org.knime.core.node.ExecutionMonitor;
@@ -142,6 +140,7 @@
 import org.knime.core.util.MutableInteger;
 import org.knime.core.util.SwingWorkerWithContext;
 import org.knime.ext.poi2.node.read4.POIUtils.StopProcessing;
+import org.knime.ext.poi2.node.read4.XLSUserSettings.TypeMismatchPolicy;
 import org.knime.filehandling.core.connections.FSConnection;
 import org.knime.filehandling.core.defaultnodesettings.DialogComponentFileChooser2;
 import org.knime.filehandling.core.defaultnodesettings.FileChooserHelper;
@@ -172,6 +171,10 @@ class XLSReaderNodeDialog extends NodeDialogPane {
 
     private final JComboBox<String> m_sheetName = new JComboBox<>();
 
+    private final JCheckBox m_readAllSheets = new JCheckBox("Read all sheets matching:");
+
+    private final JTextField m_sheetNamePattern = new JTextField(10);
+
     private final JCheckBox m_hasColHdr = new JCheckBox();
 
     private final JTextField m_colHdrRow = new JTextField();
@@ -224,8 +227,6 @@ class XLSReaderNodeDialog extends NodeDialogPane {
 
     private final JTextField m_formulaErrPattern = new JTextField();
 
-    private Workbook m_workbook = null;
-
     private String m_workbookPath = null;
 
     private static final int LEFT_INDENT = 25;
@@ -254,6 +255,21 @@ class XLSReaderNodeDialog extends NodeDialogPane {
     private final JCheckBox m_noPreviewChecker =
         new JCheckBox("Disable Preview " + " (does not compute the output table structure)");
 
+    private final JSpinner m_readAheadFiles =
+        new JSpinner(new SpinnerNumberModel(XLSUserSettings.DEFAULT_READ_AHEAD_FILES, 0, Integer.MAX_VALUE, 1));
+
+    private final JSpinner m_typeInferenceRows =
+        new JSpinner(new SpinnerNumberModel(XLSUserSettings.DEFAULT_TYPE_INFERENCE_ROWS, 0, Integer.MAX_VALUE, 100));
+
+    private final JComboBox<TypeMismatchPolicy> m_typeMismatchPolicy =
+        new JComboBox<>(TypeMismatchPolicy.values());
+
+    private final JCheckBox m_useParseCache = new JCheckBox("Cache parsed workbooks between executions");
+
+    private final JCheckBox m_hashCachedContent = new JCheckBox("Compare content of cached workbooks");
+
+    private final JCheckBox m_shareParsedSheets = new JCheckBox("Share parsed sheets with other nodes");
+
     private final Map<Triple<String, String, Boolean>, WeakReference<CachedExcelTable>> m_sheets =
         new ConcurrentHashMap<>();
 
@@ -270,6 +286,9 @@ class XLSReaderNodeDialog extends NodeDialogPane {
 
     private final AtomicReference<CachedExcelTable> m_currentTable = new AtomicReference<>();
 
+    /** The leases of the shared tables used by the dialog, released when the workbook changes or on close. */
+    private final List<SheetCache.Lease> m_leases = Collections.synchronizedList(new ArrayList<>());
+
     private final MutableInteger m_readRows = new MutableInteger(0);
 
     private final AtomicLong m_updateSheetListId = new AtomicLong(0);
@@ -363,6 +382,16 @@ public Component getListCellRendererComponent(@SuppressWarnings("rawtypes") fina
         m_sheetName.setRenderer(sheetNameRenderer);
         sheetAndTimeOutBox.add(m_sheetName);
         sheetAndTimeOutBox.add(Box.createHorizontalGlue());
+
+        final String allSheetsTooltip = "Reads the sheets with names matching the regular expression into one table "
+            + "with an additional column containing the sheet names, the preview shows the selected sheet only";
+        m_readAllSheets.setToolTipText(allSheetsTooltip);
+        m_sheetNamePattern.setToolTipText(allSheetsTooltip);
+        m_sheetNamePattern.setMaximumSize(new Dimension(170, 25));
+        m_readAllSheets.addItemListener(e -> m_sheetNamePattern.setEnabled(m_readAllSheets.isSelected()));
+        sheetAndTimeOutBox.add(m_readAllSheets);
+        sheetAndTimeOutBox.add(Box.createHorizontalStrut(5));
+        sheetAndTimeOutBox.add(m_sheetNamePattern);
         sheetAndTimeOutBox.add(Box.createHorizontalGlue());
 
         final JLabel timeoutLabel = new JLabel("Connect timeout [s]: ");
@@ -585,6 +614,55 @@ private JComponent getEvaluationBox() {
         m_reevaluateFormulae.addActionListener(e -> sheetNameChanged());
         evaluationBox.add(m_noPreviewChecker);
         m_noPreviewChecker.addItemListener(e -> onNoPreviewCheckerSelected());
+        final Box readAheadBox = Box.createHorizontalBox();
+        final JLabel readAheadLabel = new JLabel("Files read ahead: ");
+        final String readAheadTooltip = "Number of files parsed in advance when reading a folder "
+            + "(each of them is kept in memory until its rows are written)";
+        readAheadLabel.setToolTipText(readAheadTooltip);
+        m_readAheadFiles.setToolTipText(readAheadTooltip);
+        ((JSpinner.DefaultEditor)m_readAheadFiles.getEditor()).getTextField().setColumns(4);
+        m_readAheadFiles.setMaximumSize(m_readAheadFiles.getPreferredSize());
+        readAheadBox.add(readAheadLabel);
+        readAheadBox.add(Box.createHorizontalStrut(5));
+        readAheadBox.add(m_readAheadFiles);
+        readAheadBox.add(Box.createHorizontalGlue());
+        evaluationBox.add(readAheadBox);
+        final Box typeInferenceBox = Box.createHorizontalBox();
+        final JLabel typeInferenceLabel = new JLabel("Column types from first rows: ");
+        final String typeInferenceTooltip = "Number of rows the column types are inferred from when the rows of an "
+            + "xlsx sheet can be streamed (empty columns are kept), 0 means all rows";
+        typeInferenceLabel.setToolTipText(typeInferenceTooltip);
+        m_typeInferenceRows.setToolTipText(typeInferenceTooltip);
+        ((JSpinner.DefaultEditor)m_typeInferenceRows.getEditor()).getTextField().setColumns(6);
+        m_typeInferenceRows.setMaximumSize(m_typeInferenceRows.getPreferredSize());
+        typeInferenceBox.add(typeInferenceLabel);
+        typeInferenceBox.add(Box.createHorizontalStrut(5));
+        typeInferenceBox.add(m_typeInferenceRows);
+        typeInferenceBox.add(Box.createHorizontalGlue());
+        evaluationBox.add(typeInferenceBox);
+        final Box typeMismatchBox = Box.createHorizontalBox();
+        final JLabel typeMismatchLabel = new JLabel("Values not fitting the column type: ");
+        final String typeMismatchTooltip = "What happens with the values not fitting the column type inferred from "
+            + "the first rows (or during configuration when streaming)";
+        typeMismatchLabel.setToolTipText(typeMismatchTooltip);
+        m_typeMismatchPolicy.setToolTipText(typeMismatchTooltip);
+        m_typeMismatchPolicy.setMaximumSize(m_typeMismatchPolicy.getPreferredSize());
+        typeMismatchBox.add(typeMismatchLabel);
+        typeMismatchBox.add(Box.createHorizontalStrut(5));
+        typeMismatchBox.add(m_typeMismatchPolicy);
+        typeMismatchBox.add(Box.createHorizontalGlue());
+        evaluationBox.add(typeMismatchBox);
+        m_useParseCache.setToolTipText("When checked the parsed content is kept in the KNIME temp directory, so "
+            + "the next executions read unchanged workbooks (same size and modification time) without parsing them");
+        m_useParseCache.addItemListener(e -> m_hashCachedContent.setEnabled(m_useParseCache.isSelected()));
+        evaluationBox.add(m_useParseCache);
+        m_hashCachedContent.setToolTipText("When checked the cached content is only used when the hash of the "
+            + "workbook's content is unchanged too (the workbook is read once more to compute it)");
+        m_hashCachedContent.setEnabled(false);
+        evaluationBox.add(m_hashCachedContent);
+        m_shareParsedSheets.setToolTipText("When checked the parsed sheets are kept in memory, so other nodes (and "
+            + "dialogs) reading them, even with different row or column settings, do not parse them again");
+        evaluationBox.add(m_shareParsedSheets);
         evaluationBox.add(Box.createHorizontalGlue());
         return evaluationBox;
     }
@@ -718,20 +796,19 @@ protected String[] doInBackgroundWithContext() throws Exception {
                 if (paths != null && !paths.isEmpty()) {
                     final Path path = paths.get(0);
 
-                    if ((m_workbook == null) && !ExcelTableReader.isXlsx(path)) {
-                        m_workbook = getWorkbook(path);
-                    }
-                    if (m_workbook != null) {
+                    if (!ExcelTableReader.isXlsx(path)) {
                         m_fileAccessError = null;
-                        final ArrayList<String> sheetNames = POIUtils.getSheetNames(m_workbook);
+                        final List<String> sheetNames = POIUtils.getXlsSheetNames(path);
                         sheetNames.add(0, FIRST_SHEET);
                         return sheetNames.toArray(new String[sheetNames.size()]);
-                    } else {//xlsx without reevaluation
-                        try (final InputStream stream = Files.newInputStream(path);
-                                final OPCPackage opcpackage = OPCPackage.open(stream)) {
+                    } else {
+                        final OPCPackage opcpackage = POIUtils.openPackage(path);
+                        try {
                             final List<String> sheetNames = POIUtils.getSheetNames(new XSSFReader(opcpackage));
                             sheetNames.add(0, FIRST_SHEET);
                             return sheetNames.stream().toArray(n -> new String[n]);
+                        } finally {
+                            opcpackage.revert();
                         }
                     }
                 } else {
@@ -1076,7 +1153,11 @@ void fileNotFound() {
     private CachedExcelTable getSheetTable(final Path path, final String sheet, final boolean reevaluateFormulae) {
         CachedExcelTable sheetTable;
         final Triple<String, String, Boolean> key = Triple.of(path.toString(), sheet, reevaluateFormulae);
-        if (!m_sheets.containsKey(key) || ((sheetTable = m_sheets.get(key).get()) == null)) {
+        final SheetCache.Key sharedKey = SheetCache.Key.of(path, "sheet: " + sheet, reevaluateFormulae, Locale.ENGLISH);
+        if ((!m_sheets.containsKey(key) || ((sheetTable = m_sheets.get(key).get()) == null))
+            && (sheetTable = sharedTable(sharedKey)) != null) {
+            m_sheets.put(key, new WeakReference<>(sheetTable));
+        } else if (sheetTable == null) {
             LOGGER.debug("Loading sheet " + sheet + "  of " + path.getFileName().toString());
 
             try (InputStream stream = Files.newInputStream(path)) {
@@ -1084,11 +1165,15 @@ private CachedExcelTable getSheetTable(final Path path, final String sheet, fina
                 final ExecutionMonitor monitor = new ExecutionMonitor();
                 monitor.getProgressMonitor().addProgressListener(
                     e -> m_loadingProgress.setValue((int)(100 * e.getNodeProgress().getProgress())));
-                final Future<CachedExcelTable> tableFuture = ExcelTableReader.isXlsx(path) && !reevaluateFormulae
-                    ? CachedExcelTable.fillCacheFromXlsxStreaming(path, stream, sheet, Locale.ROOT, monitor,
-                        m_currentTable)
-                    : CachedExcelTable.fillCacheFromDOM(path, stream, sheet, Locale.ROOT, reevaluateFormulae,
-                        monitor, m_currentTable);
+                // the locale of the execution, so the tables can be shared with the nodes
+                final Future<CachedExcelTable> tableFuture = reevaluateFormulae
+                    ? CachedExcelTable.fillCacheFromDOM(path, stream, sheet, SheetRange.ALL, Locale.ENGLISH, true,
+                        monitor, m_currentTable)
+                    : ExcelTableReader.isXlsx(path)
+                        ? CachedExcelTable.fillCacheFromXlsxStreaming(path, stream, sheet, SheetRange.ALL,
+                            Locale.ENGLISH, monitor, m_currentTable)
+                        : CachedExcelTable.fillCacheFromXls(path, stream, sheet, SheetRange.ALL, Locale.ENGLISH,
+                            monitor, m_currentTable);
                 checkPreviousFutureAndCancel(m_currentlyRunningFuture.getAndSet(tableFuture));
                 ViewUtils.invokeAndWaitInEDT(() -> {
                     m_loadingProgress.setValue(0);
@@ -1103,6 +1188,9 @@ private CachedExcelTable getSheetTable(final Path path, final String sheet, fina
                     m_currentlyRunningFuture.set(null);
                 }
                 m_sheets.put(key, new WeakReference<>(sheetTable));
+                if (sharedKey != null && m_shareParsedSheets.isSelected()) {
+                    m_leases.add(SheetCache.getInstance().put(sharedKey, Collections.singletonList(sheetTable)));
+                }
             } catch (CancellationException | StopProcessing | InterruptedException | ExecutionException e) {
                 sheetTable = m_currentTable.get();
                 m_previewUpdateButton.setText(RELOAD);
@@ -1116,6 +1204,37 @@ private CachedExcelTable getSheetTable(final Path path, final String sheet, fina
         return sheetTable;
     }
 
+    /**
+     * @param key The key of the sheet in the {@link SheetCache}, can be {@code null}.
+     * @return The already parsed table of the sheet shared by a node (or dialog), or {@code null} if there is none.
+     */
+    private CachedExcelTable sharedTable(final SheetCache.Key key) {
+        final SheetCache.Lease lease = key == null ? null : SheetCache.getInstance().acquireLoaded(key);
+        if (lease == null) {
+            return null;
+        }
+        try {
+            final CachedExcelTable table = lease.get().get(0);
+            m_leases.add(lease);
+            return table;
+        } catch (InterruptedException | ExecutionException e) {
+            // the loaded tables are returned without waiting
+            lease.close();
+            fixInterrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Releases the shared tables used by the dialog.
+     */
+    private void releaseSharedTables() {
+        synchronized (m_leases) {
+            m_leases.forEach(SheetCache.Lease::close);
+            m_leases.clear();
+        }
+    }
+
     /** @return int value from {@link #m_timeout}. */
     private int readTimeOutInSecondsFromSpinner() {
         return ((Number)m_timeout.getValue()).intValue();
@@ -1158,40 +1277,24 @@ private static boolean checkPreviousFutureAndCancel(final Future<CachedExcelTabl
      */
     String firstSheetName(final Path path) {
         if (ExcelTableReader.isXlsx(path)) {
-            try (final InputStream stream = Files.newInputStream(path);
-                    final OPCPackage opcpackage = OPCPackage.open(stream)) {
-                final XSSFReader reader = new XSSFReader(opcpackage);
-                return POIUtils.getFirstSheetNameWithData(reader, new ReadOnlySharedStringsTable(opcpackage));
+            try {
+                final OPCPackage opcpackage = POIUtils.openPackage(path);
+                try {
+                    return POIUtils.getFirstSheetNameWithData(new XSSFReader(opcpackage));
+                } finally {
+                    opcpackage.revert();
+                }
             } catch (IOException | SAXException | OpenXML4JException | ParserConfigurationException e) {
                 return null;
             }
         } else {
-            if (m_workbook == null) {
-                try {
-                    m_workbook = getWorkbook(path);
-                } catch (final IOException e) {
-                    throw new UncheckedIOException(e);
-                } catch (final InvalidFormatException e) {
-                    throw new RuntimeException(e);
-                }
+            try {
+                return POIUtils.getFirstXlsSheetNameWithData(path);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (final InvalidFormatException e) {
+                throw new RuntimeException(e);
             }
-            return POIUtils.getFirstSheetNameWithData(m_workbook);
-        }
-    }
-
-    /**
-     * Loads a workbook from the file system.
-     *
-     * @param path Path to the workbook
-     * @return The workbook or null if it could not be loaded
-     * @throws IOException
-     * @throws InvalidFormatException
-     * @throws RuntimeException the underlying POI library also throws other kind of exceptions
-     */
-    public Workbook getWorkbook(final Path path) throws IOException, InvalidFormatException {
-        try (InputStream in = Files.newInputStream(path)) {
-            // This should be the only place in the code where a workbook gets loaded
-            return WorkbookFactory.create(in);
         }
     }
 
@@ -1395,6 +1498,14 @@ private XLSUserSettings createSettingsFromComponents() throws InvalidSettingsExc
         s.setReevaluateFormulae(m_reevaluateFormulae.isSelected());
         s.setTimeoutInSeconds(readTimeOutInSecondsFromSpinner());
         s.setNoPreview(m_noPreviewChecker.isSelected());
+        s.setReadAheadFiles(((Number)m_readAheadFiles.getValue()).intValue());
+        s.setTypeInferenceRows(((Number)m_typeInferenceRows.getValue()).intValue());
+        s.setTypeMismatchPolicy((TypeMismatchPolicy)m_typeMismatchPolicy.getSelectedItem());
+        s.setUseParseCache(m_useParseCache.isSelected());
+        s.setHashCachedContent(m_hashCachedContent.isSelected());
+        s.setShareParsedSheets(m_shareParsedSheets.isSelected());
+        s.setReadAllSheets(m_readAllSheets.isSelected());
+        s.setSheetNamePattern(m_sheetNamePattern.getText());
         return s;
     }
 
@@ -1488,6 +1599,16 @@ private void transferSettingsIntoComponents(final XLSUserSettings s) {
         m_reevaluateFormulae.setSelected(s.isReevaluateFormulae());
 
         m_noPreviewChecker.setSelected(s.isNoPreview());
+        m_readAheadFiles.setValue(s.getReadAheadFiles());
+        m_typeInferenceRows.setValue(s.getTypeInferenceRows());
+        m_typeMismatchPolicy.setSelectedItem(s.getTypeMismatchPolicy());
+        m_useParseCache.setSelected(s.isUseParseCache());
+        m_hashCachedContent.setSelected(s.isHashCachedContent());
+        m_hashCachedContent.setEnabled(s.isUseParseCache());
+        m_shareParsedSheets.setSelected(s.isShareParsedSheets());
+        m_readAllSheets.setSelected(s.isReadAllSheets());
+        m_sheetNamePattern.setText(s.getSheetNamePattern());
+        m_sheetNamePattern.setEnabled(s.isReadAllSheets());
 
         m_timeout.setValue(s.getTimeoutInSeconds());
 
@@ -1531,7 +1652,9 @@ protected void saveSettingsTo(final NodeSettingsWO settings) throws InvalidSetti
         s.save(settings);
         m_fileChooser.saveSettingsTo(settings);
         final DataTable preview = m_previewDataTable;
-        if (!s.isNoPreview() /*&& !m_incomplete*/) {
+        // the preview shows a single sheet only, the structure of all the sheets is computed on execution (as well as
+        // the types inferred from the first rows, the preview infers them from all rows)
+        if (!s.isNoPreview() && !s.isReadAllSheets() && !ExcelTableReader.isSampling(s) /*&& !m_incomplete*/) {
             CheckUtils.checkSettingNotNull(preview, "No preview table created - reload the sheet");
             // if we have a preview table, store the DTS with the settings.
             // This is a hack around to avoid long configure times.
@@ -1606,12 +1729,12 @@ public void focusLost(final FocusEvent e) {
 
     private void refreshWorkbook(final String path) {
         if (path == null) {
-            m_workbook = null;
             m_sheets.clear();
+            releaseSharedTables();
             m_workbookPath = null;
         } else if (!path.equals(m_workbookPath)) {
             m_sheets.clear();
-            m_workbook = null;
+            releaseSharedTables();
             m_workbookPath = path;
             checkPreviousFuture();
         }
@@ -1634,7 +1757,7 @@ private void cleanup() {
         clearTableViews();
         // Remove own reference to the workbook
         m_sheets.clear();
-        m_workbook = null;
+        releaseSharedTables();
         m_workbookPath = null;
         checkPreviousFuture();
         // Now the garbage collector should be able to collect the workbook object
@@ -53,6 +53,7 @@
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 
 import org.knime.base.node.io.filehandling.FileHandlingUtil;
 import org.knime.core.data.DataTableSpec;
@@ -75,6 +76,7 @@
 import org.knime.core.node.streamable.RowOutput;
 import org.knime.core.node.streamable.StreamableOperator;
 import org.knime.core.node.streamable.StreamableOperatorInternals;
+import org.knime.ext.poi2.node.read4.XLSUserSettings.TypeMismatchPolicy;
 import org.knime.filehandling.core.connections.FSConnection;
 import org.knime.filehandling.core.defaultnodesettings.FileChooserHelper;
 import org.knime.filehandling.core.defaultnodesettings.FileChooserSettingsConverter;
@@ -101,7 +103,9 @@ private final class XLSReaderStreamableOperator extends StreamableOperator {
          */
         @Override
         public void runIntermediate(final PortInput[] inputs, final ExecutionContext exec) throws Exception {
-            m_util = createFileHandlingUtil();
+            // the rows pushed to the output cannot be read again, so the wider types have to be known in advance
+            m_util = m_settings.getTypeMismatchPolicy() == TypeMismatchPolicy.WIDEN
+                ? createFileHandlingUtil(withAllRowsInferred(m_settings), null) : createFileHandlingUtil();
             m_dts = m_util.createDataTableSpec();
         }
 
@@ -112,7 +116,8 @@ public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final
             //as it would require serializing and deserializing the whole sheet
             // Changes here should probably also be applied to #execute
             if (m_util == null) {
-                m_util = createFileHandlingUtil();
+                // the spec is known from the settings, so the rows of xlsx files can be pushed while parsing
+                m_util = createFileHandlingUtil(m_dts);
             }
             final RowOutput output = (RowOutput)outputs[0];
             m_util.pushRowsToOutput(output, exec);
@@ -149,15 +154,86 @@ static final SettingsModelFileChooser2 getSettingsModelFileChooser() {
 
     @Override
     protected BufferedDataTable[] execute(final PortObject[] inObjects, final ExecutionContext exec) throws Exception {
-        final FileHandlingUtil fhUtil = createFileHandlingUtil();
-        return new BufferedDataTable[]{fhUtil.createDataTable(exec)};
+        final ParseScheduler scheduler = ParseScheduler.shared();
+        final long deferred = scheduler.deferredCount();
+        final long abandoned = scheduler.abandonedCount();
+        try {
+            return executeWithMismatchPolicy(exec);
+        } finally {
+            // the counters are shared, so parses of other nodes running at the same time are included
+            final long waited = scheduler.deferredCount() - deferred;
+            final long cancelled = scheduler.abandonedCount() - abandoned;
+            if (waited > 0 || cancelled > 0) {
+                LOGGER.info(waited + " parse(s) deferred and " + cancelled
+                    + " abandoned during the execution, parse scheduler: " + scheduler.statistics());
+            } else {
+                LOGGER.debug("Parse scheduler: " + scheduler.statistics());
+            }
+        }
+    }
+
+    private BufferedDataTable[] executeWithMismatchPolicy(final ExecutionContext exec) throws Exception {
+        return new BufferedDataTable[]{readWidening(() -> createFileHandlingUtil().createDataTable(exec), () -> {
+            exec.setProgress(0);
+            return createFileHandlingUtil(withAllRowsInferred(m_settings), null).createDataTable(exec);
+        })};
+    }
+
+    /**
+     * Reads the table, and once more when a value does not fit the column types inferred from the first rows and the
+     * {@link TypeMismatchPolicy} is to widen them.
+     *
+     * @param read Reads the table with the configured settings.
+     * @param readAllRowsInferred Reads the table with the column types inferred from all rows.
+     * @return The read table.
+     * @throws Exception Reading failed.
+     */
+    static <T> T readWidening(final Callable<T> read, final Callable<T> readAllRowsInferred) throws Exception {
+        try {
+            return read.call();
+        } catch (final Exception e) {
+            final TypeMismatchException mismatch = TypeMismatchException.find(e);
+            if (mismatch == null || !mismatch.isWiden()) {
+                throw e;
+            }
+            LOGGER.info(mismatch.getMessage() + ", reading again with the column types inferred from all rows");
+            return readAllRowsInferred.call();
+        }
     }
 
     private FileHandlingUtil createFileHandlingUtil() throws InvalidSettingsException, IOException {
-        final ExcelTableReader reader = new ExcelTableReader(m_settings);
+        return createFileHandlingUtil(null);
+    }
+
+    /**
+     * @param streamingSpec The known spec of the output, or {@code null} if the tables have to be read completely.
+     */
+    private FileHandlingUtil createFileHandlingUtil(final DataTableSpec streamingSpec)
+        throws InvalidSettingsException, IOException {
+        return createFileHandlingUtil(m_settings, streamingSpec);
+    }
+
+    /**
+     * @param settings The settings to read the files with.
+     * @param streamingSpec The known spec of the output, or {@code null} if the tables have to be read completely.
+     */
+    private FileHandlingUtil createFileHandlingUtil(final XLSUserSettings settings,
+        final DataTableSpec streamingSpec) throws InvalidSettingsException, IOException {
+        final ExcelTableReader reader = new ExcelTableReader(settings, streamingSpec);
         return new FileHandlingUtil(reader, getFileChooserHelper());
     }
 
+    /**
+     * @param settings The user settings.
+     * @return A copy of {@code settings} inferring the column types from all rows.
+     * @throws InvalidSettingsException The settings cannot be copied.
+     */
+    static XLSUserSettings withAllRowsInferred(final XLSUserSettings settings) throws InvalidSettingsException {
+        final XLSUserSettings copy = XLSUserSettings.clone(settings);
+        copy.setTypeInferenceRows(0);
+        return copy;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -277,9 +353,9 @@ protected DataTableSpec[] configure(final PortObjectSpec[] inSpecs) throws Inval
             return null;
         }
 
-        // make sure the DTS still fits the settings
+        // make sure the DTS still fits the settings (the types inferred from the first rows are known on execution)
         final String id = SettingsIDBuilder.getID(m_settingsModelFileChooser, m_settings);
-        if (!id.equals(m_dtsSettingsID)) {
+        if (!id.equals(m_dtsSettingsID) || ExcelTableReader.isSampling(m_settings)) {
             m_dts = null;
         }
 
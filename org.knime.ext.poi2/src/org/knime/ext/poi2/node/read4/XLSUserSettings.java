@@ -47,6 +47,9 @@
  */
 package org.knime.ext.poi2.node.read4;
 
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeSettings;
 import org.knime.core.node.NodeSettingsRO;
@@ -74,6 +77,61 @@ class XLSUserSettings {
     /** Default value for the no preview setting. */
     static final boolean DEFAULT_NO_PREVIEW = false;
 
+    private static final String READ_AHEAD_FILES = "READ_AHEAD_FILES";
+
+    /** Default number of files parsed ahead when reading multiple files. */
+    static final int DEFAULT_READ_AHEAD_FILES = 1;
+
+    private static final String READ_ALL_SHEETS = "READ_ALL_SHEETS";
+
+    private static final String SHEET_NAME_PATTERN = "SHEET_NAME_PATTERN";
+
+    /** Default pattern of the sheet names to read when all (matching) sheets are read. */
+    static final String DEFAULT_SHEET_NAME_PATTERN = ".*";
+
+    private static final String USE_PARSE_CACHE = "USE_PARSE_CACHE";
+
+    private static final String HASH_CACHED_CONTENT = "HASH_CACHED_CONTENT";
+
+    private static final String SHARE_PARSED_SHEETS = "SHARE_PARSED_SHEETS";
+
+    private static final String TYPE_INFERENCE_ROWS = "TYPE_INFERENCE_ROWS";
+
+    /** Default number of rows the column types are inferred from, {@code 0} means all rows. */
+    static final int DEFAULT_TYPE_INFERENCE_ROWS = 0;
+
+    private static final String TYPE_MISMATCH_POLICY = "TYPE_MISMATCH_POLICY";
+
+    /**
+     * What happens with the values not fitting the type of their column when the types were inferred from the first
+     * rows only (or from a previous execution).
+     */
+    enum TypeMismatchPolicy {
+        /** The execution fails. */
+        FAIL("Fail"),
+        /** The value is replaced by a missing cell. */
+        MISSING("Insert missing value"),
+        /** The rows are read again with the column types inferred from all rows. */
+        WIDEN("Read again with wider types");
+
+        private final String m_label;
+
+        TypeMismatchPolicy(final String label) {
+            m_label = label;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return m_label;
+        }
+    }
+
+    /** Default policy, the values were always replaced by missing cells. */
+    static final TypeMismatchPolicy DEFAULT_TYPE_MISMATCH_POLICY = TypeMismatchPolicy.MISSING;
+
     private boolean m_readAllData;
 
     private int m_firstRow0;
@@ -121,6 +179,22 @@ class XLSUserSettings {
 
     private int m_timeoutInSeconds = DEFAULT_TIMEOUT_IN_SECONDS;
 
+    private int m_readAheadFiles = DEFAULT_READ_AHEAD_FILES;
+
+    private boolean m_readAllSheets;
+
+    private String m_sheetNamePattern = DEFAULT_SHEET_NAME_PATTERN;
+
+    private boolean m_useParseCache;
+
+    private boolean m_hashCachedContent;
+
+    private boolean m_shareParsedSheets;
+
+    private int m_typeInferenceRows = DEFAULT_TYPE_INFERENCE_ROWS;
+
+    private TypeMismatchPolicy m_typeMismatchPolicy = DEFAULT_TYPE_MISMATCH_POLICY;
+
     static final boolean DEFAULT_REEVALUATE_FORMULAE = false;
 
     /** Default pattern for formula evaluation error StringCells */
@@ -162,6 +236,19 @@ class XLSUserSettings {
         m_reevaluateFormulae = DEFAULT_REEVALUATE_FORMULAE;
 
         m_noPreview = DEFAULT_NO_PREVIEW;
+
+        m_readAheadFiles = DEFAULT_READ_AHEAD_FILES;
+
+        m_readAllSheets = false;
+        m_sheetNamePattern = DEFAULT_SHEET_NAME_PATTERN;
+
+        m_useParseCache = false;
+        m_hashCachedContent = false;
+
+        m_shareParsedSheets = false;
+
+        m_typeInferenceRows = DEFAULT_TYPE_INFERENCE_ROWS;
+        m_typeMismatchPolicy = DEFAULT_TYPE_MISMATCH_POLICY;
     }
 
     /**
@@ -204,6 +291,14 @@ final void save(final NodeSettingsWO settings) {
         settings.addBoolean(REEVALUATE_FORMULAE, m_reevaluateFormulae);
         settings.addInt(TIMEOUT_IN_SECONDS, m_timeoutInSeconds);
         settings.addBoolean(NO_PREVIEW, m_noPreview);
+        settings.addInt(READ_AHEAD_FILES, m_readAheadFiles);
+        settings.addBoolean(READ_ALL_SHEETS, m_readAllSheets);
+        settings.addString(SHEET_NAME_PATTERN, m_sheetNamePattern);
+        settings.addBoolean(USE_PARSE_CACHE, m_useParseCache);
+        settings.addBoolean(HASH_CACHED_CONTENT, m_hashCachedContent);
+        settings.addBoolean(SHARE_PARSED_SHEETS, m_shareParsedSheets);
+        settings.addInt(TYPE_INFERENCE_ROWS, m_typeInferenceRows);
+        settings.addString(TYPE_MISMATCH_POLICY, m_typeMismatchPolicy.name());
     }
 
     /**
@@ -260,6 +355,19 @@ static final XLSUserSettings load(final NodeSettingsRO settings)
         result.m_reevaluateFormulae = settings.getBoolean(REEVALUATE_FORMULAE, DEFAULT_REEVALUATE_FORMULAE);
         result.m_timeoutInSeconds = settings.getInt(TIMEOUT_IN_SECONDS, DEFAULT_TIMEOUT_IN_SECONDS);
         result.m_noPreview = settings.getBoolean(NO_PREVIEW, DEFAULT_NO_PREVIEW);
+        result.m_readAheadFiles = settings.getInt(READ_AHEAD_FILES, DEFAULT_READ_AHEAD_FILES);
+        result.m_readAllSheets = settings.getBoolean(READ_ALL_SHEETS, false);
+        result.m_sheetNamePattern = settings.getString(SHEET_NAME_PATTERN, DEFAULT_SHEET_NAME_PATTERN);
+        result.m_useParseCache = settings.getBoolean(USE_PARSE_CACHE, false);
+        result.m_hashCachedContent = settings.getBoolean(HASH_CACHED_CONTENT, false);
+        result.m_shareParsedSheets = settings.getBoolean(SHARE_PARSED_SHEETS, false);
+        result.m_typeInferenceRows = settings.getInt(TYPE_INFERENCE_ROWS, DEFAULT_TYPE_INFERENCE_ROWS);
+        final String policy = settings.getString(TYPE_MISMATCH_POLICY, DEFAULT_TYPE_MISMATCH_POLICY.name());
+        try {
+            result.m_typeMismatchPolicy = TypeMismatchPolicy.valueOf(policy);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSettingsException("Unknown type mismatch policy: " + policy, e);
+        }
         return result;
     }
 
@@ -288,6 +396,25 @@ final String getStatus() {
             return "Timeout should be non-negative! (0 means infinite)";
         }
 
+        if (m_readAheadFiles < 0) {
+            return "The number of files read ahead should be non-negative!";
+        }
+
+        if (m_typeInferenceRows < 0) {
+            return "The number of rows to infer the column types from should be non-negative! (0 means all rows)";
+        }
+
+        if (m_readAllSheets) {
+            if (m_sheetNamePattern == null) {
+                return "Sheet name pattern is not specified";
+            }
+            try {
+                Pattern.compile(m_sheetNamePattern);
+            } catch (PatternSyntaxException e) {
+                return "Invalid sheet name pattern: " + e.getMessage();
+            }
+        }
+
         if (!m_readAllData) {
             if (m_firstColumn0 < 0) {
                 return "'First column' index must be greater than one";
@@ -746,6 +873,122 @@ final void setNoPreview(final boolean noPreview) {
         m_noPreview = noPreview;
     }
 
+    /**
+     * @return the number of files parsed in advance while the rows of the current file are written
+     */
+    final int getReadAheadFiles() {
+        return m_readAheadFiles;
+    }
+
+    /**
+     * @param readAheadFiles the number of files parsed in advance to set
+     */
+    final void setReadAheadFiles(final int readAheadFiles) {
+        m_readAheadFiles = readAheadFiles;
+    }
+
+    /**
+     * @return whether all sheets with a name matching {@link #getSheetNamePattern()} should be read (instead of the
+     *         single sheet {@link #getSheetName()})
+     */
+    final boolean isReadAllSheets() {
+        return m_readAllSheets;
+    }
+
+    /**
+     * @param readAllSheets the read all (matching) sheets value to set
+     */
+    final void setReadAllSheets(final boolean readAllSheets) {
+        m_readAllSheets = readAllSheets;
+    }
+
+    /**
+     * @return the regular expression the names of the read sheets have to match
+     */
+    final String getSheetNamePattern() {
+        return m_sheetNamePattern;
+    }
+
+    /**
+     * @param sheetNamePattern the regular expression of the sheet names to set
+     */
+    final void setSheetNamePattern(final String sheetNamePattern) {
+        m_sheetNamePattern = sheetNamePattern;
+    }
+
+    /**
+     * @return whether the parsed content of the workbooks is kept on disk for the next executions (see
+     *         {@link ParseCache})
+     */
+    final boolean isUseParseCache() {
+        return m_useParseCache;
+    }
+
+    /**
+     * @param useParseCache the use of the on disk parse cache to set
+     */
+    final void setUseParseCache(final boolean useParseCache) {
+        m_useParseCache = useParseCache;
+    }
+
+    /**
+     * @return whether the cached content is only used when the hash of the workbook's content is unchanged too (not
+     *         only its size and modification time)
+     */
+    final boolean isHashCachedContent() {
+        return m_hashCachedContent;
+    }
+
+    /**
+     * @param hashCachedContent the content hash check of the cached content to set
+     */
+    final void setHashCachedContent(final boolean hashCachedContent) {
+        m_hashCachedContent = hashCachedContent;
+    }
+
+    /**
+     * @return whether the parsed sheets are kept in memory for the other nodes (and dialogs) reading them (see
+     *         {@link SheetCache})
+     */
+    final boolean isShareParsedSheets() {
+        return m_shareParsedSheets;
+    }
+
+    /**
+     * @param shareParsedSheets the sharing of the parsed sheets to set
+     */
+    final void setShareParsedSheets(final boolean shareParsedSheets) {
+        m_shareParsedSheets = shareParsedSheets;
+    }
+
+    /**
+     * @return the number of rows the column types are inferred from, {@code 0} means all rows
+     */
+    final int getTypeInferenceRows() {
+        return m_typeInferenceRows;
+    }
+
+    /**
+     * @param typeInferenceRows the number of rows to infer the column types from to set ({@code 0}: all rows)
+     */
+    final void setTypeInferenceRows(final int typeInferenceRows) {
+        m_typeInferenceRows = typeInferenceRows;
+    }
+
+    /**
+     * @return what happens with the values not fitting the type of their column
+     */
+    final TypeMismatchPolicy getTypeMismatchPolicy() {
+        return m_typeMismatchPolicy;
+    }
+
+    /**
+     * @param typeMismatchPolicy the handling of the values not fitting the type of their column to set
+     */
+    final void setTypeMismatchPolicy(final TypeMismatchPolicy typeMismatchPolicy) {
+        m_typeMismatchPolicy = typeMismatchPolicy;
+    }
+
     /**
      * Normalizes the settings.
      *
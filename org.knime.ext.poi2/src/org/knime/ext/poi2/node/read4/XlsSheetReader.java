@@ -0,0 +1,659 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.ColumnInfoRecord;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.WorkbookDependentFormula;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.DataType;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.KNIMESheetContentsHandler;
+import org.knime.ext.poi2.node.read4.POIUtils.EndOfRange;
+
+/**
+ * Reads the cells of xls sheets from the BIFF records of the workbook stream (HSSF event API) and reports them to
+ * {@link KNIMESheetContentsHandler}s the same way as {@link XlsxSheetParser} does for xlsx sheets, so only the result
+ * is kept in memory, not the object model of the workbook. The cached results of the formulae are reported.
+ *
+ * @author agent
+ */
+final class XlsSheetReader {
+
+    /** The BIFF code of a numeric cached formula result ({@link FormulaRecord#getCachedResultType()}). */
+    private static final int NUMERIC_RESULT = 0;
+
+    /** The BIFF code of a boolean cached formula result. */
+    private static final int BOOLEAN_RESULT = 4;
+
+    /** The BIFF code of an error cached formula result. */
+    private static final int ERROR_RESULT = 5;
+
+    /**
+     * The receiver of the contents of a sheet.
+     */
+    static final class SheetTarget {
+        private final KNIMESheetContentsHandler m_handler;
+
+        private final Set<Integer> m_hiddenColumns;
+
+        /**
+         * @param handler The receiver of the cells.
+         * @param hiddenColumns The set to collect the {@code 1}-based indices of the hidden columns.
+         */
+        SheetTarget(final KNIMESheetContentsHandler handler, final Set<Integer> hiddenColumns) {
+            m_handler = handler;
+            m_hiddenColumns = hiddenColumns;
+        }
+    }
+
+    private final DirectoryNode m_root;
+
+    private final KNIMEDataFormatter m_formatter;
+
+    private CountingInputStream m_stream;
+
+    private long m_size = -1L;
+
+    /**
+     * @param root The root of the xls file system.
+     * @param formatter The formatter to use (not shared between threads).
+     */
+    XlsSheetReader(final DirectoryNode root, final KNIMEDataFormatter formatter) {
+        m_root = root;
+        m_formatter = formatter;
+    }
+
+    /**
+     * @return The progress of the current read (by the bytes of the workbook stream).
+     */
+    OptionalDouble progress() {
+        final CountingInputStream stream = m_stream;
+        return stream == null || m_size <= 0L ? OptionalDouble.empty()
+            : OptionalDouble.of(stream.getByteCount() / (double)m_size);
+    }
+
+    /**
+     * @return The names of the sheets in the order of the workbook.
+     * @throws IOException Problem reading.
+     */
+    List<String> sheetNames() throws IOException {
+        final SubstreamListener listener = new SubstreamListener() {
+            @Override
+            short endOfGlobals() {
+                return 1;
+            }
+        };
+        process(listener);
+        return listener.names();
+    }
+
+    /**
+     * Finds the first sheet with rows like {@link POIUtils#getFirstSheetNameWithData(Workbook)}, the sheets are read
+     * only until the result is known.
+     *
+     * @return The name of the first sheet with data, the first sheet if none has data.
+     * @throws IOException Problem reading.
+     */
+    String firstSheetNameWithData() throws IOException {
+        final FirstSheetWithData listener = new FirstSheetWithData();
+        process(listener);
+        final List<String> names = listener.names();
+        final int first = listener.first();
+        return first >= 0 ? names.get(first) : names.isEmpty() ? null : names.get(0);
+    }
+
+    /**
+     * Reads the cells of sheets, the workbook stream is read only until all of them are complete.
+     *
+     * @param targets Returns the receiver of the sheet with the given name, {@code null} for the sheets not to read.
+     *            Called in the order of the sheets before any cell is reported.
+     * @throws IOException Problem reading.
+     */
+    void read(final Function<String, SheetTarget> targets) throws IOException {
+        process(new Cells(targets));
+    }
+
+    /**
+     * @param root The root of an OLE2 file system.
+     * @return Whether it contains an xls workbook stream (encrypted xlsx files are OLE2 files without it).
+     */
+    static boolean isWorkbook(final DirectoryNode root) {
+        return workbookEntryName(root) != null;
+    }
+
+    private static String workbookEntryName(final DirectoryNode root) {
+        for (final String name : InternalWorkbook.WORKBOOK_DIR_ENTRY_NAMES) {
+            if (root.hasEntry(name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private void process(final SubstreamListener listener) throws IOException {
+        final String name = workbookEntryName(m_root);
+        if (name == null) {
+            throw new IOException("The file does not contain an xls workbook");
+        }
+        final HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(listener);
+        m_size = ((DocumentEntry)m_root.getEntry(name)).getSize();
+        try (final InputStream in = m_root.createDocumentInputStream(name)) {
+            m_stream = new CountingInputStream(in);
+            new HSSFEventFactory().abortableProcessEvents(request, m_stream);
+        } catch (HSSFUserException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            m_stream = null;
+        }
+    }
+
+    /**
+     * Tracks the substreams of the workbook stream: the workbook globals are followed by the sheets in the order of
+     * their BOF positions, embedded charts are nested substreams.
+     */
+    private abstract static class SubstreamListener extends AbortableHSSFListener {
+        private final List<BoundSheetRecord> m_boundSheets = new ArrayList<>();
+
+        /** The indices of the sheets in the workbook order by substream. */
+        private int[] m_sheetBySubstream;
+
+        private int m_depth;
+
+        /** The index of the current sheet substream, {@code -1} within the workbook globals. */
+        private int m_substream = -1;
+
+        @Override
+        public final short abortableProcessRecord(final Record record) {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    if (m_depth++ == 0 && m_sheetBySubstream != null) {
+                        m_substream++;
+                        return startSheet(sheet());
+                    }
+                    return 0;
+                case EOFRecord.sid:
+                    if (--m_depth > 0) {
+                        return 0;
+                    }
+                    if (m_sheetBySubstream == null) {
+                        final BoundSheetRecord[] byPosition = BoundSheetRecord.orderByBofPosition(m_boundSheets);
+                        m_sheetBySubstream = new int[byPosition.length];
+                        for (int i = 0; i < byPosition.length; i++) {
+                            m_sheetBySubstream[i] = m_boundSheets.indexOf(byPosition[i]);
+                        }
+                        return endOfGlobals();
+                    }
+                    return endOfSheet(sheet());
+                case BoundSheetRecord.sid:
+                    m_boundSheets.add((BoundSheetRecord)record);
+                    return 0;
+                default:
+                    if (m_depth != 1) {
+                        return 0;
+                    }
+                    return m_sheetBySubstream == null ? globalsRecord(record) : sheetRecord(sheet(), record);
+            }
+        }
+
+        /**
+         * @return The index of the current sheet in the workbook order, {@code -1} for unknown substreams.
+         */
+        private int sheet() {
+            return m_substream < m_sheetBySubstream.length ? m_sheetBySubstream[m_substream] : -1;
+        }
+
+        /**
+         * @return The sheet names in the workbook order.
+         */
+        final List<String> names() {
+            final List<String> names = new ArrayList<>(m_boundSheets.size());
+            for (final BoundSheetRecord boundSheet : m_boundSheets) {
+                names.add(boundSheet.getSheetname());
+            }
+            return names;
+        }
+
+        /**
+         * @return The number of sheets.
+         */
+        final int numberOfSheets() {
+            return m_boundSheets.size();
+        }
+
+        /**
+         * @param record A record of the workbook globals.
+         * @return Non-zero to stop the processing.
+         */
+        short globalsRecord(final Record record) {
+            return 0;
+        }
+
+        /**
+         * @return Non-zero to stop the processing.
+         */
+        short endOfGlobals() {
+            return 0;
+        }
+
+        /**
+         * @param sheet The index of the sheet in the workbook order, {@code -1} for unknown substreams.
+         * @return Non-zero to stop the processing.
+         */
+        short startSheet(final int sheet) {
+            return 0;
+        }
+
+        /**
+         * @param sheet The index of the sheet in the workbook order, {@code -1} for unknown substreams.
+         * @param record A (not nested) record of the sheet.
+         * @return Non-zero to stop the processing.
+         */
+        short sheetRecord(final int sheet, final Record record) {
+            return 0;
+        }
+
+        /**
+         * @param sheet The index of the sheet in the workbook order, {@code -1} for unknown substreams.
+         * @return Non-zero to stop the processing.
+         */
+        short endOfSheet(final int sheet) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the first sheet with rows in the workbook order.
+     */
+    private static final class FirstSheetWithData extends SubstreamListener {
+        private boolean[] m_hasData, m_complete;
+
+        private int m_first = -1;
+
+        int first() {
+            return m_first;
+        }
+
+        @Override
+        short endOfGlobals() {
+            m_hasData = new boolean[numberOfSheets()];
+            m_complete = new boolean[numberOfSheets()];
+            return 0;
+        }
+
+        @Override
+        short sheetRecord(final int sheet, final Record record) {
+            if (sheet >= 0 && !m_hasData[sheet]
+                && (record instanceof RowRecord || record instanceof CellValueRecordInterface)) {
+                m_hasData[sheet] = true;
+                return check();
+            }
+            return 0;
+        }
+
+        @Override
+        short endOfSheet(final int sheet) {
+            if (sheet >= 0) {
+                m_complete[sheet] = true;
+            }
+            return check();
+        }
+
+        /**
+         * @return Non-zero when every sheet before the first one with data is known to be empty.
+         */
+        private short check() {
+            for (int i = 0; i < m_hasData.length; i++) {
+                if (m_hasData[i]) {
+                    m_first = i;
+                    return 1;
+                }
+                if (!m_complete[i]) {
+                    return 0;
+                }
+            }
+            return 1;
+        }
+    }
+
+    /**
+     * Reports the cells of the requested sheets.
+     */
+    private final class Cells extends SubstreamListener {
+        private final Function<String, SheetTarget> m_targetByName;
+
+        /** The targets by sheet index. */
+        private SheetTarget[] m_targets;
+
+        private final FormatTrackingHSSFListener m_formats = new FormatTrackingHSSFListener(null);
+
+        private CellFormat[] m_cellFormats = new CellFormat[0];
+
+        private SSTRecord m_sst;
+
+        private boolean m_date1904;
+
+        private int m_remaining;
+
+        /** The target of the current sheet, {@code null} when it is not read. */
+        private SheetTarget m_target;
+
+        private int m_row;
+
+        /** The column of the formula cell whose cached {@link String} result is in the next {@link StringRecord}. */
+        private int m_stringColumn = -1;
+
+        Cells(final Function<String, SheetTarget> targets) {
+            m_targetByName = targets;
+        }
+
+        @Override
+        short globalsRecord(final Record record) {
+            switch (record.getSid()) {
+                case FormatRecord.sid:
+                case ExtendedFormatRecord.sid:
+                    m_formats.processRecordInternally(record);
+                    break;
+                case SSTRecord.sid:
+                    m_sst = (SSTRecord)record;
+                    break;
+                case DateWindow1904Record.sid:
+                    m_date1904 = ((DateWindow1904Record)record).getWindowing() == 1;
+                    break;
+                default:
+                    break;
+            }
+            return 0;
+        }
+
+        @Override
+        short endOfGlobals() {
+            final List<String> names = names();
+            m_targets = new SheetTarget[names.size()];
+            for (int i = 0; i < m_targets.length; i++) {
+                m_targets[i] = m_targetByName.apply(names.get(i));
+                if (m_targets[i] != null) {
+                    m_remaining++;
+                }
+            }
+            return m_remaining == 0 ? (short)1 : 0;
+        }
+
+        @Override
+        short startSheet(final int sheet) {
+            m_target = sheet < 0 ? null : m_targets[sheet];
+            m_row = -1;
+            m_stringColumn = -1;
+            return 0;
+        }
+
+        @Override
+        short endOfSheet(final int sheet) {
+            if (m_target == null) {
+                return 0;
+            }
+            if (m_row >= 0) {
+                m_target.m_handler.endRow(m_row);
+            }
+            m_target = null;
+            return --m_remaining == 0 ? (short)1 : 0;
+        }
+
+        @Override
+        short sheetRecord(final int sheet, final Record record) {
+            if (m_target == null) {
+                return 0;
+            }
+            try {
+                report(m_target.m_handler, record);
+            } catch (EndOfRange e) {
+                // the rest of the sheet is not needed
+                m_target = null;
+                return --m_remaining == 0 ? (short)1 : 0;
+            }
+            return 0;
+        }
+
+        /**
+         * Reports the cell (or hidden column) record of the current sheet.
+         */
+        private void report(final KNIMESheetContentsHandler output, final Record record) {
+            switch (record.getSid()) {
+                case ColumnInfoRecord.sid:
+                    final ColumnInfoRecord columnInfo = (ColumnInfoRecord)record;
+                    if (columnInfo.getHidden()) {
+                        KNIMEXSSFSheetXMLHandler.addHiddenColumns(m_target.m_hiddenColumns,
+                            columnInfo.getFirstColumn() + 1, columnInfo.getLastColumn() + 1);
+                    }
+                    break;
+                case NumberRecord.sid:
+                    final NumberRecord number = (NumberRecord)record;
+                    row(number);
+                    numberCell(output, number, number.getValue());
+                    break;
+                case LabelSSTRecord.sid:
+                    final LabelSSTRecord label = (LabelSSTRecord)record;
+                    row(label);
+                    output.nextCellType(DataType.STRING);
+                    output.cell(label.getColumn(), m_sst.getString(label.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    final LabelRecord oldLabel = (LabelRecord)record;
+                    row(oldLabel);
+                    output.nextCellType(DataType.STRING);
+                    output.cell(oldLabel.getColumn(), oldLabel.getValue());
+                    break;
+                case BoolErrRecord.sid:
+                    final BoolErrRecord boolErr = (BoolErrRecord)record;
+                    row(boolErr);
+                    if (boolErr.isBoolean()) {
+                        booleanCell(output, boolErr.getColumn(), boolErr.getBooleanValue());
+                    } else {
+                        errorCell(output, boolErr.getColumn(), boolErr.getErrorValue());
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    formulaCell(output, (FormulaRecord)record);
+                    break;
+                case StringRecord.sid:
+                    if (m_stringColumn >= 0) {
+                        output.nextCellType(DataType.FORMULA);
+                        output.cell(m_stringColumn, ((StringRecord)record).getString());
+                        m_stringColumn = -1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Reports the start of the cell's row (and the end of the previous one), the cells are ordered by rows.
+         */
+        private void row(final CellValueRecordInterface cell) {
+            if (cell.getRow() != m_row) {
+                if (m_row >= 0) {
+                    m_target.m_handler.endRow(m_row);
+                }
+                m_row = cell.getRow();
+                m_target.m_handler.startRow(m_row);
+            }
+        }
+
+        private void formulaCell(final KNIMESheetContentsHandler output, final FormulaRecord formula) {
+            row(formula);
+            final int column = formula.getColumn();
+            final int resultType = formula.getCachedResultType();
+            if (resultType == NUMERIC_RESULT) {
+                numberCell(output, formula, formula.getValue());
+            } else if (resultType == BOOLEAN_RESULT) {
+                booleanCell(output, column, formula.getCachedBooleanValue());
+            } else if (resultType == ERROR_RESULT) {
+                // the infinities are written as division by zero
+                final String infinity = infinity(formula.getParsedExpression());
+                if (infinity != null) {
+                    numberCell(output, formula, "1/0".equals(infinity) ? Double.POSITIVE_INFINITY
+                        : Double.NEGATIVE_INFINITY);
+                } else {
+                    errorCell(output, column, formula.getCachedErrorValue());
+                }
+            } else if (formula.hasCachedResultString()) {
+                m_stringColumn = column;
+            } else {
+                // empty string result
+                output.nextCellType(DataType.FORMULA);
+                output.cell(column, "");
+            }
+        }
+
+        private void numberCell(final KNIMESheetContentsHandler output, final CellValueRecordInterface cell,
+            final double value) {
+            final CellFormat format = cellFormat(cell);
+            output.nextCellType(DataType.NUMBER_OR_DATE);
+            KNIMEXSSFSheetXMLHandler.numberCell(output, cell.getColumn(), value, format, m_date1904);
+        }
+
+        /**
+         * @return The number format of the cell's extended format, looked up once per extended format.
+         */
+        private CellFormat cellFormat(final CellValueRecordInterface cell) {
+            final int xfIndex = cell.getXFIndex();
+            if (xfIndex >= m_cellFormats.length) {
+                m_cellFormats = Arrays.copyOf(m_cellFormats, Math.max(xfIndex + 1, 2 * m_cellFormats.length));
+            }
+            CellFormat format = m_cellFormats[xfIndex];
+            if (format == null) {
+                int formatIndex = m_formats.getFormatIndex(cell);
+                String formatString = m_formats.getFormatString(cell);
+                if (formatString == null) {
+                    formatIndex = 0;
+                    formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+                }
+                format = m_formatter.cellFormat(formatIndex, formatString);
+                m_cellFormats[xfIndex] = format;
+            }
+            return format;
+        }
+    }
+
+    private static void booleanCell(final KNIMESheetContentsHandler output, final int column, final boolean value) {
+        output.nextCellType(DataType.BOOLEAN);
+        output.cell(column, value ? "TRUE" : "FALSE");
+    }
+
+    private static void errorCell(final KNIMESheetContentsHandler output, final int column, final int errorCode) {
+        output.nextCellType(DataType.ERROR);
+        String text;
+        try {
+            text = FormulaError.forInt(errorCode).getString();
+        } catch (IllegalArgumentException e) {
+            text = "#N/A";
+        }
+        output.cell(column, "ERROR:" + text);
+    }
+
+    /**
+     * @param ptgs The parsed formula.
+     * @return {@code 1/0} or {@code -1/0} if the formula is one of them, otherwise {@code null}.
+     */
+    private static String infinity(final Ptg[] ptgs) {
+        if (ptgs == null || ptgs.length > 4) {
+            return null;
+        }
+        for (final Ptg ptg : ptgs) {
+            if (ptg instanceof WorkbookDependentFormula) {
+                return null;
+            }
+        }
+        try {
+            final String formula = FormulaRenderer.toFormulaString(null, ptgs);
+            return "1/0".equals(formula) || "-1/0".equals(formula) ? formula : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
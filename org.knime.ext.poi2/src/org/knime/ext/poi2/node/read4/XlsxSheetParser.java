@@ -0,0 +1,941 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.model.StylesTable;
+import org.knime.core.node.NodeLogger;
+import org.knime.ext.poi2.node.read4.KNIMEDataFormatter.CellFormat;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.DataType;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.KNIMESheetContentsHandler;
+import org.knime.ext.poi2.node.read4.KNIMEXSSFSheetXMLHandler.StyleFormats;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Parses the XML of an xlsx sheet directly from its UTF-8 bytes and reports the cells to a
+ * {@link KNIMESheetContentsHandler} the same way as {@link KNIMEXSSFSheetXMLHandler}. The cell references are decoded
+ * to column indices and the numbers, shared string and style indices are parsed from the bytes, so only the
+ * {@link String} values of the cells are allocated. Sheets in other encodings (or with a document type declaration)
+ * are parsed with {@link KNIMEXSSFSheetXMLHandler}.
+ *
+ * @author agent
+ */
+final class XlsxSheetParser {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(XlsxSheetParser.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The number of bytes checked for the encoding and the document type declaration. */
+    private static final int PROLOG_SIZE = 1024;
+
+    private static final int OTHER = 0, ROW = 1, CELL = 2, VALUE = 3, FORMULA = 4, INLINE_STRING = 5, TEXT = 6,
+            INLINE_STR = 7, COL = 8;
+
+    private static final byte[] XMLNS = ascii("xmlns"), NAMESPACE = ascii(NS_SPREADSHEETML), R = ascii("r"),
+            T = ascii("t"), S = ascii("s"), MIN = ascii("min"), MAX = ascii("max"), HIDDEN = ascii("hidden"),
+            TYPE_BOOLEAN = ascii("b"), TYPE_ERROR = ascii("e"), TYPE_INLINE_STR = ascii("inlineStr"),
+            TYPE_STRING = ascii("s"), TYPE_FORMULA = ascii("str");
+
+    /** Exactly representable powers of ten. */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1d;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10d;
+        }
+    }
+
+    private final SharedStringsStore m_strings;
+
+    private final KNIMESheetContentsHandler m_output;
+
+    private final StyleFormats m_formats;
+
+    private final Set<Integer> m_hiddenColumns = new LinkedHashSet<>();
+
+    private InputStream m_in;
+
+    private final byte[] m_buffer = new byte[BUFFER_SIZE];
+
+    private int m_position, m_limit;
+
+    /** The qualified name of the current element. */
+    private byte[] m_name = new byte[64];
+
+    private int m_nameLength;
+
+    /** The byte following the name read by {@link #readName(int)}. */
+    private int m_pendingByte;
+
+    /** The decoded values of the attributes of the current element, {@link #m_attributes} points into it. */
+    private byte[] m_attributeValues = new byte[256];
+
+    private int m_attributeValuesLength;
+
+    /** Name start, name length, value start, value length of each attribute of the current element. */
+    private int[] m_attributes = new int[32];
+
+    private int m_attributeCount;
+
+    /** The text of the current value. */
+    private byte[] m_text = new byte[256];
+
+    private int m_textLength;
+
+    private boolean m_lastWasCarriageReturn;
+
+    /** Whether the default namespace is the spreadsheet namespace. */
+    private boolean m_defaultNamespace;
+
+    /** The prefixes bound to the spreadsheet namespace. */
+    private final List<byte[]> m_prefixes = new ArrayList<>(2);
+
+    /** The namespace bindings to restore at the end of the elements declaring them. */
+    private final Deque<Binding> m_bindings = new ArrayDeque<>();
+
+    private int m_depth;
+
+    private boolean m_valueIsOpen;
+
+    private boolean m_inlineStringIsOpen;
+
+    private DataType m_nextDataType = DataType.NUMBER_OR_DATE;
+
+    private boolean m_inlineString;
+
+    private boolean m_formula;
+
+    private CellFormat m_format;
+
+    private int m_column;
+
+    private int m_rowNum;
+
+    private int m_nextRowNum;
+
+    /**
+     * A previous state of a namespace prefix binding.
+     */
+    private static final class Binding {
+        private final int m_depth;
+
+        /** {@code null} for the default namespace. */
+        private final byte[] m_prefix;
+
+        private final boolean m_bound;
+
+        Binding(final int depth, final byte[] prefix, final boolean bound) {
+            m_depth = depth;
+            m_prefix = prefix;
+            m_bound = bound;
+        }
+    }
+
+    /**
+     * @param styles The styles to use (can be {@code null}).
+     * @param strings The {@link String}s.
+     * @param output The receiver of the sheet contents.
+     * @param formatter Special {@link KNIMEDataFormatter} providing the {@link CellFormat}s.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     */
+    XlsxSheetParser(final StylesTable styles, final SharedStringsStore strings,
+        final KNIMESheetContentsHandler output, final KNIMEDataFormatter formatter, final boolean date1904) {
+        m_strings = strings;
+        m_output = output;
+        m_formats = new StyleFormats(styles, formatter, date1904);
+    }
+
+    /**
+     * @return The {@code 1}-based indices of the hidden columns (a view, filled while parsing).
+     */
+    Set<Integer> getHiddenColumns() {
+        return Collections.unmodifiableSet(m_hiddenColumns);
+    }
+
+    /**
+     * Parses the sheet and reports its contents.
+     *
+     * @param stream The sheet's XML, not closed.
+     * @throws IOException Problem reading.
+     * @throws SAXException Malformed XML.
+     * @throws ParserConfigurationException SAX parser problem (only for the sheets not in UTF-8).
+     */
+    void parse(final InputStream stream) throws IOException, SAXException, ParserConfigurationException {
+        final InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream, PROLOG_SIZE);
+        if (!isUTF8WithoutDocType(in)) {
+            final XMLReader sheetParser = SAXHelper.newXMLReader();
+            sheetParser.setContentHandler(
+                new KNIMEXSSFSheetXMLHandler(m_formats, m_strings, m_output, m_hiddenColumns));
+            sheetParser.parse(new InputSource(in));
+            return;
+        }
+        m_in = in;
+        m_position = m_limit = 0;
+        if (fill() && m_limit >= 3 && m_buffer[0] == (byte)0xEF && m_buffer[1] == (byte)0xBB
+            && m_buffer[2] == (byte)0xBF) {
+            m_position = 3;
+        }
+        while (true) {
+            if (m_valueIsOpen) {
+                final int b = next();
+                if (b < 0) {
+                    break;
+                }
+                if (b == '<') {
+                    tag();
+                } else {
+                    appendText(b);
+                }
+            } else {
+                if (!skipToTag()) {
+                    break;
+                }
+                tag();
+            }
+        }
+    }
+
+    /**
+     * Checks the prolog of the XML, the stream is reset afterwards.
+     *
+     * @param in The XML, {@link InputStream#markSupported() supporting mark}.
+     * @return Whether the XML is parsed from its bytes (otherwise with SAX).
+     * @throws IOException Problem reading.
+     */
+    static boolean isUTF8WithoutDocType(final InputStream in) throws IOException {
+        in.mark(PROLOG_SIZE);
+        final byte[] prolog = new byte[PROLOG_SIZE];
+        int length = 0;
+        for (int read; length < PROLOG_SIZE && (read = in.read(prolog, length, PROLOG_SIZE - length)) > 0;) {
+            length += read;
+        }
+        in.reset();
+        String start = new String(prolog, 0, length, StandardCharsets.ISO_8859_1);
+        if (start.contains("<!DOCTYPE")) {
+            return false;
+        }
+        if (start.startsWith("\u00EF\u00BB\u00BF")) {
+            // UTF-8 byte order mark
+            start = start.substring(3);
+        }
+        if (!start.startsWith("<")) {
+            // UTF-16 or UTF-32 byte order mark or encoding without it
+            return false;
+        }
+        final int declarationEnd = start.startsWith("<?xml") ? start.indexOf("?>") : -1;
+        if (declarationEnd < 0) {
+            return !start.startsWith("<?xml");
+        }
+        final String declaration = start.substring(0, declarationEnd);
+        final int encoding = declaration.indexOf("encoding");
+        if (encoding < 0) {
+            return true;
+        }
+        final String value = declaration.substring(encoding + "encoding".length()).replaceAll("[\\s=\"']", " ")
+            .trim().split(" ")[0].toUpperCase(Locale.ROOT);
+        return "UTF-8".equals(value) || "UTF8".equals(value);
+    }
+
+    private boolean fill() throws IOException {
+        if (m_position < m_limit) {
+            return true;
+        }
+        final int read = m_in.read(m_buffer, 0, m_buffer.length);
+        m_position = 0;
+        m_limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private int next() throws IOException {
+        if (m_position == m_limit && !fill()) {
+            return -1;
+        }
+        return m_buffer[m_position++] & 0xFF;
+    }
+
+    private int nextChecked() throws IOException, SAXException {
+        final int b = next();
+        if (b < 0) {
+            throw new SAXException("Unexpected end of the sheet XML");
+        }
+        return b;
+    }
+
+    /**
+     * Skips the text until the next tag.
+     *
+     * @return Whether there is a tag ({@code <} is consumed).
+     */
+    private boolean skipToTag() throws IOException {
+        while (true) {
+            for (int i = m_position; i < m_limit; i++) {
+                if (m_buffer[i] == '<') {
+                    m_position = i + 1;
+                    return true;
+                }
+            }
+            m_position = m_limit;
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Processes a tag, its {@code <} is already consumed.
+     */
+    private void tag() throws IOException, SAXException {
+        final int first = nextChecked();
+        if (first == '/') {
+            readName(nextChecked());
+            int b = m_pendingByte;
+            while (b != '>') {
+                b = nextChecked();
+            }
+            final int element = element();
+            if (element >= 0) {
+                endElement(element);
+            }
+            restoreBindings(--m_depth);
+        } else if (first == '?') {
+            skipUntil('?', '>');
+        } else if (first == '!') {
+            markup();
+        } else {
+            readName(first);
+            final boolean selfClosing = readAttributes();
+            declareNamespaces();
+            final int element = element();
+            if (element >= 0) {
+                startElement(element);
+                if (selfClosing) {
+                    endElement(element);
+                }
+            }
+            if (selfClosing) {
+                restoreBindings(m_depth);
+            } else {
+                m_depth++;
+            }
+        }
+    }
+
+    private void readName(final int first) throws IOException, SAXException {
+        m_nameLength = 0;
+        int b = first;
+        while (b != '>' && b != '/' && b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+            if (m_nameLength == m_name.length) {
+                m_name = Arrays.copyOf(m_name, m_name.length * 2);
+            }
+            m_name[m_nameLength++] = (byte)b;
+            b = nextChecked();
+        }
+        m_pendingByte = b;
+    }
+
+    /**
+     * @return The kind of the current element, or {@code -1} if it is not in the spreadsheet namespace.
+     */
+    private int element() {
+        int colon = -1;
+        for (int i = 0; i < m_nameLength; i++) {
+            if (m_name[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+        if (colon < 0 ? !m_defaultNamespace : prefixIndex(m_name, 0, colon) < 0) {
+            return -1;
+        }
+        final int start = colon + 1, length = m_nameLength - start;
+        switch (length) {
+            case 1:
+                switch (m_name[start]) {
+                    case 'c':
+                        return CELL;
+                    case 'v':
+                        return VALUE;
+                    case 'f':
+                        return FORMULA;
+                    case 't':
+                        return TEXT;
+                    default:
+                        return OTHER;
+                }
+            case 2:
+                return m_name[start] == 'i' && m_name[start + 1] == 's' ? INLINE_STRING : OTHER;
+            case 3:
+                if (m_name[start] == 'r' && m_name[start + 1] == 'o' && m_name[start + 2] == 'w') {
+                    return ROW;
+                }
+                return m_name[start] == 'c' && m_name[start + 1] == 'o' && m_name[start + 2] == 'l' ? COL : OTHER;
+            case 9:
+                return equal(m_name, start, length, TYPE_INLINE_STR) ? INLINE_STR : OTHER;
+            default:
+                return OTHER;
+        }
+    }
+
+    /**
+     * Reads the attributes of the current start tag until its end.
+     *
+     * @return Whether the tag is self-closing.
+     */
+    private boolean readAttributes() throws IOException, SAXException {
+        m_attributeCount = 0;
+        m_attributeValuesLength = 0;
+        int b = m_pendingByte;
+        while (true) {
+            while (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                b = nextChecked();
+            }
+            if (b == '>') {
+                return false;
+            }
+            if (b == '/') {
+                while (b != '>') {
+                    b = nextChecked();
+                }
+                return true;
+            }
+            final int nameStart = m_attributeValuesLength;
+            while (b != '=' && b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                appendAttributeByte(b);
+                b = nextChecked();
+            }
+            final int nameLength = m_attributeValuesLength - nameStart;
+            while (b != '\'' && b != '"') {
+                b = nextChecked();
+            }
+            final int quote = b;
+            final int valueStart = m_attributeValuesLength;
+            for (b = nextChecked(); b != quote; b = nextChecked()) {
+                if (b == '&') {
+                    final int codePoint = entity();
+                    if (codePoint < 0x80) {
+                        appendAttributeByte(codePoint);
+                    } else {
+                        for (final byte e : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                            appendAttributeByte(e);
+                        }
+                    }
+                } else {
+                    appendAttributeByte(b);
+                }
+            }
+            if (m_attributeCount * 4 == m_attributes.length) {
+                m_attributes = Arrays.copyOf(m_attributes, m_attributes.length * 2);
+            }
+            final int index = 4 * m_attributeCount++;
+            m_attributes[index] = nameStart;
+            m_attributes[index + 1] = nameLength;
+            m_attributes[index + 2] = valueStart;
+            m_attributes[index + 3] = m_attributeValuesLength - valueStart;
+            b = nextChecked();
+        }
+    }
+
+    private void appendAttributeByte(final int b) {
+        if (m_attributeValuesLength == m_attributeValues.length) {
+            m_attributeValues = Arrays.copyOf(m_attributeValues, m_attributeValues.length * 2);
+        }
+        m_attributeValues[m_attributeValuesLength++] = (byte)b;
+    }
+
+    /**
+     * @param name The (qualified) name of the attribute.
+     * @return The index of the attribute in {@link #m_attributes}, or {@code -1} if the element does not have it.
+     */
+    private int attribute(final byte[] name) {
+        for (int i = 0; i < m_attributeCount; i++) {
+            if (equal(m_attributeValues, m_attributes[4 * i], m_attributes[4 * i + 1], name)) {
+                return 4 * i;
+            }
+        }
+        return -1;
+    }
+
+    private String attributeString(final int attribute) {
+        return attribute < 0 ? null : new String(m_attributeValues, m_attributes[attribute + 2],
+            m_attributes[attribute + 3], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Applies the namespace declarations of the current element (only whether they bind the spreadsheet namespace).
+     */
+    private void declareNamespaces() {
+        for (int i = 0; i < m_attributeCount; i++) {
+            final int nameStart = m_attributes[4 * i], nameLength = m_attributes[4 * i + 1];
+            if (nameLength < XMLNS.length || !equal(m_attributeValues, nameStart, XMLNS.length, XMLNS)) {
+                continue;
+            }
+            final boolean bound =
+                equal(m_attributeValues, m_attributes[4 * i + 2], m_attributes[4 * i + 3], NAMESPACE);
+            if (nameLength == XMLNS.length) {
+                if (bound != m_defaultNamespace) {
+                    m_bindings.push(new Binding(m_depth, null, m_defaultNamespace));
+                    m_defaultNamespace = bound;
+                }
+            } else if (m_attributeValues[nameStart + XMLNS.length] == ':') {
+                final int prefixStart = nameStart + XMLNS.length + 1, prefixLength = nameLength - XMLNS.length - 1;
+                final int index = prefixIndex(m_attributeValues, prefixStart, prefixLength);
+                if (bound != (index >= 0)) {
+                    final byte[] prefix =
+                        Arrays.copyOfRange(m_attributeValues, prefixStart, prefixStart + prefixLength);
+                    m_bindings.push(new Binding(m_depth, prefix, index >= 0));
+                    bindPrefix(prefix, bound);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the namespace bindings changed by the element at {@code depth}.
+     */
+    private void restoreBindings(final int depth) {
+        while (!m_bindings.isEmpty() && m_bindings.peek().m_depth == depth) {
+            final Binding binding = m_bindings.pop();
+            if (binding.m_prefix == null) {
+                m_defaultNamespace = binding.m_bound;
+            } else {
+                bindPrefix(binding.m_prefix, binding.m_bound);
+            }
+        }
+    }
+
+    private void bindPrefix(final byte[] prefix, final boolean bound) {
+        final int index = prefixIndex(prefix, 0, prefix.length);
+        if (bound && index < 0) {
+            m_prefixes.add(prefix);
+        } else if (!bound && index >= 0) {
+            m_prefixes.remove(index);
+        }
+    }
+
+    /**
+     * @return The index of the prefix in {@link #m_prefixes}, or {@code -1} if it is not bound to the spreadsheet
+     *         namespace.
+     */
+    private int prefixIndex(final byte[] bytes, final int start, final int length) {
+        for (int i = 0; i < m_prefixes.size(); i++) {
+            if (equal(bytes, start, length, m_prefixes.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Processes a markup declaration, comment or CDATA section, {@code <!} is already consumed.
+     */
+    private void markup() throws IOException, SAXException {
+        final int b = nextChecked();
+        if (b == '-') {
+            nextChecked();
+            // comment
+            int dashes = 0;
+            for (int c = nextChecked();; c = nextChecked()) {
+                if (c == '>' && dashes >= 2) {
+                    return;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+        } else if (b == '[') {
+            // CDATA section
+            for (int i = 0; i < "CDATA[".length(); i++) {
+                nextChecked();
+            }
+            int brackets = 0;
+            for (int c = nextChecked();; c = nextChecked()) {
+                if (c == '>' && brackets >= 2) {
+                    if (m_valueIsOpen) {
+                        m_textLength -= 2;
+                    }
+                    return;
+                }
+                brackets = c == ']' ? brackets + 1 : 0;
+                if (m_valueIsOpen) {
+                    appendTextByte(c);
+                }
+            }
+        } else {
+            int depth = 0;
+            for (int c = b; c != '>' || depth > 0; c = nextChecked()) {
+                if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                }
+            }
+        }
+    }
+
+    private void skipUntil(final int last, final int end) throws IOException, SAXException {
+        int previous = 0;
+        for (int b = nextChecked(); previous != last || b != end; b = nextChecked()) {
+            previous = b;
+        }
+    }
+
+    private void appendText(final int b) throws IOException, SAXException {
+        if (b == '&') {
+            final int codePoint = entity();
+            if (codePoint < 0x80) {
+                appendTextByte(codePoint);
+            } else {
+                for (final byte e : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    appendTextByte(e);
+                }
+            }
+        } else if (b == '\r') {
+            // end of line normalization
+            appendTextByte('\n');
+            m_lastWasCarriageReturn = true;
+            return;
+        } else if (b != '\n' || !m_lastWasCarriageReturn) {
+            appendTextByte(b);
+        }
+        m_lastWasCarriageReturn = false;
+    }
+
+    private void appendTextByte(final int b) {
+        if (m_textLength == m_text.length) {
+            m_text = Arrays.copyOf(m_text, m_text.length * 2);
+        }
+        m_text[m_textLength++] = (byte)b;
+    }
+
+    /**
+     * Decodes an entity reference, {@code &} is already consumed.
+     *
+     * @return The code point of the referenced character.
+     */
+    private int entity() throws IOException, SAXException {
+        final StringBuilder name = new StringBuilder(8);
+        for (int b = nextChecked(); b != ';'; b = nextChecked()) {
+            if (name.length() > 10) {
+                throw new SAXException("Malformed entity reference: &" + name);
+            }
+            name.append((char)b);
+        }
+        final String entity = name.toString();
+        switch (entity) {
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "amp":
+                return '&';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            default:
+                try {
+                    if (entity.startsWith("#x")) {
+                        return Integer.parseInt(entity.substring(2), 16);
+                    }
+                    if (entity.startsWith("#")) {
+                        return Integer.parseInt(entity.substring(1));
+                    }
+                } catch (NumberFormatException e) {
+                    // handled below
+                }
+                throw new SAXException("Unknown entity reference: &" + entity + ";");
+        }
+    }
+
+    private boolean isTextTag(final int element) {
+        return element == VALUE || element == INLINE_STR || (element == TEXT && m_inlineStringIsOpen);
+    }
+
+    /**
+     * Based on {@link KNIMEXSSFSheetXMLHandler#startElement(String, String, String, org.xml.sax.Attributes)}.
+     */
+    private void startElement(final int element) {
+        if (isTextTag(element)) {
+            m_valueIsOpen = true;
+            m_textLength = 0;
+            m_lastWasCarriageReturn = false;
+        } else if (element == INLINE_STRING) {
+            m_inlineStringIsOpen = true;
+        } else if (element == FORMULA) {
+            m_formula = m_nextDataType == DataType.NUMBER_OR_DATE;
+        } else if (element == ROW) {
+            final int r = attribute(R);
+            m_rowNum = r < 0 ? m_nextRowNum : parseInt(m_attributeValues, m_attributes[r + 2], m_attributes[r + 3]) - 1;
+            m_output.startRow(m_rowNum);
+        } else if (element == CELL) {
+            m_nextDataType = DataType.NUMBER_OR_DATE;
+            m_inlineString = false;
+            m_formula = false;
+            m_format = null;
+            m_column = column();
+            final int t = attribute(T);
+            final int typeStart = t < 0 ? 0 : m_attributes[t + 2], typeLength = t < 0 ? -1 : m_attributes[t + 3];
+            if (equal(m_attributeValues, typeStart, typeLength, TYPE_BOOLEAN)) {
+                m_nextDataType = DataType.BOOLEAN;
+            } else if (equal(m_attributeValues, typeStart, typeLength, TYPE_ERROR)) {
+                m_nextDataType = DataType.ERROR;
+            } else if (equal(m_attributeValues, typeStart, typeLength, TYPE_INLINE_STR)) {
+                m_nextDataType = DataType.STRING;
+                m_inlineString = true;
+            } else if (equal(m_attributeValues, typeStart, typeLength, TYPE_STRING)) {
+                m_nextDataType = DataType.STRING;
+            } else if (equal(m_attributeValues, typeStart, typeLength, TYPE_FORMULA)) {
+                m_nextDataType = DataType.FORMULA;
+            } else {
+                final int s = attribute(S);
+                m_format = m_formats
+                    .format(s < 0 ? -1 : parseInt(m_attributeValues, m_attributes[s + 2], m_attributes[s + 3]));
+            }
+        } else if (element == COL) {
+            final String hidden = attributeString(attribute(HIDDEN));
+            if ("true".equalsIgnoreCase(hidden) || "1".equals(hidden)) {
+                try {
+                    KNIMEXSSFSheetXMLHandler.addHiddenColumns(m_hiddenColumns,
+                        Integer.parseInt(attributeString(attribute(MIN))),
+                        Integer.parseInt(attributeString(attribute(MAX))));
+                } catch (RuntimeException e) {
+                    // like a column without the hidden attribute
+                    LOGGER.debug("Ignoring the invalid hidden columns: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The {@code 0}-based column of the {@code r} attribute of the current cell ({@code 0} if missing).
+     */
+    private int column() {
+        final int r = attribute(R);
+        if (r < 0) {
+            return 0;
+        }
+        int column = 0;
+        for (int i = m_attributes[r + 2], end = i + m_attributes[r + 3]; i < end; i++) {
+            final int c = m_attributeValues[i];
+            if (c >= 'A' && c <= 'Z') {
+                column = column * 26 + c - 'A' + 1;
+            } else if (c >= 'a' && c <= 'z') {
+                column = column * 26 + c - 'a' + 1;
+            } else if (c != '$') {
+                break;
+            }
+        }
+        return column - 1;
+    }
+
+    /**
+     * Based on {@link KNIMEXSSFSheetXMLHandler#endElement(String, String, String)}.
+     */
+    private void endElement(final int element) throws SAXException {
+        if (isTextTag(element)) {
+            m_valueIsOpen = false;
+            m_output.nextCellType(m_nextDataType);
+            switch (m_nextDataType) {
+                case BOOLEAN:
+                    if (m_textLength == 0) {
+                        throw new SAXException("Missing boolean value");
+                    }
+                    m_output.cell(m_column, m_text[0] == '0' ? "FALSE" : "TRUE");
+                    break;
+                case ERROR:
+                    m_output.cell(m_column, "ERROR:" + text());
+                    break;
+                case FORMULA:
+                    m_output.cell(m_column, text());
+                    break;
+                case STRING:
+                    if (m_inlineString) {
+                        m_output.cell(m_column, KNIMEXSSFSheetXMLHandler.richText(text()));
+                    } else {
+                        String value;
+                        try {
+                            value = KNIMEXSSFSheetXMLHandler
+                                .richText(m_strings.getEntryAt(parseInt(m_text, 0, m_textLength)));
+                        } catch (NumberFormatException e) {
+                            value = null;
+                        }
+                        m_output.cell(m_column, value);
+                    }
+                    break;
+                case NUMBER_OR_DATE:
+                    if (m_format == null || (!m_formula && m_textLength == 0)) {
+                        m_output.cell(m_column, text());
+                    } else if (m_formula) {
+                        final double d;
+                        try {
+                            d = parseDouble();
+                        } catch (NumberFormatException e) {
+                            m_output.cell(m_column, text());
+                            break;
+                        }
+                        KNIMEXSSFSheetXMLHandler.numberCell(m_output, m_column, d, m_format, m_formats.isDate1904());
+                    } else {
+                        KNIMEXSSFSheetXMLHandler.numberCell(m_output, m_column, parseDouble(), m_format,
+                            m_formats.isDate1904());
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected type: " + m_nextDataType);
+            }
+        } else if (element == INLINE_STRING) {
+            m_inlineStringIsOpen = false;
+        } else if (element == ROW) {
+            m_output.endRow(m_rowNum);
+            m_nextRowNum = m_rowNum + 1;
+        }
+    }
+
+    private String text() {
+        return new String(m_text, 0, m_textLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the value like {@link Double#parseDouble(String)}, plain decimals with at most 15 digits are parsed
+     * without creating a {@link String}.
+     */
+    private double parseDouble() {
+        int i = 0;
+        final boolean negative = m_textLength > 0 && m_text[0] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, fractionDigits = -1;
+        for (; i < m_textLength; i++) {
+            final int c = m_text[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + c - '0';
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == m_textLength && digits > 0 && digits <= 15 && fractionDigits < POWERS_OF_TEN.length) {
+            // both the mantissa and the power of ten are exact, so the division is correctly rounded
+            final double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(text());
+    }
+
+    /**
+     * Parses the bytes like {@link Integer#parseInt(String)}.
+     */
+    private static int parseInt(final byte[] bytes, final int start, final int length) {
+        if (length <= 0) {
+            throw new NumberFormatException("Empty number");
+        }
+        int i = start;
+        final int end = start + length;
+        final boolean negative = bytes[i] == '-';
+        if (negative || bytes[i] == '+') {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException(new String(bytes, start, length, StandardCharsets.UTF_8));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final int c = bytes[i];
+            if (c < '0' || c > '9' || (value = value * 10 + c - '0') > (long)Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException(new String(bytes, start, length, StandardCharsets.UTF_8));
+            }
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            throw new NumberFormatException(new String(bytes, start, length, StandardCharsets.UTF_8));
+        }
+        return (int)(negative ? -value : value);
+    }
+
+    private static boolean equal(final byte[] bytes, final int start, final int length, final byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
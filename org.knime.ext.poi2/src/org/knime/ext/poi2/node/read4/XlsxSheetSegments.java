@@ -0,0 +1,412 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.read4;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.knime.core.util.FileUtil;
+
+/**
+ * The XML of a large xlsx sheet inflated to a temporary file and split before {@code <row>} start tags, so the
+ * segments can be parsed concurrently. Every segment but the first is prefixed with the part of the XML before the
+ * first row (the namespace declarations and the {@code <cols>} element), so it is a truncated sheet on its own; the
+ * rows of the segments are in the order of the segments. The segments are read from memory mapped regions of the file.
+ * <p>
+ * The sheet is only split before (unprefixed) rows with an {@code r} attribute (their index does not depend on the
+ * previous rows) following the end of a tag and outside of CDATA sections, comments and processing instructions, and
+ * only when it is parsed from its UTF-8 bytes by {@link XlsxSheetParser} (which accepts the truncated XML).
+ * <p>
+ * The size of the segments can be set in bytes with the system property {@value #SEGMENT_SIZE_PROPERTY} (default:
+ * 16 MB), non-positive values disable the splitting.
+ *
+ * @author agent
+ */
+final class XlsxSheetSegments implements AutoCloseable {
+
+    /** The system property of the size of the segments in bytes. */
+    static final String SEGMENT_SIZE_PROPERTY = "knime.xls.parser.sheetSegmentSize";
+
+    private static final long SEGMENT_SIZE = Long.getLong(SEGMENT_SIZE_PROPERTY, 16L << 20).longValue();
+
+    /** The number of bytes searched for a row at once. */
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    /** The bytes searched again in the next window, so start tags shorter than this are not missed. */
+    private static final int WINDOW_OVERLAP = 1 << 10;
+
+    /** The largest region mapped at once. */
+    private static final int MAX_MAPPED = 1 << 28;
+
+    private static final byte[] ROW = {'<', 'r', 'o', 'w'};
+
+    private static final byte[] CDATA_START = ascii("<![CDATA["), CDATA_END = ascii("]]>"),
+            COMMENT_START = ascii("<!--"), COMMENT_END = ascii("-->"), PI_START = ascii("<?"), PI_END = ascii("?>");
+
+    private final File m_file;
+
+    private final FileChannel m_channel;
+
+    private final long m_length;
+
+    private final long m_segmentSize;
+
+    /** The XML before the first row. */
+    private byte[] m_header = new byte[0];
+
+    /** The start positions of the segments, the first is {@code 0}. */
+    private final List<Long> m_starts = new ArrayList<>();
+
+    private XlsxSheetSegments(final File file, final long segmentSize) throws IOException {
+        m_file = file;
+        m_segmentSize = segmentSize;
+        m_channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        m_length = m_channel.size();
+        m_starts.add(Long.valueOf(0L));
+    }
+
+    /**
+     * @param sheetSize The size of the sheet's XML, negative when unknown.
+     * @return Whether a sheet of this size is worth splitting.
+     */
+    static boolean isSplittable(final long sheetSize) {
+        return SEGMENT_SIZE > 0 && sheetSize >= 2 * SEGMENT_SIZE;
+    }
+
+    /**
+     * Inflates the sheet's XML to a temporary file and splits it into segments of about
+     * {@value #SEGMENT_SIZE_PROPERTY} bytes.
+     *
+     * @param sheet The sheet's XML, read to its end but not closed.
+     * @return The segments, a single one (the whole XML) when the sheet cannot be split.
+     * @throws IOException Inflating or reading the XML failed.
+     */
+    static XlsxSheetSegments split(final InputStream sheet) throws IOException {
+        return split(sheet, SEGMENT_SIZE);
+    }
+
+    /**
+     * Inflates the sheet's XML to a temporary file and splits it into segments of about {@code segmentSize} bytes.
+     *
+     * @param sheet The sheet's XML, read to its end but not closed.
+     * @param segmentSize The size of the segments in bytes, positive.
+     * @return The segments, a single one (the whole XML) when the sheet cannot be split.
+     * @throws IOException Inflating or reading the XML failed.
+     */
+    static XlsxSheetSegments split(final InputStream sheet, final long segmentSize) throws IOException {
+        final File file = FileUtil.createTempFile("excelSheet", ".xml");
+        final XlsxSheetSegments segments;
+        try {
+            Files.copy(sheet, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            segments = new XlsxSheetSegments(file, segmentSize);
+        } catch (IOException | RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+        try {
+            segments.split();
+        } catch (IOException | RuntimeException e) {
+            segments.close();
+            throw e;
+        }
+        return segments;
+    }
+
+    private void split() throws IOException {
+        final long headerEnd = find(0L);
+        if (headerEnd < 0 || headerEnd > m_segmentSize) {
+            return;
+        }
+        final byte[] header = read(0L, (int)headerEnd);
+        if (!XlsxSheetParser.isUTF8WithoutDocType(new ByteArrayInputStream(header))) {
+            return;
+        }
+        m_header = header;
+        long target = headerEnd + m_segmentSize;
+        // the whole XML is scanned, so the row start tags in CDATA sections, comments and processing instructions
+        // are skipped
+        final byte[] window = new byte[WINDOW_SIZE];
+        byte[] closing = null;
+        for (long position = headerEnd; target < m_length - m_segmentSize / 2;
+                position += WINDOW_SIZE - WINDOW_OVERLAP) {
+            final int length = (int)Math.min(WINDOW_SIZE, m_length - position);
+            read(position, window, length);
+            // the tags starting in the overlap are checked in the next window (unless this is the last one)
+            final int end = position + length < m_length ? length - WINDOW_OVERLAP : length;
+            for (int i = 0; i < end; i++) {
+                if (closing != null) {
+                    if (startsWith(window, i, length, closing)) {
+                        // the rest of the closing sequence (possibly scanned again in the next window) is no tag
+                        i += closing.length - 1;
+                        closing = null;
+                    }
+                } else if (window[i] == '<') {
+                    if (startsWith(window, i, length, CDATA_START)) {
+                        closing = CDATA_END;
+                    } else if (startsWith(window, i, length, COMMENT_START)) {
+                        closing = COMMENT_END;
+                    } else if (startsWith(window, i, length, PI_START)) {
+                        closing = PI_END;
+                    } else if (position + i >= target && isRow(window, i, length, true)) {
+                        m_starts.add(Long.valueOf(position + i));
+                        target = position + i + m_segmentSize;
+                        if (target >= m_length - m_segmentSize / 2) {
+                            return;
+                        }
+                    }
+                }
+            }
+            if (end == length) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param from The position to start the search at.
+     * @return The position of the first row start tag after {@code from}, {@code -1} if there is none.
+     */
+    private long find(final long from) throws IOException {
+        final byte[] window = new byte[WINDOW_SIZE];
+        for (long position = from; position < m_length; position += WINDOW_SIZE - WINDOW_OVERLAP) {
+            final int length = (int)Math.min(WINDOW_SIZE, m_length - position);
+            read(position, window, length);
+            // the tags starting in the overlap are checked in the next window (unless this is the last one)
+            final int end = position + length < m_length ? length - WINDOW_OVERLAP : length;
+            for (int i = 0; i < end; i++) {
+                if (window[i] == '<' && isRow(window, i, length, false)) {
+                    return position + i;
+                }
+            }
+        }
+        return -1L;
+    }
+
+    private static boolean startsWith(final byte[] bytes, final int start, final int length, final byte[] prefix) {
+        if (start + prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRow(final byte[] bytes, final int start, final int length, final boolean splittable) {
+        if (start + ROW.length >= length) {
+            return false;
+        }
+        for (int i = 1; i < ROW.length; i++) {
+            if (bytes[start + i] != ROW[i]) {
+                return false;
+            }
+        }
+        final byte next = bytes[start + ROW.length];
+        if (!splittable) {
+            return isWhitespace(next) || next == '>' || next == '/';
+        }
+        if (!isWhitespace(next)) {
+            return false;
+        }
+        // outside of text (for example a CDATA section) the row follows the end of a tag
+        int previous = start - 1;
+        while (previous >= 0 && isWhitespace(bytes[previous])) {
+            previous--;
+        }
+        if (previous < 0 || bytes[previous] != '>') {
+            return false;
+        }
+        for (int i = start + ROW.length; i + 2 < length && bytes[i] != '>'; i++) {
+            if (isWhitespace(bytes[i]) && bytes[i + 1] == 'r' && (bytes[i + 2] == '=' || isWhitespace(bytes[i + 2]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] ascii(final String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private byte[] read(final long position, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        read(position, bytes, length);
+        return bytes;
+    }
+
+    private void read(final long position, final byte[] bytes, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            if (m_channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + m_file);
+            }
+        }
+    }
+
+    /**
+     * @return The number of segments.
+     */
+    int size() {
+        return m_starts.size();
+    }
+
+    /**
+     * @param index The index of a segment.
+     * @return The XML of the segment (prefixed with the XML before the first row for all but the first segment).
+     */
+    InputStream open(final int index) {
+        final long start = m_starts.get(index).longValue();
+        final long end = index + 1 < m_starts.size() ? m_starts.get(index + 1).longValue() : m_length;
+        final InputStream region = new RegionInputStream(start, end);
+        return index == 0 ? region : new SequenceInputStream(new ByteArrayInputStream(m_header), region);
+    }
+
+    /**
+     * Closes and deletes the file (the streams of the segments are still readable until they are garbage collected).
+     */
+    @Override
+    public void close() {
+        try {
+            m_channel.close();
+        } catch (IOException e) {
+            // nothing to do, the file is deleted anyway
+        }
+        delete(m_file);
+    }
+
+    private static void delete(final File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // still mapped on some platforms, try again on exit
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Reads a region of the file, mapping at most {@link #MAX_MAPPED} bytes at once.
+     */
+    private final class RegionInputStream extends InputStream {
+        private long m_position;
+
+        private final long m_end;
+
+        private MappedByteBuffer m_mapped;
+
+        private RegionInputStream(final long start, final long end) {
+            m_position = start;
+            m_end = end;
+        }
+
+        private boolean map() throws IOException {
+            if (m_mapped != null && m_mapped.hasRemaining()) {
+                return true;
+            }
+            if (m_position >= m_end) {
+                return false;
+            }
+            final long size = Math.min(MAX_MAPPED, m_end - m_position);
+            m_mapped = m_channel.map(MapMode.READ_ONLY, m_position, size);
+            m_position += size;
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read() throws IOException {
+            return map() ? m_mapped.get() & 0xFF : -1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!map()) {
+                return -1;
+            }
+            final int read = Math.min(len, m_mapped.remaining());
+            m_mapped.get(b, off, read);
+            return read;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int available() {
+            return m_mapped == null ? 0 : m_mapped.remaining();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.readsheets;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.DimensionsRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads the names (and optionally the dimensions) of the sheets of a workbook without loading the workbook. For xlsx
+ * files only the workbook part (and the beginning of the sheet parts for the dimensions) is parsed, for xls files the
+ * {@code BoundSheet} (and {@code Dimensions}) records are read with the event API.
+ *
+ * @author agent
+ */
+final class SheetNamesReader {
+
+    /**
+     * The name and the dimensions of a sheet.
+     */
+    static final class SheetInfo {
+        private final String m_name;
+
+        private int m_rows = -1;
+
+        private int m_columns = -1;
+
+        SheetInfo(final String name) {
+            m_name = name;
+        }
+
+        /**
+         * @return The name of the sheet.
+         */
+        String getName() {
+            return m_name;
+        }
+
+        /**
+         * @return The number of rows of the used range as recorded in the file, {@code -1} if unknown.
+         */
+        int getRows() {
+            return m_rows;
+        }
+
+        /**
+         * @return The number of columns of the used range as recorded in the file, {@code -1} if unknown.
+         */
+        int getColumns() {
+            return m_columns;
+        }
+    }
+
+    /** Thrown to stop parsing a sheet part once its dimension is known. */
+    @SuppressWarnings("serial")
+    private static final class StopParsing extends SAXException {
+    }
+
+    private SheetNamesReader() {
+    }
+
+    /**
+     * Reads the sheets of a workbook.
+     *
+     * @param file The (local) workbook file.
+     * @param readDimensions Whether the dimensions of the sheets should be read too.
+     * @return The sheets in the order of the workbook.
+     * @throws IOException If the file cannot be read or has an unsupported format.
+     * @throws OpenXML4JException If the xlsx file is invalid.
+     * @throws SAXException If the xlsx file is invalid.
+     */
+    static List<SheetInfo> read(final File file, final boolean readDimensions)
+        throws IOException, OpenXML4JException, SAXException {
+        final FileMagic magic;
+        try (final InputStream in = FileMagic.prepareToCheckMagic(new FileInputStream(file))) {
+            magic = FileMagic.valueOf(in);
+        }
+        switch (magic) {
+            case OOXML:
+                return readXlsx(file, readDimensions);
+            case OLE2:
+                return readXls(file, readDimensions);
+            default:
+                throw new IOException("The file '" + file.getName() + "' is neither an xls nor an xlsx workbook");
+        }
+    }
+
+    private static List<SheetInfo> readXlsx(final File file, final boolean readDimensions)
+        throws IOException, OpenXML4JException, SAXException {
+        final OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            final List<SheetInfo> result = new ArrayList<>();
+            final XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator)new XSSFReader(pkg).getSheetsData();
+            while (sheets.hasNext()) {
+                try (final InputStream stream = sheets.next()) {
+                    final SheetInfo info = new SheetInfo(sheets.getSheetName());
+                    if (readDimensions) {
+                        readDimension(stream, info);
+                    }
+                    result.add(info);
+                }
+            }
+            return result;
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Parses the sheet part until its {@code <dimension>} element (it precedes the {@code <sheetData>}).
+     */
+    private static void readDimension(final InputStream stream, final SheetInfo info)
+        throws IOException, SAXException {
+        final XMLReader reader;
+        try {
+            reader = SAXHelper.newXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage(), e);
+        }
+        reader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(final String uri, final String localName, final String qName,
+                final Attributes attributes) throws SAXException {
+                if ("dimension".equals(localName)) {
+                    final String ref = attributes.getValue("ref");
+                    if (ref != null) {
+                        final CellRangeAddress range = CellRangeAddress.valueOf(ref);
+                        info.m_rows = range.getLastRow() - range.getFirstRow() + 1;
+                        info.m_columns = range.getLastColumn() - range.getFirstColumn() + 1;
+                    }
+                    throw new StopParsing();
+                }
+                if ("sheetData".equals(localName)) {
+                    throw new StopParsing();
+                }
+            }
+        });
+        try {
+            reader.parse(new InputSource(stream));
+        } catch (StopParsing e) {
+            // the dimension is read (or missing)
+        }
+    }
+
+    private static List<SheetInfo> readXls(final File file, final boolean readDimensions) throws IOException {
+        try (final NPOIFSFileSystem fs = new NPOIFSFileSystem(file, true)) {
+            if (fs.getRoot().hasEntry(Decryptor.DEFAULT_POIFS_ENTRY)) {
+                // an encrypted xlsx, only the full workbook can decrypt it
+                return readWorkbook(file);
+            }
+            final SheetRecordsListener listener = new SheetRecordsListener(readDimensions);
+            final HSSFRequest request = new HSSFRequest();
+            request.addListener(listener, BOFRecord.sid);
+            request.addListener(listener, EOFRecord.sid);
+            request.addListener(listener, BoundSheetRecord.sid);
+            request.addListener(listener, DimensionsRecord.sid);
+            new HSSFEventFactory().processWorkbookEvents(request, fs.getRoot());
+            return listener.sheets();
+        }
+    }
+
+    private static List<SheetInfo> readWorkbook(final File file) throws IOException {
+        try (final Workbook workbook = WorkbookFactory.create(file, null, true)) {
+            final List<SheetInfo> result = new ArrayList<>();
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                result.add(new SheetInfo(workbook.getSheetName(i)));
+            }
+            return result;
+        } catch (InvalidFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects the {@code BoundSheet} records of the workbook globals and the first {@code Dimensions} record of each
+     * sheet substream. The sheet substreams follow each other in the order of their BOF positions, embedded charts are
+     * nested substreams.
+     */
+    private static final class SheetRecordsListener extends AbortableHSSFListener {
+        private final boolean m_readDimensions;
+
+        private final List<BoundSheetRecord> m_boundSheets = new ArrayList<>();
+
+        /** The dimensions by sheet substream, {@code null} for the substreams without one (chart sheets). */
+        private final List<DimensionsRecord> m_dimensions = new ArrayList<>();
+
+        /** The nesting depth of the current substream. */
+        private int m_depth;
+
+        /** The number of top level substreams started (the workbook globals and the sheets). */
+        private int m_substreams;
+
+        SheetRecordsListener(final boolean readDimensions) {
+            m_readDimensions = readDimensions;
+        }
+
+        @Override
+        public short abortableProcessRecord(final Record record) {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    if (m_depth++ == 0) {
+                        m_substreams++;
+                    }
+                    break;
+                case EOFRecord.sid:
+                    if (--m_depth == 0 && !m_readDimensions) {
+                        // the end of the workbook globals, the sheets are not needed
+                        return 1;
+                    }
+                    break;
+                case BoundSheetRecord.sid:
+                    m_boundSheets.add((BoundSheetRecord)record);
+                    break;
+                case DimensionsRecord.sid:
+                    if (m_depth == 1) {
+                        // the first substream is the workbook globals
+                        final int sheet = m_substreams - 2;
+                        while (m_dimensions.size() <= sheet) {
+                            m_dimensions.add(null);
+                        }
+                        if (m_dimensions.get(sheet) == null) {
+                            m_dimensions.set(sheet, (DimensionsRecord)record);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return 0;
+        }
+
+        List<SheetInfo> sheets() {
+            final List<SheetInfo> result = new ArrayList<>(m_boundSheets.size());
+            for (final BoundSheetRecord boundSheet : m_boundSheets) {
+                result.add(new SheetInfo(boundSheet.getSheetname()));
+            }
+            if (m_readDimensions) {
+                final BoundSheetRecord[] byPosition = BoundSheetRecord.orderByBofPosition(m_boundSheets);
+                for (int i = 0; i < byPosition.length && i < m_dimensions.size(); i++) {
+                    final DimensionsRecord dimensions = m_dimensions.get(i);
+                    if (dimensions == null) {
+                        continue;
+                    }
+                    final SheetInfo info = result.get(m_boundSheets.indexOf(byPosition[i]));
+                    // the last row and column are exclusive
+                    info.m_rows = dimensions.getLastRow() - dimensions.getFirstRow();
+                    info.m_columns = dimensions.getLastCol() - dimensions.getFirstCol();
+                }
+            }
+            return result;
+        }
+    }
+}
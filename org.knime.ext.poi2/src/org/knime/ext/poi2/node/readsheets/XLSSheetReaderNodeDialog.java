@@ -50,6 +50,7 @@
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 
@@ -70,6 +71,9 @@ public class XLSSheetReaderNodeDialog extends NodeDialogPane {
 
     private final FilesHistoryPanel m_fileName = new FilesHistoryPanel("XLSSheetReader", ".xls|.xlsx");
 
+    private final JCheckBox m_outputDimensions =
+        new JCheckBox("Output the number of rows and columns of the sheets (as recorded in the file)");
+
     /**
      * Creates the dialog with its components.
      */
@@ -79,6 +83,9 @@ public XLSSheetReaderNodeDialog() {
         JComponent fileBox = getFileBox();
         fileBox.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Select file to read:"));
         dlgTab.add(fileBox);
+        JComponent optionsBox = getOptionsBox();
+        optionsBox.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Options:"));
+        dlgTab.add(optionsBox);
         addTab("XLS Sheet Reader Settings", dlgTab);
     }
 
@@ -93,6 +100,16 @@ private JComponent getFileBox() {
         return fBox;
     }
 
+    /**
+     * Creates a box with the output options.
+     */
+    private JComponent getOptionsBox() {
+        Box oBox = Box.createHorizontalBox();
+        oBox.add(m_outputDimensions);
+        oBox.add(Box.createHorizontalGlue());
+        return oBox;
+    }
+
     /**
      * Creates an XLSSheetReaderSettings object based on the settings in the panels.
      *
@@ -101,6 +118,7 @@ private JComponent getFileBox() {
     private XLSSheetReaderSettings createSettingsFromComponents() {
         XLSSheetReaderSettings s = new XLSSheetReaderSettings();
         s.setFileLocation(m_fileName.getSelectedFile());
+        s.setOutputDimensions(m_outputDimensions.isSelected());
         return s;
     }
 
@@ -135,6 +153,7 @@ protected void loadSettingsFrom(final NodeSettingsRO settings, final DataTableSp
             s = new XLSSheetReaderSettings();
         }
         m_fileName.setSelectedFile(s.getFileLocation());
+        m_outputDimensions.setSelected(s.isOutputDimensions());
     }
 
 }
@@ -54,15 +54,18 @@
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
 import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
 import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
@@ -75,6 +78,8 @@
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.util.FileUtil;
+import org.knime.ext.poi2.node.readsheets.SheetNamesReader.SheetInfo;
+import org.xml.sax.SAXException;
 
 /**
  * @author Patrick Winter, KNIME AG, Zurich, Switzerland
@@ -197,12 +202,18 @@ protected DataTableSpec[] configure(final DataTableSpec[] inSpecs) throws Invali
     @Override
     protected BufferedDataTable[] execute(final BufferedDataTable[] inData, final ExecutionContext exec)
             throws Exception {
-        Workbook wb = getWorkbook(m_settings.getFileLocation());
-        List<String> sheets = getSheetNames(wb);
+        List<SheetInfo> sheets = readSheets(m_settings.getFileLocation(), m_settings.isOutputDimensions());
         DataTableSpec spec = createOutSpec();
         BufferedDataContainer outContainer = exec.createDataContainer(spec);
         for (int i = 0; i < sheets.size(); i++) {
-            outContainer.addRowToTable(new DefaultRow("Row" + i, new StringCell(sheets.get(i))));
+            final SheetInfo sheet = sheets.get(i);
+            final DataCell name = new StringCell(sheet.getName());
+            if (m_settings.isOutputDimensions()) {
+                outContainer.addRowToTable(new DefaultRow("Row" + i, name, toCell(sheet.getRows()),
+                    toCell(sheet.getColumns())));
+            } else {
+                outContainer.addRowToTable(new DefaultRow("Row" + i, name));
+            }
         }
         outContainer.close();
         return new BufferedDataTable[]{outContainer.getTable()};
@@ -214,47 +225,50 @@ protected BufferedDataTable[] execute(final BufferedDataTable[] inData, final Ex
      * @return Specs of the output table.
      */
     private DataTableSpec createOutSpec() {
-        return new DataTableSpec(new DataColumnSpecCreator("Sheet", StringCell.TYPE).createSpec());
+        final DataColumnSpec sheet = new DataColumnSpecCreator("Sheet", StringCell.TYPE).createSpec();
+        if (m_settings.isOutputDimensions()) {
+            return new DataTableSpec(sheet, new DataColumnSpecCreator("Rows", IntCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("Columns", IntCell.TYPE).createSpec());
+        }
+        return new DataTableSpec(sheet);
     }
 
-    /**
-     * Returns the names of the sheets contained in the specified workbook.
-     *
-     * @param wb The workbook
-     * @return a list with sheet names
-     */
-    private static ArrayList<String> getSheetNames(final Workbook wb) {
-        ArrayList<String> names = new ArrayList<String>();
-        for (int sIdx = 0; sIdx < wb.getNumberOfSheets(); sIdx++) {
-            names.add(wb.getSheetName(sIdx));
-        }
-        return names;
+    private static DataCell toCell(final int size) {
+        return size < 0 ? DataType.getMissingCell() : new IntCell(size);
     }
 
     /**
-     * Loads a workbook from the file system.
+     * Reads the sheets of the workbook at the specified location. Remote workbooks are downloaded to a temporary file
+     * first, as reading only the required parts needs random access.
      *
-     * @param path Path to the workbook
-     * @return The workbook
+     * @param location a filename or a URL
+     * @param readDimensions whether the dimensions of the sheets should be read too
+     * @return the sheets of the workbook
      * @throws IOException If the file could not be accessed
-     * @throws InvalidFormatException If the file does not have the right format
+     * @throws OpenXML4JException If the file does not have the right format
+     * @throws SAXException If the file does not have the right format
      */
-    private static Workbook getWorkbook(final String path) throws IOException, InvalidFormatException {
-        Workbook workbook = null;
-        InputStream in = null;
+    private static List<SheetInfo> readSheets(final String location, final boolean readDimensions)
+        throws IOException, OpenXML4JException, SAXException {
+        File file;
         try {
-            in = getBufferedInputStream(path, DEFAULT_TIMEOUT_IN_SEC);
-            workbook = WorkbookFactory.create(in);
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException e2) {
-                    // ignore
-                }
+            file = FileUtil.getFileFromURL(new URL(location));
+        } catch (MalformedURLException mue) {
+            // then try a file
+            file = new File(location);
+        }
+        if (file != null) {
+            return SheetNamesReader.read(file, readDimensions);
+        }
+        final File tempFile = FileUtil.createTempFile("sheetNames", ".tmp");
+        try {
+            try (final InputStream in = getBufferedInputStream(location, DEFAULT_TIMEOUT_IN_SEC)) {
+                Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
+            return SheetNamesReader.read(tempFile, readDimensions);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
         }
-        return workbook;
     }
 
     /**
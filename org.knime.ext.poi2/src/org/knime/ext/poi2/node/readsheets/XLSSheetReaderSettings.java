@@ -69,6 +69,13 @@ public class XLSSheetReaderSettings {
 
     private static final String FILE_LOCATION = "XLS_LOCATION";
 
+    /**
+     * Whether the number of rows and columns of the sheets are output too.
+     */
+    private boolean m_outputDimensions = false;
+
+    private static final String OUTPUT_DIMENSIONS = "OUTPUT_DIMENSIONS";
+
     /**
      * Saves the current values.
      *
@@ -76,6 +83,7 @@ public class XLSSheetReaderSettings {
      */
     public void save(final NodeSettingsWO settings) {
         settings.addString(FILE_LOCATION, m_fileLocation);
+        settings.addBoolean(OUTPUT_DIMENSIONS, m_outputDimensions);
     }
 
     /**
@@ -88,6 +96,8 @@ public void save(final NodeSettingsWO settings) {
     public static XLSSheetReaderSettings load(final NodeSettingsRO settings) throws InvalidSettingsException {
         XLSSheetReaderSettings result = new XLSSheetReaderSettings();
         result.m_fileLocation = settings.getString(FILE_LOCATION);
+        // added later, default keeps the output of existing nodes
+        result.m_outputDimensions = settings.getBoolean(OUTPUT_DIMENSIONS, false);
         return result;
     }
 
@@ -141,4 +151,18 @@ public String getFileLocation() {
         return m_fileLocation;
     }
 
+    /**
+     * @param outputDimensions whether the number of rows and columns of the sheets should be output
+     */
+    public void setOutputDimensions(final boolean outputDimensions) {
+        m_outputDimensions = outputDimensions;
+    }
+
+    /**
+     * @return whether the number of rows and columns of the sheets should be output
+     */
+    public boolean isOutputDimensions() {
+        return m_outputDimensions;
+    }
+
 }
@@ -0,0 +1,364 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a zip file without decompressing them, so they can be copied as they are with
+ * {@link RawZipWriter}. (Only the central directory is read when opening the file.)
+ *
+ * @author agent
+ */
+final class RawZipFile implements Closeable {
+
+    static final int STORED = 0;
+
+    static final int DEFLATED = 8;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    private static final int CENTRAL_HEADER = 0x02014b50;
+
+    private static final int END = 0x06054b50;
+
+    private static final int ZIP64_END = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final long MAGIC = 0xFFFFFFFFL;
+
+    /**
+     * An entry of a zip file.
+     */
+    static final class Entry {
+        private final String m_name;
+
+        private final int m_method;
+
+        private final int m_dosTime;
+
+        private final long m_crc;
+
+        private final long m_compressedSize;
+
+        private final long m_size;
+
+        private final long m_offset;
+
+        private Entry(final String name, final int method, final int dosTime, final long crc,
+            final long compressedSize, final long size, final long offset) {
+            m_name = name;
+            m_method = method;
+            m_dosTime = dosTime;
+            m_crc = crc;
+            m_compressedSize = compressedSize;
+            m_size = size;
+            m_offset = offset;
+        }
+
+        /**
+         * @return The name of the entry.
+         */
+        String name() {
+            return m_name;
+        }
+
+        /**
+         * @return The compression method, {@link #STORED} or {@link #DEFLATED}.
+         */
+        int method() {
+            return m_method;
+        }
+
+        /**
+         * @return The modification time in MS-DOS format.
+         */
+        int dosTime() {
+            return m_dosTime;
+        }
+
+        /**
+         * @return The CRC-32 of the uncompressed content.
+         */
+        long crc() {
+            return m_crc;
+        }
+
+        /**
+         * @return The size of the compressed content.
+         */
+        long compressedSize() {
+            return m_compressedSize;
+        }
+
+        /**
+         * @return The size of the uncompressed content.
+         */
+        long size() {
+            return m_size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return m_name;
+        }
+    }
+
+    private final SeekableByteChannel m_channel;
+
+    private final List<Entry> m_entries;
+
+    /**
+     * Opens a zip file and reads its central directory.
+     *
+     * @param path The zip file.
+     * @throws IOException Problem reading or not a (supported) zip file.
+     */
+    RawZipFile(final Path path) throws IOException {
+        m_channel = Files.newByteChannel(path);
+        try {
+            m_entries = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException | RuntimeException e) {
+            m_channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The entries in the order of the central directory.
+     */
+    List<Entry> entries() {
+        return m_entries;
+    }
+
+    /**
+     * @param entry An entry of this file.
+     * @return The compressed content of {@code entry}.
+     * @throws IOException Problem reading.
+     */
+    InputStream rawData(final Entry entry) throws IOException {
+        final ByteBuffer header = read(entry.m_offset, 30);
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header of " + entry.m_name);
+        }
+        final long start = entry.m_offset + 30 + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+        return new InputStream() {
+            private long m_position = start;
+
+            private final long m_end = start + entry.m_compressedSize;
+
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xff);
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                if (m_position >= m_end) {
+                    return -1;
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(b, off, (int)Math.min(len, m_end - m_position));
+                synchronized (m_channel) {
+                    m_channel.position(m_position);
+                    final int read = m_channel.read(buffer);
+                    if (read < 0) {
+                        throw new EOFException("Unexpected end of " + entry.m_name);
+                    }
+                    m_position += read;
+                    return read;
+                }
+            }
+        };
+    }
+
+    /**
+     * @param entry An entry of this file.
+     * @return The uncompressed content of {@code entry}.
+     * @throws IOException Problem reading or unsupported compression method.
+     */
+    InputStream data(final Entry entry) throws IOException {
+        switch (entry.m_method) {
+            case STORED:
+                return rawData(entry);
+            case DEFLATED:
+                final Inflater inflater = new Inflater(true);
+                return new InflaterInputStream(rawData(entry), inflater, 1 << 13) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inflater.end();
+                    }
+                };
+            default:
+                throw new ZipException("Unsupported compression method " + entry.m_method + " of " + entry.m_name);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        m_channel.close();
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        final long fileSize = m_channel.size();
+        // the end record is followed by a comment of at most 64k
+        final int tailSize = (int)Math.min(fileSize, END_SIZE + 0xffff);
+        final ByteBuffer tail = read(fileSize - tailSize, tailSize);
+        int end = tailSize - END_SIZE;
+        while (end >= 0 && tail.getInt(end) != END) {
+            end--;
+        }
+        if (end < 0) {
+            throw new ZipException("Not a zip file, no end of central directory");
+        }
+        long count = tail.getShort(end + 10) & 0xffff;
+        long size = tail.getInt(end + 12) & MAGIC;
+        long offset = tail.getInt(end + 16) & MAGIC;
+        final long endPosition = fileSize - tailSize + end;
+        if ((count == 0xffff || size == MAGIC || offset == MAGIC) && endPosition >= 20) {
+            final ByteBuffer locator = read(endPosition - 20, 20);
+            if (locator.getInt(0) == ZIP64_LOCATOR) {
+                final ByteBuffer zip64End = read(locator.getLong(8), 56);
+                if (zip64End.getInt(0) != ZIP64_END) {
+                    throw new ZipException("Invalid zip64 end of central directory");
+                }
+                count = zip64End.getLong(32);
+                size = zip64End.getLong(40);
+                offset = zip64End.getLong(48);
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large: " + size);
+        }
+        final ByteBuffer directory = read(offset, (int)size);
+        final List<Entry> entries = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            final int start = directory.position();
+            if (directory.getInt(start) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory header");
+            }
+            final int method = directory.getShort(start + 10) & 0xffff;
+            final int dosTime = directory.getInt(start + 12);
+            final long crc = directory.getInt(start + 16) & MAGIC;
+            long compressedSize = directory.getInt(start + 20) & MAGIC;
+            long uncompressedSize = directory.getInt(start + 24) & MAGIC;
+            final int nameLength = directory.getShort(start + 28) & 0xffff;
+            final int extraLength = directory.getShort(start + 30) & 0xffff;
+            final int commentLength = directory.getShort(start + 32) & 0xffff;
+            long localOffset = directory.getInt(start + 42) & MAGIC;
+            final byte[] name = new byte[nameLength];
+            directory.position(start + 46);
+            directory.get(name);
+            // the zip64 extra field contains the values which do not fit, in this order
+            final int extraEnd = start + 46 + nameLength + extraLength;
+            for (int extra = start + 46 + nameLength; extra + 4 <= extraEnd;) {
+                final int id = directory.getShort(extra) & 0xffff;
+                final int length = directory.getShort(extra + 2) & 0xffff;
+                if (id == 1) {
+                    int field = extra + 4;
+                    if (uncompressedSize == MAGIC) {
+                        uncompressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == MAGIC) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (localOffset == MAGIC) {
+                        localOffset = directory.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            directory.position(extraEnd + commentLength);
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, dosTime, crc, compressedSize,
+                uncompressedSize, localOffset));
+        }
+        return entries;
+    }
+
+    private ByteBuffer read(final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        synchronized (m_channel) {
+            m_channel.position(position);
+            while (buffer.hasRemaining()) {
+                if (m_channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of the zip file");
+                }
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
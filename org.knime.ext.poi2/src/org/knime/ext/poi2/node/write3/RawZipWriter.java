@@ -0,0 +1,534 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import org.knime.core.util.ThreadUtils;
+
+/**
+ * Writes a zip file from already compressed entries (for example the ones of a {@link RawZipFile}) and from entries
+ * deflated while they are written. The latter are deflated in blocks concurrently. Sizes and offsets which do not fit
+ * into the classic format are written as zip64 records, but the entries deflated while they are written are limited to
+ * less than 4 GB (their local headers are written before their sizes are known, without zip64 extra field).
+ *
+ * @author agent
+ */
+final class RawZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+
+    private static final int CENTRAL_HEADER = 0x02014b50;
+
+    private static final int END = 0x06054b50;
+
+    private static final int ZIP64_END = 0x06064b50;
+
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    private static final long MAGIC = 0xFFFFFFFFL;
+
+    /** The data descriptor follows the data. */
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+
+    /** The names are encoded in UTF-8. */
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private static final int VERSION = 20;
+
+    private static final int VERSION_ZIP64 = 45;
+
+    /** The size of the blocks of uncompressed content deflated concurrently. */
+    private static final int BLOCK_SIZE = 1 << 17;
+
+    /** The size of the deflate window, the dictionary of a block. */
+    private static final int DICTIONARY_SIZE = 1 << 15;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /** The number of blocks of an entry deflated (or waiting to be written) at the same time. */
+    private static final int MAX_PENDING_BLOCKS = 2 * PARALLELISM;
+
+    private static final AtomicInteger DEFLATE_POOL_INDEX = new AtomicInteger();
+
+    /** Deflates the blocks of the entries. */
+    private static final ExecutorService DEFLATE_POOL = createDeflatePool();
+
+    /** An entry of the central directory. */
+    private static final class Written {
+        private final byte[] m_name;
+
+        private final int m_flags;
+
+        private final int m_method;
+
+        private final int m_dosTime;
+
+        private final long m_crc;
+
+        private final long m_compressedSize;
+
+        private final long m_size;
+
+        private final long m_offset;
+
+        private Written(final byte[] name, final int flags, final int method, final int dosTime, final long crc,
+            final long compressedSize, final long size, final long offset) {
+            m_name = name;
+            m_flags = flags;
+            m_method = method;
+            m_dosTime = dosTime;
+            m_crc = crc;
+            m_compressedSize = compressedSize;
+            m_size = size;
+            m_offset = offset;
+        }
+    }
+
+    private final OutputStream m_out;
+
+    private final int m_level;
+
+    private final ByteBuffer m_header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] m_buffer = new byte[1 << 16];
+
+    private final List<Written> m_entries = new ArrayList<>();
+
+    private long m_position;
+
+    private boolean m_entryOpen;
+
+    /**
+     * @param out The stream to write the zip file to, closed by {@link #close()}.
+     * @param level The compression level of the entries deflated while they are written (0-9 or
+     *            {@link Deflater#DEFAULT_COMPRESSION}).
+     */
+    RawZipWriter(final OutputStream out, final int level) {
+        m_out = new BufferedOutputStream(out, 1 << 16);
+        m_level = level;
+    }
+
+    /**
+     * Copies an entry without decompressing it.
+     *
+     * @param entry An entry of a zip file.
+     * @param raw The compressed content of {@code entry}.
+     * @throws IOException Problem writing.
+     */
+    void copy(final RawZipFile.Entry entry, final InputStream raw) throws IOException {
+        rawEntry(entry.name(), entry.method(), entry.dosTime(), entry.crc(), entry.compressedSize(), entry.size(),
+            raw);
+    }
+
+    /**
+     * Writes an entry from its already compressed content.
+     *
+     * @param name The name of the entry.
+     * @param method The compression method of {@code raw}.
+     * @param dosTime The modification time in MS-DOS format.
+     * @param crc The CRC-32 of the uncompressed content.
+     * @param compressedSize The length of {@code raw}.
+     * @param size The size of the uncompressed content.
+     * @param raw The compressed content.
+     * @throws IOException Problem writing.
+     */
+    void rawEntry(final String name, final int method, final int dosTime, final long crc, final long compressedSize,
+        final long size, final InputStream raw) throws IOException {
+        checkNoEntryOpen();
+        final byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        final long offset = m_position;
+        final boolean zip64 = compressedSize >= MAGIC || size >= MAGIC;
+        m_header.clear();
+        m_header.putInt(LOCAL_HEADER).putShort((short)(zip64 ? VERSION_ZIP64 : VERSION)).putShort((short)FLAG_UTF8)
+            .putShort((short)method).putInt(dosTime).putInt((int)crc);
+        if (zip64) {
+            m_header.putInt((int)MAGIC).putInt((int)MAGIC);
+        } else {
+            m_header.putInt((int)compressedSize).putInt((int)size);
+        }
+        m_header.putShort((short)encodedName.length).putShort((short)(zip64 ? 20 : 0));
+        writeHeader();
+        write(encodedName, 0, encodedName.length);
+        if (zip64) {
+            m_header.clear();
+            m_header.putShort((short)1).putShort((short)16).putLong(size).putLong(compressedSize);
+            writeHeader();
+        }
+        long remaining = compressedSize;
+        while (remaining > 0) {
+            final int read = raw.read(m_buffer, 0, (int)Math.min(m_buffer.length, remaining));
+            if (read < 0) {
+                throw new ZipException("Unexpected end of the content of " + name);
+            }
+            write(m_buffer, 0, read);
+            remaining -= read;
+        }
+        m_entries.add(new Written(encodedName, FLAG_UTF8, method, dosTime, crc, compressedSize, size, offset));
+    }
+
+    /**
+     * Starts a new entry which is deflated while it is written. It has to be closed before the next entry is added.
+     *
+     * @param name The name of the entry.
+     * @return The stream of the uncompressed content of the entry.
+     * @throws IOException Problem writing.
+     */
+    OutputStream newEntry(final String name) throws IOException {
+        checkNoEntryOpen();
+        final byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        final long offset = m_position;
+        final int dosTime = dosTime(LocalDateTime.now());
+        final int flags = FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+        m_header.clear();
+        m_header.putInt(LOCAL_HEADER).putShort((short)VERSION).putShort((short)flags)
+            .putShort((short)RawZipFile.DEFLATED).putInt(dosTime).putInt(0).putInt(0).putInt(0)
+            .putShort((short)encodedName.length).putShort((short)0);
+        writeHeader();
+        write(encodedName, 0, encodedName.length);
+        m_entryOpen = true;
+        return new EntryStream(encodedName, flags, dosTime, offset);
+    }
+
+    /**
+     * Writes the central directory and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            checkNoEntryOpen();
+            final long directoryOffset = m_position;
+            for (final Written entry : m_entries) {
+                writeCentralHeader(entry);
+            }
+            final long directorySize = m_position - directoryOffset;
+            final long count = m_entries.size();
+            if (count >= 0xffff || directoryOffset >= MAGIC || directorySize >= MAGIC) {
+                final long zip64End = m_position;
+                m_header.clear();
+                m_header.putInt(ZIP64_END).putLong(44).putShort((short)VERSION_ZIP64)
+                    .putShort((short)VERSION_ZIP64).putInt(0).putInt(0).putLong(count).putLong(count)
+                    .putLong(directorySize).putLong(directoryOffset);
+                writeHeader();
+                m_header.clear();
+                m_header.putInt(ZIP64_LOCATOR).putInt(0).putLong(zip64End).putInt(1);
+                writeHeader();
+            }
+            m_header.clear();
+            m_header.putInt(END).putShort((short)0).putShort((short)0).putShort((short)Math.min(count, 0xffff))
+                .putShort((short)Math.min(count, 0xffff)).putInt((int)Math.min(directorySize, MAGIC))
+                .putInt((int)Math.min(directoryOffset, MAGIC)).putShort((short)0);
+            writeHeader();
+        } finally {
+            m_out.close();
+        }
+    }
+
+    private void writeCentralHeader(final Written entry) throws IOException {
+        final boolean sizes64 = entry.m_compressedSize >= MAGIC || entry.m_size >= MAGIC;
+        final boolean offset64 = entry.m_offset >= MAGIC;
+        final int extraLength = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+        final int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+        m_header.clear();
+        m_header.putInt(CENTRAL_HEADER).putShort((short)version).putShort((short)version)
+            .putShort((short)entry.m_flags).putShort((short)entry.m_method).putInt(entry.m_dosTime)
+            .putInt((int)entry.m_crc);
+        if (sizes64) {
+            m_header.putInt((int)MAGIC).putInt((int)MAGIC);
+        } else {
+            m_header.putInt((int)entry.m_compressedSize).putInt((int)entry.m_size);
+        }
+        m_header.putShort((short)entry.m_name.length).putShort((short)(extraLength > 0 ? extraLength + 4 : 0))
+            .putShort((short)0).putShort((short)0).putShort((short)0).putInt(0)
+            .putInt((int)(offset64 ? MAGIC : entry.m_offset));
+        writeHeader();
+        write(entry.m_name, 0, entry.m_name.length);
+        if (extraLength > 0) {
+            m_header.clear();
+            m_header.putShort((short)1).putShort((short)extraLength);
+            if (sizes64) {
+                m_header.putLong(entry.m_size).putLong(entry.m_compressedSize);
+            }
+            if (offset64) {
+                m_header.putLong(entry.m_offset);
+            }
+            writeHeader();
+        }
+    }
+
+    private void checkNoEntryOpen() throws ZipException {
+        if (m_entryOpen) {
+            throw new ZipException("The previous entry is not closed");
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        write(m_header.array(), 0, m_header.position());
+    }
+
+    private void write(final byte[] b, final int off, final int len) throws IOException {
+        m_out.write(b, off, len);
+        m_position += len;
+    }
+
+    /**
+     * Deflates the content of an entry in blocks on the {@link #DEFLATE_POOL}. Each block is deflated on its own, with
+     * the end of the previous block as dictionary (so the compression is nearly as good as deflating the content at
+     * once), and flushed to a byte boundary, so the deflated blocks can be concatenated in their order.
+     */
+    private final class EntryStream extends OutputStream {
+        private final byte[] m_name;
+
+        private final int m_flags;
+
+        private final int m_dosTime;
+
+        private final long m_offset;
+
+        private final long m_start = m_position;
+
+        private final CRC32 m_crc = new CRC32();
+
+        /** The blocks being deflated, in their order. */
+        private final Deque<Future<ByteBuffer>> m_pending = new ArrayDeque<>();
+
+        private byte[] m_block = new byte[BLOCK_SIZE];
+
+        private int m_length;
+
+        /** The end of the previous block, {@code null} for the first one. */
+        private byte[] m_dictionary;
+
+        private long m_size;
+
+        private boolean m_closed;
+
+        private EntryStream(final byte[] name, final int flags, final int dosTime, final long offset) {
+            m_name = name;
+            m_flags = flags;
+            m_dosTime = dosTime;
+            m_offset = offset;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (m_size + len >= MAGIC) {
+                throw tooLarge();
+            }
+            m_crc.update(b, off, len);
+            m_size += len;
+            int done = 0;
+            while (done < len) {
+                final int length = Math.min(len - done, BLOCK_SIZE - m_length);
+                System.arraycopy(b, off + done, m_block, m_length, length);
+                m_length += length;
+                done += length;
+                if (m_length == BLOCK_SIZE) {
+                    deflateBlock(false);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (m_closed) {
+                return;
+            }
+            m_closed = true;
+            try {
+                deflateBlock(true);
+            } finally {
+                for (final Future<ByteBuffer> pending : m_pending) {
+                    pending.cancel(false);
+                }
+            }
+            final long compressedSize = m_position - m_start;
+            if (compressedSize >= MAGIC) {
+                throw tooLarge();
+            }
+            final long crc = m_crc.getValue();
+            m_header.clear();
+            m_header.putInt(DATA_DESCRIPTOR).putInt((int)crc).putInt((int)compressedSize).putInt((int)m_size);
+            writeHeader();
+            m_entries.add(
+                new Written(m_name, m_flags, RawZipFile.DEFLATED, m_dosTime, crc, compressedSize, m_size, m_offset));
+            m_entryOpen = false;
+        }
+
+        private void deflateBlock(final boolean last) throws IOException {
+            final byte[] block = m_block;
+            final int length = m_length;
+            final byte[] dictionary = m_dictionary;
+            final int level = m_level;
+            if (last && m_pending.isEmpty()) {
+                // small entries are deflated at once
+                writeDeflated(deflate(level, dictionary, block, length, true));
+                return;
+            }
+            if (!last) {
+                m_dictionary = Arrays.copyOfRange(block, length - DICTIONARY_SIZE, length);
+                m_block = new byte[BLOCK_SIZE];
+                m_length = 0;
+            }
+            m_pending.add(DEFLATE_POOL.submit(() -> deflate(level, dictionary, block, length, last)));
+            while (!m_pending.isEmpty() && (last || m_pending.size() > MAX_PENDING_BLOCKS)) {
+                final Future<ByteBuffer> deflated = m_pending.peek();
+                try {
+                    writeDeflated(deflated.get());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while deflating " + new String(m_name,
+                        StandardCharsets.UTF_8));
+                } catch (final ExecutionException e) {
+                    throw new IOException(e.getCause().getMessage(), e.getCause());
+                }
+                m_pending.remove();
+            }
+        }
+
+        private ZipException tooLarge() {
+            return new ZipException("The entry " + new String(m_name, StandardCharsets.UTF_8)
+                + " is too large, its size has to be less than 4 GB");
+        }
+
+        private void writeDeflated(final ByteBuffer deflated) throws IOException {
+            RawZipWriter.this.write(deflated.array(), 0, deflated.limit());
+        }
+    }
+
+    /**
+     * Deflates a block of an entry.
+     *
+     * @param level The compression level.
+     * @param dictionary The end of the previous block, or {@code null} for the first one.
+     * @param block The uncompressed content of the block.
+     * @param length The length of the content in {@code block}.
+     * @param last Whether the block is the last one of the entry.
+     * @return The deflated block.
+     */
+    private static ByteBuffer deflate(final int level, final byte[] dictionary, final byte[] block, final int length,
+        final boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(block, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] deflated = new byte[length / 2 + 64];
+            int deflatedLength = 0;
+            while (true) {
+                deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength,
+                    last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // the flush is complete when the output is not filled
+                if (last ? deflater.finished() : deflatedLength < deflated.length) {
+                    return ByteBuffer.wrap(deflated, 0, deflatedLength);
+                }
+                if (deflatedLength == deflated.length) {
+                    deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ExecutorService createDeflatePool() {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> ThreadUtils.threadWithContext(r, "KNIME-XLSX-Deflater-" + DEFLATE_POOL_INDEX.getAndIncrement()));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @param time A local time.
+     * @return {@code time} in the MS-DOS format of zip files (the time in the lower, the date in the upper half).
+     */
+    static int dosTime(final LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((time.getYear() - 1980) << 25) | (time.getMonthValue() << 21) | (time.getDayOfMonth() << 16)
+            | (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+    }
+}
@@ -48,6 +48,8 @@
 package org.knime.ext.poi2.node.write3;
 
 import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -57,15 +59,20 @@
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.time.LocalDate;
-import java.time.ZoneId;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
@@ -74,22 +81,24 @@
 import org.apache.poi.ss.usermodel.ClientAnchor;
 import org.apache.poi.ss.usermodel.ClientAnchor.AnchorType;
 import org.apache.poi.ss.usermodel.CreationHelper;
-import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Drawing;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
 import org.apache.poi.xssf.usermodel.XSSFShape;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.knime.core.data.BooleanValue;
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
 import org.knime.core.data.DoubleValue;
 import org.knime.core.data.StringValue;
 import org.knime.core.data.date.DateAndTimeValue;
@@ -105,6 +114,7 @@
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
+import org.knime.ext.poi2.ExcelDates;
 
 /**
  *
@@ -173,22 +183,39 @@ void write(final Iterable<DataRow> table, final DataTableSpec spec, final int nu
         final ExecutionMonitor exec)
         throws IOException, CanceledExecutionException, InvalidFormatException, URISyntaxException, InvalidSettingsException {
 
-        Workbook wb = null;
         final boolean isXLSX = m_destination.toString().toLowerCase().endsWith("xlsx");
+        // appends to the same file are committed together, the other writes are serialized
+        if (isXLSX && canWriteDirectly(spec) && m_type == XLSNodeType.APPENDER && Files.exists(m_destination)
+            && appendDirectly(table, spec, numOfRows, exec)) {
+            return;
+        }
+        KeyLocker.lock(m_destination);
+        try {
+            if (isXLSX && canWriteDirectly(spec) && (m_type == XLSNodeType.WRITER
+                || (!m_settings.getFileMustExist() && !Files.exists(m_destination)))) {
+                writeDirectly(table, spec, numOfRows, exec);
+            } else {
+                writeWithPoi(table, spec, numOfRows, exec, isXLSX);
+            }
+        } finally {
+            KeyLocker.unlock(m_destination);
+        }
+    }
+
+    /**
+     * Writes <code>table</code> with POI's workbook.
+     *
+     * @see #write(Iterable, DataTableSpec, int, ExecutionMonitor)
+     */
+    private void writeWithPoi(final Iterable<DataRow> table, final DataTableSpec spec, final int numOfRows,
+        final ExecutionMonitor exec, final boolean isXLSX)
+        throws IOException, CanceledExecutionException, InvalidFormatException, InvalidSettingsException {
+        Workbook wb = null;
         try {
             wb = readOrCreateWorkbook(isXLSX);
 
             int sheetIdx = 0; // in case the table doesn't fit in one sheet
-            String sheetName = m_settings.getSheetname();
-            if ((sheetName == null) || (sheetName.trim().length() == 0)) {
-                sheetName = spec.getName();
-            }
-            // max sheetname length is 32 incl. added running index. We cut it to 25
-            if (sheetName.length() > 25) {
-                sheetName = sheetName.substring(0, 22) + "...";
-            }
-            // replace characters like \ / * ? [ ] etc.
-            sheetName = replaceInvalidChars(sheetName);
+            final String sheetName = sheetName(spec);
 
             if (!m_settings.getDoNotOverwriteSheet()) {
                 final Sheet oldSheet = wb.getSheet(sheetName);
@@ -206,6 +233,7 @@ void write(final Iterable<DataRow> table, final DataTableSpec spec, final int nu
             Drawing<?> drawing = null;
             final CreationHelper helper = wb.getCreationHelper();
             final Map<String, CellStyle> dateStyles = new HashMap<>();
+            final boolean date1904 = isDate1904(wb);
 
             int numOfCols = spec.getNumColumns();
             final int rowHdrIncr = m_settings.writeRowID() ? 1 : 0;
@@ -326,42 +354,22 @@ void write(final Iterable<DataRow> table, final DataTableSpec spec, final int nu
                             final DateAndTimeValue dateAndTime = (DateAndTimeValue)colValue;
                             final Calendar val = dateAndTime.getUTCCalendarClone();
                             sheetCell.setCellValue(val);
-                            String format = "";
-                            if (dateAndTime.hasDate()) {
-                                format += "yyyy-mm-dd";
-                            }
-                            if (dateAndTime.hasDate() && dateAndTime.hasTime()) {
-                                format += "T";
-                            }
-                            if (dateAndTime.hasTime()) {
-                                format += "hh:mm:ss";
-                            }
-                            if (dateAndTime.hasTime() && dateAndTime.hasMillis()) {
-                                format += ".";
-                            }
-                            if (dateAndTime.hasMillis()) {
-                                format += "000";
-                            }
-                            sheetCell.setCellStyle(dateOrTimeStyle(wb, helper, dateStyles, format));
+                            sheetCell.setCellStyle(dateOrTimeStyle(wb, helper, dateStyles, dateFormat(dateAndTime)));
                         } else if (colValue.getType().isCompatible(LocalDateValue.class)) {
                             final LocalDateValue dateValue = (LocalDateValue)colValue;
                             sheetCell.setCellStyle(dateOrTimeStyle(wb, helper, dateStyles, "yyyy-mm-dd"));
-                            sheetCell.setCellValue(DateUtil.getExcelDate(new Date(dateValue.getLocalDate().atTime(0, 0)
-                                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())));
+                            sheetCell.setCellValue(ExcelDates.fromLocalDate(dateValue.getLocalDate(), date1904));
                         } else if (colValue.getType().isCompatible(PeriodValue.class)) {
                             final PeriodValue periodValue = (PeriodValue)colValue;
                             sheetCell.setCellValue(periodValue.getPeriod().toString());
                         } else if (colValue.getType().isCompatible(LocalDateTimeValue.class)) {
                             final LocalDateTimeValue dtValue = (LocalDateTimeValue)colValue;
                             sheetCell.setCellStyle(dateOrTimeStyle(wb, helper, dateStyles, "yyyy-mm-dd hh:mm:ss"));
-                            sheetCell.setCellValue(DateUtil.getExcelDate(new Date(
-                                dtValue.getLocalDateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())));
+                            sheetCell.setCellValue(ExcelDates.fromLocalDateTime(dtValue.getLocalDateTime(), date1904));
                         } else if (colValue.getType().isCompatible(LocalTimeValue.class)) {
                             final LocalTimeValue tValue = (LocalTimeValue)colValue;
                             sheetCell.setCellStyle(dateOrTimeStyle(wb, helper, dateStyles, "hh:mm:ss;@"));
-                            sheetCell.setCellValue(
-                                DateUtil.getExcelDate(new Date(LocalDate.of(1900, 1, 1).atTime(tValue.getLocalTime())
-                                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())) % 1);
+                            sheetCell.setCellValue(ExcelDates.fromLocalTime(tValue.getLocalTime()));
                         } else if (colValue.getType().isCompatible(ZonedDateTimeValue.class)) {
                             final ZonedDateTimeValue zdtValue = (ZonedDateTimeValue)colValue;
                             sheetCell.setCellValue(zdtValue.toString());
@@ -426,6 +434,335 @@ void write(final Iterable<DataRow> table, final DataTableSpec spec, final int nu
         }
     }
 
+    /**
+     * @param spec {@link DataTableSpec} of the table to write.
+     * @return Whether the table can be written to an xlsx file without creating a POI workbook, which is only needed
+     *         for images, auto-sizing the columns and evaluating the formulae (and replacing existing sheets).
+     */
+    private boolean canWriteDirectly(final DataTableSpec spec) {
+        return !m_settings.getAutosize() && !m_settings.evaluateFormula()
+            && !spec.containsCompatibleType(PNGImageValue.class);
+    }
+
+    /**
+     * Writes the rows of {@code table} directly into the worksheet part of a new xlsx file, without POI rows and
+     * cells or temporary files. The content is the same as the one written through {@link SXSSFWorkbook}. The file is
+     * written next to the destination and replaces it when complete, so an existing file is kept in case of failure
+     * or cancellation.
+     *
+     * @see #write(Iterable, DataTableSpec, int, ExecutionMonitor)
+     */
+    private void writeDirectly(final Iterable<DataRow> table, final DataTableSpec spec, final int numOfRows,
+        final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+        try (final XSSFWorkbook wb = new XSSFWorkbook()) {
+            final String sheetEntry = createTemplateSheet(wb, sheetName(spec), true);
+            final CreationHelper helper = wb.getCreationHelper();
+            final Map<String, CellStyle> dateStyles = new HashMap<>();
+
+            final Path newFile = createTempFileFor(m_destination);
+            boolean moved = false;
+            try {
+                try (final RawZipWriter zip =
+                    new RawZipWriter(Files.newOutputStream(newFile), m_settings.getCompressionLevel())) {
+                    try (final OutputStream sheet = zip.newEntry(sheetEntry);
+                            final XlsxSheetWriter sheetWriter =
+                                new XlsxSheetWriter(sheet, templateParts(wb).get(sheetEntry))) {
+                        writeRows(sheetWriter, table, spec, numOfRows, exec,
+                            format -> dateOrTimeStyle(wb, helper, dateStyles, format).getIndex() & 0xffff, false);
+                    }
+                    // the styles are only complete after the rows
+                    for (final Map.Entry<String, byte[]> part : templateParts(wb).entrySet()) {
+                        if (!part.getKey().equals(sheetEntry)) {
+                            try (final OutputStream out = zip.newEntry(part.getKey())) {
+                                out.write(part.getValue());
+                            }
+                        }
+                    }
+                }
+                Files.move(newFile, m_destination, StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            } finally {
+                if (!moved) {
+                    Files.deleteIfExists(newFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an empty temporary file in the directory of {@code destination} to replace it. When {@code destination}
+     * exists, its permissions, owner and group (or its access control list) are copied to the new file as far as
+     * the file system and the user's rights allow it.
+     *
+     * @param destination The file to replace.
+     * @return The new file.
+     * @throws IOException Creating the file failed.
+     */
+    static Path createTempFileFor(final Path destination) throws IOException {
+        final Path file = Files.createTempFile(destination.toAbsolutePath().getParent(),
+            destination.getFileName().toString(), ".tmp");
+        if (!Files.exists(destination)) {
+            return file;
+        }
+        try {
+            final PosixFileAttributeView source =
+                Files.getFileAttributeView(destination, PosixFileAttributeView.class);
+            final PosixFileAttributeView target = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+            if (source != null && target != null) {
+                final PosixFileAttributes attributes = source.readAttributes();
+                target.setPermissions(attributes.permissions());
+                try {
+                    // the group first, the owner might not be allowed to change it afterwards
+                    target.setGroup(attributes.group());
+                    target.setOwner(attributes.owner());
+                } catch (IOException e) {
+                    LOGGER.debug("Cannot keep the owner of " + destination + ": " + e.getMessage(), e);
+                }
+            }
+            final AclFileAttributeView sourceAcl = Files.getFileAttributeView(destination, AclFileAttributeView.class);
+            final AclFileAttributeView targetAcl = Files.getFileAttributeView(file, AclFileAttributeView.class);
+            if (sourceAcl != null && targetAcl != null) {
+                targetAcl.setAcl(sourceAcl.getAcl());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot keep the permissions of " + destination + ": " + e.getMessage(), e);
+        }
+        return file;
+    }
+
+    /**
+     * Appends {@code table} as a new sheet to the existing xlsx file at the package level, together with the other
+     * appends to the same file arriving meanwhile (see {@link XlsxAppendCoalescer}).
+     *
+     * @return Whether the table was appended, {@code false} if the workbook has to be loaded with POI, because the
+     *         sheet already exists or the package is not supported.
+     * @see #write(Iterable, DataTableSpec, int, ExecutionMonitor)
+     */
+    private boolean appendDirectly(final Iterable<DataRow> table, final DataTableSpec spec, final int numOfRows,
+        final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+        final String sheetName = sheetName(spec);
+        final byte[] template;
+        try (final XSSFWorkbook wb = new XSSFWorkbook()) {
+            // not selected, the active sheet of the workbook stays the only selected one (otherwise the sheets are grouped)
+            final String sheetEntry = createTemplateSheet(wb, sheetName, false);
+            template = templateParts(wb).get(sheetEntry);
+        }
+        return XlsxAppendCoalescer.append(m_destination, sheetName, template, m_settings.getCompressionLevel(),
+            (sheetWriter, dateStyle, date1904) -> writeRows(sheetWriter, table, spec, numOfRows, exec, dateStyle,
+                date1904));
+    }
+
+    /**
+     * Creates the sheet with the page setup of the settings in a template workbook.
+     *
+     * @param selected Whether the sheet tab is selected.
+     * @return The name of the zip entry of the worksheet part.
+     */
+    private String createTemplateSheet(final XSSFWorkbook wb, final String sheetName, final boolean selected) {
+        final XSSFSheet sheet = wb.createSheet(sheetName);
+        sheet.setSelected(selected);
+        sheet.getPrintSetup().setLandscape(m_settings.getLandscape());
+        sheet.getPrintSetup().setPaperSize(m_settings.getPaperSize());
+        return sheet.getPackagePart().getPartName().getName().substring(1);
+    }
+
+    /**
+     * Writes the column header and the rows of {@code table} like
+     * {@link #write(Iterable, DataTableSpec, int, ExecutionMonitor)} does with POI's workbook.
+     *
+     * @param dateStyle The index of the cell style for a date format.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     */
+    private void writeRows(final XlsxSheetWriter sheetWriter, final Iterable<DataRow> table,
+        final DataTableSpec spec, final int numOfRows, final ExecutionMonitor exec,
+        final ToIntFunction<String> dateStyle, final boolean date1904) throws IOException, CanceledExecutionException {
+        final int numOfCols = spec.getNumColumns();
+        int rowIdx = 0;
+        if (m_settings.writeColHeader()) {
+            sheetWriter.beginRow(rowIdx++);
+            int colIdx = 0;
+            if (m_settings.writeRowID()) {
+                sheetWriter.stringCell(colIdx++, "row ID");
+            }
+            for (int c = 0; c < numOfCols; c++) {
+                sheetWriter.stringCell(colIdx++, spec.getColumnSpec(c).getName());
+            }
+            sheetWriter.endRow();
+        }
+
+        final ColumnWriter[] columnWriters = new ColumnWriter[numOfCols];
+        for (int c = 0; c < numOfCols; c++) {
+            columnWriters[c] = new ColumnWriter(spec.getColumnSpec(c).getType(), dateStyle, date1904);
+        }
+
+        int rowCnt = 0;
+        for (final DataRow tableRow : table) {
+            final String rowID = tableRow.getKey().getString();
+            if (numOfRows > 0) {
+                exec.setProgress(rowCnt / (double)numOfRows,
+                    "Writing row " + (rowCnt + 1) + " (\"" + rowID + "\") of " + numOfRows);
+            }
+            exec.checkCanceled();
+
+            sheetWriter.beginRow(rowIdx++);
+            int colIdx = 0;
+            if (m_settings.writeRowID()) {
+                sheetWriter.stringCell(colIdx++, rowID);
+            }
+            for (int c = 0; c < numOfCols; c++) {
+                final DataCell colValue = tableRow.getCell(c);
+                if (!colValue.isMissing()) {
+                    columnWriters[c].write(sheetWriter, colIdx, colValue);
+                } else if (m_settings.getWriteMissingValues()) {
+                    sheetWriter.stringCell(colIdx, m_settings.getMissingPattern());
+                }
+                colIdx++;
+            }
+            sheetWriter.endRow();
+            rowCnt++;
+        }
+    }
+
+    /** Writes the non-missing cells of a type. */
+    @FunctionalInterface
+    private interface CellWriter {
+        /**
+         * @param sheetWriter The writer of the worksheet.
+         * @param colIdx The index of the column in the sheet.
+         * @param cell A non-missing cell.
+         * @throws IOException Problem writing.
+         */
+        void write(XlsxSheetWriter sheetWriter, int colIdx, DataCell cell) throws IOException;
+    }
+
+    /**
+     * Writes the non-missing cells of a column with the {@link CellWriter} of the column's type, resolved once. Only
+     * the cells of other types (of columns with cells of different types) need the writer of their type.
+     */
+    private static final class ColumnWriter {
+        private final ToIntFunction<String> m_dateStyle;
+
+        private final boolean m_date1904;
+
+        private final Map<DataType, CellWriter> m_writers = new HashMap<>();
+
+        private DataType m_type;
+
+        private CellWriter m_writer;
+
+        private ColumnWriter(final DataType type, final ToIntFunction<String> dateStyle, final boolean date1904) {
+            m_dateStyle = dateStyle;
+            m_date1904 = date1904;
+            m_type = type;
+            m_writer = cellWriter(type, dateStyle, date1904);
+            m_writers.put(type, m_writer);
+        }
+
+        private void write(final XlsxSheetWriter sheetWriter, final int colIdx, final DataCell cell)
+            throws IOException {
+            final DataType type = cell.getType();
+            if (type != m_type && !type.equals(m_type)) {
+                m_writer = m_writers.computeIfAbsent(type, t -> cellWriter(t, m_dateStyle, m_date1904));
+                m_type = type;
+            }
+            m_writer.write(sheetWriter, colIdx, cell);
+        }
+    }
+
+    /** The index of the cell style of a date format, resolved when it is first used. */
+    private static final class DateStyle {
+        private final String m_format;
+
+        private final ToIntFunction<String> m_dateStyle;
+
+        private int m_index = -1;
+
+        private DateStyle(final String format, final ToIntFunction<String> dateStyle) {
+            m_format = format;
+            m_dateStyle = dateStyle;
+        }
+
+        private int index() {
+            if (m_index < 0) {
+                m_index = m_dateStyle.applyAsInt(m_format);
+            }
+            return m_index;
+        }
+    }
+
+    /**
+     * Returns the writer of the non-missing cells of a type, which writes them the same way as the cells of POI's
+     * workbook are set in {@link #write(Iterable, DataTableSpec, int, ExecutionMonitor)}.
+     *
+     * @param type The type of the cells.
+     * @param dateStyle Returns the index of the cell style for a date format.
+     * @param date1904 Whether the workbook uses the 1904 date system.
+     */
+    private static CellWriter cellWriter(final DataType type, final ToIntFunction<String> dateStyle,
+        final boolean date1904) {
+        if (type.isCompatible(DoubleValue.class)) {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.numericCell(colIdx,
+                ((DoubleValue)cell).getDoubleValue(), 0);
+        } else if (type.isCompatible(BooleanValue.class)) {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.booleanCell(colIdx,
+                ((BooleanValue)cell).getBooleanValue());
+        } else if (type.isCompatible(DateAndTimeValue.class)) {
+            // the format depends on the fields of the cells
+            final DateStyle[] styles = new DateStyle[8];
+            return (sheetWriter, colIdx, cell) -> {
+                final DateAndTimeValue dateAndTime = (DateAndTimeValue)cell;
+                final int fields = (dateAndTime.hasDate() ? 4 : 0) | (dateAndTime.hasTime() ? 2 : 0)
+                    | (dateAndTime.hasMillis() ? 1 : 0);
+                if (styles[fields] == null) {
+                    styles[fields] = new DateStyle(dateFormat(dateAndTime), dateStyle);
+                }
+                sheetWriter.numericCell(colIdx,
+                    ExcelDates.fromEpochMilli(dateAndTime.getUTCTimeInMillis(), date1904), styles[fields].index());
+            };
+        } else if (type.isCompatible(LocalDateValue.class)) {
+            final DateStyle style = new DateStyle("yyyy-mm-dd", dateStyle);
+            return (sheetWriter, colIdx, cell) -> sheetWriter.numericCell(colIdx,
+                ExcelDates.fromLocalDate(((LocalDateValue)cell).getLocalDate(), date1904), style.index());
+        } else if (type.isCompatible(PeriodValue.class)) {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.stringCell(colIdx,
+                ((PeriodValue)cell).getPeriod().toString());
+        } else if (type.isCompatible(LocalDateTimeValue.class)) {
+            final DateStyle style = new DateStyle("yyyy-mm-dd hh:mm:ss", dateStyle);
+            return (sheetWriter, colIdx, cell) -> sheetWriter.numericCell(colIdx,
+                ExcelDates.fromLocalDateTime(((LocalDateTimeValue)cell).getLocalDateTime(), date1904), style.index());
+        } else if (type.isCompatible(LocalTimeValue.class)) {
+            final DateStyle style = new DateStyle("hh:mm:ss;@", dateStyle);
+            return (sheetWriter, colIdx, cell) -> sheetWriter.numericCell(colIdx,
+                ExcelDates.fromLocalTime(((LocalTimeValue)cell).getLocalTime()), style.index());
+        } else if (type.isCompatible(ZonedDateTimeValue.class)) {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.stringCell(colIdx, cell.toString());
+        } else if (type.isCompatible(DurationValue.class)) {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.stringCell(colIdx,
+                ((DurationValue)cell).getDuration().toString());
+        } else if (type.isCompatible(StringValue.class)) {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.stringCell(colIdx, ((StringValue)cell).getStringValue());
+        } else {
+            return (sheetWriter, colIdx, cell) -> sheetWriter.stringCell(colIdx, cell.toString());
+        }
+    }
+
+    /**
+     * @param wb A new workbook.
+     * @return The parts of the package of {@code wb} by their zip entry names, in the order of the package.
+     * @throws IOException Problem writing the workbook.
+     */
+    private static Map<String, byte[]> templateParts(final XSSFWorkbook wb) throws IOException {
+        final ByteArrayOutputStream template = new ByteArrayOutputStream();
+        wb.write(template);
+        final Map<String, byte[]> parts = new LinkedHashMap<>();
+        try (final ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(template.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                parts.put(entry.getName(), IOUtils.toByteArray(zip));
+            }
+        }
+        return parts;
+    }
+
     private void writeWorkbook(final Workbook wb) throws IOException, InvalidSettingsException {
 
         final Set<OpenOption> openOptions = new HashSet<>();
@@ -476,6 +813,64 @@ private Workbook readOrCreateWorkbook(final boolean isXLSX) throws IOException,
         return wb;
     }
 
+    /**
+     * @param spec {@link DataTableSpec} of the table to write.
+     * @return The name of the sheet to write (without the running index of additional xls sheets).
+     */
+    private String sheetName(final DataTableSpec spec) {
+        String sheetName = m_settings.getSheetname();
+        if ((sheetName == null) || (sheetName.trim().length() == 0)) {
+            sheetName = spec.getName();
+        }
+        // max sheetname length is 32 incl. added running index. We cut it to 25
+        if (sheetName.length() > 25) {
+            sheetName = sheetName.substring(0, 22) + "...";
+        }
+        // replace characters like \ / * ? [ ] etc.
+        return replaceInvalidChars(sheetName);
+    }
+
+    /**
+     * @param dateAndTime A (legacy) date and time value.
+     * @return The Excel format showing the fields of {@code dateAndTime}.
+     */
+    private static String dateFormat(final DateAndTimeValue dateAndTime) {
+        String format = "";
+        if (dateAndTime.hasDate()) {
+            format += "yyyy-mm-dd";
+        }
+        if (dateAndTime.hasDate() && dateAndTime.hasTime()) {
+            format += "T";
+        }
+        if (dateAndTime.hasTime()) {
+            format += "hh:mm:ss";
+        }
+        if (dateAndTime.hasTime() && dateAndTime.hasMillis()) {
+            format += ".";
+        }
+        if (dateAndTime.hasMillis()) {
+            format += "000";
+        }
+        return format;
+    }
+
+    /**
+     * @param wb A workbook.
+     * @return Whether the workbook uses the 1904 date system.
+     */
+    private static boolean isDate1904(final Workbook wb) {
+        if (wb instanceof SXSSFWorkbook) {
+            return ((SXSSFWorkbook)wb).getXSSFWorkbook().isDate1904();
+        }
+        if (wb instanceof XSSFWorkbook) {
+            return ((XSSFWorkbook)wb).isDate1904();
+        }
+        if (wb instanceof HSSFWorkbook) {
+            return ((HSSFWorkbook)wb).getInternalWorkbook().isUsing1904DateWindowing();
+        }
+        return false;
+    }
+
     /**
      * @param isXLSX
      * @return
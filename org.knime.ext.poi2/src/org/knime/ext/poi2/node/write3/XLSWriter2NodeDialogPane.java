@@ -66,7 +66,9 @@
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
+import javax.swing.JSpinner;
 import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
 import javax.swing.border.EtchedBorder;
 import javax.swing.border.TitledBorder;
@@ -146,6 +148,9 @@ final class XLSWriter2NodeDialogPane extends NodeDialogPane {
 
     private final JComboBox<String> m_paperSize = new JComboBox<>(PaperSize.getNames());
 
+    private final JSpinner m_compressionLevel =
+        new JSpinner(new SpinnerNumberModel(XLSWriter2Settings.DEFAULT_COMPRESSION_LEVEL, 0, 9, 1));
+
     private final FlowVariableModelButton m_sheetnameFVM =
         new FlowVariableModelButton(createFlowVariableModel("sheetname", FlowVariable.Type.STRING));
 
@@ -207,6 +212,7 @@ final class XLSWriter2NodeDialogPane extends NodeDialogPane {
         }
         tab.add(createMissingBox());
         tab.add(createLayoutBox());
+        tab.add(createCompressionBox());
         tab.add(m_filter);
 
         addTab("Settings", tab);
@@ -365,6 +371,24 @@ private JPanel createLayoutBox() {
         return result;
     }
 
+    private JPanel createCompressionBox() {
+        m_compressionLevel.setMaximumSize(m_compressionLevel.getPreferredSize());
+
+        final Box levelBox = Box.createHorizontalBox();
+        levelBox.add(new JLabel("Compression level (0 - fastest, 9 - smallest file):"));
+        levelBox.add(Box.createHorizontalStrut(5));
+        levelBox.add(m_compressionLevel);
+        levelBox.add(Box.createHorizontalGlue());
+        levelBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, m_compressionLevel.getMaximumSize().height));
+
+        final JPanel result = new JPanel();
+        result.setLayout(new BoxLayout(result, BoxLayout.Y_AXIS));
+        result.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), "Compression"));
+        result.add(levelBox);
+        result.add(Box.createVerticalStrut(5));
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -402,6 +426,7 @@ protected void loadSettingsFrom(final NodeSettingsRO settings, final PortObjectS
             m_portrait.setSelected(true);
         }
         m_paperSize.setSelectedItem(PaperSize.getName(newVals.getPaperSize()));
+        m_compressionLevel.setValue(newVals.getCompressionLevel());
         m_writeMissingValue.setSelected(newVals.getWriteMissingValues());
         m_missValue.setEnabled(newVals.getWriteMissingValues());
         final DataColumnSpecFilterConfiguration config = createColFilterConf();
@@ -468,6 +493,7 @@ protected void saveSettingsTo(final NodeSettingsWO settings) throws InvalidSetti
         vals.setPaperSize(PaperSize.getValue((String)m_paperSize.getSelectedItem()));
         vals.setWriteMissingValues(m_writeMissingValue.isSelected());
         vals.setEvaluateFormula(m_evaluateFormula.isSelected());
+        vals.setCompressionLevel((Integer)m_compressionLevel.getValue());
         vals.saveSettingsTo(settings);
         final DataColumnSpecFilterConfiguration config = createColFilterConf();
         m_filter.saveConfiguration(config);
@@ -147,28 +147,22 @@ protected BufferedDataTable[] execute(final PortObject[] inData, final Execution
         checkDestinationFile(path, (m_type == XLSNodeType.APPENDER) || m_settings.getOverwriteOK(),
             m_settings.getFileMustExist());
 
-        KeyLocker.lock(path);
-        try {
-            final BufferedDataTable dataTable = (BufferedDataTable)inData[0];
-            final ColumnRearranger rearranger = new ColumnRearranger(dataTable.getDataTableSpec());
-            final FilterResult filter = m_filterConfig.applyTo(dataTable.getDataTableSpec());
-            rearranger.keepOnly(filter.getIncludes());
-            final BufferedDataTable table = exec.createColumnRearrangeTable(dataTable, rearranger, exec);
-
-            final XLSWriter2 xlsWriter = new XLSWriter2(path, m_type, m_settings);
-            xlsWriter.write(table, table.getDataTableSpec(), (int)table.size(), exec);
-
-            if (FileSystemChoice.getLocalFsChoice().equals(m_settingsModel.getFileSystemChoice())
-                && m_settings.getOpenFile()) {
-                DesktopUtil.open(path.toFile());
-            }
-
-            return new BufferedDataTable[]{};
-        } finally {
-            //always unlock the path
-            KeyLocker.unlock(path);
+        final BufferedDataTable dataTable = (BufferedDataTable)inData[0];
+        final ColumnRearranger rearranger = new ColumnRearranger(dataTable.getDataTableSpec());
+        final FilterResult filter = m_filterConfig.applyTo(dataTable.getDataTableSpec());
+        rearranger.keepOnly(filter.getIncludes());
+        final BufferedDataTable table = exec.createColumnRearrangeTable(dataTable, rearranger, exec);
+
+        // the writer serializes the writes to the same path
+        final XLSWriter2 xlsWriter = new XLSWriter2(path, m_type, m_settings);
+        xlsWriter.write(table, table.getDataTableSpec(), (int)table.size(), exec);
+
+        if (FileSystemChoice.getLocalFsChoice().equals(m_settingsModel.getFileSystemChoice())
+            && m_settings.getOpenFile()) {
+            DesktopUtil.open(path.toFile());
         }
 
+        return new BufferedDataTable[]{};
     }
 
     /**
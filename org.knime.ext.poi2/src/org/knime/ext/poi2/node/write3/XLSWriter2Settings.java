@@ -90,6 +90,11 @@ final class XLSWriter2Settings {
 
     private static final String CFG_EVALUATE_FORMULA = "evaluate_formula";
 
+    private static final String CFG_COMPRESSION_LEVEL = "compression_level";
+
+    /** The compression level of zlib's default. */
+    static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
     private int m_xCellOffset;
 
     private int m_yCellOffset;
@@ -120,6 +125,8 @@ final class XLSWriter2Settings {
 
     private boolean m_evaluateFormula;
 
+    private int m_compressionLevel;
+
     /**
      * Creates a new settings object with default settings but no filename.
      */
@@ -138,6 +145,7 @@ final class XLSWriter2Settings {
         m_paperSize = PrintSetup.LETTER_PAPERSIZE;
         m_writeMissingValues = false;
         m_evaluateFormula = false;
+        m_compressionLevel = DEFAULT_COMPRESSION_LEVEL;
     }
 
     /**
@@ -178,6 +186,11 @@ final class XLSWriter2Settings {
         m_paperSize = settings.getShort(CFG_PAPER_SIZE, PrintSetup.LETTER_PAPERSIZE);
         m_writeMissingValues = settings.getBoolean(CFG_WRITE_MISSING_VALUES, true);
         m_evaluateFormula = settings.getBoolean(CFG_EVALUATE_FORMULA, false);
+        m_compressionLevel = settings.getInt(CFG_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+        if (m_compressionLevel < 0 || m_compressionLevel > 9) {
+            throw new InvalidSettingsException(
+                "The compression level must be between 0 and 9, not " + m_compressionLevel + ".");
+        }
     }
 
     /**
@@ -201,6 +214,7 @@ final void saveSettingsTo(final NodeSettingsWO settings) {
         settings.addShort(CFG_PAPER_SIZE, m_paperSize);
         settings.addBoolean(CFG_WRITE_MISSING_VALUES, m_writeMissingValues);
         settings.addBoolean(CFG_EVALUATE_FORMULA, m_evaluateFormula);
+        settings.addInt(CFG_COMPRESSION_LEVEL, m_compressionLevel);
     }
 
     /**
@@ -417,5 +431,19 @@ final void setEvaluateFormula(final boolean evaluateFormula) {
         m_evaluateFormula = evaluateFormula;
     }
 
+    /**
+     * @return the compression level of the xlsx parts written directly (0 - none, 9 - smallest)
+     */
+    final int getCompressionLevel() {
+        return m_compressionLevel;
+    }
+
+    /**
+     * @param compressionLevel the compression level to set (0-9)
+     */
+    final void setCompressionLevel(final int compressionLevel) {
+        m_compressionLevel = compressionLevel;
+    }
+
 
 }
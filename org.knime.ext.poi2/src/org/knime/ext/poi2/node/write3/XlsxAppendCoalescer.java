@@ -0,0 +1,324 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.util.FileUtil;
+
+/**
+ * Coalesces the appends of new sheets to the same xlsx file. The first append to a file opens a batch and locks the
+ * file (with {@link KeyLocker}, like the other writes). Appends to the same file arriving while the first one writes
+ * its rows join the batch and write their rows concurrently, each into a compressed worksheet part of its own. When
+ * the first one is done, the batch is closed to further appends; when the others are done too, the file is written
+ * once with all new sheets, and each append returns when its sheet is committed. Appends arriving after the batch is
+ * closed start the next batch. So the time needed for many appends to one file grows
+ * with the number of rows written, not with the number of appends times the size of the file.
+ *
+ * @author agent
+ */
+final class XlsxAppendCoalescer {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(XlsxAppendCoalescer.class);
+
+    /** The batches which can be joined, by destination. (Also guards the state of all batches.) */
+    private static final Map<Path, Batch> BATCHES = new HashMap<>();
+
+    /** Writes the rows of a new sheet. */
+    @FunctionalInterface
+    interface Rows {
+        /**
+         * @param sheetWriter The writer of the new worksheet.
+         * @param dateStyle Returns the index of the cell style for a date format.
+         * @param date1904 Whether the workbook uses the 1904 date system.
+         * @throws IOException Problem writing.
+         * @throws CanceledExecutionException Execution cancelled.
+         */
+        void write(XlsxSheetWriter sheetWriter, ToIntFunction<String> dateStyle, boolean date1904)
+            throws IOException, CanceledExecutionException;
+    }
+
+    /** The appends to a file committed together. */
+    private static final class Batch {
+        private boolean m_opened;
+
+        /** The compression level of the rewritten parts (the one of the first append). */
+        private int m_level;
+
+        /** The appender, {@code null} if the file cannot be appended to at the package level. */
+        private XlsxAppender m_appender;
+
+        private int m_participants;
+
+        private int m_finished;
+
+        /** The written worksheet parts, by their temporary files. */
+        private final Map<File, RawZipFile> m_sheets = new LinkedHashMap<>();
+
+        private boolean m_committed;
+
+        private IOException m_failure;
+    }
+
+    private XlsxAppendCoalescer() {
+        // utility class
+    }
+
+    /**
+     * Appends a new sheet to an existing xlsx file, together with the other appends to the same file arriving
+     * meanwhile.
+     *
+     * @param path An existing xlsx file.
+     * @param sheetName The name of the new sheet.
+     * @param template The worksheet part of a template workbook (without rows).
+     * @param level The compression level of the new sheet.
+     * @param rows Writes the rows of the new sheet.
+     * @return Whether the sheet was appended, {@code false} if the workbook has to be loaded with POI, because the
+     *         sheet already exists or the package is not supported.
+     * @throws IOException Problem reading or writing.
+     * @throws CanceledExecutionException Execution cancelled (while writing the rows).
+     */
+    static boolean append(final Path path, final String sheetName, final byte[] template, final int level,
+        final Rows rows) throws IOException, CanceledExecutionException {
+        final Batch batch;
+        final boolean leader;
+        synchronized (BATCHES) {
+            final Batch open = BATCHES.get(path);
+            leader = open == null;
+            batch = leader ? new Batch() : open;
+            if (leader) {
+                batch.m_level = level;
+                BATCHES.put(path, batch);
+            }
+            batch.m_participants++;
+        }
+        if (!leader) {
+            awaitUninterruptibly(() -> batch.m_opened);
+            if (batch.m_appender == null || !writeSheet(batch, sheetName, template, level, rows)) {
+                return false;
+            }
+            awaitUninterruptibly(() -> batch.m_committed);
+            checkFailure(batch);
+            return true;
+        }
+
+        KeyLocker.lock(path);
+        try {
+            XlsxAppender appender = null;
+            try {
+                appender = XlsxAppender.open(path);
+            } finally {
+                synchronized (BATCHES) {
+                    batch.m_appender = appender;
+                    batch.m_opened = true;
+                    if (appender == null) {
+                        BATCHES.remove(path);
+                    }
+                    BATCHES.notifyAll();
+                }
+            }
+            if (appender == null) {
+                return false;
+            }
+            final boolean appended;
+            try {
+                appended = writeSheet(batch, sheetName, template, level, rows);
+            } finally {
+                // the sheets of the others are committed even if this one failed, the batch is closed to new
+                // appends first, so they cannot postpone the commit
+                synchronized (BATCHES) {
+                    BATCHES.remove(path);
+                    awaitUninterruptibly(() -> batch.m_finished == batch.m_participants);
+                }
+                commit(path, batch);
+            }
+            checkFailure(batch);
+            return appended;
+        } finally {
+            KeyLocker.unlock(path);
+        }
+    }
+
+    /**
+     * Adds the sheet to the appender of the batch and writes its rows to a temporary file.
+     *
+     * @return Whether the sheet was added, {@code false} if it already exists.
+     */
+    private static boolean writeSheet(final Batch batch, final String sheetName, final byte[] template,
+        final int level, final Rows rows) throws IOException, CanceledExecutionException {
+        final XlsxAppender appender = batch.m_appender;
+        final String sheetEntry = appender.addSheet(sheetName);
+        File file = null;
+        RawZipFile sheet = null;
+        try {
+            if (sheetEntry == null) {
+                return false;
+            }
+            file = FileUtil.createTempFile("sheet", ".zip");
+            try (final RawZipWriter zip = new RawZipWriter(new FileOutputStream(file), level);
+                    final OutputStream out = zip.newEntry(sheetEntry);
+                    final XlsxSheetWriter sheetWriter = new XlsxSheetWriter(out, template)) {
+                rows.write(sheetWriter, appender::dateStyle, appender.isDate1904());
+            }
+            sheet = new RawZipFile(file.toPath());
+            return true;
+        } finally {
+            if (sheet == null && sheetEntry != null) {
+                appender.removeSheet(sheetEntry);
+                if (file != null) {
+                    delete(file);
+                }
+            }
+            synchronized (BATCHES) {
+                if (sheet != null) {
+                    batch.m_sheets.put(file, sheet);
+                }
+                batch.m_finished++;
+                BATCHES.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes the file with the sheets of the batch next to the existing one and replaces it.
+     */
+    private static void commit(final Path path, final Batch batch) {
+        IOException failure = null;
+        try {
+            if (!batch.m_sheets.isEmpty()) {
+                // keeps the permissions of the existing file
+                final Path newFile = XLSWriter2.createTempFileFor(path);
+                boolean moved = false;
+                try {
+                    batch.m_appender.write(batch.m_sheets.values(), batch.m_level, Files.newOutputStream(newFile));
+                    // the existing file cannot be replaced while it is open on some platforms
+                    batch.m_appender.close();
+                    Files.move(newFile, path, StandardCopyOption.REPLACE_EXISTING);
+                    moved = true;
+                } finally {
+                    if (!moved) {
+                        Files.deleteIfExists(newFile);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } catch (final RuntimeException e) {
+            failure = new IOException(e.getMessage(), e);
+        } finally {
+            try {
+                batch.m_appender.close();
+            } catch (final IOException e) {
+                LOGGER.debug("Cannot close " + path + ": " + e.getMessage(), e);
+            }
+            for (final Map.Entry<File, RawZipFile> sheet : batch.m_sheets.entrySet()) {
+                try {
+                    sheet.getValue().close();
+                } catch (final IOException e) {
+                    LOGGER.debug("Cannot close " + sheet.getKey() + ": " + e.getMessage(), e);
+                }
+                delete(sheet.getKey());
+            }
+            synchronized (BATCHES) {
+                batch.m_failure = failure;
+                batch.m_committed = true;
+                BATCHES.notifyAll();
+            }
+        }
+    }
+
+    private static void checkFailure(final Batch batch) throws IOException {
+        final IOException failure;
+        synchronized (BATCHES) {
+            failure = batch.m_failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Waits until the condition on the state of the batches holds. (Interrupts are deferred, the others waited for
+     * check the cancellation of their executions.)
+     */
+    private static void awaitUninterruptibly(final BooleanSupplier condition) {
+        boolean interrupted = false;
+        synchronized (BATCHES) {
+            while (!condition.getAsBoolean()) {
+                try {
+                    BATCHES.wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void delete(final File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.debug("Cannot delete temporary file " + file);
+        }
+    }
+}
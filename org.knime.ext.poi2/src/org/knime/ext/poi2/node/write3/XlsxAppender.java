@@ -0,0 +1,493 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.opc.StreamHelper;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.util.DocumentHelper;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.knime.core.node.NodeLogger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Appends new sheets to an existing xlsx file at the package level. The parts of the existing file are copied
+ * without decompressing them, only the new worksheets, the workbook, its relationships, the content types and (when
+ * date styles are added) the styles are written. So the cost of appending depends on the size of the new sheets, not
+ * on the size of the existing file. The methods are thread-safe, so the rows of several new sheets can be written
+ * concurrently (see {@link XlsxAppendCoalescer}).
+ *
+ * @author agent
+ */
+final class XlsxAppender implements Closeable {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(XlsxAppender.class);
+
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    private static final String RELATIONSHIPS_NS =
+        "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
+
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+
+    private static final String PACKAGE_RELS = "_rels/.rels";
+
+    /** The elements following the number formats in a style sheet. */
+    private static final List<String> AFTER_NUM_FMTS = Arrays.asList("fonts", "fills", "borders", "cellStyleXfs",
+        "cellXfs", "cellStyles", "dxfs", "tableStyles", "colors", "extLst");
+
+    private final RawZipFile m_zip;
+
+    private final Map<String, RawZipFile.Entry> m_entries = new LinkedHashMap<>();
+
+    private final String m_workbookEntry;
+
+    private final String m_workbookRelsEntry;
+
+    private final String m_stylesEntry;
+
+    private final Document m_workbook;
+
+    private final Document m_workbookRels;
+
+    private final Document m_contentTypes;
+
+    private final Document m_styles;
+
+    private final boolean m_date1904;
+
+    private final Map<String, Integer> m_dateStyles = new HashMap<>();
+
+    /** The elements added for the new sheets, by the names of their zip entries. */
+    private final Map<String, List<Element>> m_newSheets = new HashMap<>();
+
+    private XlsxAppender(final RawZipFile zip, final String workbookEntry, final String workbookRelsEntry,
+        final String stylesEntry, final Document workbook, final Document workbookRels,
+        final Document contentTypes, final Document styles) {
+        m_zip = zip;
+        for (final RawZipFile.Entry entry : zip.entries()) {
+            m_entries.put(entry.name(), entry);
+        }
+        m_workbookEntry = workbookEntry;
+        m_workbookRelsEntry = workbookRelsEntry;
+        m_stylesEntry = stylesEntry;
+        m_workbook = workbook;
+        m_workbookRels = workbookRels;
+        m_contentTypes = contentTypes;
+        m_styles = styles;
+        final Element workbookPr = firstChild(workbook.getDocumentElement(), "workbookPr");
+        final String date1904 = workbookPr == null ? null : workbookPr.getAttribute("date1904");
+        m_date1904 = "1".equals(date1904) || "true".equals(date1904);
+    }
+
+    /**
+     * @param path An existing xlsx file.
+     * @return The appender for {@code path}, or {@code null} if its package is not supported (so it has to be
+     *         appended to with POI, which also reports the problems of invalid files).
+     * @throws IOException Problem reading.
+     */
+    static XlsxAppender open(final Path path) throws IOException {
+        final RawZipFile zip;
+        try {
+            zip = new RawZipFile(path);
+        } catch (final ZipException e) {
+            LOGGER.debug("Cannot read " + path + " as zip file: " + e.getMessage(), e);
+            return null;
+        }
+        boolean opened = false;
+        try {
+            final XlsxAppender appender = open(zip);
+            opened = appender != null;
+            if (!opened) {
+                LOGGER.debug("Unsupported package structure of " + path);
+            }
+            return appender;
+        } finally {
+            if (!opened) {
+                zip.close();
+            }
+        }
+    }
+
+    private static XlsxAppender open(final RawZipFile zip) throws IOException {
+        final Map<String, RawZipFile.Entry> entries = new HashMap<>();
+        for (final RawZipFile.Entry entry : zip.entries()) {
+            entries.put(entry.name(), entry);
+        }
+        final Document packageRels = read(zip, entries.get(PACKAGE_RELS));
+        final String workbookEntry =
+            packageRels == null ? null : resolve("/", target(packageRels, PackageRelationshipTypes.CORE_DOCUMENT));
+        final String workbookRelsEntry = workbookEntry == null ? null
+            : workbookEntry.substring(0, workbookEntry.lastIndexOf('/') + 1) + "_rels/"
+                + workbookEntry.substring(workbookEntry.lastIndexOf('/') + 1) + ".rels";
+        final Document workbook = workbookEntry == null ? null : read(zip, entries.get(workbookEntry));
+        final Document workbookRels = workbookRelsEntry == null ? null : read(zip, entries.get(workbookRelsEntry));
+        final String stylesEntry = workbookRels == null ? null
+            : resolve("/" + workbookEntry, target(workbookRels, XSSFRelation.STYLES.getRelation()));
+        final Document styles = stylesEntry == null ? null : read(zip, entries.get(stylesEntry));
+        final Document contentTypes = read(zip, entries.get(CONTENT_TYPES));
+        if (workbook == null || styles == null || contentTypes == null
+            || !MAIN_NS.equals(workbook.getDocumentElement().getNamespaceURI())
+            || firstChild(workbook.getDocumentElement(), "sheets") == null
+            || firstChild(styles.getDocumentElement(), "cellXfs") == null) {
+            return null;
+        }
+        return new XlsxAppender(zip, workbookEntry, workbookRelsEntry, stylesEntry, workbook, workbookRels,
+            contentTypes, styles);
+    }
+
+    /**
+     * @return Whether the workbook uses the 1904 date system.
+     */
+    boolean isDate1904() {
+        return m_date1904;
+    }
+
+    /**
+     * Returns the cell style with a number format, adding it (like POI does) when it is first used.
+     *
+     * @param format The number format.
+     * @return The index of the cell style.
+     */
+    synchronized int dateStyle(final String format) {
+        return m_dateStyles.computeIfAbsent(format, f -> {
+            final Element styleSheet = m_styles.getDocumentElement();
+            int numFmtId = BuiltinFormats.getBuiltinFormat(f);
+            if (numFmtId < 0) {
+                final Element numFmts = childOrNew(styleSheet, "numFmts", AFTER_NUM_FMTS);
+                int maxId = BuiltinFormats.FIRST_USER_DEFINED_FORMAT_INDEX - 1;
+                for (final Element numFmt : children(numFmts, "numFmt")) {
+                    final int id = Integer.parseInt(numFmt.getAttribute("numFmtId"));
+                    if (f.equals(numFmt.getAttribute("formatCode"))) {
+                        numFmtId = id;
+                    }
+                    maxId = Math.max(maxId, id);
+                }
+                if (numFmtId < 0) {
+                    numFmtId = maxId + 1;
+                    final Element numFmt = newChild(numFmts, "numFmt");
+                    numFmt.setAttribute("numFmtId", Integer.toString(numFmtId));
+                    numFmt.setAttribute("formatCode", f);
+                    numFmts.setAttribute("count", Integer.toString(children(numFmts, "numFmt").size()));
+                }
+            }
+            final Element cellXfs = firstChild(styleSheet, "cellXfs");
+            final Element xf = newChild(cellXfs, "xf");
+            xf.setAttribute("numFmtId", Integer.toString(numFmtId));
+            xf.setAttribute("fontId", "0");
+            xf.setAttribute("fillId", "0");
+            xf.setAttribute("borderId", "0");
+            xf.setAttribute("xfId", "0");
+            xf.setAttribute("applyNumberFormat", "true");
+            final int count = children(cellXfs, "xf").size();
+            cellXfs.setAttribute("count", Integer.toString(count));
+            return count - 1;
+        });
+    }
+
+    /**
+     * Adds a new sheet after the existing ones to the workbook, its relationships and the content types.
+     *
+     * @param sheetName The name of the new sheet.
+     * @return The name of the zip entry of the new worksheet part, or {@code null} if the workbook already contains
+     *         a sheet with that name (ignoring case like Excel).
+     */
+    synchronized String addSheet(final String sheetName) {
+        for (final Element sheet : sheets()) {
+            if (sheet.getAttribute("name").equalsIgnoreCase(sheetName)) {
+                return null;
+            }
+        }
+        final String directory = m_workbookEntry.substring(0, m_workbookEntry.lastIndexOf('/') + 1);
+        // part names are case insensitive
+        final Set<String> partNames = new HashSet<>();
+        for (final String name : m_entries.keySet()) {
+            partNames.add(name.toLowerCase(Locale.ROOT));
+        }
+        for (final String name : m_newSheets.keySet()) {
+            partNames.add(name.toLowerCase(Locale.ROOT));
+        }
+        int sheetNumber = sheets().size() + 1;
+        while (partNames.contains((directory + "worksheets/sheet" + sheetNumber + ".xml").toLowerCase(Locale.ROOT))) {
+            sheetNumber++;
+        }
+        final String target = "worksheets/sheet" + sheetNumber + ".xml";
+
+        final Element relationships = m_workbookRels.getDocumentElement();
+        final Set<String> ids = new HashSet<>();
+        for (final Element relationship : children(relationships, "Relationship")) {
+            ids.add(relationship.getAttribute("Id"));
+        }
+        int idNumber = ids.size() + 1;
+        while (ids.contains("rId" + idNumber)) {
+            idNumber++;
+        }
+        final String id = "rId" + idNumber;
+        final Element relationship = newChild(relationships, "Relationship");
+        relationship.setAttribute("Id", id);
+        relationship.setAttribute("Type", XSSFRelation.WORKSHEET.getRelation());
+        relationship.setAttribute("Target", target);
+
+        long maxSheetId = 0;
+        for (final Element sheet : sheets()) {
+            maxSheetId = Math.max(maxSheetId, Long.parseLong(sheet.getAttribute("sheetId")));
+        }
+        final Element sheets = firstChild(m_workbook.getDocumentElement(), "sheets");
+        final Element sheet = newChild(sheets, "sheet");
+        sheet.setAttribute("name", sheetName);
+        sheet.setAttribute("sheetId", Long.toString(maxSheetId + 1));
+        String prefix = sheets.lookupPrefix(RELATIONSHIPS_NS);
+        if (prefix == null) {
+            prefix = "r";
+            sheet.setAttributeNS(XMLNS_NS, "xmlns:" + prefix, RELATIONSHIPS_NS);
+        }
+        sheet.setAttributeNS(RELATIONSHIPS_NS, prefix + ":id", id);
+
+        final Element override = newChild(m_contentTypes.getDocumentElement(), "Override");
+        override.setAttribute("PartName", "/" + directory + target);
+        override.setAttribute("ContentType", XSSFRelation.WORKSHEET.getContentType());
+        m_newSheets.put(directory + target, Arrays.asList(relationship, sheet, override));
+        return directory + target;
+    }
+
+    /**
+     * Removes a sheet added with {@link #addSheet(String)} again (for example when writing its rows failed).
+     *
+     * @param sheetEntry The name of the zip entry of the worksheet part.
+     */
+    synchronized void removeSheet(final String sheetEntry) {
+        final List<Element> added = m_newSheets.remove(sheetEntry);
+        if (added != null) {
+            for (final Element element : added) {
+                element.getParentNode().removeChild(element);
+            }
+        }
+    }
+
+    /**
+     * Writes the existing package with the new sheets.
+     *
+     * @param sheets Zip files containing the worksheet parts of the sheets added with {@link #addSheet(String)} as
+     *            single entries. (They are copied without decompressing them.)
+     * @param level The compression level of the rewritten parts.
+     * @param out The stream of the new package, closed by this method.
+     * @throws IOException Problem reading or writing.
+     */
+    synchronized void write(final Collection<RawZipFile> sheets, final int level, final OutputStream out)
+        throws IOException {
+        try (final RawZipWriter zip = new RawZipWriter(out, level)) {
+            for (final RawZipFile.Entry entry : m_entries.values()) {
+                if (entry.name().equals(m_workbookEntry)) {
+                    write(zip, entry.name(), m_workbook);
+                } else if (entry.name().equals(m_workbookRelsEntry)) {
+                    write(zip, entry.name(), m_workbookRels);
+                } else if (entry.name().equals(CONTENT_TYPES)) {
+                    write(zip, entry.name(), m_contentTypes);
+                } else if (entry.name().equals(m_stylesEntry) && !m_dateStyles.isEmpty()) {
+                    write(zip, entry.name(), m_styles);
+                } else {
+                    copy(zip, m_zip, entry);
+                }
+            }
+            for (final RawZipFile sheet : sheets) {
+                for (final RawZipFile.Entry entry : sheet.entries()) {
+                    copy(zip, sheet, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        m_zip.close();
+    }
+
+    private List<Element> sheets() {
+        return children(firstChild(m_workbook.getDocumentElement(), "sheets"), "sheet");
+    }
+
+    private static void write(final RawZipWriter zip, final String name, final Document document)
+        throws IOException {
+        try (final OutputStream out = zip.newEntry(name)) {
+            if (!StreamHelper.saveXmlInStream(document, out)) {
+                throw new IOException("Failed to write " + name);
+            }
+        }
+    }
+
+    private static void copy(final RawZipWriter zip, final RawZipFile from, final RawZipFile.Entry entry)
+        throws IOException {
+        try (final InputStream raw = from.rawData(entry)) {
+            zip.copy(entry, raw);
+        }
+    }
+
+    private static Document read(final RawZipFile zip, final RawZipFile.Entry entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        try (final InputStream in = zip.data(entry)) {
+            return DocumentHelper.readDocument(in);
+        } catch (final SAXException e) {
+            throw new IOException("Invalid " + entry.name() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The target of the first relationship of the given type, or {@code null}.
+     */
+    private static String target(final Document relationships, final String type) {
+        for (final Element relationship : children(relationships.getDocumentElement(), "Relationship")) {
+            if (type.equals(relationship.getAttribute("Type"))
+                && !"External".equals(relationship.getAttribute("TargetMode"))) {
+                return relationship.getAttribute("Target");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param source The part name of the source of the relationship.
+     * @param target The target of the relationship.
+     * @return The name of the zip entry of the target, or {@code null}.
+     */
+    private static String resolve(final String source, final String target) {
+        if (target == null) {
+            return null;
+        }
+        try {
+            final String path = new URI(null, null, source, null).resolve(new URI(null, null, target, null)).getPath();
+            return path.startsWith("/") ? path.substring(1) : path;
+        } catch (final URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static List<Element> children(final Element parent, final String localName) {
+        final List<Element> children = new ArrayList<>();
+        final NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final Node node = nodes.item(i);
+            if (node instanceof Element && localName.equals(node.getLocalName())) {
+                children.add((Element)node);
+            }
+        }
+        return children;
+    }
+
+    private static Element firstChild(final Element parent, final String localName) {
+        final List<Element> children = children(parent, localName);
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    /**
+     * Creates an element in the namespace (and with the prefix) of {@code parent} and appends it.
+     */
+    private static Element newChild(final Element parent, final String localName) {
+        final Element child = createLike(parent, localName);
+        parent.appendChild(child);
+        return child;
+    }
+
+    /**
+     * @return The first child with {@code localName}, or a new one inserted before the first of the
+     *         {@code following} elements.
+     */
+    private static Element childOrNew(final Element parent, final String localName, final List<String> following) {
+        final Element existing = firstChild(parent, localName);
+        if (existing != null) {
+            return existing;
+        }
+        final Element child = createLike(parent, localName);
+        final NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final Node node = nodes.item(i);
+            if (node instanceof Element && following.contains(node.getLocalName())) {
+                parent.insertBefore(child, node);
+                return child;
+            }
+        }
+        parent.appendChild(child);
+        return child;
+    }
+
+    private static Element createLike(final Element parent, final String localName) {
+        final String prefix = parent.getPrefix();
+        return parent.getOwnerDocument().createElementNS(parent.getNamespaceURI(),
+            prefix == null ? localName : prefix + ":" + localName);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   Oct 18, 2026 (agent): created
+ */
+package org.knime.ext.poi2.node.write3;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Writes the rows of a worksheet part directly as SpreadsheetML, without creating POI rows and cells.
+ * The output is the same as the one of {@link org.apache.poi.xssf.streaming.SXSSFWorkbook} (with inline strings),
+ * including the template of the sheet the rows are injected into.
+ *
+ * @author agent
+ */
+final class XlsxSheetWriter implements Closeable {
+
+    private static final String SHEET_DATA = "<sheetData";
+
+    private final Writer m_out;
+
+    private final String m_suffix;
+
+    private String[] m_columnNames = new String[16];
+
+    private String m_rowNumber;
+
+    /**
+     * Writes the template up to the sheet data.
+     *
+     * @param out The content of the zip entry of the worksheet part, it is not closed by this writer.
+     * @param template The worksheet part of the template workbook (without rows).
+     * @throws IOException Problem writing.
+     */
+    XlsxSheetWriter(final OutputStream out, final byte[] template) throws IOException {
+        final String xml = new String(template, StandardCharsets.UTF_8);
+        final int start = xml.indexOf(SHEET_DATA);
+        if (start < 0) {
+            throw new IOException("No sheet data in the worksheet template");
+        }
+        final int emptyEnd = xml.indexOf("/>", start);
+        final int end = emptyEnd == start + SHEET_DATA.length() ? emptyEnd + "/>".length()
+            : xml.indexOf("</sheetData>", start) + "</sheetData>".length();
+        m_suffix = xml.substring(end);
+        // closing the writer must not close the entry
+        m_out = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(out) {
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, StandardCharsets.UTF_8));
+        m_out.write(xml, 0, start);
+        m_out.write("<sheetData>\n");
+    }
+
+    /**
+     * @param rowIdx The 0-based index of the row.
+     * @throws IOException Problem writing.
+     * @throws IllegalArgumentException If the row is outside of the rows of an xlsx sheet (like POI's rows).
+     */
+    void beginRow(final int rowIdx) throws IOException {
+        final int maxRow = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+        if (rowIdx < 0 || rowIdx > maxRow) {
+            throw new IllegalArgumentException(
+                "Invalid row number (" + rowIdx + ") outside allowable range (0.." + maxRow + ")");
+        }
+        m_rowNumber = Integer.toString(rowIdx + 1);
+        m_out.write("<row r=\"");
+        m_out.write(m_rowNumber);
+        m_out.write("\">\n");
+    }
+
+    /**
+     * @throws IOException Problem writing.
+     */
+    void endRow() throws IOException {
+        m_out.write("</row>\n");
+    }
+
+    /**
+     * @param colIdx The 0-based index of the column.
+     * @param value The text, {@code null} for a blank cell.
+     * @throws IOException Problem writing.
+     */
+    void stringCell(final int colIdx, final String value) throws IOException {
+        if (value == null) {
+            beginCell(colIdx, 0);
+            m_out.write("></c>");
+            return;
+        }
+        if (value.length() > SpreadsheetVersion.EXCEL2007.getMaxTextLength()) {
+            throw new IllegalArgumentException("The maximum length of cell contents (text) is 32,767 characters");
+        }
+        beginCell(colIdx, 0);
+        m_out.write(" t=\"inlineStr\"><is><t");
+        if (!value.isEmpty()
+            && (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1)))) {
+            m_out.write(" xml:space=\"preserve\"");
+        }
+        m_out.write('>');
+        writeQuoted(value);
+        m_out.write("</t></is></c>");
+    }
+
+    /**
+     * @param colIdx The 0-based index of the column.
+     * @param value The number, infinite values and {@code NaN} are written as errors (just like POI does).
+     * @param style The index of the cell style, {@code 0} for the default.
+     * @throws IOException Problem writing.
+     */
+    void numericCell(final int colIdx, final double value, final int style) throws IOException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            beginCell(colIdx, style);
+            m_out.write(" t=\"e\"><v>");
+            m_out.write(Double.isNaN(value) ? FormulaError.NUM.getString() : FormulaError.DIV0.getString());
+        } else {
+            beginCell(colIdx, style);
+            m_out.write(" t=\"n\"><v>");
+            m_out.write(Double.toString(value));
+        }
+        m_out.write("</v></c>");
+    }
+
+    /**
+     * @param colIdx The 0-based index of the column.
+     * @param value The logical value.
+     * @throws IOException Problem writing.
+     */
+    void booleanCell(final int colIdx, final boolean value) throws IOException {
+        beginCell(colIdx, 0);
+        m_out.write(value ? " t=\"b\"><v>1</v></c>" : " t=\"b\"><v>0</v></c>");
+    }
+
+    /**
+     * Writes the rest of the template (without closing the zip entry).
+     */
+    @Override
+    public void close() throws IOException {
+        m_out.write("</sheetData>");
+        m_out.write(m_suffix);
+        m_out.close();
+    }
+
+    /**
+     * @throws IllegalArgumentException If the column is outside of the columns of an xlsx sheet (like POI's cells).
+     */
+    private void beginCell(final int colIdx, final int style) throws IOException {
+        final SpreadsheetVersion version = SpreadsheetVersion.EXCEL2007;
+        final int maxColumn = version.getLastColumnIndex();
+        if (colIdx < 0 || colIdx > maxColumn) {
+            throw new IllegalArgumentException("Invalid column index (" + colIdx + ").  Allowable column range for "
+                + version.name() + " is (0.." + maxColumn + ") or ('A'..'" + version.getLastColumnName() + "')");
+        }
+        if (colIdx >= m_columnNames.length) {
+            m_columnNames = Arrays.copyOf(m_columnNames, Math.max(colIdx + 1, 2 * m_columnNames.length));
+        }
+        if (m_columnNames[colIdx] == null) {
+            m_columnNames[colIdx] = CellReference.convertNumToColString(colIdx);
+        }
+        m_out.write("<c r=\"");
+        m_out.write(m_columnNames[colIdx]);
+        m_out.write(m_rowNumber);
+        m_out.write('"');
+        if (style != 0) {
+            m_out.write(" s=\"");
+            m_out.write(Integer.toString(style));
+            m_out.write('"');
+        }
+    }
+
+    /**
+     * Escapes the text the same way as POI's {@code SheetDataWriter}, so the content is the same.
+     */
+    private void writeQuoted(final String s) throws IOException {
+        final int length = s.length();
+        int last = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            final String replacement;
+            switch (c) {
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\n':
+                    replacement = "&#xa;";
+                    break;
+                case '\r':
+                    replacement = "&#xd;";
+                    break;
+                case '\t':
+                    replacement = "&#x9;";
+                    break;
+                case 0xa0:
+                    replacement = "&#xa0;";
+                    break;
+                default:
+                    if (c < ' ' || ('\uFFFE' <= c && c <= '\uFFFF')) {
+                        // not allowed in XML
+                        replacement = "?";
+                    } else if (c > 127 && !Character.isSurrogate(c)) {
+                        replacement = "&#" + (int)c + ';';
+                    } else {
+                        replacement = null;
+                    }
+            }
+            if (replacement != null) {
+                m_out.write(s, last, i - last);
+                m_out.write(replacement);
+                last = i + 1;
+            }
+        }
+        m_out.write(s, last, length - last);
+    }
+}